@@ -34,11 +34,24 @@ public abstract class AbstractJsGraphvizEngine extends AbstractGraphvizEngine {
         if (rasterizer instanceof BuiltInRasterizer) {
             throw new GraphvizException("Built-in Rasterizer can only be used together with GraphvizCmdLineEngine.");
         }
-        return EngineResult.fromString(jsExecute(jsVizExec(src, options)));
+        return EngineResult.fromString(jsExecute(jsVizExec(src, options), options.deadline));
     }
 
     protected abstract String jsExecute(String jsCall);
 
+    /**
+     * Execute the call, but give up when the deadline is reached or cancelled.
+     * Engines that can abandon a running call should override this.
+     *
+     * @param deadline the deadline or null if there is none
+     */
+    protected String jsExecute(String jsCall, Deadline deadline) {
+        if (deadline != null) {
+            deadline.check();
+        }
+        return jsExecute(jsCall);
+    }
+
     protected String jsVizExec(String src, Options options) {
         if (src.startsWith("totalMemory") || src.startsWith("render")) {
             return src;
@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many renderings run at the same time, separately for each {@link Priority},
+ * so that batch renderings cannot starve interactive ones.
+ * Renderings that find all slots of their lane busy wait in a bounded queue.
+ * If the queue is full, they are rejected immediately with a {@link GraphvizException}.
+ */
+public final class AdmissionControl {
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    private AdmissionControl() {
+        for (final Priority priority : Priority.values()) {
+            lanes.put(priority, new Lane(priority, Integer.MAX_VALUE, 0));
+        }
+    }
+
+    /**
+     * @return an admission control that does not limit any lane
+     */
+    public static AdmissionControl create() {
+        return new AdmissionControl();
+    }
+
+    /**
+     * Lanes should be limited before the admission control is used.
+     *
+     * @param concurrency the number of renderings of this priority that run at the same time
+     * @param queueSize   the number of renderings that wait for a slot, more are rejected
+     */
+    public AdmissionControl limit(Priority priority, int concurrency, int queueSize) {
+        if (concurrency < 1 || queueSize < 0) {
+            throw new IllegalArgumentException("concurrency must be positive and queueSize not negative");
+        }
+        lanes.put(priority, new Lane(priority, concurrency, queueSize));
+        return this;
+    }
+
+    /**
+     * Run the action as soon as a slot of the lane is free.
+     *
+     * @param deadline how long to wait at most, null to wait forever
+     * @throws GraphvizException if the queue is full or the deadline is reached while waiting
+     */
+    public <T> T run(Priority priority, Deadline deadline, Supplier<T> action) {
+        final Runnable release = admit(priority, deadline);
+        try {
+            return action.get();
+        } finally {
+            release.run();
+        }
+    }
+
+    /**
+     * Wait for a slot of the lane.
+     *
+     * @return the action that frees the slot again
+     * @throws GraphvizException if the queue is full or the deadline is reached while waiting
+     */
+    public Runnable admit(Priority priority, Deadline deadline) {
+        return lanes.get(priority).admit(deadline);
+    }
+
+    /**
+     * Wait for a slot of the lane without blocking the current thread.
+     *
+     * @return a future of the action that frees the slot again,
+     * it fails with a {@link GraphvizException} if the queue is full or the deadline is reached while waiting
+     */
+    public CompletableFuture<Runnable> admitAsync(Priority priority, Deadline deadline) {
+        return lanes.get(priority).admitAsync(deadline);
+    }
+
+    public Metrics metrics(Priority priority) {
+        return lanes.get(priority).metrics();
+    }
+
+    /**
+     * A snapshot of the state of a lane.
+     */
+    public static final class Metrics {
+        private final int running;
+        private final int queueDepth;
+        private final long admitted;
+        private final long rejected;
+        private final long totalWaitMillis;
+        private final long maxWaitMillis;
+
+        Metrics(int running, int queueDepth, long admitted, long rejected, long totalWaitMillis, long maxWaitMillis) {
+            this.running = running;
+            this.queueDepth = queueDepth;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public int running() {
+            return running;
+        }
+
+        /**
+         * @return the number of renderings currently waiting for a slot
+         */
+        public int queueDepth() {
+            return queueDepth;
+        }
+
+        public long admitted() {
+            return admitted;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+
+        public long totalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        public long maxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public double averageWaitMillis() {
+            return admitted == 0 ? 0 : (double) totalWaitMillis / admitted;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{"
+                    + "running=" + running
+                    + ", queueDepth=" + queueDepth
+                    + ", admitted=" + admitted
+                    + ", rejected=" + rejected
+                    + ", averageWaitMillis=" + averageWaitMillis()
+                    + ", maxWaitMillis=" + maxWaitMillis
+                    + '}';
+        }
+    }
+
+    private static final class Lane {
+        private static final Object SLOT = new Object();
+
+        final Priority priority;
+        final int queueSize;
+        final ResourcePool<Object> slots;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalWait = new AtomicLong();
+        final AtomicLong maxWait = new AtomicLong();
+
+        Lane(Priority priority, int concurrency, int queueSize) {
+            this.priority = priority;
+            this.queueSize = queueSize;
+            slots = concurrency == Integer.MAX_VALUE
+                    ? null
+                    : new ResourcePool<>(Collections.nCopies(concurrency, SLOT));
+        }
+
+        Runnable admit(Deadline deadline) {
+            final CompletableFuture<Runnable> admission = admitAsync(deadline);
+            try {
+                return admission.get();
+            } catch (ExecutionException e) {
+                throw ResourcePool.unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                admission.thenAccept(Runnable::run);
+                throw new GraphvizException("Interrupted while waiting for a rendering slot", e);
+            }
+        }
+
+        /*
+         * Waiting renderings are woken up by a released slot or by their deadline, they do not poll
+         */
+        CompletableFuture<Runnable> admitAsync(Deadline deadline) {
+            final long start = System.nanoTime();
+            if (slots == null) {
+                return CompletableFuture.completedFuture(admitted(start));
+            }
+            return slots.acquire(queueSize, deadline).handle((slot, e) -> {
+                if (e == null) {
+                    return admitted(start);
+                }
+                final RuntimeException error = ResourcePool.unwrap(e);
+                if (error instanceof ResourcePool.RejectedException) {
+                    rejected.incrementAndGet();
+                    throw new GraphvizException("Too many " + priority + " renderings, the queue is full");
+                }
+                throw error;
+            });
+        }
+
+        private Runnable admitted(long start) {
+            final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            totalWait.addAndGet(waited);
+            maxWait.accumulateAndGet(waited, Math::max);
+            admitted.incrementAndGet();
+            running.incrementAndGet();
+            final AtomicInteger released = new AtomicInteger();
+            return () -> {
+                if (released.getAndIncrement() == 0) {
+                    running.decrementAndGet();
+                    if (slots != null) {
+                        slots.release(SLOT);
+                    }
+                }
+            };
+        }
+
+        Metrics metrics() {
+            return new Metrics(running.get(), slots == null ? 0 : slots.waiting(), admitted.get(), rejected.get(),
+                    totalWait.get(), maxWait.get());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+/**
+ * The drawing operations of xdot, used by {@link GraphvizJavaEngine} to create xdot and svg output
+ * from the same drawing code. Coordinates are in points, with the origin at the bottom left.
+ */
+interface Canvas {
+    void pen(String color);
+
+    void fill(String color);
+
+    /**
+     * @param style solid, dashed, dotted or setlinewidth(n)
+     */
+    void style(String style);
+
+    void font(String name, double size);
+
+    /**
+     * @param flags 1 = bold, 2 = italic, 4 = underline
+     */
+    void fontFlags(int flags);
+
+    void ellipse(double x, double y, double rx, double ry, boolean filled);
+
+    void polygon(double[] points, boolean filled);
+
+    void polyline(double[] points);
+
+    void bezier(double[] points);
+
+    /**
+     * @param align -1 = left, 0 = center, 1 = right
+     */
+    void text(double x, double y, int align, double width, String text);
+
+    void image(double x, double y, double width, double height, String file);
+}
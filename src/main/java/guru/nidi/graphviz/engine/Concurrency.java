@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The threads and locks used for rendering.
+ * This is the Java 8 version, the multi-release jar contains a Java 21 version (in src/main/java21)
+ * that renders on virtual threads and uses locks that don't pin them to their carrier thread.
+ */
+final class Concurrency {
+    private Concurrency() {
+    }
+
+    /**
+     * @return the default executor for asynchronous and batch renderings
+     */
+    static Executor executor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    static Guard guard() {
+        return new Guard() {
+            @Override
+            public void run(Runnable action) {
+                synchronized (this) {
+                    action.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs actions mutually exclusive.
+     */
+    interface Guard {
+        void run(Runnable action);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A point in time after which a rendering should be given up and that can also be cancelled explicitly.
+ * Engines register actions with {@link #onCancel(Runnable)} that free their resources
+ * (kill a process, close a connection, abandon a script call) when the deadline is reached or cancelled.
+ */
+public final class Deadline {
+    private static final ScheduledThreadPoolExecutor TIMER = timer();
+
+    private final long end;
+    private final List<Runnable> actions = new ArrayList<>();
+    private volatile String reason;
+    private ScheduledFuture<?> expiry;
+
+    private Deadline(long end) {
+        this.end = end;
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "graphviz-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * @return a deadline that never expires, but can be cancelled
+     */
+    public static Deadline never() {
+        return new Deadline(Long.MAX_VALUE);
+    }
+
+    public static Deadline in(long amount, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(amount));
+    }
+
+    public void cancel() {
+        finish("Rendering cancelled");
+    }
+
+    private void expire() {
+        finish("Rendering deadline exceeded");
+    }
+
+    private void finish(String why) {
+        final List<Runnable> toRun;
+        synchronized (actions) {
+            if (reason != null) {
+                return;
+            }
+            reason = why;
+            toRun = new ArrayList<>(actions);
+            actions.clear();
+            stopExpiry();
+        }
+        for (final Runnable action : toRun) {
+            action.run();
+        }
+    }
+
+    /**
+     * @return if the deadline has been cancelled or is reached
+     */
+    public boolean isCancelled() {
+        return reason != null || (end != Long.MAX_VALUE && System.nanoTime() - end >= 0);
+    }
+
+    /**
+     * @return the milliseconds until the deadline is reached, {@link Long#MAX_VALUE} if it never expires
+     */
+    public long remainingMillis() {
+        if (isCancelled()) {
+            return 0;
+        }
+        return end == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()) + 1;
+    }
+
+    /**
+     * @throws GraphvizException if the deadline has been cancelled or is reached
+     */
+    public void check() {
+        if (isCancelled()) {
+            throw new GraphvizException(reason());
+        }
+    }
+
+    /**
+     * @return why the deadline has been cancelled
+     */
+    String reason() {
+        return reason == null ? "Rendering deadline exceeded" : reason;
+    }
+
+    /**
+     * Register an action to run when the deadline is cancelled or reached.
+     * If this has already happened, the action is run immediately.
+     *
+     * @return an action that unregisters the given action again
+     */
+    public Runnable onCancel(Runnable action) {
+        synchronized (actions) {
+            if (!isCancelled()) {
+                actions.add(action);
+                if (expiry == null && end != Long.MAX_VALUE) {
+                    expiry = TIMER.schedule(this::expire, end - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                return () -> remove(action);
+            }
+        }
+        action.run();
+        return () -> {
+        };
+    }
+
+    private void remove(Runnable action) {
+        synchronized (actions) {
+            actions.remove(action);
+            if (actions.isEmpty()) {
+                stopExpiry();
+            }
+        }
+    }
+
+    private void stopExpiry() {
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final long remaining = remainingMillis();
+        return "Deadline{" + (remaining == Long.MAX_VALUE ? "never" : remaining + "ms") + "}";
+    }
+}
@@ -16,5 +16,13 @@
 package guru.nidi.graphviz.engine;
 
 public enum Engine {
-    CIRCO, DOT, NEATO, OSAGE, TWOPI, FDP
+    CIRCO, DOT, NEATO, OSAGE, TWOPI, FDP, SFDP,
+    /**
+     * Use the node positions given in the source (like neato -n).
+     */
+    NOP,
+    /**
+     * Use the node and edge positions given in the source (like neato -n2).
+     */
+    NOP2
 }
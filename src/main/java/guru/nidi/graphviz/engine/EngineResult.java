@@ -17,55 +17,256 @@ package guru.nidi.graphviz.engine;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The output of an engine. It is either text (like svg) that is given as string to the mappers
+ * or binary (like a png from the command line engine) that is given as file.
+ * Both kinds can be backed by a string, a byte buffer or a file.
+ * A file result is deleted after it has been consumed.
+ * With {@link #moveTo(Path)}, {@link #transferTo(WritableByteChannel)} and {@link #bytes()},
+ * results reach their destination without being decoded or copied to the heap.
+ */
 public final class EngineResult {
-    private final File file;
+    private final Path path;
+    private final ByteBuffer bytes;
     private final String string;
+    private final boolean text;
+    private final String extension;
 
-    private EngineResult(File file, String string) {
-        this.file = file;
+    private EngineResult(Path path, ByteBuffer bytes, String string, boolean text, String extension) {
+        this.path = path;
+        this.bytes = bytes;
         this.string = string;
+        this.text = text;
+        this.extension = extension;
     }
 
     public static EngineResult fromFile(File file) {
-        return new EngineResult(file, null);
+        return fromPath(file.toPath(), false);
     }
 
     public static EngineResult fromString(String string) {
-        return new EngineResult(null, string);
+        return new EngineResult(null, null, string, true, null);
+    }
+
+    /**
+     * @param text if the file contains UTF-8 text or binary data
+     */
+    public static EngineResult fromPath(Path path, boolean text) {
+        final String name = path.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        return new EngineResult(path, null, null, text, dot < 0 ? null : name.substring(dot + 1));
+    }
+
+    /**
+     * @param text if the buffer contains UTF-8 text or binary data
+     */
+    public static EngineResult fromBytes(ByteBuffer bytes, boolean text) {
+        return new EngineResult(null, bytes.asReadOnlyBuffer(), null, text, null);
+    }
+
+    public boolean isText() {
+        return text;
     }
 
     public EngineResult mapString(Function<String, String> mapper) {
-        return string == null ? this : fromString(mapper.apply(string));
+        if (!text) {
+            return this;
+        }
+        final EngineResult res = fromString(mapper.apply(asString()));
+        close();
+        return res;
     }
 
     public void consume(Consumer<File> fileConsumer, Consumer<String> stringConsumer) {
-        if (string == null) {
-            fileConsumer.accept(file);
+        if (text) {
+            stringConsumer.accept(asString());
         } else {
-            stringConsumer.accept(string);
+            fileConsumer.accept(asFile());
         }
         close();
     }
 
     public <T> T map(Function<File, T> fileMapper, Function<String, T> stringMapper) {
-        final T res = string == null ? fileMapper.apply(file) : stringMapper.apply(string);
+        final T res = text ? stringMapper.apply(asString()) : fileMapper.apply(asFile());
         close();
         return res;
     }
 
     <T> T mapIO(IOFunction<File, T> fileMapper, IOFunction<String, T> stringMapper) throws IOException {
-        final T res = string == null ? fileMapper.apply(file) : stringMapper.apply(string);
+        final T res = text ? stringMapper.apply(asString()) : fileMapper.apply(asFile());
         close();
         return res;
     }
 
+    /**
+     * @return the content, a file is memory mapped
+     */
+    public ByteBuffer bytes() throws IOException {
+        if (bytes != null) {
+            return bytes.duplicate();
+        }
+        if (string != null) {
+            return UTF_8.encode(string).asReadOnlyBuffer();
+        }
+        try (final FileChannel in = FileChannel.open(path, READ)) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+    }
+
+    /**
+     * Write the content to the channel, a file is transferred without copying it through the heap.
+     *
+     * @return the number of bytes written
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        try {
+            if (path == null) {
+                return write(bytes(), target);
+            }
+            try (final FileChannel in = FileChannel.open(path, READ)) {
+                final long size = in.size();
+                long pos = 0;
+                while (pos < size) {
+                    pos += in.transferTo(pos, size - pos, target);
+                }
+                return size;
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Put the content into the target file, replacing it atomically if the file system supports it.
+     * A file result is moved, not copied, if it is on the same file system.
+     * The target gets the permissions of the file it replaces, a new target gets the default permissions.
+     */
+    public void moveTo(Path target) throws IOException {
+        try {
+            if (path != null) {
+                keepPermissions(target, path);
+                if (move(path, target)) {
+                    return;
+                }
+            }
+            final Path temp = temp(target);
+            try {
+                try (final FileChannel out = FileChannel.open(temp, CREATE_NEW, WRITE)) {
+                    transferTo(out);
+                }
+                keepPermissions(target, temp);
+                move(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /*
+     * Unlike Files.createTempFile, this does not restrict the permissions of the new file to the owner
+     */
+    private static Path temp(Path target) {
+        final Path abs = target.toAbsolutePath();
+        return abs.resolveSibling("." + abs.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+    }
+
+    private static void keepPermissions(Path from, Path to) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null && Files.exists(from)) {
+            Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+        }
+    }
+
+    /**
+     * @return a result that can be consumed several times, a file result is read into memory and deleted
+     */
+    EngineResult share() {
+        if (path == null) {
+            return this;
+        }
+        try {
+            return new EngineResult(null, ByteBuffer.wrap(Files.readAllBytes(path)).asReadOnlyBuffer(), null, text,
+                    extension);
+        } catch (IOException e) {
+            throw new GraphvizException("Could not read result", e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @return the file extension of a (former) file result or the given default
+     */
+    String extension(String defaultExtension) {
+        return extension == null ? defaultExtension : extension;
+    }
+
+    private static boolean move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            if (source.getFileSystem().equals(target.getFileSystem())
+                    && Files.getFileStore(source).equals(Files.getFileStore(target.toAbsolutePath().getParent()))) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static long write(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += target.write(buffer);
+        }
+        return written;
+    }
+
+    private String asString() {
+        if (string != null) {
+            return string;
+        }
+        try {
+            return UTF_8.decode(bytes()).toString();
+        } catch (IOException e) {
+            throw new GraphvizException("Could not read result", e);
+        }
+    }
+
+    private File asFile() {
+        if (path != null) {
+            return path.toFile();
+        }
+        try {
+            final Path temp = Files.createTempFile("graphviz", ".out");
+            try (final FileChannel out = FileChannel.open(temp, WRITE)) {
+                write(bytes(), out);
+            }
+            temp.toFile().deleteOnExit();
+            return temp.toFile();
+        } catch (IOException e) {
+            throw new GraphvizException("Could not write result", e);
+        }
+    }
+
     private void close() {
-        if (file != null) {
-            file.delete();
+        if (path != null) {
+            path.toFile().delete();
         }
     }
 
@@ -78,19 +279,24 @@ public final class EngineResult {
             return false;
         }
         final EngineResult that = (EngineResult) o;
-        return Objects.equals(file, that.file) && Objects.equals(string, that.string);
+        return text == that.text
+                && Objects.equals(path, that.path)
+                && Objects.equals(bytes, that.bytes)
+                && Objects.equals(string, that.string);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(file, string);
+        return Objects.hash(path, bytes, string, text);
     }
 
     @Override
     public String toString() {
         return "EngineResult{"
-                + "file=" + file
+                + "path=" + path
+                + ", bytes=" + bytes
                 + ", string='" + string + '\''
+                + ", text=" + text
                 + '}';
     }
 }
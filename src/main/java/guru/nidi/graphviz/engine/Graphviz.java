@@ -27,8 +27,11 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +43,9 @@ public final class Graphviz {
 
     private static volatile BlockingQueue<GraphvizEngine> engineQueue;
     private static GraphvizEngine engine;
+    private static final Concurrency.Guard ENGINE_GUARD = Concurrency.guard();
+    private static final SingleFlight<List<Object>, EngineResult> IN_FLIGHT = new SingleFlight<>();
+    private static volatile AdmissionControl admissionControl;
     private final String src;
     private final Options options;
     final Rasterizer rasterizer;
@@ -47,9 +53,11 @@ public final class Graphviz {
     final int height;
     final double scale;
     final double fontAdjust;
+    private final LayoutCache layoutCache;
+    private final LayoutPolicy layoutPolicy;
 
-    private Graphviz(String src, Rasterizer rasterizer,
-                     int width, int height, double scale, double fontAdjust, Options options) {
+    private Graphviz(String src, Rasterizer rasterizer, int width, int height, double scale, double fontAdjust,
+                     Options options, LayoutCache layoutCache, LayoutPolicy layoutPolicy) {
         this.src = src;
         this.rasterizer = rasterizer;
         this.width = width;
@@ -57,6 +65,8 @@ public final class Graphviz {
         this.scale = scale;
         this.fontAdjust = fontAdjust;
         this.options = options;
+        this.layoutCache = layoutCache;
+        this.layoutPolicy = layoutPolicy;
     }
 
     public static void useDefaultEngines() {
@@ -75,7 +85,7 @@ public final class Graphviz {
         if (engines.isEmpty()) {
             useDefaultEngines();
         } else {
-            synchronized (Graphviz.class) {
+            ENGINE_GUARD.run(() -> {
                 if (engineQueue == null) {
                     engineQueue = new ArrayBlockingQueue<>(1);
                 } else {
@@ -85,7 +95,7 @@ public final class Graphviz {
                         //ignore
                     }
                 }
-            }
+            });
             engine = null;
             doUseEngine(engines);
         }
@@ -103,7 +113,7 @@ public final class Graphviz {
         if (engineQueue == null) {
             useDefaultEngines();
         }
-        synchronized (Graphviz.class) {
+        ENGINE_GUARD.run(() -> {
             if (engine == null) {
                 try {
                     engine = engineQueue.poll(120, TimeUnit.SECONDS);
@@ -117,10 +127,32 @@ public final class Graphviz {
                     //ignore
                 }
             }
-        }
+        });
         return engine;
     }
 
+    /**
+     * Limit the concurrent renderings per {@link Priority}.
+     *
+     * @param control the admission control or null to admit all renderings immediately
+     */
+    public static void useAdmissionControl(AdmissionControl control) {
+        admissionControl = control;
+    }
+
+    private static <T> T admitted(Options opts, Supplier<T> action) {
+        final AdmissionControl control = admissionControl;
+        return control == null ? action.get() : control.run(opts.priority, opts.deadline, action);
+    }
+
+    private static CompletableFuture<Runnable> admitAsync(Options opts) {
+        final AdmissionControl control = admissionControl;
+        return control == null
+                ? CompletableFuture.completedFuture(() -> {
+                })
+                : control.admitAsync(opts.priority, opts.deadline);
+    }
+
     public static void releaseEngine() {
         if (engine != null) {
             try {
@@ -148,39 +180,83 @@ public final class Graphviz {
     }
 
     public static Graphviz fromString(String src) {
-        return new Graphviz(src, Rasterizer.DEFAULT, 0, 0, 1, 1, Options.create());
+        return new Graphviz(src, Rasterizer.DEFAULT, 0, 0, 1, 1, Options.create(), null, null);
+    }
+
+    /**
+     * Render a layout as it is, without running the layout engine again.
+     */
+    public static Graphviz fromLayout(Layout layout) {
+        return fromString(layout.source()).engine(Engine.NOP2);
     }
 
     public Graphviz engine(Engine engine) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options.engine(engine));
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.engine(engine), layoutCache, layoutPolicy);
     }
 
     public Graphviz totalMemory(Integer totalMemory) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options.totalMemory(totalMemory));
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.totalMemory(totalMemory), layoutCache, layoutPolicy);
     }
 
     public Graphviz yInvert(Boolean yInvert) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options.yInvert(yInvert));
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.yInvert(yInvert), layoutCache, layoutPolicy);
     }
 
     public Graphviz basedir(File basedir) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options.basedir(basedir));
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.basedir(basedir), layoutCache, layoutPolicy);
+    }
+
+    /**
+     * Give up rendering when the deadline is reached or cancelled.
+     * The engines then free all resources used for the rendering (processes, connections, script calls).
+     */
+    public Graphviz deadline(Deadline deadline) {
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.deadline(deadline), layoutCache, layoutPolicy);
+    }
+
+    /**
+     * The lane used by the {@link AdmissionControl}, {@link Priority#INTERACTIVE} by default.
+     */
+    public Graphviz priority(Priority priority) {
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust,
+                options.priority(priority), layoutCache, layoutPolicy);
     }
 
     public Graphviz width(int width) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options);
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
     }
 
     public Graphviz height(int height) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options);
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
     }
 
     public Graphviz scale(double scale) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options);
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
     }
 
     public Graphviz fontAdjust(double fontAdjust) {
-        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options);
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
+    }
+
+    /**
+     * Reuse layouts of graphs that only differ in styling attributes like colors.
+     * The layout is done once per cache entry, rendering with another style skips the layout engine.
+     */
+    public Graphviz layoutCache(LayoutCache layoutCache) {
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
+    }
+
+    /**
+     * Choose the layout engine and its effort by the size of the graph, instead of always using the given engine.
+     * The choice is made when rendering and can be read from {@link Renderer#layoutChoice()}.
+     */
+    public Graphviz layoutPolicy(LayoutPolicy layoutPolicy) {
+        return new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options, layoutCache, layoutPolicy);
     }
 
     public Renderer rasterize(Rasterizer rasterizer) {
@@ -188,23 +264,139 @@ public final class Graphviz {
             throw new IllegalArgumentException("The provided rasterizer implementation was not found. "
                     + "Make sure that the batik-rasterizer or svg-salamander jar is available on the classpath.");
         }
-        final Options opts = options.format(rasterizer.format());
-        final Graphviz graphviz = new Graphviz(src, rasterizer, width, height, scale, fontAdjust, opts);
-        return new Renderer(graphviz, null, Format.PNG);
+        return renderer(rasterizer, options.format(rasterizer.format()), Format.PNG);
     }
 
     public Renderer render(Format format) {
-        final Graphviz g = new Graphviz(src, rasterizer, width, height, scale, fontAdjust, options.format(format));
-        return new Renderer(g, null, format);
+        return renderer(rasterizer, options.format(format), format);
+    }
+
+    private Renderer renderer(Rasterizer rasterizer, Options opts, Format output) {
+        final LayoutPolicy.Choice choice = choose(opts);
+        final Graphviz g = choice == null
+                ? new Graphviz(src, rasterizer, width, height, scale, fontAdjust, opts, layoutCache, null)
+                : new Graphviz(choice.apply(src), rasterizer, width, height, scale, fontAdjust,
+                opts.engine(choice.engine()), layoutCache, null);
+        return new Renderer(g, null, output, choice);
+    }
+
+    private LayoutPolicy.Choice choose(Options opts) {
+        return layoutPolicy == null || opts.format == Format.DOT
+                || opts.engine == Engine.NOP || opts.engine == Engine.NOP2
+                ? null
+                : layoutPolicy.choose(src);
+    }
+
+    public Layout layout() {
+        return layout(null);
+    }
+
+    /**
+     * Lay out the graph on the default executor, which uses virtual threads on Java 21 and later.
+     */
+    public CompletableFuture<Layout> layoutAsync() {
+        return CompletableFuture.supplyAsync(this::layout, Concurrency.executor());
+    }
+
+    /**
+     * Lay out the graph, starting from a previous layout.
+     * Nodes whose links did not change keep their position, the others are placed around them.
+     * This uses {@link Engine#NEATO}, as dot does not support given node positions.
+     *
+     * @param previous the previous layout of the graph or null to do a complete layout
+     */
+    public Layout layout(Layout previous) {
+        final Options opts = options.format(Format.XDOT).yInvert(null);
+        final LayoutPolicy.Choice choice = previous == null ? choose(opts) : null;
+        final String source = previous != null ? IncrementalLayout.annotate(src, previous)
+                : choice != null ? choice.apply(src) : src;
+        final Options layoutOpts = previous != null ? opts.engine(Engine.NEATO)
+                : choice != null ? opts.engine(choice.engine()) : opts;
+        final EngineResult result = admitted(layoutOpts,
+                () -> getEngine().execute(Format.XDOT.preProcess(source), layoutOpts, null));
+        return Layout.fromXdot(result.map(file -> {
+            throw new GraphvizException("Expected a String layout, but found a File.");
+        }, string -> string));
+    }
+
+    /**
+     * Lay out the graph and read the positions from the {@link Format#JSON0} output.
+     * This is much smaller than a rendered image and can be drawn by other clients.
+     */
+    public JsonLayout jsonLayout() {
+        final Options jsonOpts = options.format(Format.JSON0).yInvert(null);
+        final EngineResult result = admitted(jsonOpts,
+                () -> getEngine().execute(Format.JSON0.preProcess(src), jsonOpts, null));
+        try {
+            return result.mapIO(JsonLayout::read, JsonLayout::read);
+        } catch (IOException e) {
+            throw new GraphvizException("Could not read json layout", e);
+        }
     }
 
     EngineResult execute() {
-        final EngineResult result = options.format == Format.DOT
-                ? EngineResult.fromString(src)
-                : getEngine().execute(options.format.preProcess(src), options, rasterizer);
+        if (options.deadline != null) {
+            options.deadline.check();
+        }
+        final EngineResult result;
+        if (options.format == Format.DOT) {
+            result = EngineResult.fromString(src);
+        } else if (layoutCache == null || options.engine == Engine.NOP || options.engine == Engine.NOP2) {
+            result = executeShared(options.format.preProcess(src), options);
+        } else {
+            final Layout layout = layoutCache.layout(src, options, () -> layout(null));
+            final String styled = StyledLayout.apply(layout, src);
+            result = executeShared(options.format.preProcess(styled), options.engine(Engine.NOP2));
+        }
         return options.format.postProcess(this, result);
     }
 
+    /*
+     * Concurrent identical requests (same engine, source, options and rasterizer) wait for one engine execution,
+     * whether they are synchronous or asynchronous.
+     * Post processing depends on the size settings of each Graphviz and is done per request.
+     */
+    private EngineResult executeShared(String source, Options opts) {
+        final GraphvizEngine eng = getEngine();
+        return IN_FLIGHT.execute(flightKey(eng, source, opts), opts.deadline,
+                () -> admitted(opts, () -> eng.execute(source, opts, rasterizer)), EngineResult::share);
+    }
+
+    private CompletableFuture<EngineResult> executeSharedAsync(GraphvizEngine eng, String source, Options opts,
+                                                               Executor executor) {
+        return IN_FLIGHT.executeAsync(flightKey(eng, source, opts), opts.deadline,
+                () -> admitAsync(opts).thenCompose(release -> eng.executeAsync(source, opts, rasterizer, executor)
+                        .whenComplete((result, ex) -> release.run())),
+                EngineResult::share);
+    }
+
+    /*
+     * The priority is not part of the options' identity, but renderings of different priorities must not share:
+     * a rendering would else wait in (or be rejected by) the lane of another priority
+     */
+    private List<Object> flightKey(GraphvizEngine eng, String source, Options opts) {
+        return Arrays.asList(eng, source, opts, opts.priority, rasterizer);
+    }
+
+    /**
+     * Like {@link #execute()}, but the engine completes the result.
+     * Work that always blocks (waiting for the engine to be initialized, using the layout cache) runs on the executor.
+     */
+    CompletableFuture<EngineResult> executeAsync(Executor executor) {
+        if (options.format == Format.DOT || (layoutCache != null
+                && options.engine != Engine.NOP && options.engine != Engine.NOP2)) {
+            return CompletableFuture.supplyAsync(this::execute, executor);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            if (options.deadline != null) {
+                options.deadline.check();
+            }
+            return getEngine();
+        }, executor)
+                .thenCompose(e -> executeSharedAsync(e, options.format.preProcess(src), options, executor))
+                .thenApply(result -> options.format.postProcess(this, result));
+    }
+
     Format format() {
         return options.format;
     }
@@ -16,6 +16,7 @@
 package guru.nidi.graphviz.engine;
 
 import guru.nidi.graphviz.service.*;
+import org.apache.commons.exec.ExecuteWatchdog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +25,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static java.util.Locale.ENGLISH;
 
@@ -62,14 +65,8 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
     @Override
     public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
         try {
-            final Path path = Files.createTempDirectory(getOrCreateTempDirectory().toPath(), "DotEngine");
-            final File dotFile = getDotFile(path);
-            try (final BufferedWriter bw = new BufferedWriter(
-                    new OutputStreamWriter(new FileOutputStream(dotFile), StandardCharsets.UTF_8))) {
-                bw.write(preprocessCode(src, options));
-            }
-            System.out.println("try to call: path=" + path.toString() + "; dotFile=" + dotFile.getAbsolutePath() + "; options=" + options.toString());
-            return doExecute(path, dotFile, options, rasterizer);
+            final Path path = writeDotFile(src, options);
+            return doExecute(path, getDotFile(path), options, rasterizer);
         } catch (IOException | InterruptedException e) {
             System.out.println("following exception was thrown:");
             e.printStackTrace();
@@ -77,21 +74,109 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
         }
     }
 
+    /**
+     * The result is completed by the process' exit handler, no thread waits for the process.
+     */
+    @Override
+    public CompletableFuture<EngineResult> executeAsync(String src, Options options, Rasterizer rasterizer,
+                                                        Executor executor) {
+        final CompletableFuture<EngineResult> res = new CompletableFuture<>();
+        try {
+            final Deadline deadline = options.deadline == null ? Deadline.never() : options.deadline;
+            deadline.check();
+            final Path path = writeDotFile(src, options);
+            final String format = getFormatName(options.format, rasterizer);
+            final ExecuteWatchdog watchdog = watchdog(deadline);
+            final Runnable unregister = deadline.onCancel(() -> watchdog.timeoutOccured(null));
+            cmdRunner.execAsync(command(getDotFile(path), options, format), path.toFile(), watchdog)
+                    .whenComplete((ok, e) -> {
+                        unregister.run();
+                        if (e == null && !deadline.isCancelled()) {
+                            res.complete(result(path, format, rasterizer));
+                        } else {
+                            IoUtils.deleteQuietly(path.toFile());
+                            res.completeExceptionally(deadline.isCancelled()
+                                    ? new GraphvizException(deadline.reason())
+                                    : new GraphvizException(e.getMessage(), e));
+                        }
+                    });
+        } catch (IOException e) {
+            res.completeExceptionally(new GraphvizException(e.getMessage(), e));
+        } catch (GraphvizException e) {
+            res.completeExceptionally(e);
+        }
+        return res;
+    }
+
+    private Path writeDotFile(String src, Options options) throws IOException {
+        final Path path = Files.createTempDirectory(getOrCreateTempDirectory().toPath(), "DotEngine");
+        final File dotFile = getDotFile(path);
+        try (final BufferedWriter bw = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(dotFile), StandardCharsets.UTF_8))) {
+            bw.write(preprocessCode(src, options));
+        }
+        System.out.println("try to call: path=" + path.toString() + "; dotFile=" + dotFile.getAbsolutePath() + "; options=" + options.toString());
+        return path;
+    }
+
     private EngineResult doExecute(Path path, File dotFile, Options options, Rasterizer rasterizer)
             throws IOException, InterruptedException {
-        final String engine = getEngineExecutable(options.engine);
         final String format = getFormatName(options.format, rasterizer);
-        final String command = engine
+        final String command = command(dotFile, options, format);
+        if (options.deadline == null) {
+            cmdRunner.exec(command, path.toFile());
+        } else {
+            execWatched(command, path, options.deadline);
+        }
+        return result(path, format, rasterizer);
+    }
+
+    private String command(File dotFile, Options options, String format) {
+        return getEngineExecutable(options.engine)
+                + engineFlags(options.engine)
                 + (options.yInvert != null && options.yInvert ? " -y" : "")
                 + " -T" + format
                 + " " + dotFile.getAbsolutePath() + " -ooutfile." + format;
-        cmdRunner.exec(command, path.toFile());
-        final Path outFile = path.resolve("outfile." + format);
-        if (rasterizer instanceof BuiltInRasterizer) {
-            return EngineResult.fromFile(outFile.toFile());
+    }
+
+    private EngineResult result(Path path, String format, Rasterizer rasterizer) {
+        return EngineResult.fromPath(path.resolve("outfile." + format), !(rasterizer instanceof BuiltInRasterizer));
+    }
+
+    /*
+     * The deadline kills the process with its own timer, so the watchdog needs no thread for the timeout.
+     * A cancel before the process has started finds no process to kill, so it is checked again once it runs
+     */
+    private ExecuteWatchdog watchdog(Deadline deadline) {
+        return new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT) {
+            @Override
+            public synchronized void start(Process process) {
+                super.start(process);
+                if (deadline.isCancelled()) {
+                    timeoutOccured(null);
+                }
+            }
+        };
+    }
+
+    /*
+     * The process is killed when the deadline is reached or cancelled, the working directory is removed then
+     */
+    private void execWatched(String command, Path path, Deadline deadline) throws IOException, InterruptedException {
+        deadline.check();
+        final ExecuteWatchdog watchdog = watchdog(deadline);
+        final Runnable unregister = deadline.onCancel(() -> watchdog.timeoutOccured(null));
+        try {
+            cmdRunner.execWatched(command, path.toFile(), watchdog);
+        } catch (IOException e) {
+            if (deadline.isCancelled()) {
+                IoUtils.deleteQuietly(path.toFile());
+                deadline.check();
+            }
+            throw e;
+        } finally {
+            unregister.run();
         }
-        final byte[] data = Files.readAllBytes(outFile);
-        return EngineResult.fromString(new String(data, StandardCharsets.UTF_8));
     }
 
     protected String preprocessCode(String src, Options options) {
@@ -100,7 +185,9 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
     }
 
     private String getEngineExecutable(Engine engine) {
-        final String exe = SystemUtils.executableName(engine == null ? "dot" : engine.toString().toLowerCase(ENGLISH));
+        final String exe = SystemUtils.executableName(engine == null ? "dot"
+                : engine == Engine.NOP || engine == Engine.NOP2 ? "neato"
+                : engine.toString().toLowerCase(ENGLISH));
         if (!CommandRunner.isExecutableFound(exe, envPath)) {
             final GraphvizException e = new GraphvizException(exe + " command not found");
             e.setStackTrace(new StackTraceElement[0]);
@@ -109,6 +196,13 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
         return exe;
     }
 
+    private String engineFlags(Engine engine) {
+        if (engine == Engine.NOP) {
+            return " -n";
+        }
+        return engine == Engine.NOP2 ? " -n2" : "";
+    }
+
     private String getFormatName(Format format, Rasterizer rasterizer) {
         if (rasterizer instanceof BuiltInRasterizer) {
             final BuiltInRasterizer natRast = (BuiltInRasterizer) rasterizer;
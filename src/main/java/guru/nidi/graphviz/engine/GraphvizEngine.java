@@ -15,10 +15,22 @@
  */
 package guru.nidi.graphviz.engine;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 public interface GraphvizEngine extends AutoCloseable {
     void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError);
 
     EngineResult execute(String src, Options options, Rasterizer rasterizer);
+
+    /**
+     * Execute without blocking the calling thread.
+     * By default, {@link #execute(String, Options, Rasterizer)} is run on the executor,
+     * engines that wait for external processes or I/O can complete the result without occupying a thread.
+     */
+    default CompletableFuture<EngineResult> executeAsync(String src, Options options, Rasterizer rasterizer,
+                                                         Executor executor) {
+        return CompletableFuture.supplyAsync(() -> execute(src, options, rasterizer), executor);
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs viz.js on GraalJS using the polyglot API.
+ * The javascript sources are parsed once into a shared polyglot engine,
+ * renderings borrow one of a bounded number of lightweight contexts created from it,
+ * so compiled code is shared between the contexts and the number of contexts does not grow with the number of threads.
+ * The polyglot API is accessed reflectively, it only needs to be on the classpath at runtime.
+ */
+public class GraphvizGraalEngine extends AbstractJsGraphvizEngine {
+    private static final String JS = "js";
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final ResourcePool<Slot> pool;
+    private Polyglot polyglot;
+    private Object engine;
+    private Object[] sources;
+
+    public GraphvizGraalEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxContexts the maximum number of contexts, renderings wait if all of them are in use
+     */
+    public GraphvizGraalEngine(int maxContexts) {
+        super(false);
+        if (maxContexts < 1) {
+            throw new IllegalArgumentException("maxContexts must be positive");
+        }
+        for (int i = 0; i < maxContexts; i++) {
+            slots.add(new Slot());
+        }
+        pool = new ResourcePool<>(slots);
+    }
+
+    @Override
+    protected void doInit() throws Exception {
+        if (!IoUtils.isOnClasspath("org.graalvm.polyglot.Context")) {
+            throw new GraphvizException("GraalJS polyglot API is not on the classpath.");
+        }
+        polyglot = new Polyglot();
+        engine = polyglot.engine();
+        sources = new Object[]{
+                polyglot.source(jsVizCode()),
+                polyglot.source("function result(r){ handler.setResult(r); }"
+                        + "function error(r){ handler.setError(r); }"),
+                polyglot.source(jsInitEnv())};
+        execute("digraph g { a -> b; }", Options.create(), null);
+    }
+
+    @Override
+    protected String jsExecute(String jsCall) {
+        return jsExecute(jsCall, null);
+    }
+
+    /*
+     * When the deadline fires, the context is closed, which stops the running call.
+     * The slot gets a new context when it is borrowed the next time.
+     */
+    @Override
+    protected String jsExecute(String jsCall, Deadline deadline) {
+        final Slot s = pool.take(deadline);
+        try {
+            prepare(s);
+            final Runnable unregister = deadline == null ? () -> {
+            } : deadline.onCancel(() -> abandon(s));
+            try {
+                polyglot.eval(s.context, jsCall);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                if (deadline != null) {
+                    deadline.check();
+                }
+                throw new GraphvizException("Problem executing graphviz", e);
+            } finally {
+                unregister.run();
+            }
+            return deadline == null ? s.handler.waitFor() : s.handler.waitFor(deadline);
+        } finally {
+            pool.release(s);
+        }
+    }
+
+    private void abandon(Slot s) {
+        s.abandoned = true;
+        try {
+            polyglot.cancelContext(s.context);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //context is unusable anyway
+        }
+    }
+
+    private void prepare(Slot s) {
+        if (s.context == null || s.abandoned) {
+            try {
+                final Object context = polyglot.context(engine);
+                final ResultHandler handler = new ResultHandler();
+                polyglot.putMember(polyglot.bindings(context), "handler", handler);
+                for (final Object source : sources) {
+                    polyglot.eval(context, source);
+                }
+                s.context = context;
+                s.handler = handler;
+                s.abandoned = false;
+            } catch (ReflectiveOperationException e) {
+                throw new GraphvizException("Could not create GraalJS context", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (polyglot != null) {
+            try {
+                for (final Slot s : slots) {
+                    if (s.context != null && !s.abandoned) {
+                        polyglot.closeContext(s.context);
+                    }
+                    s.context = null;
+                }
+                polyglot.closeEngine(engine);
+            } catch (ReflectiveOperationException e) {
+                throw new GraphvizException("Problem closing GraalJS", e);
+            } finally {
+                polyglot = null;
+            }
+        }
+    }
+
+    private static final class Slot {
+        volatile Object context;
+        volatile ResultHandler handler;
+        volatile boolean abandoned;
+    }
+
+    private static final class Polyglot {
+        private final Method createEngine;
+        private final Method createSource;
+        private final Method newBuilder;
+        private final Method builderEngine;
+        private final Method allowAllAccess;
+        private final Method build;
+        private final Method evalSource;
+        private final Method evalString;
+        private final Method getBindings;
+        private final Method putMember;
+        private final Method closeContext;
+        private final Method cancelContext;
+        private final Method closeEngine;
+
+        Polyglot() throws ReflectiveOperationException {
+            final Class<?> engine = Class.forName("org.graalvm.polyglot.Engine");
+            final Class<?> source = Class.forName("org.graalvm.polyglot.Source");
+            final Class<?> context = Class.forName("org.graalvm.polyglot.Context");
+            final Class<?> builder = Class.forName("org.graalvm.polyglot.Context$Builder");
+            final Class<?> value = Class.forName("org.graalvm.polyglot.Value");
+            createEngine = engine.getMethod("create");
+            createSource = source.getMethod("create", String.class, CharSequence.class);
+            newBuilder = context.getMethod("newBuilder", String[].class);
+            builderEngine = builder.getMethod("engine", engine);
+            allowAllAccess = builder.getMethod("allowAllAccess", boolean.class);
+            build = builder.getMethod("build");
+            evalSource = context.getMethod("eval", source);
+            evalString = context.getMethod("eval", String.class, CharSequence.class);
+            getBindings = context.getMethod("getBindings", String.class);
+            putMember = value.getMethod("putMember", String.class, Object.class);
+            closeContext = context.getMethod("close");
+            cancelContext = context.getMethod("close", boolean.class);
+            closeEngine = engine.getMethod("close");
+        }
+
+        Object engine() throws ReflectiveOperationException {
+            return invoke(createEngine, null);
+        }
+
+        Object source(String code) throws ReflectiveOperationException {
+            return invoke(createSource, null, JS, code);
+        }
+
+        Object context(Object engine) throws ReflectiveOperationException {
+            final Object builder = invoke(newBuilder, null, (Object) new String[]{JS});
+            invoke(builderEngine, builder, engine);
+            invoke(allowAllAccess, builder, true);
+            return invoke(build, builder);
+        }
+
+        void eval(Object context, Object source) throws ReflectiveOperationException {
+            invoke(evalSource, context, source);
+        }
+
+        void eval(Object context, String code) throws ReflectiveOperationException {
+            invoke(evalString, context, JS, code);
+        }
+
+        Object bindings(Object context) throws ReflectiveOperationException {
+            return invoke(getBindings, context, JS);
+        }
+
+        void putMember(Object value, String name, Object member) throws ReflectiveOperationException {
+            invoke(putMember, value, name, member);
+        }
+
+        void closeContext(Object context) throws ReflectiveOperationException {
+            invoke(closeContext, context);
+        }
+
+        void cancelContext(Object context) throws ReflectiveOperationException {
+            invoke(cancelContext, context, true);
+        }
+
+        void closeEngine(Object engine) throws ReflectiveOperationException {
+            invoke(closeEngine, engine);
+        }
+
+        private static Object invoke(Method method, Object target, Object... args) throws ReflectiveOperationException {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
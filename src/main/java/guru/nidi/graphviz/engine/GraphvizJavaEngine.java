@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+
+import java.io.File;
+import java.util.*;
+
+import static guru.nidi.graphviz.engine.LayeredGraph.POINTS_PER_INCH;
+import static guru.nidi.graphviz.engine.LayeredGraph.number;
+
+/**
+ * Engine that lays out graphs in Java, without any external program or javascript.
+ * It does a layered layout like dot (honouring {@code rankdir}) for {@link Engine#DOT} and uses the positions
+ * given in the source for {@link Engine#NOP} and {@link Engine#NOP2}; all other engines are rejected.
+ * It supports the subset of graphviz needed for context maps: clusters, node shapes (ellipse, egg, box, plaintext),
+ * plain and html labels (tables, text, images), edge, head and tail labels, arrows and the common styles.
+ * Supported output formats are {@link Format#XDOT} and the svg based formats.
+ */
+public class GraphvizJavaEngine extends AbstractGraphvizEngine {
+    private static final Set<String> RANKDIRS = new HashSet<>(Arrays.asList("TB", "BT", "LR", "RL"));
+
+    public GraphvizJavaEngine() {
+        super(true);
+    }
+
+    @Override
+    protected void doInit() {
+    }
+
+    @Override
+    public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
+        final boolean svg = options.format.vizName.equals("svg");
+        if (!svg && options.format != Format.XDOT) {
+            throw new GraphvizException("Format " + options.format + " is not supported by " + this);
+        }
+        final Engine engine = options.engine == null ? Engine.DOT : options.engine;
+        if (engine != Engine.DOT && engine != Engine.NOP && engine != Engine.NOP2) {
+            throw new GraphvizException("Engine " + engine + " is not supported by " + this
+                    + ", only DOT, NOP and NOP2 are.");
+        }
+        final File basedir = options.basedir == null ? new File(".") : options.basedir;
+        final LayeredGraph graph = LayeredGraph.read(src, basedir);
+        check(options.deadline);
+        final LayeredLayout layout = engine == Engine.DOT ? layout(graph) : positioned(graph, engine == Engine.NOP2);
+        check(options.deadline);
+        final LayeredDrawing drawing = new LayeredDrawing(graph, layout);
+        return EngineResult.fromString(svg ? drawing.svg() : drawing.xdot());
+    }
+
+    private static void check(Deadline deadline) {
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    static LayeredLayout layout(LayeredGraph graph) {
+        final String rankdir = LayeredGraph.attr(graph.attrs, "rankdir", "TB").toUpperCase(Locale.ENGLISH);
+        if (!RANKDIRS.contains(rankdir)) {
+            throw new GraphvizException("Unknown rankdir '" + rankdir + "'");
+        }
+        final boolean sideways = rankdir.equals("LR") || rankdir.equals("RL");
+        final LayeredLayout layout = create(graph, sideways);
+        return layout.layout().rankdir(rankdir);
+    }
+
+    /**
+     * The layout given by the pos attributes of the nodes (and edges if withEdges is true), like neato -n / -n2.
+     * Edges without position are drawn straight, clusters without bb around their nodes.
+     */
+    static LayeredLayout positioned(LayeredGraph graph, boolean withEdges) {
+        final LayeredLayout layout = create(graph, false);
+        for (final LayeredGraph.Node node : graph.nodes) {
+            final double[] pos = point(node.attrs.get("pos"));
+            if (pos == null) {
+                throw new GraphvizException("Node '" + node.name + "' has no valid position.");
+            }
+            layout.x[node.index] = pos[0];
+            layout.y[node.index] = pos[1];
+        }
+        for (int e = 0; e < graph.edges.size(); e++) {
+            final LayeredGraph.Edge edge = graph.edges.get(e);
+            final double[] spline = withEdges ? spline(edge.attrs.get("pos")) : null;
+            final double[] points = spline != null ? spline : new double[]{
+                    layout.x[edge.from.index], layout.y[edge.from.index],
+                    layout.x[edge.to.index], layout.y[edge.to.index]};
+            layout.edgePoints[e] = points;
+            final double[] lp = withEdges ? point(edge.attrs.get("lp")) : null;
+            final int middle = points.length / 4 * 2;
+            final int opposite = points.length - 2 - middle;
+            layout.labelPos[e * 2] = lp != null ? lp[0] : (points[middle] + points[opposite]) / 2;
+            layout.labelPos[e * 2 + 1] = lp != null ? lp[1] : (points[middle + 1] + points[opposite + 1]) / 2;
+        }
+        for (int c = 0; c < graph.clusters.size(); c++) {
+            final double[] bb = numbers(graph.clusters.get(c).attrs.get("bb"), 4);
+            if (bb != null) {
+                System.arraycopy(bb, 0, layout.clusterBounds, c * 4, 4);
+            }
+        }
+        return layout.positioned(numbers(graph.attrs.get("bb"), 4));
+    }
+
+    private static LayeredLayout create(LayeredGraph graph, boolean sideways) {
+        final int nodes = graph.nodes.size();
+        final double[] width = new double[nodes];
+        final double[] height = new double[nodes];
+        final int[] cluster = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            final LayeredGraph.Node node = graph.nodes.get(i);
+            width[i] = sideways ? node.height : node.width;
+            height[i] = sideways ? node.width : node.height;
+            cluster[i] = node.cluster;
+        }
+        final int edges = graph.edges.size();
+        final int[] from = new int[edges];
+        final int[] to = new int[edges];
+        final double[] labelWidth = new double[edges];
+        final double[] labelHeight = new double[edges];
+        for (int i = 0; i < edges; i++) {
+            final LayeredGraph.Edge edge = graph.edges.get(i);
+            from[i] = edge.from.index;
+            to[i] = edge.to.index;
+            if (edge.label != null) {
+                labelWidth[i] = sideways ? edge.label.height : edge.label.width;
+                labelHeight[i] = sideways ? edge.label.width : edge.label.height;
+            }
+        }
+        return new LayeredLayout(width, height, cluster, graph.clusters.size(), from, to, labelWidth, labelHeight,
+                number(graph.attrs, "nodesep", .25) * POINTS_PER_INCH,
+                number(graph.attrs, "ranksep", .5) * POINTS_PER_INCH);
+    }
+
+    private static double[] point(Label value) {
+        return value == null ? null : numbers(Label.of(value.value().replace("!", "")), 2);
+    }
+
+    private static double[] numbers(Label value, int count) {
+        if (value == null) {
+            return null;
+        }
+        final String[] parts = value.value().trim().split(",");
+        if (parts.length != count) {
+            return null;
+        }
+        final double[] res = new double[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                res[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return res;
+    }
+
+    /**
+     * @return the points on the curve of the first b-spline in the pos attribute of an edge
+     * (every third control point), without the arrow end points.
+     */
+    private static double[] spline(Label value) {
+        if (value == null) {
+            return null;
+        }
+        final List<double[]> controls = new ArrayList<>();
+        for (final String part : value.value().split(";")[0].trim().split("\\s+")) {
+            if (!part.startsWith("e,") && !part.startsWith("s,")) {
+                final double[] point = numbers(Label.of(part), 2);
+                if (point == null) {
+                    return null;
+                }
+                controls.add(point);
+            }
+        }
+        if (controls.size() < 2) {
+            return null;
+        }
+        final int step = controls.size() % 3 == 1 ? 3 : 1;
+        final List<double[]> onCurve = new ArrayList<>();
+        for (int i = 0; i < controls.size(); i += step) {
+            onCurve.add(controls.get(i));
+        }
+        final double[] res = new double[onCurve.size() * 2];
+        for (int i = 0; i < onCurve.size(); i++) {
+            res[i * 2] = onCurve.get(i)[0];
+            res[i * 2 + 1] = onCurve.get(i)[1];
+        }
+        return res;
+    }
+}
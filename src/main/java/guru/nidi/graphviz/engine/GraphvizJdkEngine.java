@@ -15,6 +15,14 @@
  */
 package guru.nidi.graphviz.engine;
 
+import javax.script.ScriptEngineManager;
+
+/**
+ * Runs graphviz inside the JVM, using viz.js on nashorn when the JDK has a javascript engine
+ * or on {@link GraphvizGraalEngine} when GraalJS is on the classpath.
+ * If neither is available, the initialization fails, so that the next configured engine is used.
+ * The limited pure java {@link GraphvizJavaEngine} is never chosen implicitly, it has to be configured explicitly.
+ */
 public class GraphvizJdkEngine extends AbstractGraphvizEngine {
     private final AbstractGraphvizEngine engine;
 
@@ -24,11 +32,22 @@ public class GraphvizJdkEngine extends AbstractGraphvizEngine {
     }
 
     private AbstractGraphvizEngine newEngine() {
-        return new GraphvizNashornEngine();
+        if (hasJavascript()) {
+            return new GraphvizNashornEngine();
+        }
+        return IoUtils.isOnClasspath("org.graalvm.polyglot.Context") ? new GraphvizGraalEngine() : null;
+    }
+
+    static boolean hasJavascript() {
+        return new ScriptEngineManager().getEngineByExtension("js") != null;
     }
 
     @Override
     protected void doInit() throws Exception {
+        if (engine == null) {
+            throw new GraphvizException("Neither nashorn nor GraalJS is available. "
+                    + "Use GraphvizJavaEngine explicitly for the limited pure java layout.");
+        }
         engine.doInit();
     }
 
@@ -36,4 +55,11 @@ public class GraphvizJdkEngine extends AbstractGraphvizEngine {
     public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
         return engine.execute(src, options, rasterizer);
     }
+
+    @Override
+    public void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
 }
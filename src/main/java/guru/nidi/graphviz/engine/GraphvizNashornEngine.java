@@ -38,13 +38,30 @@ class GraphvizNashornEngine extends AbstractJsGraphvizEngine {
 
     @Override
     protected String jsExecute(String jsCall) {
+        return jsExecute(jsCall, null);
+    }
+
+    @Override
+    protected String jsExecute(String jsCall, Deadline deadline) {
         try {
             if (HANDLER.get() == null) {
                 HANDLER.set(new ResultHandler());
             }
-            ENGINE.getBindings(ScriptContext.ENGINE_SCOPE).put("handler", HANDLER.get());
+            final ResultHandler handler = HANDLER.get();
+            ENGINE.getBindings(ScriptContext.ENGINE_SCOPE).put("handler", handler);
             ENGINE.eval(jsCall);
-            return HANDLER.get().waitFor();
+            if (deadline == null) {
+                return handler.waitFor();
+            }
+            try {
+                return handler.waitFor(deadline);
+            } catch (GraphvizException e) {
+                if (deadline.isCancelled()) {
+                    //the abandoned call may still deliver its result, the next call must not see it
+                    HANDLER.remove();
+                }
+                throw e;
+            }
         } catch (ScriptException e) {
             throw new GraphvizException("Problem executing graphviz", e);
         }
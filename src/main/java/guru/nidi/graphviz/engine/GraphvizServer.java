@@ -103,6 +103,7 @@ final class GraphvizServer {
                 .engine(options.engine)
                 .totalMemory(options.totalMemory)
                 .yInvert(options.yInvert)
+                .deadline(options.deadline)
                 .render(options.format)
                 .toString();
     }
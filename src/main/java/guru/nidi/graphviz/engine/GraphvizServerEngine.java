@@ -70,7 +70,7 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
     }
 
     private String createSvg(String src, Options options) throws IOException {
-        return communicating(com -> {
+        return communicating(options.deadline, com -> {
             com.writeContent(options.toJson(true) + "@@@" + src);
             final String status = com.readStatus();
             final int len = com.readLen();
@@ -84,7 +84,7 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
 
     public static void stopServer() {
         try {
-            communicating(com -> {
+            communicating(null, com -> {
                 com.writeLen(-1);
                 return "";
             });
@@ -97,10 +97,28 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
         T apply(Communicator c) throws IOException;
     }
 
-    private static <T> T communicating(ComFunc<T> action) throws IOException {
+    /*
+     * Without deadline, the server has 5 seconds to answer. With a deadline, the connection is closed when it fires.
+     */
+    private static <T> T communicating(Deadline deadline, ComFunc<T> action) throws IOException {
+        if (deadline != null) {
+            deadline.check();
+        }
+        final int timeout = deadline == null ? 5000 : (int) Math.min(deadline.remainingMillis(), Integer.MAX_VALUE);
         try (final Socket socket = new Socket("localhost", GraphvizServer.PORT);
-             final Communicator com = new Communicator(socket, 5000)) {
-            return action.apply(com);
+             final Communicator com = new Communicator(socket, timeout)) {
+            final Runnable unregister = deadline == null ? () -> {
+            } : deadline.onCancel(com::close);
+            try {
+                return action.apply(com);
+            } catch (IOException e) {
+                if (deadline != null) {
+                    deadline.check();
+                }
+                throw e;
+            } finally {
+                unregister.run();
+            }
         }
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.model.*;
+import guru.nidi.graphviz.parse.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Prepares a graph for a layout that starts from a previous layout.
+ * Nodes with the same neighbours as in the previous layout are pinned to their old position,
+ * nodes whose links changed get their old position as a hint, new nodes are placed freely.
+ * The result must be laid out with an engine that respects positions, like {@link Engine#NEATO}.
+ */
+final class IncrementalLayout {
+    private final Layout previous;
+    private final Map<String, List<String>> neighbours = new HashMap<>();
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private IncrementalLayout(Layout previous) {
+        this.previous = previous;
+    }
+
+    static String annotate(String src, Layout previous) {
+        return new IncrementalLayout(previous).annotate(src);
+    }
+
+    private String annotate(String src) {
+        try {
+            Parser.read(src, new ParserHandler() {
+                @Override
+                public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+                    if (!from.isSubgraph() && !to.isSubgraph()) {
+                        addNeighbour(from.node().value(), to.node().value());
+                        addNeighbour(to.node().value(), from.node().value());
+                    }
+                }
+            });
+            for (final List<String> ns : neighbours.values()) {
+                Collections.sort(ns);
+            }
+            final MutableGraph graph = Parser.read(src);
+            annotate(graph);
+            graph.graphAttrs().add("inputscale", "72");
+            graph.graphAttrs().add("overlap", "false");
+            graph.graphAttrs().add("splines", "true");
+            return graph.toString();
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read graph for incremental layout", e);
+        }
+    }
+
+    private void addNeighbour(String node, String neighbour) {
+        neighbours.computeIfAbsent(node, k -> new ArrayList<>()).add(neighbour);
+    }
+
+    private void annotate(MutableGraph graph) {
+        if (visited.add(graph)) {
+            for (final MutableNode node : graph.nodes()) {
+                annotate(node);
+            }
+            for (final MutableGraph sub : graph.graphs()) {
+                annotate(sub);
+            }
+            annotateTargets(graph.links());
+        }
+    }
+
+    private void annotate(MutableNode node) {
+        if (visited.add(node)) {
+            final String name = node.name().value();
+            final double[] pos = previous.position(name);
+            if (pos != null) {
+                final boolean unchanged = previous.neighbours(name)
+                        .equals(neighbours.getOrDefault(name, Collections.emptyList()));
+                node.add("pos", String.format(ENGLISH, "%.2f,%.2f", pos[0], pos[1]) + (unchanged ? "!" : ""));
+            }
+            annotateTargets(node.links());
+        }
+    }
+
+    private void annotateTargets(List<Link> links) {
+        for (final Link link : links) {
+            final LinkTarget to = link.to();
+            if (to instanceof PortNode) {
+                annotate((MutableNode) ((PortNode) to).node());
+            } else if (to instanceof MutableNode) {
+                annotate((MutableNode) to);
+            } else if (to instanceof MutableGraph) {
+                annotate((MutableGraph) to);
+            }
+        }
+    }
+}
@@ -47,4 +47,14 @@ final class IoUtils {
             //ignore
         }
     }
+
+    static void deleteQuietly(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteQuietly(child);
+            }
+        }
+        file.delete();
+    }
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compact layout model read from the {@link Format#JSON} or {@link Format#JSON0} output of graphviz.
+ * It contains the bounding boxes of nodes and clusters, the spline points of edges and the label positions,
+ * all stored in primitive arrays. Coordinates are in points, with the origin at the bottom left like in graphviz.
+ * Bounding boxes are given as {@code x0, y0, x1, y1}, points as {@code x, y}.
+ * Missing label positions are {@code NaN}.
+ */
+public final class JsonLayout {
+    private final double[] bounds = new double[4];
+    private final double[] label = new double[]{Double.NaN, Double.NaN};
+
+    private int nodeCount;
+    private String[] nodeNames = new String[16];
+    private double[] nodeBounds = new double[16 * 4];
+    private double[] nodeLabels = new double[16 * 2];
+
+    private int edgeCount;
+    private int[] edgeEnds = new int[16 * 2];
+    private int[] splineOffsets = new int[17];
+    private double[] splinePoints = new double[16 * 8];
+    private double[] edgeLabels = new double[16 * 2];
+    private double[] edgeHeadLabels = new double[16 * 2];
+    private double[] edgeTailLabels = new double[16 * 2];
+
+    private int clusterCount;
+    private String[] clusterNames = new String[4];
+    private double[] clusterBounds = new double[4 * 4];
+    private double[] clusterLabels = new double[4 * 2];
+
+    private int[] nodeOfObject = new int[16];
+
+    private JsonLayout() {
+    }
+
+    public static JsonLayout read(String json) {
+        try {
+            return read(new StringReader(json));
+        } catch (IOException e) {
+            throw new GraphvizException("Could not read json layout", e);
+        }
+    }
+
+    public static JsonLayout read(File json) throws IOException {
+        try (final Reader in = new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8)) {
+            return read(in);
+        }
+    }
+
+    public static JsonLayout read(Reader json) throws IOException {
+        final JsonLayout layout = new JsonLayout();
+        layout.readGraph(new JsonReader(json));
+        return layout;
+    }
+
+    private void readGraph(JsonReader in) throws IOException {
+        in.begin('{');
+        while (in.hasNext()) {
+            switch (in.nextString()) {
+                case "bb":
+                    parse(in.nextString(), bounds, 0, 4);
+                    break;
+                case "lp":
+                    parse(in.nextString(), label, 0, 2);
+                    break;
+                case "objects":
+                    in.begin('[');
+                    for (int i = 0; in.hasNext(); i++) {
+                        readObject(in, i);
+                    }
+                    in.end(']');
+                    break;
+                case "edges":
+                    in.begin('[');
+                    while (in.hasNext()) {
+                        readEdge(in);
+                    }
+                    in.end(']');
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.end('}');
+    }
+
+    private void readObject(JsonReader in, int index) throws IOException {
+        String name = null;
+        String pos = null;
+        String bb = null;
+        String lp = null;
+        double width = 0;
+        double height = 0;
+        boolean subgraph = false;
+        int gvid = index;
+        in.begin('{');
+        while (in.hasNext()) {
+            switch (in.nextString()) {
+                case "_gvid":
+                    gvid = (int) in.nextNumber();
+                    break;
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "pos":
+                    pos = in.nextString();
+                    break;
+                case "width":
+                    width = Double.parseDouble(in.nextString()) * 72;
+                    break;
+                case "height":
+                    height = Double.parseDouble(in.nextString()) * 72;
+                    break;
+                case "bb":
+                    bb = in.nextString();
+                    break;
+                case "lp":
+                case "xlp":
+                    lp = in.nextString();
+                    break;
+                case "nodes":
+                case "edges":
+                case "subgraphs":
+                    subgraph = true;
+                    in.skipValue();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.end('}');
+        if (subgraph || bb != null || pos == null) {
+            if (bb != null) {
+                addCluster(name, bb, lp);
+            }
+        } else {
+            addNode(gvid, name, pos, width, height, lp);
+        }
+    }
+
+    private void readEdge(JsonReader in) throws IOException {
+        int tail = -1;
+        int head = -1;
+        String pos = null;
+        String lp = null;
+        String headLp = null;
+        String tailLp = null;
+        in.begin('{');
+        while (in.hasNext()) {
+            switch (in.nextString()) {
+                case "tail":
+                    tail = (int) in.nextNumber();
+                    break;
+                case "head":
+                    head = (int) in.nextNumber();
+                    break;
+                case "pos":
+                    pos = in.nextString();
+                    break;
+                case "lp":
+                    lp = in.nextString();
+                    break;
+                case "head_lp":
+                    headLp = in.nextString();
+                    break;
+                case "tail_lp":
+                    tailLp = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.end('}');
+        addEdge(node(tail), node(head), pos, lp, headLp, tailLp);
+    }
+
+    private void addNode(int gvid, String name, String pos, double width, double height, String lp) {
+        if (nodeCount == nodeNames.length) {
+            nodeNames = Arrays.copyOf(nodeNames, nodeCount * 2);
+            nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 2 * 4);
+            nodeLabels = Arrays.copyOf(nodeLabels, nodeCount * 2 * 2);
+        }
+        if (gvid >= nodeOfObject.length) {
+            final int old = nodeOfObject.length;
+            nodeOfObject = Arrays.copyOf(nodeOfObject, Math.max(gvid + 1, old * 2));
+        }
+        nodeOfObject[gvid] = nodeCount + 1;
+        final double[] center = new double[2];
+        parse(pos, center, 0, 2);
+        nodeNames[nodeCount] = name;
+        nodeBounds[nodeCount * 4] = center[0] - width / 2;
+        nodeBounds[nodeCount * 4 + 1] = center[1] - height / 2;
+        nodeBounds[nodeCount * 4 + 2] = center[0] + width / 2;
+        nodeBounds[nodeCount * 4 + 3] = center[1] + height / 2;
+        parseOrNaN(lp, nodeLabels, nodeCount * 2);
+        nodeCount++;
+    }
+
+    private void addCluster(String name, String bb, String lp) {
+        if (clusterCount == clusterNames.length) {
+            clusterNames = Arrays.copyOf(clusterNames, clusterCount * 2);
+            clusterBounds = Arrays.copyOf(clusterBounds, clusterCount * 2 * 4);
+            clusterLabels = Arrays.copyOf(clusterLabels, clusterCount * 2 * 2);
+        }
+        clusterNames[clusterCount] = name;
+        parse(bb, clusterBounds, clusterCount * 4, 4);
+        parseOrNaN(lp, clusterLabels, clusterCount * 2);
+        clusterCount++;
+    }
+
+    private void addEdge(int tail, int head, String pos, String lp, String headLp, String tailLp) {
+        if (edgeCount == edgeEnds.length / 2) {
+            edgeEnds = Arrays.copyOf(edgeEnds, edgeCount * 2 * 2);
+            splineOffsets = Arrays.copyOf(splineOffsets, edgeCount * 2 + 1);
+            edgeLabels = Arrays.copyOf(edgeLabels, edgeCount * 2 * 2);
+            edgeHeadLabels = Arrays.copyOf(edgeHeadLabels, edgeCount * 2 * 2);
+            edgeTailLabels = Arrays.copyOf(edgeTailLabels, edgeCount * 2 * 2);
+        }
+        edgeEnds[edgeCount * 2] = tail;
+        edgeEnds[edgeCount * 2 + 1] = head;
+        int offset = splineOffsets[edgeCount];
+        if (pos != null) {
+            final double[] point = new double[2];
+            for (final String part : pos.split("[ ;]+")) {
+                if (!part.isEmpty() && !part.startsWith("e,") && !part.startsWith("s,")) {
+                    parse(part, point, 0, 2);
+                    if (offset + 2 > splinePoints.length) {
+                        splinePoints = Arrays.copyOf(splinePoints, splinePoints.length * 2);
+                    }
+                    splinePoints[offset++] = point[0];
+                    splinePoints[offset++] = point[1];
+                }
+            }
+        }
+        splineOffsets[edgeCount + 1] = offset;
+        parseOrNaN(lp, edgeLabels, edgeCount * 2);
+        parseOrNaN(headLp, edgeHeadLabels, edgeCount * 2);
+        parseOrNaN(tailLp, edgeTailLabels, edgeCount * 2);
+        edgeCount++;
+    }
+
+    private int node(int gvid) {
+        return gvid >= 0 && gvid < nodeOfObject.length ? nodeOfObject[gvid] - 1 : -1;
+    }
+
+    private static void parseOrNaN(String s, double[] target, int offset) {
+        if (s == null) {
+            target[offset] = Double.NaN;
+            target[offset + 1] = Double.NaN;
+        } else {
+            parse(s, target, offset, 2);
+        }
+    }
+
+    private static void parse(String s, double[] target, int offset, int count) {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = s.indexOf(',', start);
+            if (end < 0) {
+                end = s.endsWith("!") ? s.length() - 1 : s.length();
+            }
+            target[offset + i] = Double.parseDouble(s.substring(start, end).trim());
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return the bounding box of the graph
+     */
+    public double[] bounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return the position of the graph label
+     */
+    public double[] labelPosition() {
+        return label.clone();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public String nodeName(int node) {
+        return nodeNames[checkIndex(node, nodeCount)];
+    }
+
+    public double[] nodeBounds(int node) {
+        return Arrays.copyOfRange(nodeBounds, checkIndex(node, nodeCount) * 4, node * 4 + 4);
+    }
+
+    /**
+     * @return the position of the external label (xlabel) of the node
+     */
+    public double[] nodeLabelPosition(int node) {
+        return Arrays.copyOfRange(nodeLabels, checkIndex(node, nodeCount) * 2, node * 2 + 2);
+    }
+
+    /**
+     * @return the bounding boxes of all nodes, 4 values per node
+     */
+    public double[] nodeBounds() {
+        return Arrays.copyOf(nodeBounds, nodeCount * 4);
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return the index of the source node of the edge or -1 if it's not a node
+     */
+    public int edgeTail(int edge) {
+        return edgeEnds[checkIndex(edge, edgeCount) * 2];
+    }
+
+    /**
+     * @return the index of the target node of the edge or -1 if it's not a node
+     */
+    public int edgeHead(int edge) {
+        return edgeEnds[checkIndex(edge, edgeCount) * 2 + 1];
+    }
+
+    /**
+     * @return the control points of the b-spline of the edge, without the arrow end points
+     */
+    public double[] edgeSpline(int edge) {
+        return Arrays.copyOfRange(splinePoints, splineOffsets[checkIndex(edge, edgeCount)], splineOffsets[edge + 1]);
+    }
+
+    public double[] edgeLabelPosition(int edge) {
+        return Arrays.copyOfRange(edgeLabels, checkIndex(edge, edgeCount) * 2, edge * 2 + 2);
+    }
+
+    /**
+     * @return the position of the head label of the edge
+     */
+    public double[] edgeHeadLabelPosition(int edge) {
+        return Arrays.copyOfRange(edgeHeadLabels, checkIndex(edge, edgeCount) * 2, edge * 2 + 2);
+    }
+
+    /**
+     * @return the position of the tail label of the edge
+     */
+    public double[] edgeTailLabelPosition(int edge) {
+        return Arrays.copyOfRange(edgeTailLabels, checkIndex(edge, edgeCount) * 2, edge * 2 + 2);
+    }
+
+    public int clusterCount() {
+        return clusterCount;
+    }
+
+    public String clusterName(int cluster) {
+        return clusterNames[checkIndex(cluster, clusterCount)];
+    }
+
+    public double[] clusterBounds(int cluster) {
+        return Arrays.copyOfRange(clusterBounds, checkIndex(cluster, clusterCount) * 4, cluster * 4 + 4);
+    }
+
+    public double[] clusterLabelPosition(int cluster) {
+        return Arrays.copyOfRange(clusterLabels, checkIndex(cluster, clusterCount) * 2, cluster * 2 + 2);
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+}
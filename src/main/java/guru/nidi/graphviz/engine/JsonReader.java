@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal pull reader for JSON, reading from a {@link Reader} in chunks.
+ * Only what is needed to read the {@link Format#JSON} output of graphviz is supported.
+ */
+final class JsonReader {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private final StringBuilder s = new StringBuilder();
+    private int pos;
+    private int limit;
+
+    JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the first character of the next value or structural token, without consuming it
+     */
+    char peek() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return 0;
+            }
+            final char c = buf[pos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != ',' && c != ':') {
+                return c;
+            }
+            pos++;
+        }
+    }
+
+    void begin(char c) throws IOException {
+        expect(c);
+    }
+
+    void end(char c) throws IOException {
+        expect(c);
+    }
+
+    /**
+     * @return if the current object or array has more entries
+     */
+    boolean hasNext() throws IOException {
+        final char c = peek();
+        return c != '}' && c != ']' && c != 0;
+    }
+
+    String nextString() throws IOException {
+        expect('"');
+        s.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new IOException("Unterminated string");
+            }
+            final char c = buf[pos++];
+            if (c == '"') {
+                return s.toString();
+            }
+            s.append(c == '\\' ? escaped() : c);
+        }
+    }
+
+    double nextNumber() throws IOException {
+        return Double.parseDouble(nextLiteral());
+    }
+
+    void skipValue() throws IOException {
+        final char c = peek();
+        if (c == '{' || c == '[') {
+            pos++;
+            while (hasNext()) {
+                if (c == '{') {
+                    nextString();
+                }
+                skipValue();
+            }
+            end(c == '{' ? '}' : ']');
+        } else if (c == '"') {
+            nextString();
+        } else {
+            nextLiteral();
+        }
+    }
+
+    private String nextLiteral() throws IOException {
+        peek();
+        s.setLength(0);
+        while (pos < limit || fill()) {
+            final char c = buf[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            s.append(c);
+            pos++;
+        }
+        if (s.length() == 0) {
+            throw new IOException("Expected a value");
+        }
+        return s.toString();
+    }
+
+    private char escaped() throws IOException {
+        final char c = read();
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                return (char) Integer.parseInt(new String(new char[]{read(), read(), read(), read()}), 16);
+            default:
+                return c;
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw new IOException("Expected '" + c + "' but found '" + peek() + "'");
+        }
+        pos++;
+    }
+
+    private char read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new IOException("Unexpected end of input");
+        }
+        return buf[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        final int read = in.read(buf);
+        if (read <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+
+import javax.imageio.ImageIO;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * The size and drawing of a label, either plain text or the subset of html labels with tables, text and images.
+ */
+abstract class LabelBlock {
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+    private static final double LINE_SPACING = 1.2;
+    private static final Pattern
+            ROW = Pattern.compile("<tr[^>]*>(.*?)</tr>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE),
+            CELL = Pattern.compile("<td([^>]*)>(.*?)</td>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE),
+            TABLE = Pattern.compile("<table([^>]*)>", Pattern.CASE_INSENSITIVE),
+            IMG = Pattern.compile("<img[^>]*src\\s*=\\s*[\"']([^\"']*)[\"']", Pattern.CASE_INSENSITIVE),
+            ATTR = Pattern.compile("([\\w-]+)\\s*=\\s*[\"']([^\"']*)[\"']"),
+            BREAK = Pattern.compile("<br\\s*/?>", Pattern.CASE_INSENSITIVE),
+            TAG = Pattern.compile("<[^>]*>");
+
+    double width;
+    double height;
+
+    abstract void draw(Canvas canvas, double cx, double cy);
+
+    static final class TextStyle {
+        final String name;
+        final double size;
+        final String color;
+
+        TextStyle(String name, double size, String color) {
+            this.name = name;
+            this.size = size;
+            this.color = color;
+        }
+    }
+
+    static LabelBlock of(Label label, String name, TextStyle font, File imageDir) {
+        if (label.isHtml()) {
+            final Matcher table = TABLE.matcher(label.value());
+            return table.find() ? new Table(label.value(), table.group(1), font, imageDir)
+                    : new Text(html(label.value()), font, false);
+        }
+        return new Text(label.value().replace("\\N", name), font, false);
+    }
+
+    static double textWidth(String text, TextStyle font, boolean bold) {
+        return awtFont(font.name, font.size, bold ? java.awt.Font.BOLD : java.awt.Font.PLAIN)
+                .getStringBounds(text, FRC).getWidth();
+    }
+
+    static java.awt.Font awtFont(String name, double size, int style) {
+        final String lower = name.toLowerCase(ENGLISH);
+        final String family = lower.startsWith("times") ? java.awt.Font.SERIF
+                : lower.startsWith("courier") ? java.awt.Font.MONOSPACED
+                : lower.startsWith("helvetica") || lower.startsWith("arial") ? java.awt.Font.SANS_SERIF
+                : name;
+        int s = style;
+        if (lower.contains("bold")) {
+            s |= java.awt.Font.BOLD;
+        }
+        if (lower.contains("italic") || lower.contains("oblique")) {
+            s |= java.awt.Font.ITALIC;
+        }
+        return new java.awt.Font(family, s, 1).deriveFont((float) size);
+    }
+
+    private static String html(String s) {
+        return decode(TAG.matcher(BREAK.matcher(s).replaceAll("\n")).replaceAll("")).trim();
+    }
+
+    private static String decode(String s) {
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&laquo;", "\u00ab").replace("&raquo;", "\u00bb").replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+    }
+
+    private static Map<String, String> attrs(String s) {
+        final Map<String, String> attrs = new HashMap<>();
+        final Matcher m = ATTR.matcher(s);
+        while (m.find()) {
+            attrs.put(m.group(1).toLowerCase(ENGLISH), m.group(2));
+        }
+        return attrs;
+    }
+
+    private static double number(Map<String, String> attrs, String key, double def) {
+        final String value = attrs.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Double.parseDouble(value.replaceAll("[^0-9.]", ""));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    static final class Text extends LabelBlock {
+        private final List<String> lines = new ArrayList<>();
+        private final List<Integer> aligns = new ArrayList<>();
+        private final TextStyle font;
+        private final boolean bold;
+
+        Text(String text, TextStyle font, boolean bold) {
+            this.font = font;
+            this.bold = bold;
+            final StringBuilder line = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                final boolean escape = c == '\\' && i + 1 < text.length() && "nlr".indexOf(text.charAt(i + 1)) >= 0;
+                if (c == '\n' || escape) {
+                    addLine(line.toString(), escape ? "lnr".indexOf(text.charAt(i + 1)) - 1 : 0);
+                    line.setLength(0);
+                    if (escape) {
+                        i++;
+                    }
+                } else {
+                    line.append(c);
+                }
+            }
+            if (line.length() > 0 || lines.isEmpty()) {
+                addLine(line.toString(), 0);
+            }
+            for (final String l : lines) {
+                width = Math.max(width, textWidth(l, font, bold));
+            }
+            height = lines.size() * font.size * LINE_SPACING;
+        }
+
+        private void addLine(String line, int align) {
+            lines.add(line);
+            aligns.add(align);
+        }
+
+        @Override
+        void draw(Canvas canvas, double cx, double cy) {
+            canvas.font(font.name, font.size);
+            canvas.fontFlags(bold ? 1 : 0);
+            canvas.pen(font.color);
+            final double top = cy + height / 2;
+            for (int i = 0; i < lines.size(); i++) {
+                final String line = lines.get(i);
+                if (!line.trim().isEmpty()) {
+                    final int align = aligns.get(i);
+                    final double x = align == 0 ? cx : cx + align * width / 2;
+                    final double baseline = top - (i + 1) * font.size * LINE_SPACING + font.size * .3;
+                    canvas.text(x, baseline, align, textWidth(line, font, bold), line);
+                }
+            }
+            if (bold) {
+                canvas.fontFlags(0);
+            }
+        }
+    }
+
+    private static final class Image extends LabelBlock {
+        private final String file;
+
+        Image(String src, File imageDir) {
+            final File f = new File(src).isAbsolute() ? new File(src) : new File(imageDir, src);
+            file = f.getAbsolutePath();
+            width = height = 32;
+            try {
+                final BufferedImage image = ImageIO.read(f);
+                if (image != null) {
+                    width = image.getWidth();
+                    height = image.getHeight();
+                }
+            } catch (IOException e) {
+                // keep the default size
+            }
+        }
+
+        @Override
+        void draw(Canvas canvas, double cx, double cy) {
+            canvas.image(cx - width / 2, cy - height / 2, width, height, file);
+        }
+    }
+
+    private static final class Cell {
+        final LabelBlock content;
+        final Map<String, String> attrs;
+        final int rowspan;
+        int row;
+        int col;
+
+        Cell(LabelBlock content, Map<String, String> attrs) {
+            this.content = content;
+            this.attrs = attrs;
+            rowspan = (int) Math.max(1, number(attrs, "rowspan", 1));
+        }
+    }
+
+    /**
+     * A html table. Cells can span rows, but not columns.
+     */
+    private static final class Table extends LabelBlock {
+        private final List<Cell> cells = new ArrayList<>();
+        private final double border;
+        private final double cellBorder;
+        private final double spacing;
+        private final double padding;
+        private final String color;
+        private double[] colX;
+        private double[] colWidth;
+        private double[] rowY;
+        private double[] rowHeight;
+
+        Table(String html, String tableAttrs, TextStyle font, File imageDir) {
+            final Map<String, String> attrs = attrs(tableAttrs);
+            border = number(attrs, "border", 1);
+            cellBorder = number(attrs, "cellborder", border);
+            spacing = number(attrs, "cellspacing", 2);
+            padding = number(attrs, "cellpadding", 2);
+            color = font.color;
+            final List<boolean[]> occupied = new ArrayList<>();
+            final Matcher row = ROW.matcher(html);
+            for (int r = 0; row.find(); r++) {
+                final Matcher cell = CELL.matcher(row.group(1));
+                int c = 0;
+                while (cell.find()) {
+                    final Cell cl = new Cell(content(cell.group(2), font, imageDir), attrs(cell.group(1)));
+                    while (isOccupied(occupied, r, c)) {
+                        c++;
+                    }
+                    cl.row = r;
+                    cl.col = c;
+                    for (int i = 0; i < cl.rowspan; i++) {
+                        occupy(occupied, r + i, c);
+                    }
+                    cells.add(cl);
+                    c++;
+                }
+            }
+            layout(occupied.size());
+        }
+
+        private static LabelBlock content(String html, TextStyle font, File imageDir) {
+            final Matcher img = IMG.matcher(html);
+            if (img.find()) {
+                return new Image(img.group(1), imageDir);
+            }
+            final boolean bold = html.toLowerCase(ENGLISH).contains("<b>");
+            return new Text(html(html), font, bold);
+        }
+
+        private static boolean isOccupied(List<boolean[]> occupied, int row, int col) {
+            return row < occupied.size() && col < occupied.get(row).length && occupied.get(row)[col];
+        }
+
+        private static void occupy(List<boolean[]> occupied, int row, int col) {
+            while (occupied.size() <= row) {
+                occupied.add(new boolean[0]);
+            }
+            if (occupied.get(row).length <= col) {
+                occupied.set(row, Arrays.copyOf(occupied.get(row), col + 1));
+            }
+            occupied.get(row)[col] = true;
+        }
+
+        private double cellWidth(Cell cell) {
+            return Math.max(number(cell.attrs, "width", 0), cell.content.width + 2 * (padding + cellBorder));
+        }
+
+        private double cellHeight(Cell cell) {
+            return Math.max(number(cell.attrs, "height", 0), cell.content.height + 2 * (padding + cellBorder));
+        }
+
+        private void layout(int rows) {
+            int cols = 0;
+            for (final Cell cell : cells) {
+                cols = Math.max(cols, cell.col + 1);
+            }
+            colWidth = new double[cols];
+            rowHeight = new double[rows];
+            for (final Cell cell : cells) {
+                colWidth[cell.col] = Math.max(colWidth[cell.col], cellWidth(cell));
+                if (cell.rowspan == 1) {
+                    rowHeight[cell.row] = Math.max(rowHeight[cell.row], cellHeight(cell));
+                }
+            }
+            for (final Cell cell : cells) {
+                if (cell.rowspan > 1) {
+                    final int last = Math.min(rows, cell.row + cell.rowspan) - 1;
+                    final double missing = cellHeight(cell) - span(rowHeight, cell.row, last);
+                    if (missing > 0) {
+                        rowHeight[last] += missing;
+                    }
+                }
+            }
+            colX = new double[cols];
+            width = border + spacing;
+            for (int c = 0; c < cols; c++) {
+                colX[c] = width;
+                width += colWidth[c] + spacing;
+            }
+            width += border;
+            rowY = new double[rows];
+            height = border + spacing;
+            for (int r = 0; r < rows; r++) {
+                rowY[r] = height;
+                height += rowHeight[r] + spacing;
+            }
+            height += border;
+        }
+
+        private double span(double[] sizes, int from, int to) {
+            double sum = 0;
+            for (int i = from; i <= to; i++) {
+                sum += sizes[i] + (i > from ? spacing : 0);
+            }
+            return sum;
+        }
+
+        @Override
+        void draw(Canvas canvas, double cx, double cy) {
+            final double left = cx - width / 2;
+            final double top = cy + height / 2;
+            if (border > 0) {
+                canvas.pen(color);
+                canvas.style("setlinewidth(" + XdotCanvas.format(border) + ")");
+                canvas.polygon(rect(left + border / 2, top - border / 2,
+                        width - border, height - border), false);
+            }
+            for (final Cell cell : cells) {
+                final int last = Math.min(rowHeight.length, cell.row + cell.rowspan) - 1;
+                final double x = left + colX[cell.col];
+                final double y = top - rowY[cell.row];
+                final double w = colWidth[cell.col];
+                final double h = span(rowHeight, cell.row, last);
+                final String bg = cell.attrs.get("bgcolor");
+                if (bg != null) {
+                    canvas.fill(bg);
+                    canvas.pen("transparent");
+                    canvas.polygon(rect(x, y, w, h), true);
+                }
+                if (cellBorder > 0) {
+                    canvas.pen(color);
+                    canvas.style("setlinewidth(" + XdotCanvas.format(cellBorder) + ")");
+                    drawSides(canvas, cell.attrs.getOrDefault("sides", "ltrb").toLowerCase(ENGLISH),
+                            x + cellBorder / 2, y - cellBorder / 2, w - cellBorder, h - cellBorder);
+                }
+                canvas.style("setlinewidth(1)");
+                cell.content.draw(canvas, x + w / 2, y - h / 2);
+            }
+        }
+
+        private static void drawSides(Canvas canvas, String sides, double x, double y, double w, double h) {
+            if (sides.contains("l") && sides.contains("t") && sides.contains("r") && sides.contains("b")) {
+                canvas.polygon(rect(x, y, w, h), false);
+                return;
+            }
+            if (sides.contains("l")) {
+                canvas.polyline(new double[]{x, y, x, y - h});
+            }
+            if (sides.contains("t")) {
+                canvas.polyline(new double[]{x, y, x + w, y});
+            }
+            if (sides.contains("r")) {
+                canvas.polyline(new double[]{x + w, y, x + w, y - h});
+            }
+            if (sides.contains("b")) {
+                canvas.polyline(new double[]{x, y - h, x + w, y - h});
+            }
+        }
+
+        private static double[] rect(double x, double y, double w, double h) {
+            return new double[]{x, y, x + w, y, x + w, y - h, x, y - h};
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.engine.LayeredGraph.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static guru.nidi.graphviz.engine.LayeredGraph.*;
+import static guru.nidi.graphviz.engine.XdotCanvas.format;
+
+/**
+ * Draws a {@link LayeredGraph} at the positions of a {@link LayeredLayout}, either as xdot or as svg.
+ */
+final class LayeredDrawing {
+    private static final double ARROW_LENGTH = 10;
+    private static final double ARROW_WIDTH = 3.5;
+    private static final double LABEL_DISTANCE = 10;
+
+    private final LayeredGraph graph;
+    private final LayeredLayout layout;
+    private final double[][] splines;
+    private final double[][] heads;
+    private final double[][] tails;
+    private final double[] headLabels;
+    private final double[] tailLabels;
+
+    LayeredDrawing(LayeredGraph graph, LayeredLayout layout) {
+        this.graph = graph;
+        this.layout = layout;
+        final int edges = graph.edges.size();
+        splines = new double[edges][];
+        heads = new double[edges][];
+        tails = new double[edges][];
+        headLabels = new double[edges * 2];
+        tailLabels = new double[edges * 2];
+        for (int e = 0; e < edges; e++) {
+            route(e);
+        }
+    }
+
+    private void route(int e) {
+        final Edge edge = graph.edges.get(e);
+        final double[] points = layout.edgePoints[e].clone();
+        final int n = points.length;
+        final boolean loop = edge.from == edge.to;
+        if (!loop) {
+            clip(edge.from, points, 0, 2);
+            clip(edge.to, points, n - 2, n - 4);
+        }
+        final String dir = attr(edge.attrs, "dir", graph.directed ? "forward" : "none");
+        if ((dir.equals("forward") || dir.equals("both")) && !attr(edge.attrs, "arrowhead", "").equals("none")) {
+            heads[e] = arrow(points, n - 2, n - 4);
+        }
+        if ((dir.equals("back") || dir.equals("both")) && !attr(edge.attrs, "arrowtail", "").equals("none")) {
+            tails[e] = arrow(points, 0, 2);
+        }
+        splines[e] = loop ? points : bezier(points);
+        endLabel(edge, heads[e] == null ? points : heads[e], heads[e] == null ? n - 2 : 0,
+                heads[e] == null ? n - 4 : 2, headLabels, e);
+        endLabel(edge, tails[e] == null ? points : tails[e], 0, 2, tailLabels, e);
+    }
+
+    /**
+     * Move the point at index {@code at} from the center to the border of the node, in the direction of {@code to}.
+     */
+    private void clip(Node node, double[] points, int at, int to) {
+        final double dx = points[to] - points[at];
+        final double dy = points[to + 1] - points[at + 1];
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        final double rx = node.width / 2;
+        final double ry = node.height / 2;
+        final double t = isEllipse(node.shape())
+                ? 1 / Math.sqrt(dx * dx / (rx * rx) + dy * dy / (ry * ry))
+                : Math.min(dx == 0 ? Double.MAX_VALUE : rx / Math.abs(dx), dy == 0 ? Double.MAX_VALUE : ry / Math.abs(dy));
+        if (t < 1) {
+            points[at] += dx * t;
+            points[at + 1] += dy * t;
+        }
+    }
+
+    /**
+     * Shorten the edge at index {@code at} by the length of an arrow.
+     *
+     * @return the polygon of the arrow, starting with its tip
+     */
+    private static double[] arrow(double[] points, int at, int from) {
+        final double tipX = points[at];
+        final double tipY = points[at + 1];
+        final double dx = tipX - points[from];
+        final double dy = tipY - points[from + 1];
+        final double len = Math.sqrt(dx * dx + dy * dy);
+        if (len == 0) {
+            return null;
+        }
+        final double ux = dx / len;
+        final double uy = dy / len;
+        final double arrow = Math.min(ARROW_LENGTH, len * .9);
+        points[at] = tipX - ux * arrow;
+        points[at + 1] = tipY - uy * arrow;
+        return new double[]{tipX, tipY,
+                points[at] - uy * ARROW_WIDTH, points[at + 1] + ux * ARROW_WIDTH,
+                points[at] + uy * ARROW_WIDTH, points[at + 1] - ux * ARROW_WIDTH};
+    }
+
+    private static void endLabel(Edge edge, double[] points, int at, int from, double[] target, int e) {
+        final double dx = points[from] - points[at];
+        final double dy = points[from + 1] - points[at + 1];
+        final double len = Math.max(1e-9, Math.sqrt(dx * dx + dy * dy));
+        final double angle = Math.toRadians(number(edge.attrs, "labelangle", -25));
+        final double dist = number(edge.attrs, "labeldistance", 1) * LABEL_DISTANCE;
+        final double ux = dx / len;
+        final double uy = dy / len;
+        target[e * 2] = points[at] + dist * (ux * Math.cos(angle) - uy * Math.sin(angle));
+        target[e * 2 + 1] = points[at + 1] + dist * (ux * Math.sin(angle) + uy * Math.cos(angle));
+    }
+
+    /**
+     * @return a b-spline through the points of the polyline (Catmull-Rom)
+     */
+    static double[] bezier(double[] points) {
+        final int n = points.length / 2;
+        final double[] res = new double[2 + (n - 1) * 6];
+        res[0] = points[0];
+        res[1] = points[1];
+        for (int i = 0; i < n - 1; i++) {
+            final int prev = Math.max(0, i - 1) * 2;
+            final int cur = i * 2;
+            final int next = (i + 1) * 2;
+            final int after = Math.min(n - 1, i + 2) * 2;
+            for (int c = 0; c < 2; c++) {
+                res[2 + i * 6 + c] = points[cur + c] + (points[next + c] - points[prev + c]) / 6;
+                res[4 + i * 6 + c] = points[next + c] - (points[after + c] - points[cur + c]) / 6;
+                res[6 + i * 6 + c] = points[next + c];
+            }
+        }
+        return res;
+    }
+
+    String svg() {
+        final SvgCanvas canvas = new SvgCanvas(layout.bounds[2], layout.bounds[3]);
+        drawBackground(canvas);
+        for (int c = 0; c < graph.clusters.size(); c++) {
+            canvas.open("cluster", "clust" + (c + 1), graph.clusters.get(c).name);
+            drawCluster(canvas, c);
+            canvas.close();
+        }
+        for (final Node node : graph.nodes) {
+            canvas.open("node", "node" + (node.index + 1), node.name);
+            drawNode(canvas, node);
+            drawNodeLabel(canvas, node);
+            canvas.close();
+        }
+        for (int e = 0; e < graph.edges.size(); e++) {
+            final Edge edge = graph.edges.get(e);
+            canvas.open("edge", "edge" + (e + 1),
+                    edge.from.name + (graph.directed ? "&#45;&gt;" : "&#45;&#45;") + edge.to.name);
+            drawEdge(canvas, e);
+            drawArrow(canvas, e, heads[e]);
+            drawArrow(canvas, e, tails[e]);
+            drawLabel(canvas, edge.label, layout.labelPos, e);
+            drawLabel(canvas, edge.headLabel, headLabels, e);
+            drawLabel(canvas, edge.tailLabel, tailLabels, e);
+            canvas.close();
+        }
+        return canvas.finish();
+    }
+
+    String xdot() {
+        final StringBuilder s = new StringBuilder(graph.directed ? "digraph " : "graph ")
+                .append(quote(graph.name)).append(" {\n");
+        final Map<String, Label> graphAttrs = new LinkedHashMap<>(graph.attrs);
+        graphAttrs.put("bb", Label.of(bounds(layout.bounds, 0)));
+        graphAttrs.put("xdotversion", Label.of("1.7"));
+        put(graphAttrs, "_draw_", this::drawBackground);
+        s.append("graph ").append(attrs(graphAttrs)).append(";\n");
+        final List<List<Node>> clusterNodes = new ArrayList<>();
+        for (int c = 0; c < graph.clusters.size(); c++) {
+            clusterNodes.add(new ArrayList<>());
+        }
+        for (final Node node : graph.nodes) {
+            if (node.cluster >= 0) {
+                clusterNodes.get(node.cluster).add(node);
+            }
+        }
+        for (int c = 0; c < graph.clusters.size(); c++) {
+            final int cluster = c;
+            final Map<String, Label> attrs = new LinkedHashMap<>(graph.clusters.get(c).attrs);
+            attrs.put("bb", Label.of(bounds(layout.clusterBounds, c * 4)));
+            put(attrs, "_draw_", canvas -> drawCluster(canvas, cluster));
+            s.append("subgraph ").append(quote(graph.clusters.get(c).name)).append(" {\n")
+                    .append("graph ").append(attrs(attrs)).append(";\n");
+            for (final Node node : clusterNodes.get(c)) {
+                s.append(quote(node.name)).append(";\n");
+            }
+            s.append("}\n");
+        }
+        for (final Node node : graph.nodes) {
+            final Map<String, Label> attrs = new LinkedHashMap<>(node.attrs);
+            attrs.put("pos", Label.of(point(layout.x[node.index], layout.y[node.index])));
+            attrs.put("width", Label.of(format(node.width / POINTS_PER_INCH)));
+            attrs.put("height", Label.of(format(node.height / POINTS_PER_INCH)));
+            put(attrs, "_draw_", canvas -> drawNode(canvas, node));
+            put(attrs, "_ldraw_", canvas -> drawNodeLabel(canvas, node));
+            s.append(quote(node.name)).append(' ').append(attrs(attrs)).append(";\n");
+        }
+        for (int e = 0; e < graph.edges.size(); e++) {
+            final int edgeIndex = e;
+            final Edge edge = graph.edges.get(e);
+            final Map<String, Label> attrs = new LinkedHashMap<>(edge.attrs);
+            attrs.put("pos", Label.of(edgePos(e)));
+            putPoint(attrs, "lp", edge.label, layout.labelPos, e);
+            putPoint(attrs, "head_lp", edge.headLabel, headLabels, e);
+            putPoint(attrs, "tail_lp", edge.tailLabel, tailLabels, e);
+            put(attrs, "_draw_", canvas -> drawEdge(canvas, edgeIndex));
+            put(attrs, "_hdraw_", canvas -> drawArrow(canvas, edgeIndex, heads[edgeIndex]));
+            put(attrs, "_tdraw_", canvas -> drawArrow(canvas, edgeIndex, tails[edgeIndex]));
+            put(attrs, "_ldraw_", canvas -> drawLabel(canvas, edge.label, layout.labelPos, edgeIndex));
+            put(attrs, "_hldraw_", canvas -> drawLabel(canvas, edge.headLabel, headLabels, edgeIndex));
+            put(attrs, "_tldraw_", canvas -> drawLabel(canvas, edge.tailLabel, tailLabels, edgeIndex));
+            s.append(quote(edge.from.name)).append(graph.directed ? " -> " : " -- ").append(quote(edge.to.name))
+                    .append(' ').append(attrs(attrs)).append(";\n");
+        }
+        return s.append("}\n").toString();
+    }
+
+    private String edgePos(int e) {
+        final StringBuilder s = new StringBuilder();
+        if (tails[e] != null) {
+            s.append("s,").append(point(tails[e][0], tails[e][1])).append(' ');
+        }
+        if (heads[e] != null) {
+            s.append("e,").append(point(heads[e][0], heads[e][1])).append(' ');
+        }
+        for (int i = 0; i < splines[e].length; i += 2) {
+            s.append(i == 0 ? "" : " ").append(point(splines[e][i], splines[e][i + 1]));
+        }
+        return s.toString();
+    }
+
+    private void drawBackground(Canvas canvas) {
+        final double w = layout.bounds[2];
+        final double h = layout.bounds[3];
+        canvas.fill(attr(graph.attrs, "bgcolor", "white"));
+        canvas.pen("transparent");
+        canvas.polygon(new double[]{0, 0, 0, h, w, h, w, 0}, true);
+    }
+
+    private void drawCluster(Canvas canvas, int c) {
+        final Map<String, Label> attrs = graph.clusters.get(c).attrs;
+        final String style = attr(attrs, "style", "");
+        if (style.contains("invis")) {
+            return;
+        }
+        final boolean filled = style.contains("filled");
+        final String color = firstColor(attr(attrs, "pencolor", attr(attrs, "color", "black")));
+        applyStyle(canvas, style);
+        canvas.pen(color);
+        if (filled) {
+            canvas.fill(firstColor(attr(attrs, "fillcolor", attr(attrs, "bgcolor", color))));
+        }
+        final double[] b = layout.clusterBounds;
+        final int i = c * 4;
+        canvas.polygon(new double[]{b[i], b[i + 1], b[i + 2], b[i + 1], b[i + 2], b[i + 3], b[i], b[i + 3]}, filled);
+    }
+
+    private void drawNode(Canvas canvas, Node node) {
+        final String style = attr(node.attrs, "style", "");
+        final String shape = node.shape();
+        if (style.contains("invis") || !(isEllipse(shape) || isBox(shape))) {
+            return;
+        }
+        final boolean filled = style.contains("filled");
+        final String color = firstColor(attr(node.attrs, "color", "black"));
+        applyStyle(canvas, style);
+        canvas.pen(color);
+        if (filled) {
+            canvas.fill(firstColor(attr(node.attrs, "fillcolor", attr(node.attrs, "color", "lightgrey"))));
+        }
+        final double x = layout.x[node.index];
+        final double y = layout.y[node.index];
+        if (isEllipse(shape)) {
+            canvas.ellipse(x, y, node.width / 2, node.height / 2, filled);
+        } else {
+            final double w = node.width / 2;
+            final double h = node.height / 2;
+            canvas.polygon(new double[]{x + w, y + h, x - w, y + h, x - w, y - h, x + w, y - h}, filled);
+        }
+    }
+
+    private void drawNodeLabel(Canvas canvas, Node node) {
+        if (!attr(node.attrs, "style", "").contains("invis")) {
+            node.label.draw(canvas, layout.x[node.index], layout.y[node.index]);
+        }
+    }
+
+    private void drawEdge(Canvas canvas, int e) {
+        final Edge edge = graph.edges.get(e);
+        final String style = attr(edge.attrs, "style", "");
+        if (!style.contains("invis")) {
+            applyStyle(canvas, style);
+            canvas.pen(firstColor(attr(edge.attrs, "color", "black")));
+            canvas.bezier(splines[e]);
+        }
+    }
+
+    private void drawArrow(Canvas canvas, int e, double[] arrow) {
+        final Edge edge = graph.edges.get(e);
+        final String style = attr(edge.attrs, "style", "");
+        if (arrow != null && !style.contains("invis")) {
+            final String color = firstColor(attr(edge.attrs, "color", "black"));
+            canvas.style("solid");
+            if (style.contains("bold")) {
+                canvas.style("setlinewidth(2)");
+            }
+            canvas.pen(color);
+            canvas.fill(color);
+            canvas.polygon(arrow, true);
+        }
+    }
+
+    private void drawLabel(Canvas canvas, LabelBlock label, double[] positions, int e) {
+        if (label != null && !attr(graph.edges.get(e).attrs, "style", "").contains("invis")) {
+            label.draw(canvas, positions[e * 2], positions[e * 2 + 1]);
+        }
+    }
+
+    private static void applyStyle(Canvas canvas, String style) {
+        for (final String s : style.split(",")) {
+            final String part = s.trim();
+            if (part.equals("bold")) {
+                canvas.style("setlinewidth(2)");
+            } else if (part.equals("dashed") || part.equals("dotted") || part.startsWith("setlinewidth(")) {
+                canvas.style(part);
+            }
+        }
+    }
+
+    private static String firstColor(String color) {
+        final int pos = color.indexOf(':');
+        return pos < 0 ? color : color.substring(0, pos);
+    }
+
+    private static void put(Map<String, Label> attrs, String key, Consumer<Canvas> drawing) {
+        final XdotCanvas canvas = new XdotCanvas();
+        drawing.accept(canvas);
+        if (!canvas.isEmpty()) {
+            attrs.put(key, Label.of(canvas.toString()));
+        }
+    }
+
+    private static void putPoint(Map<String, Label> attrs, String key, LabelBlock label, double[] points, int e) {
+        if (label != null) {
+            attrs.put(key, Label.of(point(points[e * 2], points[e * 2 + 1])));
+        }
+    }
+
+    private static String point(double x, double y) {
+        return format(x) + "," + format(y);
+    }
+
+    private static String bounds(double[] b, int i) {
+        return point(b[i], b[i + 1]) + "," + point(b[i + 2], b[i + 3]);
+    }
+
+    private static String attrs(Map<String, Label> attrs) {
+        final StringBuilder s = new StringBuilder("[");
+        for (final Map.Entry<String, Label> attr : attrs.entrySet()) {
+            s.append(s.length() == 1 ? "" : ", ").append(quote(attr.getKey())).append('=');
+            final Label value = attr.getValue();
+            s.append(value.isHtml() ? "<" + value.value() + ">" : quote(value.value()));
+        }
+        return s.append(']').toString();
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.parse.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The nodes, edges and clusters of a graph as read by {@link GraphvizJavaEngine}, with the sizes of nodes and labels.
+ * Default node and edge attributes are resolved, nested clusters are flattened.
+ */
+final class LayeredGraph {
+    static final double POINTS_PER_INCH = 72;
+
+    String name = "";
+    boolean directed;
+    final Map<String, Label> attrs = new LinkedHashMap<>();
+    final List<Node> nodes = new ArrayList<>();
+    final List<Edge> edges = new ArrayList<>();
+    final List<Cluster> clusters = new ArrayList<>();
+    private final Map<String, Node> nodesByName = new HashMap<>();
+
+    static final class Node {
+        final String name;
+        final int index;
+        final int cluster;
+        final Map<String, Label> attrs = new LinkedHashMap<>();
+        LabelBlock label;
+        double width;
+        double height;
+
+        Node(String name, int index, int cluster) {
+            this.name = name;
+            this.index = index;
+            this.cluster = cluster;
+        }
+
+        String shape() {
+            final Label shape = attrs.get("shape");
+            return shape == null ? "ellipse" : shape.value();
+        }
+    }
+
+    static final class Edge {
+        final Node from;
+        final Node to;
+        final Map<String, Label> attrs;
+        LabelBlock label;
+        LabelBlock headLabel;
+        LabelBlock tailLabel;
+
+        Edge(Node from, Node to, Map<String, Label> attrs) {
+            this.from = from;
+            this.to = to;
+            this.attrs = attrs;
+        }
+    }
+
+    static final class Cluster {
+        final String name;
+        final Map<String, Label> attrs = new LinkedHashMap<>();
+
+        Cluster(String name) {
+            this.name = name;
+        }
+    }
+
+    private LayeredGraph() {
+    }
+
+    static LayeredGraph read(String src, File basedir) {
+        final LayeredGraph graph = new LayeredGraph();
+        try {
+            Parser.read(src, graph.new Handler());
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read graph", e);
+        }
+        graph.measure(basedir);
+        return graph;
+    }
+
+    static String attr(Map<String, Label> attrs, String key, String def) {
+        final Label value = attrs.get(key);
+        return value == null ? def : value.value();
+    }
+
+    static double number(Map<String, Label> attrs, String key, double def) {
+        try {
+            return Double.parseDouble(attr(attrs, key, Double.toString(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private void measure(File basedir) {
+        final String imagePath = attr(attrs, "imagepath", null);
+        final File imageDir = imagePath == null ? basedir : new File(imagePath);
+        for (final Node node : nodes) {
+            node.label = LabelBlock.of(node.attrs.getOrDefault("label", Label.of("\\N")), node.name,
+                    style(node.attrs, 14), imageDir);
+            final String[] margin = attr(node.attrs, "margin", "0.11,0.055").split(",");
+            final double mx = Double.parseDouble(margin[0]) * POINTS_PER_INCH;
+            final double my = (margin.length > 1 ? Double.parseDouble(margin[1]) : Double.parseDouble(margin[0]))
+                    * POINTS_PER_INCH;
+            double w = node.label.width + 2 * mx;
+            double h = node.label.height + 2 * my;
+            final String shape = node.shape();
+            if (isEllipse(shape)) {
+                w *= Math.sqrt(2);
+                h *= Math.sqrt(2);
+            }
+            w = Math.max(w, number(node.attrs, "width", .75) * POINTS_PER_INCH);
+            h = Math.max(h, number(node.attrs, "height", .5) * POINTS_PER_INCH);
+            if (shape.equals("circle") || shape.equals("square")) {
+                w = h = Math.max(w, h);
+            }
+            node.width = w;
+            node.height = h;
+        }
+        for (final Edge edge : edges) {
+            final LabelBlock.TextStyle style = style(edge.attrs, 14);
+            edge.label = label(edge.attrs.get("label"), edge, style, imageDir);
+            final LabelBlock.TextStyle endStyle = new LabelBlock.TextStyle(
+                    attr(edge.attrs, "labelfontname", style.name), number(edge.attrs, "labelfontsize", style.size),
+                    attr(edge.attrs, "labelfontcolor", style.color));
+            edge.headLabel = label(edge.attrs.get("headlabel"), edge, endStyle, imageDir);
+            edge.tailLabel = label(edge.attrs.get("taillabel"), edge, endStyle, imageDir);
+        }
+    }
+
+    private static LabelBlock label(Label label, Edge edge, LabelBlock.TextStyle style, File imageDir) {
+        return label == null ? null : LabelBlock.of(label, edge.from.name + "->" + edge.to.name, style, imageDir);
+    }
+
+    private static LabelBlock.TextStyle style(Map<String, Label> attrs, double size) {
+        return new LabelBlock.TextStyle(attr(attrs, "fontname", "Times-Roman"), number(attrs, "fontsize", size),
+                attr(attrs, "fontcolor", "black"));
+    }
+
+    static boolean isEllipse(String shape) {
+        return !isBox(shape) && !shape.equals("plaintext") && !shape.equals("plain") && !shape.equals("none");
+    }
+
+    static boolean isBox(String shape) {
+        return shape.equals("box") || shape.equals("rect") || shape.equals("rectangle") || shape.equals("square");
+    }
+
+    private final class Handler implements ParserHandler {
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+        private final List<Set<Node>> subgraphNodes = new ArrayList<>();
+
+        @Override
+        public void startGraph(boolean strict, boolean isDirected, Label graphName) {
+            name = graphName == null ? "" : graphName.value();
+            directed = isDirected;
+            scopes.push(new Scope(null, -1, -1));
+        }
+
+        @Override
+        public void startSubgraph(Label subName) {
+            final Scope parent = scopes.peek();
+            int cluster = parent.cluster;
+            if (subName != null && subName.value().startsWith("cluster")) {
+                cluster = clusters.size();
+                clusters.add(new Cluster(subName.value()));
+            }
+            scopes.push(new Scope(parent, cluster, subgraphNodes.size()));
+            subgraphNodes.add(new LinkedHashSet<>());
+        }
+
+        @Override
+        public void endSubgraph() {
+            scopes.pop();
+        }
+
+        @Override
+        public void graphAttributes(Map<String, Label> graphAttrs) {
+            final Scope scope = scopes.peek();
+            if (scopes.size() == 1) {
+                attrs.putAll(graphAttrs);
+            } else if (scope.cluster >= 0 && scope.cluster != scope.parent.cluster) {
+                clusters.get(scope.cluster).attrs.putAll(graphAttrs);
+            }
+        }
+
+        @Override
+        public void nodeAttributes(Map<String, Label> nodeAttrs) {
+            scopes.peek().nodeDefaults.putAll(nodeAttrs);
+        }
+
+        @Override
+        public void edgeAttributes(Map<String, Label> edgeAttrs) {
+            scopes.peek().edgeDefaults.putAll(edgeAttrs);
+        }
+
+        @Override
+        public void node(Label nodeName, Map<String, Label> nodeAttrs) {
+            node(nodeName.value()).attrs.putAll(nodeAttrs);
+        }
+
+        /**
+         * An edge from or to a subgraph stands for one edge from or to every node of the subgraph.
+         */
+        @Override
+        public void edge(Endpoint from, Endpoint to, Map<String, Label> edgeAttrs) {
+            final Map<String, Label> all = new LinkedHashMap<>(scopes.peek().edgeDefaults);
+            all.putAll(edgeAttrs);
+            for (final Node fromNode : endpoint(from)) {
+                for (final Node toNode : endpoint(to)) {
+                    edges.add(new Edge(fromNode, toNode, new LinkedHashMap<>(all)));
+                }
+            }
+        }
+
+        private Collection<Node> endpoint(Endpoint endpoint) {
+            return endpoint.isSubgraph()
+                    ? subgraphNodes.get(endpoint.subgraph())
+                    : Collections.singletonList(node(endpoint.node().value()));
+        }
+
+        private Node node(String nodeName) {
+            Node node = nodesByName.get(nodeName);
+            if (node == null) {
+                final Scope scope = scopes.peek();
+                node = new Node(nodeName, nodes.size(), scope.cluster);
+                node.attrs.putAll(scope.nodeDefaults);
+                nodes.add(node);
+                nodesByName.put(nodeName, node);
+            }
+            for (final Scope scope : scopes) {
+                if (scope.subgraph >= 0) {
+                    subgraphNodes.get(scope.subgraph).add(node);
+                }
+            }
+            return node;
+        }
+    }
+
+    private static final class Scope {
+        final Scope parent;
+        final int cluster;
+        final int subgraph;
+        final Map<String, Label> nodeDefaults;
+        final Map<String, Label> edgeDefaults;
+
+        Scope(Scope parent, int cluster, int subgraph) {
+            this.parent = parent;
+            this.cluster = cluster;
+            this.subgraph = subgraph;
+            nodeDefaults = parent == null ? new HashMap<>() : new HashMap<>(parent.nodeDefaults);
+            edgeDefaults = parent == null ? new HashMap<>() : new HashMap<>(parent.edgeDefaults);
+        }
+    }
+}
@@ -0,0 +1,751 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.*;
+
+/**
+ * A Sugiyama style layered layout, working on nodes and edges given by index.
+ * The steps are the same as in dot: cycle removal (by reversing back edges), layer assignment (longest path),
+ * crossing minimization (barycenter sweeps, keeping the nodes of a cluster together) and coordinate assignment
+ * (iterative balancing of the positions within the layers).
+ * Coordinates are in points, with the origin at the bottom left like in graphviz.
+ */
+final class LayeredLayout {
+    private static final int ORDER_ITERATIONS = 24;
+    private static final int POSITION_ITERATIONS = 8;
+    static final double CLUSTER_MARGIN = 8;
+
+    // input
+    private final int nodeCount;
+    private final double[] nodeWidth;
+    private final double[] nodeHeight;
+    private final int[] nodeCluster;
+    private final int clusterCount;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final double[] labelWidth;
+    private final double[] labelHeight;
+    private final double nodesep;
+    private final double ranksep;
+
+    // layered graph including virtual nodes
+    private int size;
+    private double[] width;
+    private double[] height;
+    private int[] cluster;
+    private int[] rank;
+    private int[][] up;
+    private int[][] down;
+    private List<int[]> layers;
+    private int[][] chains;
+    private boolean[] reversed;
+
+    // result
+    final double[] x;
+    final double[] y;
+    final double[][] edgePoints;
+    final double[] labelPos;
+    final double[] clusterBounds;
+    final double[] bounds = new double[4];
+
+    LayeredLayout(double[] nodeWidth, double[] nodeHeight, int[] nodeCluster, int clusterCount,
+                  int[] edgeFrom, int[] edgeTo, double[] labelWidth, double[] labelHeight,
+                  double nodesep, double ranksep) {
+        this.nodeCount = nodeWidth.length;
+        this.nodeWidth = nodeWidth;
+        this.nodeHeight = nodeHeight;
+        this.nodeCluster = nodeCluster;
+        this.clusterCount = clusterCount;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.labelWidth = labelWidth;
+        this.labelHeight = labelHeight;
+        this.nodesep = nodesep;
+        this.ranksep = ranksep;
+        x = new double[nodeCount];
+        y = new double[nodeCount];
+        edgePoints = new double[edgeFrom.length][];
+        labelPos = new double[edgeFrom.length * 2];
+        clusterBounds = new double[clusterCount * 4];
+    }
+
+    LayeredLayout layout() {
+        removeCycles();
+        final boolean labels = hasLabels();
+        assignRanks(labels ? 2 : 1);
+        addVirtualNodes();
+        order();
+        final double rankGap = labels ? ranksep / 2 : ranksep;
+        final double[] cx = positionX();
+        final double[] cy = positionY(rankGap);
+        finish(cx, cy);
+        return this;
+    }
+
+    private boolean hasLabels() {
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (labelWidth[e] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeCycles() {
+        reversed = new boolean[edgeFrom.length];
+        final int[][] out = adjacency(edgeFrom, edgeTo, nodeCount);
+        final int[] state = new int[nodeCount];
+        final int[] stack = new int[nodeCount];
+        final int[] next = new int[nodeCount];
+        for (int start = 0; start < nodeCount; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int sp = 0;
+            stack[sp++] = start;
+            state[start] = 1;
+            while (sp > 0) {
+                final int v = stack[sp - 1];
+                if (next[v] < out[v].length) {
+                    final int e = out[v][next[v]++];
+                    final int w = edgeTo[e];
+                    if (state[w] == 1) {
+                        reversed[e] = true;
+                    } else if (state[w] == 0) {
+                        state[w] = 1;
+                        stack[sp++] = w;
+                    }
+                } else {
+                    state[v] = 2;
+                    sp--;
+                }
+            }
+        }
+    }
+
+    private int tail(int e) {
+        return reversed[e] ? edgeTo[e] : edgeFrom[e];
+    }
+
+    private int head(int e) {
+        return reversed[e] ? edgeFrom[e] : edgeTo[e];
+    }
+
+    private boolean isLoop(int e) {
+        return edgeFrom[e] == edgeTo[e];
+    }
+
+    private void assignRanks(int minlen) {
+        rank = new int[nodeCount];
+        final int[] in = new int[nodeCount];
+        final List<List<Integer>> out = new ArrayList<>();
+        for (int v = 0; v < nodeCount; v++) {
+            out.add(new ArrayList<>());
+        }
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (!isLoop(e)) {
+                out.get(tail(e)).add(e);
+                in[head(e)]++;
+            }
+        }
+        final int[] topo = new int[nodeCount];
+        int count = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            if (in[v] == 0) {
+                topo[count++] = v;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            final int v = topo[i];
+            for (final int e : out.get(v)) {
+                final int w = head(e);
+                rank[w] = Math.max(rank[w], rank[v] + minlen);
+                if (--in[w] == 0) {
+                    topo[count++] = w;
+                }
+            }
+        }
+        // pull sources down to their successors to avoid long edges
+        for (int i = count - 1; i >= 0; i--) {
+            final int v = topo[i];
+            if (!out.get(v).isEmpty() && !hasIncoming(v)) {
+                int min = Integer.MAX_VALUE;
+                for (final int e : out.get(v)) {
+                    min = Math.min(min, rank[head(e)] - minlen);
+                }
+                rank[v] = min;
+            }
+        }
+        int min = Integer.MAX_VALUE;
+        for (final int r : rank) {
+            min = Math.min(min, r);
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            rank[v] -= min;
+        }
+    }
+
+    private boolean hasIncoming(int v) {
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (!isLoop(e) && head(e) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addVirtualNodes() {
+        int virtual = 0;
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (!isLoop(e)) {
+                virtual += rank[head(e)] - rank[tail(e)] - 1;
+            }
+        }
+        size = nodeCount + virtual;
+        width = Arrays.copyOf(nodeWidth, size);
+        height = Arrays.copyOf(nodeHeight, size);
+        cluster = Arrays.copyOf(nodeCluster, size);
+        rank = Arrays.copyOf(rank, size);
+        chains = new int[edgeFrom.length][];
+        final List<List<Integer>> ups = new ArrayList<>();
+        final List<List<Integer>> downs = new ArrayList<>();
+        for (int v = 0; v < size; v++) {
+            ups.add(new ArrayList<>());
+            downs.add(new ArrayList<>());
+        }
+        int next = nodeCount;
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (isLoop(e)) {
+                continue;
+            }
+            final int t = tail(e);
+            final int h = head(e);
+            final int span = rank[h] - rank[t];
+            final int[] chain = new int[span + 1];
+            chain[0] = t;
+            chain[span] = h;
+            for (int i = 1; i < span; i++) {
+                final int v = next++;
+                chain[i] = v;
+                rank[v] = rank[t] + i;
+                cluster[v] = nodeCluster[t] == nodeCluster[h] ? nodeCluster[t] : -1;
+                final boolean labelNode = i == span / 2 && labelWidth[e] > 0;
+                width[v] = labelNode ? labelWidth[e] + 4 : 0;
+                height[v] = labelNode ? labelHeight[e] : 0;
+            }
+            for (int i = 0; i < span; i++) {
+                downs.get(chain[i]).add(chain[i + 1]);
+                ups.get(chain[i + 1]).add(chain[i]);
+            }
+            chains[e] = chain;
+        }
+        up = toArrays(ups);
+        down = toArrays(downs);
+        int maxRank = 0;
+        for (int v = 0; v < size; v++) {
+            maxRank = Math.max(maxRank, rank[v]);
+        }
+        final List<List<Integer>> initial = new ArrayList<>();
+        for (int r = 0; r <= maxRank; r++) {
+            initial.add(new ArrayList<>());
+        }
+        final boolean[] placed = new boolean[size];
+        for (int v = 0; v < nodeCount; v++) {
+            placeDepthFirst(v, placed, initial);
+        }
+        layers = new ArrayList<>();
+        for (final List<Integer> layer : initial) {
+            layers.add(layer.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private void placeDepthFirst(int start, boolean[] placed, List<List<Integer>> layers) {
+        final Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            final int v = stack.pop();
+            if (!placed[v]) {
+                placed[v] = true;
+                layers.get(rank[v]).add(v);
+                for (int i = down[v].length - 1; i >= 0; i--) {
+                    stack.push(down[v][i]);
+                }
+            }
+        }
+    }
+
+    private void order() {
+        final double[] pos = new double[size];
+        List<int[]> best = copy(layers);
+        int bestCrossings = crossings();
+        for (int iter = 0; iter < ORDER_ITERATIONS && bestCrossings > 0; iter++) {
+            final boolean downwards = iter % 2 == 0;
+            updatePositions(pos);
+            final double[] clusterKey = clusterKeys(pos);
+            for (int i = 1; i < layers.size(); i++) {
+                final int r = downwards ? i : layers.size() - 1 - i;
+                final int[] layer = layers.get(r);
+                final double[] bary = new double[size];
+                for (final int v : layer) {
+                    bary[v] = barycenter(downwards ? up[v] : down[v], pos, v);
+                }
+                layers.set(r, sorted(layer, bary, clusterKey));
+                for (int j = 0; j < layers.get(r).length; j++) {
+                    pos[layers.get(r)[j]] = j;
+                }
+            }
+            final int crossings = crossings();
+            if (crossings < bestCrossings) {
+                bestCrossings = crossings;
+                best = copy(layers);
+            }
+        }
+        layers = best;
+    }
+
+    private void updatePositions(double[] pos) {
+        for (final int[] layer : layers) {
+            for (int j = 0; j < layer.length; j++) {
+                pos[layer[j]] = j;
+            }
+        }
+    }
+
+    private double[] clusterKeys(double[] pos) {
+        final double[] sum = new double[clusterCount];
+        final int[] count = new int[clusterCount];
+        for (final int[] layer : layers) {
+            for (final int v : layer) {
+                if (cluster[v] >= 0) {
+                    sum[cluster[v]] += (pos[v] + .5) / layer.length;
+                    count[cluster[v]]++;
+                }
+            }
+        }
+        for (int c = 0; c < clusterCount; c++) {
+            sum[c] = count[c] == 0 ? 0 : sum[c] / count[c];
+        }
+        return sum;
+    }
+
+    private double barycenter(int[] neighbours, double[] pos, int v) {
+        if (neighbours.length == 0) {
+            return pos[v];
+        }
+        double sum = 0;
+        for (final int n : neighbours) {
+            sum += pos[n];
+        }
+        return sum / neighbours.length;
+    }
+
+    /**
+     * Sort by barycenter, but keep the nodes of a cluster together, ordered by the average position of the cluster.
+     */
+    private int[] sorted(int[] layer, double[] bary, double[] clusterKey) {
+        final double[] group = new double[size];
+        for (final int v : layer) {
+            group[v] = cluster[v] < 0 ? bary[v] / Math.max(1, layer.length) : clusterKey[cluster[v]];
+        }
+        return Arrays.stream(layer).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(v -> group[v])
+                        .thenComparingInt(v -> cluster[v])
+                        .thenComparingDouble(v -> bary[v]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private int crossings() {
+        final int[] pos = new int[size];
+        for (final int[] layer : layers) {
+            for (int j = 0; j < layer.length; j++) {
+                pos[layer[j]] = j;
+            }
+        }
+        int crossings = 0;
+        for (int r = 0; r < layers.size() - 1; r++) {
+            final List<int[]> edges = new ArrayList<>();
+            for (final int v : layers.get(r)) {
+                for (final int w : down[v]) {
+                    edges.add(new int[]{pos[v], pos[w]});
+                }
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                for (int j = i + 1; j < edges.size(); j++) {
+                    final int[] a = edges.get(i);
+                    final int[] b = edges.get(j);
+                    if ((a[0] - b[0]) * (a[1] - b[1]) < 0) {
+                        crossings++;
+                    }
+                }
+            }
+        }
+        return crossings;
+    }
+
+    private double[] positionX() {
+        final double[] cx = new double[size];
+        for (final int[] layer : layers) {
+            for (int j = 0; j < layer.length; j++) {
+                cx[layer[j]] = j == 0 ? width[layer[j]] / 2 : cx[layer[j - 1]] + separation(layer[j - 1], layer[j]);
+            }
+        }
+        for (int iter = 0; iter < POSITION_ITERATIONS; iter++) {
+            final boolean downwards = iter % 2 == 0;
+            for (int i = 1; i < layers.size(); i++) {
+                final int r = downwards ? i : layers.size() - 1 - i;
+                final int[] layer = layers.get(r);
+                final double[] desired = new double[layer.length];
+                for (int j = 0; j < layer.length; j++) {
+                    final int v = layer[j];
+                    final int[] neighbours = downwards ? up[v] : down[v];
+                    desired[j] = neighbours.length == 0 ? cx[v] : barycenter(neighbours, cx, v);
+                }
+                place(layer, desired, cx);
+            }
+        }
+        return cx;
+    }
+
+    /**
+     * Place the nodes of a layer as near as possible to their desired positions, keeping the order and separation.
+     */
+    private void place(int[] layer, double[] desired, double[] cx) {
+        final int n = layer.length;
+        final double[] left = new double[n];
+        final double[] right = new double[n];
+        for (int j = 0; j < n; j++) {
+            left[j] = j == 0 ? desired[j] : Math.max(desired[j], left[j - 1] + separation(layer[j - 1], layer[j]));
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            right[j] = j == n - 1 ? desired[j] : Math.min(desired[j], right[j + 1] - separation(layer[j], layer[j + 1]));
+        }
+        for (int j = 0; j < n; j++) {
+            cx[layer[j]] = (left[j] + right[j]) / 2;
+        }
+    }
+
+    private double separation(int a, int b) {
+        double sep = (width[a] + width[b]) / 2 + (width[a] == 0 || width[b] == 0 ? nodesep / 2 : nodesep);
+        if (cluster[a] != cluster[b]) {
+            sep += (cluster[a] >= 0 ? CLUSTER_MARGIN : 0) + (cluster[b] >= 0 ? CLUSTER_MARGIN : 0);
+        }
+        return sep;
+    }
+
+    private double[] positionY(double rankGap) {
+        final double[] layerTop = new double[layers.size()];
+        final double[] layerHeight = new double[layers.size()];
+        double top = 0;
+        for (int r = 0; r < layers.size(); r++) {
+            for (final int v : layers.get(r)) {
+                layerHeight[r] = Math.max(layerHeight[r], height[v]);
+            }
+            layerTop[r] = top;
+            top += layerHeight[r] + rankGap;
+        }
+        final double[] cy = new double[size];
+        for (int v = 0; v < size; v++) {
+            cy[v] = -(layerTop[rank[v]] + layerHeight[rank[v]] / 2);
+        }
+        return cy;
+    }
+
+    private void finish(double[] cx, double[] cy) {
+        for (int c = 0; c < clusterCount; c++) {
+            clusterBounds[c * 4] = clusterBounds[c * 4 + 1] = Double.MAX_VALUE;
+            clusterBounds[c * 4 + 2] = clusterBounds[c * 4 + 3] = -Double.MAX_VALUE;
+        }
+        for (int v = 0; v < size; v++) {
+            if (cluster[v] >= 0) {
+                final int c = cluster[v] * 4;
+                clusterBounds[c] = Math.min(clusterBounds[c], cx[v] - width[v] / 2 - CLUSTER_MARGIN);
+                clusterBounds[c + 1] = Math.min(clusterBounds[c + 1], cy[v] - height[v] / 2 - CLUSTER_MARGIN);
+                clusterBounds[c + 2] = Math.max(clusterBounds[c + 2], cx[v] + width[v] / 2 + CLUSTER_MARGIN);
+                clusterBounds[c + 3] = Math.max(clusterBounds[c + 3], cy[v] + height[v] / 2 + CLUSTER_MARGIN);
+            }
+        }
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int v = 0; v < size; v++) {
+            // leave some space for the curves of edges through virtual nodes
+            final double w = v >= nodeCount && width[v] == 0 ? nodesep : width[v];
+            minX = Math.min(minX, cx[v] - w / 2);
+            minY = Math.min(minY, cy[v] - height[v] / 2);
+            maxX = Math.max(maxX, cx[v] + w / 2);
+            maxY = Math.max(maxY, cy[v] + height[v] / 2);
+        }
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (isLoop(e)) {
+                final int v = edgeFrom[e];
+                maxX = Math.max(maxX, cx[v] + width[v] / 2 + loopSize(v) + labelWidth[e]);
+            }
+        }
+        for (int c = 0; c < clusterCount; c++) {
+            if (clusterBounds[c * 4] <= clusterBounds[c * 4 + 2]) {
+                minX = Math.min(minX, clusterBounds[c * 4]);
+                minY = Math.min(minY, clusterBounds[c * 4 + 1]);
+                maxX = Math.max(maxX, clusterBounds[c * 4 + 2]);
+                maxY = Math.max(maxY, clusterBounds[c * 4 + 3]);
+            }
+        }
+        if (size == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        for (int v = 0; v < size; v++) {
+            cx[v] -= minX;
+            cy[v] -= minY;
+        }
+        for (int c = 0; c < clusterCount; c++) {
+            if (clusterBounds[c * 4] > clusterBounds[c * 4 + 2]) {
+                Arrays.fill(clusterBounds, c * 4, c * 4 + 4, 0);
+            } else {
+                clusterBounds[c * 4] -= minX;
+                clusterBounds[c * 4 + 1] -= minY;
+                clusterBounds[c * 4 + 2] -= minX;
+                clusterBounds[c * 4 + 3] -= minY;
+            }
+        }
+        bounds[2] = maxX - minX;
+        bounds[3] = maxY - minY;
+        System.arraycopy(cx, 0, x, 0, nodeCount);
+        System.arraycopy(cy, 0, y, 0, nodeCount);
+        for (int e = 0; e < edgeFrom.length; e++) {
+            edgePoints[e] = isLoop(e) ? loop(e, cx, cy) : edge(e, cx, cy);
+        }
+    }
+
+    /**
+     * Turn the (top to bottom) layout into the given rank direction.
+     * For LR and RL, the layout must have been done with the widths and heights of nodes and labels swapped.
+     *
+     * @param rankdir one of TB, BT, LR, RL
+     */
+    LayeredLayout rankdir(String rankdir) {
+        if (rankdir.equals("TB")) {
+            return this;
+        }
+        final double w = bounds[2];
+        final double h = bounds[3];
+        final double[] point = new double[2];
+        for (int v = 0; v < nodeCount; v++) {
+            point[0] = x[v];
+            point[1] = y[v];
+            turn(rankdir, w, h, point, 0);
+            x[v] = point[0];
+            y[v] = point[1];
+        }
+        for (final double[] points : edgePoints) {
+            for (int i = 0; i < points.length; i += 2) {
+                turn(rankdir, w, h, points, i);
+            }
+        }
+        for (int i = 0; i < labelPos.length; i += 2) {
+            turn(rankdir, w, h, labelPos, i);
+        }
+        for (int c = 0; c < clusterCount * 4; c += 4) {
+            if (clusterBounds[c] < clusterBounds[c + 2]) {
+                turn(rankdir, w, h, clusterBounds, c);
+                turn(rankdir, w, h, clusterBounds, c + 2);
+                sort(clusterBounds, c, c + 2);
+                sort(clusterBounds, c + 1, c + 3);
+            }
+        }
+        if (!rankdir.equals("BT")) {
+            bounds[2] = h;
+            bounds[3] = w;
+        }
+        return this;
+    }
+
+    private static void turn(String rankdir, double w, double h, double[] points, int i) {
+        final double px = points[i];
+        final double py = points[i + 1];
+        switch (rankdir) {
+            case "BT":
+                points[i + 1] = h - py;
+                break;
+            case "LR":
+                points[i] = h - py;
+                points[i + 1] = w - px;
+                break;
+            case "RL":
+                points[i] = py;
+                points[i + 1] = w - px;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rankdir " + rankdir);
+        }
+    }
+
+    private static void sort(double[] values, int low, int high) {
+        if (values[low] > values[high]) {
+            final double tmp = values[low];
+            values[low] = values[high];
+            values[high] = tmp;
+        }
+    }
+
+    /**
+     * Use the positions already set in {@link #x}, {@link #y}, {@link #edgePoints} and {@link #labelPos}
+     * instead of doing a layout. Clusters without bounds (all 0) get the bounding box of their nodes.
+     * Everything is moved so that the layout starts at the origin and contains the given bounds (if any).
+     *
+     * @param graphBounds llx, lly, urx, ury of the graph or null
+     */
+    LayeredLayout positioned(double[] graphBounds) {
+        for (int c = 0; c < clusterCount * 4; c += 4) {
+            if (clusterBounds[c] >= clusterBounds[c + 2]) {
+                clusterBounds[c] = clusterBounds[c + 1] = Double.MAX_VALUE;
+                clusterBounds[c + 2] = clusterBounds[c + 3] = -Double.MAX_VALUE;
+                for (int v = 0; v < nodeCount; v++) {
+                    if (nodeCluster[v] == c / 4) {
+                        final double dx = nodeWidth[v] / 2 + CLUSTER_MARGIN;
+                        final double dy = nodeHeight[v] / 2 + CLUSTER_MARGIN;
+                        clusterBounds[c] = Math.min(clusterBounds[c], x[v] - dx);
+                        clusterBounds[c + 1] = Math.min(clusterBounds[c + 1], y[v] - dy);
+                        clusterBounds[c + 2] = Math.max(clusterBounds[c + 2], x[v] + dx);
+                        clusterBounds[c + 3] = Math.max(clusterBounds[c + 3], y[v] + dy);
+                    }
+                }
+                if (clusterBounds[c] > clusterBounds[c + 2]) {
+                    Arrays.fill(clusterBounds, c, c + 4, 0);
+                }
+            }
+        }
+        final double[] box = graphBounds == null
+                ? new double[]{Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE}
+                : graphBounds.clone();
+        for (int v = 0; v < nodeCount; v++) {
+            include(box, x[v] - nodeWidth[v] / 2, y[v] - nodeHeight[v] / 2);
+            include(box, x[v] + nodeWidth[v] / 2, y[v] + nodeHeight[v] / 2);
+        }
+        for (final double[] points : edgePoints) {
+            for (int i = 0; i < points.length; i += 2) {
+                include(box, points[i], points[i + 1]);
+            }
+        }
+        for (int e = 0; e < edgeFrom.length; e++) {
+            include(box, labelPos[e * 2] - labelWidth[e] / 2, labelPos[e * 2 + 1] - labelHeight[e] / 2);
+            include(box, labelPos[e * 2] + labelWidth[e] / 2, labelPos[e * 2 + 1] + labelHeight[e] / 2);
+        }
+        for (int c = 0; c < clusterCount * 4; c += 4) {
+            if (clusterBounds[c] < clusterBounds[c + 2]) {
+                include(box, clusterBounds[c], clusterBounds[c + 1]);
+                include(box, clusterBounds[c + 2], clusterBounds[c + 3]);
+            }
+        }
+        if (box[0] > box[2]) {
+            return this;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            x[v] -= box[0];
+            y[v] -= box[1];
+        }
+        for (final double[] points : edgePoints) {
+            for (int i = 0; i < points.length; i += 2) {
+                points[i] -= box[0];
+                points[i + 1] -= box[1];
+            }
+        }
+        for (int i = 0; i < labelPos.length; i += 2) {
+            labelPos[i] -= box[0];
+            labelPos[i + 1] -= box[1];
+        }
+        for (int c = 0; c < clusterCount * 4; c += 4) {
+            if (clusterBounds[c] < clusterBounds[c + 2]) {
+                clusterBounds[c] -= box[0];
+                clusterBounds[c + 1] -= box[1];
+                clusterBounds[c + 2] -= box[0];
+                clusterBounds[c + 3] -= box[1];
+            }
+        }
+        bounds[2] = box[2] - box[0];
+        bounds[3] = box[3] - box[1];
+        return this;
+    }
+
+    private static void include(double[] box, double px, double py) {
+        box[0] = Math.min(box[0], px);
+        box[1] = Math.min(box[1], py);
+        box[2] = Math.max(box[2], px);
+        box[3] = Math.max(box[3], py);
+    }
+
+    private double loopSize(int v) {
+        return Math.max(18, height[v] / 2);
+    }
+
+    private double[] loop(int e, double[] cx, double[] cy) {
+        final int v = edgeFrom[e];
+        final double r = loopSize(v);
+        final double x0 = cx[v] + width[v] / 2 * Math.cos(Math.PI / 6);
+        final double dy = height[v] / 2 * Math.sin(Math.PI / 6);
+        labelPos[e * 2] = x0 + r + labelWidth[e] / 2;
+        labelPos[e * 2 + 1] = cy[v];
+        return new double[]{x0, cy[v] + dy, x0 + r, cy[v] + dy + r, x0 + r, cy[v] - dy - r, x0, cy[v] - dy};
+    }
+
+    /**
+     * @return the polyline of the edge from its source to its target node, through all virtual nodes.
+     */
+    private double[] edge(int e, double[] cx, double[] cy) {
+        final int[] chain = chains[e];
+        final double[] points = new double[chain.length * 2];
+        for (int i = 0; i < chain.length; i++) {
+            final int v = chain[reversed[e] ? chain.length - 1 - i : i];
+            final boolean labelNode = v >= nodeCount && width[v] > 0;
+            points[i * 2] = labelNode ? cx[v] - width[v] / 2 : cx[v];
+            points[i * 2 + 1] = cy[v];
+            if (labelNode) {
+                labelPos[e * 2] = cx[v] + 2;
+                labelPos[e * 2 + 1] = cy[v];
+            }
+        }
+        return points;
+    }
+
+    private static int[][] adjacency(int[] from, int[] to, int n) {
+        final List<List<Integer>> out = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            out.add(new ArrayList<>());
+        }
+        for (int e = 0; e < from.length; e++) {
+            if (from[e] != to[e]) {
+                out.get(from[e]).add(e);
+            }
+        }
+        return toArrays(out);
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        final int[][] res = new int[lists.size()][];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return res;
+    }
+
+    private static List<int[]> copy(List<int[]> layers) {
+        final List<int[]> res = new ArrayList<>();
+        for (final int[] layer : layers) {
+            res.add(layer.clone());
+        }
+        return res;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.parse.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The result of a layout run: the graph in {@link Format#XDOT} with all positions
+ * and the positions, sizes and neighbours read from it.
+ * A layout can be rendered without running the layout again with {@link Graphviz#fromLayout(Layout)}
+ * and can be used as starting point for an incremental layout with {@link Graphviz#layout(Layout)}.
+ */
+public final class Layout {
+    private static final Set<String>
+            NODE_ATTRS = new HashSet<>(Arrays.asList("pos", "width", "height")),
+            EDGE_ATTRS = new HashSet<>(Arrays.asList("pos", "lp", "head_lp", "tail_lp", "xlp")),
+            GRAPH_ATTRS = new HashSet<>(Arrays.asList("bb", "lp", "lwidth", "lheight"));
+
+    private final String src;
+    private final Map<String, double[]> positions = new HashMap<>();
+    private final Map<String, List<String>> neighbours = new HashMap<>();
+    final Map<String, Map<String, String>> nodeAttrs = new HashMap<>();
+    final Map<String, Map<String, String>> edgeAttrs = new HashMap<>();
+    final Map<String, Map<String, String>> graphAttrs = new HashMap<>();
+
+    private Layout(String src) {
+        this.src = src;
+    }
+
+    public static Layout fromXdot(String xdot) {
+        final Layout layout = new Layout(xdot);
+        try {
+            Parser.read(xdot, new ParserHandler() {
+                private final Deque<String> graphs = new ArrayDeque<>();
+                private final Map<String, Integer> edges = new HashMap<>();
+
+                @Override
+                public void startGraph(boolean strict, boolean directed, Label name) {
+                    graphs.push("");
+                }
+
+                @Override
+                public void startSubgraph(Label name) {
+                    graphs.push(name == null ? "" : name.value());
+                }
+
+                @Override
+                public void endSubgraph() {
+                    graphs.pop();
+                }
+
+                @Override
+                public void graphAttributes(Map<String, Label> attrs) {
+                    if (graphs.size() == 1 || !graphs.peek().isEmpty()) {
+                        copy(attrs, GRAPH_ATTRS, layout.graphAttrs, graphs.peek());
+                    }
+                }
+
+                @Override
+                public void node(Label name, Map<String, Label> attrs) {
+                    final Label pos = attrs.get("pos");
+                    if (pos != null) {
+                        layout.positions.put(name.value(), parsePoint(pos.value()));
+                    }
+                    copy(attrs, NODE_ATTRS, layout.nodeAttrs, name.value());
+                }
+
+                @Override
+                public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+                    if (!from.isSubgraph() && !to.isSubgraph()) {
+                        final String key = edgeKey(from.node().value(), to.node().value(), edges);
+                        copy(attrs, EDGE_ATTRS, layout.edgeAttrs, key);
+                        layout.addNeighbour(from.node().value(), to.node().value());
+                    }
+                }
+            });
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read layout", e);
+        }
+        return layout;
+    }
+
+    /**
+     * Pack the layouts of independent graphs into one layout that can be rendered with {@link Graphviz#fromLayout(Layout)}.
+     * The layouts are arranged in rows in the given order, so packing is deterministic.
+     *
+     * @param layouts the layouts to pack
+     * @param gap     the space between two layouts in points
+     */
+    public static Layout pack(List<Layout> layouts, double gap) {
+        return LayoutPacker.pack(layouts, gap);
+    }
+
+    /**
+     * @return a key for the n-th edge between the given nodes, counted in the given map
+     */
+    static String edgeKey(String from, String to, Map<String, Integer> counts) {
+        final String pair = from + "\u0000" + to;
+        final int n = counts.merge(pair, 1, Integer::sum);
+        return pair + "\u0000" + n;
+    }
+
+    private static void copy(Map<String, Label> attrs, Set<String> keys,
+                             Map<String, Map<String, String>> target, String name) {
+        for (final Map.Entry<String, Label> attr : attrs.entrySet()) {
+            if (keys.contains(attr.getKey())) {
+                target.computeIfAbsent(name, k -> new TreeMap<>()).put(attr.getKey(), attr.getValue().value());
+            }
+        }
+    }
+
+    void addNeighbour(String a, String b) {
+        neighbours.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
+        neighbours.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+    }
+
+    static double[] parsePoint(String pos) {
+        final int comma = pos.indexOf(',');
+        final int end = pos.endsWith("!") ? pos.length() - 1 : pos.length();
+        return new double[]{Double.parseDouble(pos.substring(0, comma)), Double.parseDouble(pos.substring(comma + 1, end))};
+    }
+
+    /**
+     * @return the laid out graph in {@link Format#XDOT}
+     */
+    public String source() {
+        return src;
+    }
+
+    public Set<String> nodes() {
+        return Collections.unmodifiableSet(positions.keySet());
+    }
+
+    /**
+     * @return the x and y coordinate of the node center in points or null if the node is not part of the layout
+     */
+    public double[] position(String node) {
+        final double[] pos = positions.get(node);
+        return pos == null ? null : pos.clone();
+    }
+
+    /**
+     * @return the names of the nodes linked with the given node, sorted
+     */
+    public List<String> neighbours(String node) {
+        final List<String> ns = new ArrayList<>(neighbours.getOrDefault(node, Collections.emptyList()));
+        Collections.sort(ns);
+        return ns;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.parse.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Caches layouts by the parts of a graph that influence the layout.
+ * Graphs that only differ in colors and similar styling attributes share a layout, so they can be rendered
+ * with {@link Engine#NOP2} instead of running the layout engine again.
+ * Fonts and labels are part of the key, as they change the size of nodes and labels.
+ */
+public final class LayoutCache {
+    private static final Set<String> STYLE_ATTRS = new HashSet<>(Arrays.asList(
+            "color", "fillcolor", "fontcolor", "bgcolor", "pencolor", "labelfontcolor", "colorscheme",
+            "gradientangle", "style", "penwidth", "arrowhead", "arrowtail", "arrowsize",
+            "tooltip", "URL", "href", "target", "id", "class", "comment"));
+
+    private final Map<String, Layout> layouts;
+
+    public LayoutCache(int maxSize) {
+        layouts = Collections.synchronizedMap(new Lru(maxSize));
+    }
+
+    Layout layout(String src, Options options, Supplier<Layout> layouter) {
+        final String key = key(src, options);
+        final Layout cached = layouts.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Layout layout = layouter.get();
+        layouts.put(key, layout);
+        return layout;
+    }
+
+    public int size() {
+        return layouts.size();
+    }
+
+    public void clear() {
+        layouts.clear();
+    }
+
+    static String key(String src, Options options) {
+        final StringBuilder s = new StringBuilder(options.engine.toString());
+        try {
+            Parser.read(src, new ParserHandler() {
+                @Override
+                public void startGraph(boolean strict, boolean directed, Label name) {
+                    s.append(strict).append(directed);
+                }
+
+                @Override
+                public void startSubgraph(Label name) {
+                    s.append("{").append(name);
+                }
+
+                @Override
+                public void endSubgraph() {
+                    s.append("}");
+                }
+
+                @Override
+                public void graphAttributes(Map<String, Label> attrs) {
+                    append("G", attrs);
+                }
+
+                @Override
+                public void nodeAttributes(Map<String, Label> attrs) {
+                    append("N", attrs);
+                }
+
+                @Override
+                public void edgeAttributes(Map<String, Label> attrs) {
+                    append("E", attrs);
+                }
+
+                @Override
+                public void node(Label name, Map<String, Label> attrs) {
+                    append("n" + name, attrs);
+                }
+
+                @Override
+                public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+                    append("e" + from + "-" + to, attrs);
+                }
+
+                private void append(String event, Map<String, Label> attrs) {
+                    s.append('\n').append(event);
+                    for (final Map.Entry<String, Label> attr : attrs.entrySet()) {
+                        if (!STYLE_ATTRS.contains(attr.getKey())) {
+                            s.append(' ').append(attr.getKey()).append('=')
+                                    .append(attr.getValue().isHtml() ? "<>" : "").append(attr.getValue().value());
+                        }
+                    }
+                }
+            });
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read graph to cache its layout", e);
+        }
+        return digest(s.toString());
+    }
+
+    private static String digest(String s) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final class Lru extends LinkedHashMap<String, Layout> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Lru(int maxSize) {
+            super(16, .75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Layout> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.model.*;
+import guru.nidi.graphviz.parse.Parser;
+import guru.nidi.graphviz.parse.ParserException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Packs the layouts of independent graphs into one layout, like graphviz' {@code gvpack}.
+ * The layouts are placed in rows of about the same width and height, in the given order,
+ * so the same components always give the same result.
+ * Every layout becomes a subgraph of the packed graph, clusters are renamed to stay unique.
+ */
+final class LayoutPacker {
+    private static final Set<String> POSITIONS = new HashSet<>(Arrays.asList("pos", "lp", "head_lp", "tail_lp", "xlp", "bb"));
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private LayoutPacker() {
+    }
+
+    static Layout pack(List<Layout> layouts, double gap) {
+        if (layouts.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to pack");
+        }
+        final double[][] bounds = new double[layouts.size()][];
+        double area = 0;
+        double widest = 0;
+        for (int i = 0; i < layouts.size(); i++) {
+            bounds[i] = bounds(layouts.get(i));
+            final double w = bounds[i][2] - bounds[i][0] + gap;
+            area += w * (bounds[i][3] - bounds[i][1] + gap);
+            widest = Math.max(widest, w);
+        }
+        final double rowWidth = Math.max(widest, Math.sqrt(area));
+        final double[][] offsets = new double[layouts.size()][];
+        double x = 0;
+        double top = 0;
+        double rowHeight = 0;
+        for (int i = 0; i < layouts.size(); i++) {
+            final double w = bounds[i][2] - bounds[i][0];
+            final double h = bounds[i][3] - bounds[i][1];
+            if (x > 0 && x + w > rowWidth) {
+                x = 0;
+                top += rowHeight + gap;
+                rowHeight = 0;
+            }
+            offsets[i] = new double[]{x - bounds[i][0], -top - h - bounds[i][1]};
+            x += w + gap;
+            rowHeight = Math.max(rowHeight, h);
+        }
+        final double height = top + rowHeight;
+        double width = 0;
+        for (int i = 0; i < layouts.size(); i++) {
+            offsets[i][1] += height;
+            width = Math.max(width, bounds[i][2] + offsets[i][0]);
+        }
+        return new LayoutPacker().pack(layouts, offsets, width, height);
+    }
+
+    private static double[] bounds(Layout layout) {
+        final Map<String, String> attrs = layout.graphAttrs.get("");
+        final String bb = attrs == null ? null : attrs.get("bb");
+        if (bb == null) {
+            return new double[4];
+        }
+        final String[] parts = bb.split(",");
+        final double[] res = new double[4];
+        for (int i = 0; i < 4; i++) {
+            res[i] = Double.parseDouble(parts[i]);
+        }
+        return res;
+    }
+
+    private Layout pack(List<Layout> layouts, double[][] offsets, double width, double height) {
+        final MutableGraph packed = new GraphBuilder("packed", 0).graph();
+        for (int i = 0; i < layouts.size(); i++) {
+            final MutableGraph graph = read(layouts.get(i).source());
+            if (i == 0) {
+                packed.setDirected(graph.isDirected()).setStrict(graph.isStrict());
+                for (final Entry<String, Object> attr : graph.graphAttrs()) {
+                    if (!POSITIONS.contains(attr.getKey())) {
+                        packed.graphAttrs().add(attr.getKey(), attr.getValue());
+                    }
+                }
+            }
+            shift(graph, "c" + i + "_", offsets[i][0], offsets[i][1]);
+            final MutableGraph component = new GraphBuilder("component_" + i, 0).graph()
+                    .add(new ArrayList<>(graph.rootNodes()))
+                    .add(new ArrayList<>(graph.graphs()));
+            component.nodeAttrs().add(graph.nodeAttrs());
+            component.linkAttrs().add(graph.linkAttrs());
+            packed.add(component);
+        }
+        packed.graphAttrs().add("bb", "0,0," + XdotCanvas.format(width) + "," + XdotCanvas.format(height));
+        return Layout.fromXdot(packed.toString());
+    }
+
+    private static MutableGraph read(String src) {
+        try {
+            return Parser.read(src);
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read layout to pack", e);
+        }
+    }
+
+    private void shift(MutableGraph graph, String prefix, double dx, double dy) {
+        if (visited.add(graph)) {
+            for (final MutableNode node : graph.nodes()) {
+                if (visited.add(node)) {
+                    shift(node, dx, dy);
+                    for (final Link link : node.links()) {
+                        shift(link.attrs(), dx, dy);
+                    }
+                }
+            }
+            for (final Link link : graph.links()) {
+                shift(link.attrs(), dx, dy);
+            }
+            for (final MutableGraph sub : graph.graphs()) {
+                if (sub.isCluster() && !visited.contains(sub)) {
+                    sub.setName(prefix + sub.name());
+                }
+                shift(sub.graphAttrs(), dx, dy);
+                shift(sub, prefix, dx, dy);
+            }
+        }
+    }
+
+    private static void shift(MutableAttributed<?, ?> attrs, double dx, double dy) {
+        final List<Entry<String, Object>> positions = new ArrayList<>();
+        for (final Entry<String, Object> attr : attrs) {
+            if (POSITIONS.contains(attr.getKey())) {
+                positions.add(attr);
+            }
+        }
+        for (final Entry<String, Object> attr : positions) {
+            attrs.add(attr.getKey(), shift(attr.getValue().toString(), dx, dy));
+        }
+    }
+
+    /**
+     * Shifts all points of a position attribute, like {@code "1,2"}, {@code "e,1,2 3,4 5,6"} or {@code "1,2,3,4!"}.
+     */
+    static String shift(String value, double dx, double dy) {
+        final StringBuilder s = new StringBuilder();
+        for (final String token : value.trim().split("\\s+")) {
+            if (s.length() > 0) {
+                s.append(' ');
+            }
+            String point = token;
+            if (point.startsWith("e,") || point.startsWith("s,")) {
+                s.append(point, 0, 2);
+                point = point.substring(2);
+            }
+            final boolean pinned = point.endsWith("!");
+            final String[] coords = (pinned ? point.substring(0, point.length() - 1) : point).split(",");
+            for (int i = 0; i < coords.length; i++) {
+                if (i > 0) {
+                    s.append(',');
+                }
+                final double c = Double.parseDouble(coords[i]) + (i % 2 == 0 ? dx : dy);
+                s.append(XdotCanvas.format(c));
+            }
+            if (pinned) {
+                s.append('!');
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.parse.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Chooses the layout engine and its effort attributes for a graph, so that the layout takes about a given time.
+ * The layout time is estimated from the number of nodes, edges and clusters.
+ * {@link Engine#DOT} is used as long as it fits into the budget, if necessary with less effort
+ * ({@code nslimit}, {@code mclimit}, {@code searchsize}).
+ * Bigger graphs are laid out with {@link Engine#FDP} if they contain clusters,
+ * otherwise with {@link Engine#NEATO} or {@link Engine#SFDP}, with {@code maxiter} limited to the budget.
+ * Attributes given in the graph itself take precedence over the chosen ones.
+ */
+public final class LayoutPolicy {
+    private static final double MIN_EFFORT = .1;
+    private static final double FIXED_DOT_SHARE = .3;
+    private static final double DOT_MS = .01;
+    private static final double NEATO_MS = .00005;
+    private static final double FDP_MS = .00002;
+    private static final double SFDP_MS = .002;
+    private static final int NEATO_ITER = 200;
+    private static final int FDP_ITER = 600;
+    private static final int SFDP_ITER = 500;
+    private static final int MIN_ITER = 50;
+    private static final int SEARCHSIZE = 30;
+
+    private final long budgetMillis;
+
+    private LayoutPolicy(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * @param millis the time the layout should take at most
+     */
+    public static LayoutPolicy forBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Budget must be positive, but is " + millis);
+        }
+        return new LayoutPolicy(millis);
+    }
+
+    public Choice choose(String src) {
+        final int[] counts = count(src);
+        return choose(counts[0], counts[1], counts[2]);
+    }
+
+    Choice choose(int nodes, int edges, int clusters) {
+        final Map<String, String> attrs = new TreeMap<>();
+        final double dot = DOT_MS * Math.pow(nodes + edges, 1.5);
+        if (dot <= budgetMillis) {
+            return new Choice(Engine.DOT, attrs, nodes, edges, clusters, dot);
+        }
+        final double effort = (budgetMillis / dot - FIXED_DOT_SHARE) / (1 - FIXED_DOT_SHARE);
+        if (effort >= MIN_EFFORT) {
+            attrs.put("mclimit", XdotCanvas.format(effort));
+            attrs.put("nslimit", XdotCanvas.format(Math.max(1, effort * 10)));
+            attrs.put("nslimit1", XdotCanvas.format(Math.max(1, effort * 10)));
+            attrs.put("searchsize", Integer.toString((int) Math.max(5, Math.round(SEARCHSIZE * effort))));
+            return new Choice(Engine.DOT, attrs, nodes, edges, clusters, budgetMillis);
+        }
+        final double perIteration;
+        final int maxIter;
+        final Engine engine;
+        if (clusters > 0) {
+            engine = Engine.FDP;
+            perIteration = FDP_MS * nodes * nodes;
+            maxIter = FDP_ITER;
+        } else if (NEATO_MS * nodes * nodes * MIN_ITER <= budgetMillis) {
+            engine = Engine.NEATO;
+            perIteration = NEATO_MS * nodes * nodes;
+            maxIter = NEATO_ITER;
+        } else {
+            engine = Engine.SFDP;
+            perIteration = SFDP_MS * (nodes + edges) * Math.log(nodes + edges + 2) / SFDP_ITER;
+            maxIter = SFDP_ITER;
+        }
+        final int iter = (int) Math.max(MIN_ITER, Math.min(maxIter, budgetMillis / perIteration));
+        if (iter < maxIter) {
+            attrs.put("maxiter", Integer.toString(iter));
+        }
+        return new Choice(engine, attrs, nodes, edges, clusters, iter * perIteration);
+    }
+
+    private static int[] count(String src) {
+        final int[] counts = new int[3];
+        try {
+            Parser.read(src, new ParserHandler() {
+                private final Set<String> nodes = new HashSet<>();
+
+                @Override
+                public void startSubgraph(Label name) {
+                    if (name != null && name.value().startsWith("cluster")) {
+                        counts[2]++;
+                    }
+                }
+
+                @Override
+                public void node(Label name, Map<String, Label> attrs) {
+                    add(name);
+                }
+
+                @Override
+                public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+                    counts[1]++;
+                    if (!from.isSubgraph()) {
+                        add(from.node());
+                    }
+                    if (!to.isSubgraph()) {
+                        add(to.node());
+                    }
+                }
+
+                private void add(Label node) {
+                    if (nodes.add(node.value())) {
+                        counts[0]++;
+                    }
+                }
+            });
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read graph to choose a layout", e);
+        }
+        return counts;
+    }
+
+    /**
+     * The engine and attributes chosen for a graph.
+     */
+    public static final class Choice {
+        private final Engine engine;
+        private final Map<String, String> attributes;
+        private final int nodes;
+        private final int edges;
+        private final int clusters;
+        private final double estimatedMillis;
+
+        Choice(Engine engine, Map<String, String> attributes, int nodes, int edges, int clusters,
+               double estimatedMillis) {
+            this.engine = engine;
+            this.attributes = Collections.unmodifiableMap(attributes);
+            this.nodes = nodes;
+            this.edges = edges;
+            this.clusters = clusters;
+            this.estimatedMillis = estimatedMillis;
+        }
+
+        public Engine engine() {
+            return engine;
+        }
+
+        /**
+         * @return the graph attributes that limit the effort of the engine, sorted by name
+         */
+        public Map<String, String> attributes() {
+            return attributes;
+        }
+
+        public int nodes() {
+            return nodes;
+        }
+
+        public int edges() {
+            return edges;
+        }
+
+        public int clusters() {
+            return clusters;
+        }
+
+        public double estimatedMillis() {
+            return estimatedMillis;
+        }
+
+        /**
+         * @return the source with the chosen attributes added at the beginning of the graph,
+         * so attributes that are set in the graph itself still take precedence.
+         */
+        String apply(String src) {
+            if (attributes.isEmpty()) {
+                return src;
+            }
+            final int start = bodyStart(src);
+            if (start < 0) {
+                return src;
+            }
+            final StringBuilder s = new StringBuilder(src.length() + 64).append(src, 0, start + 1).append("\ngraph [");
+            boolean first = true;
+            for (final Map.Entry<String, String> attr : attributes.entrySet()) {
+                if (!first) {
+                    s.append(',');
+                }
+                first = false;
+                s.append('"').append(attr.getKey()).append("\"=\"").append(attr.getValue()).append('"');
+            }
+            return s.append("]\n").append(src, start + 1, src.length()).toString();
+        }
+
+        private static int bodyStart(String src) {
+            boolean quoted = false;
+            for (int i = 0; i < src.length(); i++) {
+                final char c = src.charAt(i);
+                if (c == '"' && (i == 0 || src.charAt(i - 1) != '\\')) {
+                    quoted = !quoted;
+                } else if (c == '{' && !quoted) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return engine + " " + attributes + " for " + nodes + " nodes, " + edges + " edges, "
+                    + clusters + " clusters, estimated " + Math.round(estimatedMillis) + "ms";
+        }
+    }
+}
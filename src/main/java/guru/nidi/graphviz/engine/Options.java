@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,7 +54,8 @@ public final class Options {
             MEMORY = Pattern.compile("totalMemory:'(.*?)'"),
             Y_INVERT = Pattern.compile("yInvert:(.*?)[, }]"),
             BASE_DIR = Pattern.compile("basedir:'(.*?)'"),
-            IMAGES = Pattern.compile("images:\\[(.*?)]");
+            IMAGES = Pattern.compile("images:\\[(.*?)]"),
+            TIMEOUT = Pattern.compile("timeout:'(.*?)'");
 
     final Engine engine;
     final Format format;
@@ -61,19 +63,23 @@ public final class Options {
     final Boolean yInvert;
     final File basedir;
     final List<Image> images;
+    final Deadline deadline;
+    final Priority priority;
 
     private Options(Engine engine, Format format, Integer totalMemory,
-                    Boolean yInvert, File basedir, List<Image> images) {
+                    Boolean yInvert, File basedir, List<Image> images, Deadline deadline, Priority priority) {
         this.engine = engine;
         this.format = format;
         this.totalMemory = totalMemory;
         this.yInvert = yInvert;
         this.basedir = basedir;
         this.images = images;
+        this.deadline = deadline;
+        this.priority = priority;
     }
 
     public static Options create() {
-        return new Options(Engine.DOT, Format.SVG, null, null, new File("."), emptyList());
+        return new Options(Engine.DOT, Format.SVG, null, null, new File("."), emptyList(), null, Priority.INTERACTIVE);
     }
 
     public static Options fromJson(String json) {
@@ -90,6 +96,8 @@ public final class Options {
         final Matcher imgs = IMAGES.matcher(json);
         final boolean hasImgs = imgs.find() && imgs.group(1).length() > 0;
         final String[] imgList = hasImgs ? imgs.group(1).split("},\\{") : new String[0];
+        final Matcher timeout = TIMEOUT.matcher(json);
+        final boolean hasTimeout = timeout.find();
 
         return new Options(
                 Engine.valueOf(engine.group(1)),
@@ -97,33 +105,51 @@ public final class Options {
                 hasMemory ? Integer.parseInt(memory.group(1)) : null,
                 hasYInvert ? Boolean.parseBoolean(yInvert.group(1)) : null,
                 new File(hasBasedir ? basedir.group(1) : "."),
-                Arrays.stream(imgList).map(Image::fromJson).collect(toList()));
+                Arrays.stream(imgList).map(Image::fromJson).collect(toList()),
+                hasTimeout ? Deadline.in(Long.parseLong(timeout.group(1)), TimeUnit.MILLISECONDS) : null,
+                Priority.INTERACTIVE);
     }
 
     public Options engine(Engine engine) {
-        return new Options(engine, format, totalMemory, yInvert, basedir, images);
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
     }
 
     public Options format(Format format) {
-        return new Options(engine, format, totalMemory, yInvert, basedir, images);
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
     }
 
     public Options totalMemory(Integer totalMemory) {
-        return new Options(engine, format, totalMemory, yInvert, basedir, images);
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
     }
 
     public Options yInvert(Boolean yInvert) {
-        return new Options(engine, format, totalMemory, yInvert, basedir, images);
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
     }
 
     public Options basedir(File basedir) {
-        return new Options(engine, format, totalMemory, yInvert, basedir, images);
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
+    }
+
+    /**
+     * Give up the rendering when the deadline is reached or cancelled.
+     * This is not part of the identity of the options.
+     */
+    public Options deadline(Deadline deadline) {
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
+    }
+
+    /**
+     * The lane used by the {@link AdmissionControl}.
+     * This is not part of the identity of the options.
+     */
+    public Options priority(Priority priority) {
+        return new Options(engine, format, totalMemory, yInvert, basedir, images, deadline, priority);
     }
 
     public Options image(String image) {
         final List<Image> imgs = new ArrayList<>(this.images);
         imgs.add(loadImage(image));
-        return new Options(engine, format, totalMemory, yInvert, basedir, imgs);
+        return new Options(engine, format, totalMemory, yInvert, basedir, imgs, deadline, priority);
     }
 
     private Image loadImage(String path) {
@@ -151,7 +177,9 @@ public final class Options {
         final String yInv = yInvert == null ? "" : (",yInvert:" + yInvert);
         final String base = ",basedir:'" + basedir.getAbsolutePath() + "'";
         final String imgs = ",images:[" + images.stream().map(Image::toJson).collect(joining(",")) + "]";
-        return "{" + form + eng + mem + yInv + base + imgs + "}";
+        final String timeout = raw && deadline != null && deadline.remainingMillis() != Long.MAX_VALUE
+                ? ",timeout:'" + deadline.remainingMillis() + "'" : "";
+        return "{" + form + eng + mem + yInv + base + imgs + timeout + "}";
     }
 
     @Override
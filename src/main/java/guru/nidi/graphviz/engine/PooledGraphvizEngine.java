@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * An engine that keeps a fixed number of instances of another engine.
+ * All instances are created and initialized once, every execution borrows one of them,
+ * so engines that are not thread safe can be used from any number of threads.
+ * This only renders in parallel if the instances do not share state:
+ * {@link GraphvizNashornEngine} (and so {@link GraphvizJdkEngine} on nashorn) uses one script engine
+ * for all instances, pooling it only serializes the renderings.
+ */
+public class PooledGraphvizEngine extends AbstractGraphvizEngine {
+    private final int size;
+    private final Supplier<? extends GraphvizEngine> factory;
+    private final List<GraphvizEngine> instances = new ArrayList<>();
+    private final ResourcePool<GraphvizEngine> idle = new ResourcePool<>(Collections.emptyList());
+
+    public PooledGraphvizEngine(Supplier<? extends GraphvizEngine> factory) {
+        this(Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    public PooledGraphvizEngine(int size, Supplier<? extends GraphvizEngine> factory) {
+        super(true);
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive, but is " + size);
+        }
+        this.size = size;
+        this.factory = factory;
+    }
+
+    @Override
+    protected void doInit() throws Exception {
+        try {
+            while (instances.size() < size) {
+                final GraphvizEngine instance = factory.get();
+                final BlockingQueue<Boolean> ok = new ArrayBlockingQueue<>(1);
+                instance.init(e -> ok.add(true), e -> ok.add(false));
+                if (!ok.take()) {
+                    throw new GraphvizException("Could not initialize " + instance);
+                }
+                instances.add(instance);
+            }
+        } catch (Exception e) {
+            // a failed instance cleans up itself, release the ones that were started successfully
+            try {
+                close();
+            } catch (GraphvizException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+        for (final GraphvizEngine instance : instances) {
+            idle.release(instance);
+        }
+    }
+
+    @Override
+    public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
+        final GraphvizEngine instance = idle.take(options.deadline);
+        try {
+            return instance.execute(src, options, rasterizer);
+        } finally {
+            idle.release(instance);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (final GraphvizEngine instance : instances) {
+                instance.close();
+            }
+        } catch (Exception e) {
+            throw new GraphvizException("Problem closing engine", e);
+        } finally {
+            instances.clear();
+            idle.clear();
+        }
+    }
+}
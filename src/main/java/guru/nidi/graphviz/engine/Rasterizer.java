@@ -24,6 +24,7 @@ import static guru.nidi.graphviz.engine.IoUtils.isOnClasspath;
 public interface Rasterizer {
 
     Rasterizer SALAMANDER = isOnClasspath("com.kitfox.svg.SVGDiagram") ? new SalamanderRasterizer() : null;
+    Rasterizer XDOT = new XdotRasterizer();
     Rasterizer DEFAULT = SALAMANDER;
 
     static Rasterizer builtIn(String format) {
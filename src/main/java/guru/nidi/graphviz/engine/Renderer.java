@@ -19,58 +19,75 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Locale.ENGLISH;
 
 public class Renderer {
     private final Graphviz graphviz;
     private final Consumer<Graphics2D> graphicsConfigurer;
     private final Format output;
+    private final LayoutPolicy.Choice layoutChoice;
 
-    Renderer(Graphviz graphviz, Consumer<Graphics2D> graphicsConfigurer, Format output) {
+    Renderer(Graphviz graphviz, Consumer<Graphics2D> graphicsConfigurer, Format output,
+             LayoutPolicy.Choice layoutChoice) {
         this.graphviz = graphviz;
         this.graphicsConfigurer = graphicsConfigurer;
         this.output = output;
+        this.layoutChoice = layoutChoice;
     }
 
     public Renderer withGraphics(Consumer<Graphics2D> graphicsConfigurer) {
-        return new Renderer(graphviz, graphicsConfigurer, output);
+        return new Renderer(graphviz, graphicsConfigurer, output, layoutChoice);
+    }
+
+    /**
+     * Give up rendering when the deadline is reached or cancelled.
+     */
+    public Renderer deadline(Deadline deadline) {
+        return new Renderer(graphviz.deadline(deadline), graphicsConfigurer, output, layoutChoice);
+    }
+
+    /**
+     * @return the engine and attributes chosen by the {@link LayoutPolicy} or null if no policy was used
+     */
+    public LayoutPolicy.Choice layoutChoice() {
+        return layoutChoice;
     }
 
     public String toString() {
-        return execute().map(file -> {
+        return toString(execute());
+    }
+
+    private String toString(EngineResult result) {
+        return result.map(file -> {
             throw new IllegalArgumentException("Expected a String result, but found a File."
                     + " Use toFile / toImage instead of toString or use a different Rasterizer (not the built-in).");
         }, string -> string);
     }
 
     public File toFile(File file) throws IOException {
-        return execute().mapIO(
-                fileRes -> toFile(fileRes, file),
-                string -> toFile(string, file));
+        return toFile(execute(), file);
     }
 
-    private File toFile(File source, File target) throws IOException {
-        final File out = withExt(target, getExt(source));
-        Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
-        Files.copy(source.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        return out;
+    private File toFile(EngineResult result, File file) throws IOException {
+        if (result.isText() && output.image) {
+            return result.mapIO(fileRes -> null, string -> toFile(string, file));
+        }
+        final File target = withExt(file, result.isText() ? output.fileExtension : result.extension(output.fileExtension));
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        result.moveTo(target.toPath());
+        return target;
     }
 
     private File toFile(String content, File file) throws IOException {
         final File target = withExt(file, output.fileExtension);
         Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
-        if (output.image) {
-            writeToFile(target, output.name().toLowerCase(ENGLISH), toImage(content));
-        } else {
-            try (final Writer out = new OutputStreamWriter(new FileOutputStream(target), UTF_8)) {
-                out.write(content);
-            }
-        }
+        writeToFile(target, output.name().toLowerCase(ENGLISH), toImage(content));
         return target;
     }
 
@@ -78,25 +95,26 @@ public class Renderer {
         return file.getName().contains(".") ? file : new File(file.getParentFile(), file.getName() + "." + ext);
     }
 
-    private String getExt(File file) {
-        return file.getName().substring(file.getName().lastIndexOf('.') + 1);
-    }
-
     public void toOutputStream(OutputStream outputStream) throws IOException {
-        execute().mapIO(
-                file -> Files.copy(file.toPath(), outputStream),
-                string -> toOutputStream(string, outputStream));
+        toOutputStream(execute(), outputStream);
     }
 
-    private long toOutputStream(String content, OutputStream outputStream) throws IOException {
-        if (output.image) {
-            writeToOutputStream(outputStream, output.name().toLowerCase(ENGLISH), toImage(content));
+    private Void toOutputStream(EngineResult result, OutputStream outputStream) throws IOException {
+        if (!result.isText()) {
+            result.transferTo(Channels.newChannel(outputStream));
+        } else if (output.image) {
+            result.mapIO(file -> null, string -> toOutputStream(string, outputStream));
         } else {
-            try (final Writer out = new OutputStreamWriter(outputStream, UTF_8)) {
-                out.write(content);
+            try (final OutputStream out = outputStream) {
+                result.transferTo(Channels.newChannel(out));
             }
         }
-        return 0;
+        return null;
+    }
+
+    private Void toOutputStream(String content, OutputStream outputStream) {
+        writeToOutputStream(outputStream, output.name().toLowerCase(ENGLISH), toImage(content));
+        return null;
     }
 
     public BufferedImage toImage() {
@@ -127,10 +145,68 @@ public class Renderer {
         }
     }
 
+    /**
+     * Render without blocking the calling thread.
+     * Engines that run an external process complete the result when the process exits,
+     * other engines and writing the result use the executor.
+     * The default executor is the common pool or, on Java 21 and later, uses virtual threads.
+     * Cancelling the returned future cancels the {@link #deadline(Deadline)}, if one is set.
+     */
+    public CompletableFuture<String> toStringAsync() {
+        return toStringAsync(Concurrency.executor());
+    }
+
+    public CompletableFuture<String> toStringAsync(Executor executor) {
+        return executeAsync(executor, this::toString);
+    }
+
+    public CompletableFuture<File> toFileAsync(File file) {
+        return toFileAsync(file, Concurrency.executor());
+    }
+
+    public CompletableFuture<File> toFileAsync(File file, Executor executor) {
+        return executeAsync(executor, result -> toFile(result, file));
+    }
+
+    public CompletableFuture<Void> toOutputStreamAsync(OutputStream outputStream) {
+        return toOutputStreamAsync(outputStream, Concurrency.executor());
+    }
+
+    public CompletableFuture<Void> toOutputStreamAsync(OutputStream outputStream, Executor executor) {
+        return executeAsync(executor, result -> toOutputStream(result, outputStream));
+    }
+
+    public CompletableFuture<BufferedImage> toImageAsync() {
+        return toImageAsync(Concurrency.executor());
+    }
+
+    public CompletableFuture<BufferedImage> toImageAsync(Executor executor) {
+        return executeAsync(executor, this::toImage);
+    }
+
     private EngineResult execute() {
         return graphviz.execute();
     }
 
+    private <T> CompletableFuture<T> executeAsync(Executor executor, IOFunction<EngineResult, T> action) {
+        final CompletableFuture<T> res = graphviz.executeAsync(executor).thenApplyAsync(result -> {
+            try {
+                return action.apply(result);
+            } catch (IOException e) {
+                throw new GraphvizException("Problem writing the result", e);
+            }
+        }, executor);
+        final Deadline deadline = graphviz.getOptions().deadline;
+        if (deadline != null) {
+            res.whenComplete((value, e) -> {
+                if (res.isCancelled()) {
+                    deadline.cancel();
+                }
+            });
+        }
+        return res;
+    }
+
     private void writeToFile(File output, String format, BufferedImage img) {
         try {
             ImageIO.write(img, format, output);
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A fixed set of resources that are lent to one caller at a time.
+ * Callers that find no idle resource wait in a fair queue, either blocking or with a {@link CompletableFuture}
+ * that does not occupy a thread. A waiting caller gives up as soon as its {@link Deadline} is reached or cancelled.
+ */
+final class ResourcePool<T> {
+    private final Deque<T> idle = new ArrayDeque<>();
+    private final Deque<CompletableFuture<T>> waiting = new ArrayDeque<>();
+
+    ResourcePool(Collection<? extends T> resources) {
+        idle.addAll(resources);
+    }
+
+    /**
+     * @return an idle resource or null if all are in use
+     */
+    synchronized T poll() {
+        return idle.poll();
+    }
+
+    /**
+     * @param maxWaiting the maximum number of waiting callers, if there are more, the future fails immediately
+     * @param deadline   how long to wait at most, null to wait forever
+     * @return the resource as soon as one is available
+     */
+    CompletableFuture<T> acquire(int maxWaiting, Deadline deadline) {
+        final CompletableFuture<T> res = new CompletableFuture<>();
+        synchronized (this) {
+            final T resource = idle.poll();
+            if (resource != null) {
+                res.complete(resource);
+                return res;
+            }
+            if (waiting.size() >= maxWaiting) {
+                res.completeExceptionally(new RejectedException());
+                return res;
+            }
+            waiting.add(res);
+        }
+        if (deadline != null) {
+            final Runnable unregister = deadline.onCancel(() -> {
+                synchronized (this) {
+                    if (!waiting.remove(res)) {
+                        return;
+                    }
+                }
+                res.completeExceptionally(new GraphvizException(deadline.reason()));
+            });
+            res.whenComplete((r, e) -> unregister.run());
+        }
+        return res;
+    }
+
+    /**
+     * Wait for a resource, blocking the current thread.
+     */
+    T take(Deadline deadline) {
+        final CompletableFuture<T> res = acquire(Integer.MAX_VALUE, deadline);
+        try {
+            return res.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!res.cancel(false)) {
+                release(res.join());
+            }
+            throw new GraphvizException("Interrupted while waiting", e);
+        }
+    }
+
+    static RuntimeException unwrap(Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RuntimeException
+                ? (RuntimeException) cause
+                : new GraphvizException(cause.getMessage(), cause);
+    }
+
+    /**
+     * Give a resource back, it is handed to the longest waiting caller, if any.
+     */
+    void release(T resource) {
+        while (true) {
+            final CompletableFuture<T> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    idle.add(resource);
+                    return;
+                }
+            }
+            // a waiter that gave up (e.g. was interrupted) does not take it
+            if (next.complete(resource)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forget all idle resources.
+     */
+    synchronized void clear() {
+        idle.clear();
+    }
+
+    synchronized int waiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Thrown by {@link #acquire(int, Deadline)} when too many callers are waiting.
+     */
+    static final class RejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException() {
+            super(null, null, false, false);
+        }
+    }
+}
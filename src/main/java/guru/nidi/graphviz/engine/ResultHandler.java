@@ -17,11 +17,14 @@ package guru.nidi.graphviz.engine;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 //public because of nashorn
 public class ResultHandler {
+    @SuppressWarnings("RedundantStringConstructorCall")
+    private static final String CANCELLED = new String("cancelled");
     private final BlockingQueue<String> value = new ArrayBlockingQueue<>(1);
-    private boolean ok;
+    private volatile boolean ok;
 
     public void setResult(String result) {
         ok = true;
@@ -33,6 +36,35 @@ public class ResultHandler {
         value.add(error);
     }
 
+    /**
+     * Stop waiting for the result, if it has not already arrived.
+     */
+    public void cancel() {
+        value.offer(CANCELLED);
+    }
+
+    /**
+     * Wait for the result, but not longer than the deadline.
+     */
+    public String waitFor(Deadline deadline) {
+        final Runnable unregister = deadline.onCancel(this::cancel);
+        try {
+            final String v = value.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            if (v == null || v == CANCELLED) {
+                deadline.check();
+                throw new GraphvizException("Rendering deadline exceeded");
+            }
+            if (ok) {
+                return v;
+            }
+            throw new GraphvizException(v);
+        } catch (InterruptedException e) {
+            throw new GraphvizException("Waiting for result interrupted", e);
+        } finally {
+            unregister.run();
+        }
+    }
+
     public String waitFor() {
         try {
             final String v = value.take();
@@ -56,7 +56,7 @@ class SalamanderRasterizer extends SvgRasterizer {
         }
     }
 
-    private void configGraphics(Graphics2D graphics) {
+    static void configGraphics(Graphics2D graphics) {
         graphics.setRenderingHint(KEY_ALPHA_INTERPOLATION, VALUE_ALPHA_INTERPOLATION_QUALITY);
         graphics.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
         graphics.setRenderingHint(KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_QUALITY);
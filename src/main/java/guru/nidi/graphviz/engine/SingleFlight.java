@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lets concurrent calls with the same key share one execution.
+ * The first caller (the leader) executes, callers arriving while it runs wait for its result.
+ * A flight is closed before its result is published, so later callers start a new execution.
+ * If the leader gives up because of its own {@link Deadline}, the waiting callers execute themselves.
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * @param share makes the result usable by several callers, only called if there are any waiting
+     */
+    V execute(K key, Deadline deadline, Supplier<V> action, UnaryOperator<V> share) {
+        while (true) {
+            final Flight<V> own = new Flight<>();
+            final Flight<V> flight = flights.putIfAbsent(key, own);
+            if (flight == null) {
+                return lead(key, own, deadline, action, share);
+            }
+            if (flight.join()) {
+                final V res = await(flight, deadline);
+                if (res != null) {
+                    return res;
+                }
+            }
+        }
+    }
+
+    /**
+     * Like {@link #execute(Object, Deadline, Supplier, UnaryOperator)},
+     * but the action and the waiting callers do not block a thread.
+     */
+    CompletableFuture<V> executeAsync(K key, Deadline deadline, Supplier<CompletableFuture<V>> action,
+                                      UnaryOperator<V> share) {
+        final Flight<V> own = new Flight<>();
+        final Flight<V> flight = flights.putIfAbsent(key, own);
+        if (flight == null) {
+            return leadAsync(key, own, deadline, action, share);
+        }
+        if (!flight.join()) {
+            return executeAsync(key, deadline, action, share);
+        }
+        return follow(flight, deadline).thenCompose(res -> res != null
+                ? CompletableFuture.completedFuture(res)
+                : executeAsync(key, deadline, action, share));
+    }
+
+    private V lead(K key, Flight<V> flight, Deadline deadline, Supplier<V> action, UnaryOperator<V> share) {
+        final V res;
+        try {
+            res = action.get();
+        } catch (RuntimeException | Error e) {
+            fail(key, flight, deadline, e);
+            throw e;
+        }
+        return complete(key, flight, res, share);
+    }
+
+    private CompletableFuture<V> leadAsync(K key, Flight<V> flight, Deadline deadline,
+                                           Supplier<CompletableFuture<V>> action, UnaryOperator<V> share) {
+        final CompletableFuture<V> started;
+        try {
+            started = action.get();
+        } catch (RuntimeException | Error e) {
+            fail(key, flight, deadline, e);
+            final CompletableFuture<V> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return started.handle((res, e) -> {
+            if (e != null) {
+                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                fail(key, flight, deadline, cause);
+                throw new CompletionException(cause);
+            }
+            return complete(key, flight, res, share);
+        });
+    }
+
+    private void fail(K key, Flight<V> flight, Deadline deadline, Throwable e) {
+        flights.remove(key, flight);
+        flight.close();
+        if (deadline != null && deadline.isCancelled()) {
+            flight.result.complete(null);
+        } else {
+            flight.result.completeExceptionally(e);
+        }
+    }
+
+    private V complete(K key, Flight<V> flight, V res, UnaryOperator<V> share) {
+        flights.remove(key, flight);
+        final V shared = flight.close() > 0 ? share.apply(res) : res;
+        flight.result.complete(shared);
+        return shared;
+    }
+
+    private V await(Flight<V> flight, Deadline deadline) {
+        try {
+            return follow(flight, deadline).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : new GraphvizException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Interrupted while waiting for rendering", e);
+        }
+    }
+
+    /*
+     * Every follower gets its own future, so its deadline can wake it up without affecting the others.
+     */
+    private CompletableFuture<V> follow(Flight<V> flight, Deadline deadline) {
+        final CompletableFuture<V> res = new CompletableFuture<>();
+        flight.result.whenComplete((value, error) -> {
+            if (error == null) {
+                res.complete(value);
+            } else {
+                res.completeExceptionally(error);
+            }
+        });
+        if (deadline != null) {
+            final Runnable unregister = deadline.onCancel(
+                    () -> res.completeExceptionally(new GraphvizException(deadline.reason())));
+            res.whenComplete((value, error) -> unregister.run());
+        }
+        return res;
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        private int followers;
+        private boolean closed;
+
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        synchronized int close() {
+            closed = true;
+            return followers;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.model.*;
+import guru.nidi.graphviz.parse.Parser;
+import guru.nidi.graphviz.parse.ParserException;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Applies the positions of a {@link Layout} to a graph with the same topology but possibly other styles.
+ * The result can be rendered with {@link Engine#NOP2} without running the layout again.
+ */
+final class StyledLayout {
+    private final Layout layout;
+    private final Map<String, Integer> edges = new HashMap<>();
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private StyledLayout(Layout layout) {
+        this.layout = layout;
+    }
+
+    static String apply(Layout layout, String src) {
+        try {
+            final MutableGraph graph = Parser.read(src);
+            final StyledLayout styled = new StyledLayout(layout);
+            addAttrs(graph.graphAttrs(), layout.graphAttrs.get(""));
+            styled.apply(graph);
+            return graph.toString();
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read graph to apply layout", e);
+        }
+    }
+
+    private void apply(MutableGraph graph) {
+        if (visited.add(graph)) {
+            for (final MutableNode node : graph.nodes()) {
+                apply(node);
+            }
+            for (final MutableGraph sub : graph.graphs()) {
+                if (!sub.name().isEmpty()) {
+                    final String name = (sub.isCluster() ? "cluster_" : "") + sub.name();
+                    addAttrs(sub.graphAttrs(), layout.graphAttrs.get(name));
+                }
+                apply(sub);
+            }
+            applyTargets(graph.links());
+        }
+    }
+
+    private void apply(MutableNode node) {
+        if (visited.add(node)) {
+            final String name = node.name().value();
+            addAttrs(node, layout.nodeAttrs.get(name));
+            for (final Link link : node.links()) {
+                final MutableNode to = targetNode(link.to());
+                if (to != null) {
+                    addAttrs(link.attrs(), layout.edgeAttrs.get(Layout.edgeKey(name, to.name().value(), edges)));
+                }
+            }
+            applyTargets(node.links());
+        }
+    }
+
+    private void applyTargets(List<Link> links) {
+        for (final Link link : links) {
+            final LinkTarget to = link.to();
+            final MutableNode node = targetNode(to);
+            if (node != null) {
+                apply(node);
+            } else if (to instanceof MutableGraph) {
+                apply((MutableGraph) to);
+            }
+        }
+    }
+
+    private static MutableNode targetNode(LinkTarget to) {
+        if (to instanceof PortNode) {
+            return (MutableNode) ((PortNode) to).node();
+        }
+        return to instanceof MutableNode ? (MutableNode) to : null;
+    }
+
+    private static void addAttrs(MutableAttributed<?, ?> target, Map<String, String> attrs) {
+        if (attrs != null) {
+            for (final Map.Entry<String, String> attr : attrs.entrySet()) {
+                target.add(attr.getKey(), attr.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.io.File;
+
+import static guru.nidi.graphviz.engine.XdotCanvas.format;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Writes drawing operations as svg elements, in the same structure as the svg output of graphviz.
+ */
+final class SvgCanvas implements Canvas {
+    private static final double PAD = 4;
+
+    private final StringBuilder s = new StringBuilder();
+    private String pen = "black";
+    private String fill = "black";
+    private double lineWidth = 1;
+    private String dash;
+    private String fontName = "Times-Roman";
+    private double fontSize = 14;
+    private int fontFlags;
+
+    SvgCanvas(double width, double height) {
+        final double w = width + 2 * PAD;
+        final double h = height + 2 * PAD;
+        s.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+                .append("<svg width=\"").append(Math.round(w)).append("pt\" height=\"").append(Math.round(h))
+                .append("pt\"\n viewBox=\"0.00 0.00 ").append(String.format(ENGLISH, "%.2f %.2f", w, h))
+                .append("\" xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n")
+                .append("<g id=\"graph0\" class=\"graph\" transform=\"scale(1 1) rotate(0) translate(")
+                .append(format(PAD)).append(' ').append(format(h - PAD)).append(")\">\n");
+    }
+
+    void open(String cls, String id, String title) {
+        s.append("<g id=\"").append(escape(id)).append("\" class=\"").append(cls).append("\">\n")
+                .append("<title>").append(escape(title)).append("</title>\n");
+    }
+
+    void close() {
+        s.append("</g>\n");
+    }
+
+    String finish() {
+        return s.append("</g>\n</svg>\n").toString();
+    }
+
+    @Override
+    public void pen(String color) {
+        pen = color;
+    }
+
+    @Override
+    public void fill(String color) {
+        fill = color;
+    }
+
+    @Override
+    public void style(String style) {
+        if (style.startsWith("setlinewidth(")) {
+            lineWidth = Double.parseDouble(style.substring(13, style.length() - 1));
+        } else if (style.equals("dashed")) {
+            dash = "5,2";
+        } else if (style.equals("dotted")) {
+            dash = "1,5";
+        } else if (style.equals("solid")) {
+            dash = null;
+        }
+    }
+
+    @Override
+    public void font(String name, double size) {
+        fontName = name;
+        fontSize = size;
+    }
+
+    @Override
+    public void fontFlags(int flags) {
+        fontFlags = flags;
+    }
+
+    @Override
+    public void ellipse(double x, double y, double rx, double ry, boolean filled) {
+        s.append("<ellipse").append(paint(filled)).append(" cx=\"").append(format(x)).append("\" cy=\"")
+                .append(format(-y)).append("\" rx=\"").append(format(rx)).append("\" ry=\"").append(format(ry))
+                .append("\"/>\n");
+    }
+
+    @Override
+    public void polygon(double[] points, boolean filled) {
+        s.append("<polygon").append(paint(filled)).append(" points=\"").append(points(points, true)).append("\"/>\n");
+    }
+
+    @Override
+    public void polyline(double[] points) {
+        s.append("<polyline").append(paint(false)).append(" points=\"").append(points(points, false)).append("\"/>\n");
+    }
+
+    @Override
+    public void bezier(double[] points) {
+        s.append("<path").append(paint(false)).append(" d=\"M").append(format(points[0])).append(',')
+                .append(format(-points[1])).append('C');
+        for (int i = 2; i < points.length; i += 2) {
+            s.append(i == 2 ? "" : " ").append(format(points[i])).append(',').append(format(-points[i + 1]));
+        }
+        s.append("\"/>\n");
+    }
+
+    @Override
+    public void text(double x, double y, int align, double width, String text) {
+        s.append("<text text-anchor=\"").append(align < 0 ? "start" : align > 0 ? "end" : "middle")
+                .append("\" x=\"").append(format(x)).append("\" y=\"").append(format(-y))
+                .append("\" font-family=\"").append(escape(fontName)).append("\"")
+                .append((fontFlags & 1) != 0 ? " font-weight=\"bold\"" : "")
+                .append((fontFlags & 2) != 0 ? " font-style=\"italic\"" : "")
+                .append((fontFlags & 4) != 0 ? " text-decoration=\"underline\"" : "")
+                .append(" font-size=\"").append(format(fontSize)).append("\"")
+                .append(color(" fill", pen)).append(">").append(escape(text)).append("</text>\n");
+    }
+
+    @Override
+    public void image(double x, double y, double width, double height, String file) {
+        s.append("<image xlink:href=\"").append(escape(new File(file).getAbsolutePath()))
+                .append("\" width=\"").append(format(width)).append("px\" height=\"").append(format(height))
+                .append("px\" preserveAspectRatio=\"xMinYMin meet\" x=\"").append(format(x)).append("\" y=\"")
+                .append(format(-y - height)).append("\"/>\n");
+    }
+
+    private String paint(boolean filled) {
+        return (filled ? color(" fill", fill) : " fill=\"none\"") + color(" stroke", pen)
+                + (lineWidth == 1 ? "" : " stroke-width=\"" + format(lineWidth) + "\"")
+                + (dash == null ? "" : " stroke-dasharray=\"" + dash + "\"");
+    }
+
+    private static String color(String attr, String color) {
+        if (color.startsWith("#") && color.length() == 9) {
+            final double opacity = Integer.parseInt(color.substring(7), 16) / 255d;
+            return attr + "=\"" + color.substring(0, 7) + "\"" + attr + "-opacity=\""
+                    + String.format(ENGLISH, "%f", opacity) + "\"";
+        }
+        return attr + "=\"" + escape(color) + "\"";
+    }
+
+    private static String points(double[] points, boolean closed) {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < points.length; i += 2) {
+            s.append(i == 0 ? "" : " ").append(format(points[i])).append(',').append(format(-points[i + 1]));
+        }
+        if (closed && points.length > 0) {
+            s.append(' ').append(format(points[0])).append(',').append(format(-points[1]));
+        }
+        return s.toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
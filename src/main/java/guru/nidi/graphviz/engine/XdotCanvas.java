@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes drawing operations in the format of the xdot attributes (_draw_, _ldraw_, ...).
+ */
+final class XdotCanvas implements Canvas {
+    private final StringBuilder s = new StringBuilder();
+
+    @Override
+    public void pen(String color) {
+        op("c").string(color);
+    }
+
+    @Override
+    public void fill(String color) {
+        op("C").string(color);
+    }
+
+    @Override
+    public void style(String style) {
+        op("S").string(style);
+    }
+
+    @Override
+    public void font(String name, double size) {
+        op("F").number(size).string(name);
+    }
+
+    @Override
+    public void fontFlags(int flags) {
+        op("t").number(flags);
+    }
+
+    @Override
+    public void ellipse(double x, double y, double rx, double ry, boolean filled) {
+        op(filled ? "E" : "e").number(x).number(y).number(rx).number(ry);
+    }
+
+    @Override
+    public void polygon(double[] points, boolean filled) {
+        op(filled ? "P" : "p").points(points);
+    }
+
+    @Override
+    public void polyline(double[] points) {
+        op("L").points(points);
+    }
+
+    @Override
+    public void bezier(double[] points) {
+        op("B").points(points);
+    }
+
+    @Override
+    public void text(double x, double y, int align, double width, String text) {
+        op("T").number(x).number(y).number(align).number(width).string(text);
+    }
+
+    @Override
+    public void image(double x, double y, double width, double height, String file) {
+        op("I").number(x).number(y).number(width).number(height).string(file);
+    }
+
+    boolean isEmpty() {
+        return s.length() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return s.toString();
+    }
+
+    private XdotCanvas op(String op) {
+        s.append(op).append(' ');
+        return this;
+    }
+
+    private XdotCanvas number(double value) {
+        s.append(format(value)).append(' ');
+        return this;
+    }
+
+    private XdotCanvas points(double[] points) {
+        number(points.length / 2);
+        for (final double point : points) {
+            number(point);
+        }
+        return this;
+    }
+
+    private XdotCanvas string(String value) {
+        s.append(value.getBytes(StandardCharsets.UTF_8).length).append(" -").append(value).append(' ');
+        return this;
+    }
+
+    static String format(double value) {
+        final double rounded = Math.round(value * 100) / 100d;
+        return rounded == (long) rounded ? Long.toString((long) rounded) : Double.toString(rounded);
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.parse.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Paints the drawing operations of {@link Format#XDOT} directly onto a {@link Graphics2D},
+ * without creating and parsing an SVG document.
+ */
+class XdotRasterizer implements Rasterizer {
+    private static final String[] DRAW_ATTRS = {"_draw_", "_ldraw_", "_hdraw_", "_tdraw_", "_hldraw_", "_tldraw_"};
+    private static final Map<String, Color> COLORS = new HashMap<>();
+
+    static {
+        try (final BufferedReader in = new BufferedReader(new InputStreamReader(
+                XdotRasterizer.class.getResourceAsStream("colors.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    final int pos = line.indexOf(' ');
+                    COLORS.put(line.substring(0, pos), new Color(Integer.parseInt(line.substring(pos + 1), 16)));
+                }
+            }
+        } catch (IOException e) {
+            throw new GraphvizException("Could not read color names", e);
+        }
+        COLORS.put("transparent", new Color(255, 255, 254, 0));
+        COLORS.put("none", new Color(255, 255, 254, 0));
+    }
+
+    @Override
+    public Format format() {
+        return Format.XDOT;
+    }
+
+    @Override
+    public BufferedImage rasterize(Graphviz graphviz, Consumer<Graphics2D> graphicsConfigurer, String input) {
+        final Painter painter = new Painter(graphviz, graphicsConfigurer);
+        try {
+            Parser.read(input, painter);
+        } catch (IOException | ParserException e) {
+            throw new GraphvizException("Could not read xdot", e);
+        }
+        if (painter.image == null) {
+            throw new GraphvizException("Xdot without bounding box");
+        }
+        painter.graphics.dispose();
+        return painter.image;
+    }
+
+    private static final class Painter implements ParserHandler {
+        private final Graphviz graphviz;
+        private final Consumer<Graphics2D> graphicsConfigurer;
+        private BufferedImage image;
+        private Graphics2D graphics;
+        private double top;
+        private double left;
+        private Color pen = Color.BLACK;
+        private Color fill = Color.BLACK;
+        private Font font = new Font(Font.SERIF, Font.PLAIN, 14);
+        private int fontFlags;
+        private BasicStroke stroke = new BasicStroke(1);
+
+        Painter(Graphviz graphviz, Consumer<Graphics2D> graphicsConfigurer) {
+            this.graphviz = graphviz;
+            this.graphicsConfigurer = graphicsConfigurer;
+        }
+
+        @Override
+        public void graphAttributes(Map<String, Label> attrs) {
+            final Label bb = attrs.get("bb");
+            if (image == null && bb != null) {
+                createImage(bb.value());
+            }
+            draw(attrs);
+        }
+
+        @Override
+        public void node(Label name, Map<String, Label> attrs) {
+            draw(attrs);
+        }
+
+        @Override
+        public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+            draw(attrs);
+        }
+
+        private void createImage(String bb) {
+            final String[] parts = bb.split(",");
+            left = Double.parseDouble(parts[0]);
+            top = Double.parseDouble(parts[3]);
+            final double pixelScale = graphviz.dpi() / 72;
+            final double bbWidth = Double.parseDouble(parts[2]) - left;
+            final double bbHeight = top - Double.parseDouble(parts[1]);
+            double w = bbWidth * pixelScale;
+            double h = bbHeight * pixelScale;
+            if (graphviz.width > 0 && graphviz.height > 0) {
+                w = graphviz.width;
+                h = graphviz.height;
+            } else if (graphviz.width > 0) {
+                h *= graphviz.width / w;
+                w = graphviz.width;
+            } else if (graphviz.height > 0) {
+                w *= graphviz.height / h;
+                h = graphviz.height;
+            }
+            final int width = (int) Math.max(1, Math.round(w * graphviz.scale));
+            final int height = (int) Math.max(1, Math.round(h * graphviz.scale));
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            graphics = image.createGraphics();
+            SalamanderRasterizer.configGraphics(graphics);
+            if (graphicsConfigurer != null) {
+                graphicsConfigurer.accept(graphics);
+            }
+            graphics.scale(bbWidth == 0 ? 1 : width / bbWidth, bbHeight == 0 ? 1 : height / bbHeight);
+        }
+
+        private void draw(Map<String, Label> attrs) {
+            for (final String attr : DRAW_ATTRS) {
+                final Label ops = attrs.get(attr);
+                if (ops != null) {
+                    if (graphics == null) {
+                        throw new GraphvizException("Xdot drawing operations before the bounding box");
+                    }
+                    draw(new Ops(ops.value()));
+                }
+            }
+        }
+
+        private void draw(Ops ops) {
+            while (ops.hasNext()) {
+                final char op = ops.op();
+                switch (op) {
+                    case 'E':
+                    case 'e':
+                        ellipse(op == 'E', ops.number(), ops.number(), ops.number(), ops.number());
+                        break;
+                    case 'P':
+                    case 'p':
+                    case 'L':
+                        path(op == 'P', op != 'L', ops.points(), false);
+                        break;
+                    case 'B':
+                    case 'b':
+                        path(op == 'b', false, ops.points(), true);
+                        break;
+                    case 'T':
+                        text(ops.number(), ops.number(), (int) ops.number(), ops.number(), ops.string());
+                        break;
+                    case 't':
+                        fontFlags = (int) ops.number();
+                        font = font.deriveFont(style(fontFlags));
+                        break;
+                    case 'F':
+                        final double size = ops.number();
+                        font = font(ops.string(), size * graphviz.fontAdjust);
+                        break;
+                    case 'C':
+                        fill = color(ops.string());
+                        break;
+                    case 'c':
+                        pen = color(ops.string());
+                        break;
+                    case 'S':
+                        style(ops.string());
+                        break;
+                    case 'I':
+                        image(ops.number(), ops.number(), ops.number(), ops.number(), ops.string());
+                        break;
+                    default:
+                        throw new GraphvizException("Unknown xdot operation '" + op + "'");
+                }
+            }
+        }
+
+        private void ellipse(boolean filled, double x, double y, double w, double h) {
+            final Ellipse2D e = new Ellipse2D.Double(x - w - left, top - y - h, 2 * w, 2 * h);
+            if (filled) {
+                graphics.setColor(fill);
+                graphics.fill(e);
+            }
+            stroke(e);
+        }
+
+        private void path(boolean filled, boolean closed, double[] points, boolean bezier) {
+            final Path2D.Double path = new Path2D.Double();
+            path.moveTo(points[0] - left, top - points[1]);
+            if (bezier) {
+                for (int i = 2; i + 5 < points.length; i += 6) {
+                    path.curveTo(points[i] - left, top - points[i + 1], points[i + 2] - left, top - points[i + 3],
+                            points[i + 4] - left, top - points[i + 5]);
+                }
+            } else {
+                for (int i = 2; i + 1 < points.length; i += 2) {
+                    path.lineTo(points[i] - left, top - points[i + 1]);
+                }
+            }
+            if (closed || filled) {
+                path.closePath();
+            }
+            if (filled) {
+                graphics.setColor(fill);
+                graphics.fill(path);
+            }
+            stroke(path);
+        }
+
+        private void stroke(Shape shape) {
+            graphics.setColor(pen);
+            graphics.setStroke(stroke);
+            graphics.draw(shape);
+        }
+
+        private void text(double x, double y, int align, double width, String text) {
+            graphics.setColor(pen);
+            graphics.setFont(font);
+            final double measured = graphics.getFontMetrics().getStringBounds(text, graphics).getWidth();
+            final float tx = (float) (x - left - measured * (align + 1) / 2);
+            final float ty = (float) (top - y);
+            graphics.drawString(text, tx, ty);
+            if ((fontFlags & 4) != 0) {
+                graphics.draw(new Line2D.Double(tx, ty + 1, tx + measured, ty + 1));
+            }
+        }
+
+        private void image(double x, double y, double w, double h, String name) {
+            try {
+                final File file = new File(name).isAbsolute()
+                        ? new File(name) : new File(graphviz.getOptions().basedir, name);
+                final BufferedImage img = ImageIO.read(file);
+                if (img != null) {
+                    graphics.drawImage(img, (int) Math.round(x - left), (int) Math.round(top - y - h),
+                            (int) Math.round(w), (int) Math.round(h), null);
+                }
+            } catch (IOException e) {
+                throw new GraphvizException("Could not read image " + name, e);
+            }
+        }
+
+        private void style(String style) {
+            if (style.startsWith("setlinewidth(")) {
+                stroke = stroke(Float.parseFloat(style.substring(13, style.length() - 1)), stroke.getDashArray());
+            } else if (style.equals("dashed")) {
+                stroke = stroke(stroke.getLineWidth(), new float[]{5, 2});
+            } else if (style.equals("dotted")) {
+                stroke = stroke(stroke.getLineWidth(), new float[]{1, 5});
+            } else if (style.equals("solid")) {
+                stroke = stroke(stroke.getLineWidth(), null);
+            } else if (style.equals("bold")) {
+                stroke = stroke(2, stroke.getDashArray());
+            }
+        }
+
+        private static BasicStroke stroke(float width, float[] dash) {
+            return new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10, dash, 0);
+        }
+
+        private Font font(String name, double size) {
+            return LabelBlock.awtFont(name, size, style(fontFlags));
+        }
+
+        private static int style(int flags) {
+            return ((flags & 1) != 0 ? Font.BOLD : 0) | ((flags & 2) != 0 ? Font.ITALIC : 0);
+        }
+
+        static Color color(String color) {
+            final String c = color.startsWith("[") || color.startsWith("(") ? firstStop(color) : color;
+            if (c.startsWith("#") && (c.length() == 7 || c.length() == 9)) {
+                final int rgb = Integer.parseInt(c.substring(1, 7), 16);
+                final int alpha = c.length() == 9 ? Integer.parseInt(c.substring(7), 16) : 255;
+                return new Color(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff, alpha);
+            }
+            final String name = c.toLowerCase(Locale.ENGLISH);
+            final Color named = COLORS.get(name.startsWith("/x11/") || name.startsWith("/svg/")
+                    ? name.substring(5) : name);
+            if (named == null) {
+                throw new GraphvizException("Unknown color '" + color + "'");
+            }
+            return named;
+        }
+
+        private static String firstStop(String gradient) {
+            final String[] parts = gradient.substring(1, gradient.length() - 1).trim().split("\\s+");
+            for (final String part : parts) {
+                if (part.startsWith("#")) {
+                    return part;
+                }
+            }
+            return "black";
+        }
+    }
+
+    /**
+     * The drawing operations in an xdot attribute.
+     * Strings are given as {@code n -bytes}, where n is the number of UTF-8 encoded bytes.
+     */
+    private static final class Ops {
+        private final String s;
+        private int pos;
+
+        Ops(String s) {
+            this.s = s;
+        }
+
+        boolean hasNext() {
+            skipSpace();
+            return pos < s.length();
+        }
+
+        char op() {
+            skipSpace();
+            return s.charAt(pos++);
+        }
+
+        double number() {
+            skipSpace();
+            final int start = pos;
+            while (pos < s.length() && !Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+            return Double.parseDouble(s.substring(start, pos));
+        }
+
+        double[] points() {
+            final double[] points = new double[2 * (int) number()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = number();
+            }
+            return points;
+        }
+
+        String string() {
+            int bytes = (int) number();
+            skipSpace();
+            if (pos >= s.length() || s.charAt(pos) != '-') {
+                throw new GraphvizException("Invalid xdot string at position " + pos + " in '" + s + "'");
+            }
+            pos++;
+            final int start = pos;
+            while (bytes > 0 && pos < s.length()) {
+                final int cp = s.codePointAt(pos);
+                bytes -= new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8).length;
+                pos += Character.charCount(cp);
+            }
+            return s.substring(start, pos);
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import guru.nidi.graphviz.attribute.*;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Finds node and edge attributes that are shared by all or most elements of a (sub)graph,
+ * so that the {@link Serializer} can emit them once as {@code node [...]} / {@code edge [...]} defaults.
+ * An attribute is only hoisted if every element in the scope defines it. Elements with a different value
+ * keep their explicit value, so the resulting DOT is semantically unchanged.
+ */
+final class AttributeHoister {
+    private static final double MIN_SHARE = .5;
+    private static final int MIN_COUNT = 2;
+
+    private final boolean useDir;
+    private final Map<MutableGraph, Defaults> defaults = new IdentityHashMap<>();
+
+    AttributeHoister(MutableGraph graph, boolean useDir) {
+        this.useDir = useDir;
+        hoist(graph, new Defaults());
+    }
+
+    MapAttributes<ForNode> nodeDefaults(MutableGraph graph) {
+        return defaults(graph).hoistedNodes;
+    }
+
+    MapAttributes<ForLink> linkDefaults(MutableGraph graph) {
+        return defaults(graph).hoistedLinks;
+    }
+
+    /**
+     * @return the given attributes without the entries that are inherited from the hoisted defaults of the graph.
+     */
+    MapAttributes<ForNode> nodeAttrs(MutableGraph graph, Attributes<?> attrs) {
+        return withoutDefaults(attrs, defaults(graph).nodes);
+    }
+
+    MapAttributes<ForLink> linkAttrs(MutableGraph graph, Attributes<?> attrs) {
+        return withoutDefaults(attrs, defaults(graph).links);
+    }
+
+    private Defaults defaults(MutableGraph graph) {
+        final Defaults d = defaults.get(graph);
+        return d == null ? new Defaults() : d;
+    }
+
+    private void hoist(MutableGraph graph, Defaults inherited) {
+        if (defaults.containsKey(graph)) {
+            return;
+        }
+        final Scope scope = new Scope();
+        scope.collect(graph);
+        final Defaults d = new Defaults(inherited);
+        defaults.put(graph, d);
+        for (final Entry<String, Object> hoisted : common(scope.nodes, scope.nodeKeys, inherited.nodes).entrySet()) {
+            d.hoistedNodes.add(hoisted.getKey(), hoisted.getValue());
+            d.nodes.put(hoisted.getKey(), hoisted.getValue());
+        }
+        if (useDir) {
+            scope.linkKeys.add("dir");
+        }
+        for (final Entry<String, Object> hoisted : common(scope.links, scope.linkKeys, inherited.links).entrySet()) {
+            d.hoistedLinks.add(hoisted.getKey(), hoisted.getValue());
+            d.links.put(hoisted.getKey(), hoisted.getValue());
+        }
+        for (final MutableGraph sub : scope.graphs) {
+            hoist(sub, d);
+        }
+    }
+
+    private Map<String, Object> common(Collection<? extends Attributes<?>> elements,
+                                       Set<String> excludedKeys, Map<String, Object> inherited) {
+        final Map<String, Object> res = new TreeMap<>();
+        if (elements.size() < MIN_COUNT) {
+            return res;
+        }
+        final Map<String, Map<Object, Integer>> counts = new HashMap<>();
+        for (final Attributes<?> element : elements) {
+            for (final Entry<String, Object> attr : element) {
+                counts.computeIfAbsent(attr.getKey(), k -> new HashMap<>()).merge(attr.getValue(), 1, Integer::sum);
+            }
+        }
+        for (final Entry<String, Map<Object, Integer>> count : counts.entrySet()) {
+            final Map<Object, Integer> values = count.getValue();
+            if (!excludedKeys.contains(count.getKey())
+                    && values.values().stream().mapToInt(Integer::intValue).sum() == elements.size()) {
+                final Entry<Object, Integer> max = Collections.max(values.entrySet(), Entry.comparingByValue());
+                if (max.getValue() >= MIN_COUNT && max.getValue() >= elements.size() * MIN_SHARE
+                        && !max.getKey().equals(inherited.get(count.getKey()))) {
+                    res.put(count.getKey(), max.getKey());
+                }
+            }
+        }
+        return res;
+    }
+
+    private static <F extends For> MapAttributes<F> withoutDefaults(Attributes<?> attrs, Map<String, Object> defaults) {
+        final MapAttributes<F> res = new MapAttributes<>();
+        for (final Entry<String, Object> attr : attrs) {
+            if (!attr.getValue().equals(defaults.get(attr.getKey()))) {
+                res.add(attr.getKey(), attr.getValue());
+            }
+        }
+        return res;
+    }
+
+    private static final class Defaults {
+        final Map<String, Object> nodes;
+        final Map<String, Object> links;
+        final MapAttributes<ForNode> hoistedNodes = new MapAttributes<>();
+        final MapAttributes<ForLink> hoistedLinks = new MapAttributes<>();
+
+        Defaults() {
+            nodes = new HashMap<>();
+            links = new HashMap<>();
+        }
+
+        Defaults(Defaults parent) {
+            nodes = new HashMap<>(parent.nodes);
+            links = new HashMap<>(parent.links);
+        }
+    }
+
+    /**
+     * All nodes, links and subgraphs that end up in the block of a graph, including nested subgraphs.
+     * Attributes that are set explicitly on any of the (sub)graphs are never hoisted.
+     */
+    private static final class Scope {
+        final Set<MutableNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Link> links = new ArrayList<>();
+        final List<MutableGraph> graphs = new ArrayList<>();
+        final Set<String> nodeKeys = new HashSet<>();
+        final Set<String> linkKeys = new HashSet<>();
+        private final Set<LinkSource> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private MutableGraph root;
+
+        void collect(MutableGraph graph) {
+            if (root == null) {
+                root = graph;
+            }
+            keys(graph.nodeAttrs, nodeKeys);
+            keys(graph.linkAttrs, linkKeys);
+            for (final MutableNode node : graph.nodes) {
+                visit(node, graph);
+            }
+            for (final MutableGraph sub : graph.subgraphs) {
+                visit(sub, graph);
+            }
+        }
+
+        private void visit(LinkSource source, MutableGraph owner) {
+            if (visited.add(source)) {
+                if (source instanceof MutableNode) {
+                    nodes.add((MutableNode) source);
+                } else if (source instanceof MutableGraph && source != owner) {
+                    final MutableGraph sub = (MutableGraph) source;
+                    if (owner == root) {
+                        graphs.add(sub);
+                    }
+                    collect(sub);
+                }
+                for (final Link link : source.links()) {
+                    links.add(link);
+                    visit(link.to.asLinkSource(), owner);
+                }
+            }
+        }
+
+        private void keys(Attributes<?> attrs, Set<String> keys) {
+            for (final Entry<String, Object> attr : attrs) {
+                keys.add(attr.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import guru.nidi.graphviz.attribute.*;
+
+import java.util.*;
+
+/**
+ * Builds a {@link MutableGraph} without going through the thread local {@link CreationContext}.
+ * Nodes are looked up by name in an index local to the builder, default node and link attributes
+ * are kept in the builder itself. Nested subgraphs get their own builder, just like nested creation contexts.
+ */
+public final class GraphBuilder {
+    private final MutableGraph graph;
+    private final Map<String, MutableNode> nodes;
+    private final MutableAttributed<GraphBuilder, ForNode> nodeAttrs = new SimpleMutableAttributed<>(this);
+    private final MutableAttributed<GraphBuilder, ForLink> linkAttrs = new SimpleMutableAttributed<>(this);
+
+    public GraphBuilder() {
+        this("", 16);
+    }
+
+    public GraphBuilder(String name, int expectedNodes) {
+        this(new MutableGraph(false, false, false, name,
+                new LinkedHashSet<>(capacity(expectedNodes)), new LinkedHashSet<>(), new ArrayList<>(),
+                null, null, null), expectedNodes);
+    }
+
+    public GraphBuilder(MutableGraph graph, int expectedNodes) {
+        this.graph = graph;
+        this.nodes = new HashMap<>(capacity(expectedNodes));
+    }
+
+    private static int capacity(int expected) {
+        return Math.max(16, (int) (expected / .75f) + 1);
+    }
+
+    public MutableGraph graph() {
+        return graph;
+    }
+
+    public GraphBuilder subgraph() {
+        return subgraph("", 16);
+    }
+
+    public GraphBuilder subgraph(String name, int expectedNodes) {
+        final GraphBuilder sub = new GraphBuilder(name, expectedNodes);
+        sub.graph.setDirected(graph.directed);
+        return sub;
+    }
+
+    public MutableAttributed<GraphBuilder, ForNode> nodeAttrs() {
+        return nodeAttrs;
+    }
+
+    public MutableAttributed<GraphBuilder, ForLink> linkAttrs() {
+        return linkAttrs;
+    }
+
+    public MutableNode node(String name) {
+        return node(Label.of(name));
+    }
+
+    /**
+     * Returns the node with the given name, creating it with the current default node attributes if needed.
+     * The node is not added to the graph, use {@link #add(LinkSource)} for this.
+     */
+    public MutableNode node(Label name) {
+        final MutableNode node = nodes.get(name.value());
+        if (node != null) {
+            return node;
+        }
+        final MutableNode created = new MutableNode(name).add(nodeAttrs);
+        nodes.put(name.value(), created);
+        return created;
+    }
+
+    public GraphBuilder add(LinkSource source) {
+        source.addTo(graph);
+        return this;
+    }
+
+    public GraphBuilder add(Collection<? extends LinkSource> sources) {
+        for (final LinkSource source : sources) {
+            source.addTo(graph);
+        }
+        return this;
+    }
+
+    public Link link(LinkSource from, LinkTarget to) {
+        return link(from, to, Attributes.attrs());
+    }
+
+    /**
+     * Adds a link with the current default link attributes and the given attributes to the source.
+     * The source is not added to the graph, use {@link #add(LinkSource)} for this.
+     */
+    public Link link(LinkSource from, LinkTarget to, Attributes<? extends ForLink> attrs) {
+        final Link link = new Link(from, target(to), Attributes.attrs(linkAttrs, attrs));
+        linksOf(from).addDirect(link);
+        return link;
+    }
+
+    private LinkTarget target(LinkTarget to) {
+        return to instanceof MutableNode ? new ImmutablePortNode((MutableNode) to, new Port(null, null)) : to;
+    }
+
+    private LinkList linksOf(LinkSource source) {
+        if (source instanceof MutableNode) {
+            return ((MutableNode) source).links;
+        }
+        if (source instanceof ImmutablePortNode) {
+            return ((ImmutablePortNode) source).node().links;
+        }
+        if (source instanceof MutableGraph) {
+            return ((MutableGraph) source).links;
+        }
+        throw new IllegalArgumentException("Unexpected link source " + source);
+    }
+}
@@ -22,20 +22,23 @@ import java.util.function.Function;
 
 class ImmutableGraph extends MutableGraph implements Graph {
     ImmutableGraph() {
+        this(false, false, false, "", new PersistentSet<>(), new PersistentSet<>(), new PersistentList<>(),
+                null, null, null);
+        CreationContext.current().ifPresent(ctx -> graphAttrs().add(ctx.graphAttrs()));
     }
 
     private ImmutableGraph(boolean strict, boolean directed, boolean cluster, String name,
-                           LinkedHashSet<MutableNode> nodes, LinkedHashSet<MutableGraph> subgraphs, List<Link> links,
-                           MutableAttributed<MutableGraph, ForNode> nodeAttributes,
-                           MutableAttributed<MutableGraph, ForLink> linkAttributes,
-                           MutableAttributed<MutableGraph, ForGraph> graphAttributes) {
+                           PersistentSet<MutableNode> nodes, PersistentSet<MutableGraph> subgraphs, List<Link> links,
+                           Attributes<? extends ForNode> nodeAttributes,
+                           Attributes<? extends ForLink> linkAttributes,
+                           Attributes<? extends ForGraph> graphAttributes) {
         super(strict, directed, cluster, name, nodes, subgraphs, links,
                 nodeAttributes, linkAttributes, graphAttributes);
     }
 
     private ImmutableGraph copyOfMut() {
         return new ImmutableGraph(strict, directed, cluster, name,
-                new LinkedHashSet<>(nodes), new LinkedHashSet<>(subgraphs), new ArrayList<>(links),
+                ((PersistentSet<MutableNode>) nodes).copy(), ((PersistentSet<MutableGraph>) subgraphs).copy(), links,
                 nodeAttrs, linkAttrs, graphAttrs);
     }
 
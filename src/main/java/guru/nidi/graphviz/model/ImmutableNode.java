@@ -21,7 +21,7 @@ import java.util.*;
 
 class ImmutableNode extends MutableNode implements Node {
     ImmutableNode(Label name) {
-        this(name, new ArrayList<>(), Attributes.attrs());
+        this(name, new PersistentList<>(), Attributes.attrs());
     }
 
     private ImmutableNode(Label name, List<Link> links, Attributes<? extends ForNode> attributes) {
@@ -53,7 +53,7 @@ class ImmutableNode extends MutableNode implements Node {
     }
 
     private ImmutableNode copyOfMut() {
-        return new ImmutableNode(name, new ArrayList<>(links), attributes.copy());
+        return new ImmutableNode(name, links, attributes.copy());
     }
 
     @Override
@@ -19,36 +19,62 @@ import java.util.*;
 
 import static java.util.stream.Collectors.toList;
 
-class LinkList extends ArrayList<Link> {
+class LinkList extends AbstractList<Link> implements RandomAccess {
     private final LinkSource owner;
+    private final List<Link> links;
 
     LinkList(LinkSource owner, List<Link> links) {
-        super(links);
         this.owner = owner;
+        final List<Link> source = links instanceof LinkList ? ((LinkList) links).links : links;
+        this.links = source instanceof PersistentList
+                ? ((PersistentList<Link>) source).copy()
+                : new ArrayList<>(source);
+    }
+
+    /**
+     * Adds a link that already originates from the owner, without resolving it via {@link LinkSource#linkTo}.
+     */
+    void addDirect(Link link) {
+        links.add(link);
+    }
+
+    @Override
+    public Link get(int index) {
+        return links.get(index);
+    }
+
+    @Override
+    public int size() {
+        return links.size();
     }
 
     @Override
     public Link set(int index, Link element) {
-        return super.set(index, owner.linkTo(element));
+        return links.set(index, owner.linkTo(element));
     }
 
     @Override
     public boolean add(Link link) {
-        return super.add(owner.linkTo(link));
+        return links.add(owner.linkTo(link));
     }
 
     @Override
     public void add(int index, Link element) {
-        super.add(index, owner.linkTo(element));
+        links.add(index, owner.linkTo(element));
+    }
+
+    @Override
+    public Link remove(int index) {
+        return links.remove(index);
     }
 
     @Override
     public boolean addAll(Collection<? extends Link> c) {
-        return super.addAll(c.stream().map(owner::linkTo).collect(toList()));
+        return links.addAll(c.stream().map(owner::linkTo).collect(toList()));
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends Link> c) {
-        return super.addAll(index, c.stream().map(owner::linkTo).collect(toList()));
+        return links.addAll(index, c.stream().map(owner::linkTo).collect(toList()));
     }
 }
@@ -40,7 +40,7 @@ public class MutableGraph implements LinkSource, LinkTarget {
     }
 
     protected MutableGraph(boolean strict, boolean directed, boolean cluster, String name,
-                           LinkedHashSet<MutableNode> nodes, LinkedHashSet<MutableGraph> subgraphs, List<Link> links,
+                           Set<MutableNode> nodes, Set<MutableGraph> subgraphs, List<Link> links,
                            Attributes<? extends ForNode> nodeAttrs,
                            Attributes<? extends ForLink> linkAttrs,
                            Attributes<? extends ForGraph> graphAttrs) {
@@ -58,7 +58,7 @@ public class MutableGraph implements LinkSource, LinkTarget {
 
     public MutableGraph copy() {
         return new MutableGraph(strict, directed, cluster, name,
-                new LinkedHashSet<>(nodes), new LinkedHashSet<>(subgraphs), links,
+                new LinkedHashSet<>(nodes), new LinkedHashSet<>(subgraphs), new ArrayList<>(links),
                 nodeAttrs, linkAttrs, graphAttrs);
     }
 
@@ -233,4 +233,8 @@ public class MutableGraph implements LinkSource, LinkTarget {
         return new Serializer(this).serialize();
     }
 
+    public String toCompactString() {
+        return new Serializer(this, true).serialize();
+    }
+
 }
@@ -40,7 +40,7 @@ public class MutableNode implements MutableAttributed<MutableNode, ForNode>, Lin
     }
 
     public MutableNode copy() {
-        return new MutableNode(name, links, attributes.copy());
+        return new MutableNode(name, new ArrayList<>(links), attributes.copy());
     }
 
     public final MutableNode setName(Label name) {
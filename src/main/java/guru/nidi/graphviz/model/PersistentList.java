@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import java.util.*;
+
+/**
+ * A list backed by a persistent vector (a 32-way trie with a tail buffer).
+ * The trie nodes are never modified in place, so {@link #copy()} is O(1) and
+ * {@link #add(Object)} / {@link #set(int, Object)} only copy the O(log n) nodes on the changed path.
+ * Inserting and removing elements rebuilds the trie in O(n), like shifting the elements of an {@link ArrayList}.
+ */
+final class PersistentList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY = new Object[0];
+
+    private int size;
+    private int shift;
+    private Object[] root;
+    private Object[] tail;
+
+    PersistentList() {
+        this(0, BITS, EMPTY, EMPTY);
+    }
+
+    PersistentList(Collection<? extends E> elements) {
+        this();
+        addAll(elements);
+    }
+
+    private PersistentList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    PersistentList<E> copy() {
+        return new PersistentList<>(size, shift, root, tail);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public E get(int index) {
+        @SuppressWarnings("unchecked") final E e = (E) leafFor(checkIndex(index))[index & MASK];
+        return e;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        final E old = get(index);
+        if (index >= tailOffset()) {
+            tail = tail.clone();
+            tail[index & MASK] = element;
+        } else {
+            root = set(shift, root, index, element);
+        }
+        return old;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (size - tailOffset() < WIDTH) {
+            tail = Arrays.copyOf(tail, tail.length + 1);
+            tail[tail.length - 1] = element;
+        } else {
+            if ((size >>> BITS) > (1 << shift)) {
+                root = new Object[]{root, newPath(shift, tail)};
+                shift += BITS;
+            } else {
+                root = pushTail(shift, root, tail);
+            }
+            tail = new Object[]{element};
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index == size) {
+            add(element);
+            return;
+        }
+        checkIndex(index);
+        final Object[] elements = toArray();
+        final Object[] res = new Object[elements.length + 1];
+        System.arraycopy(elements, 0, res, 0, index);
+        res[index] = element;
+        System.arraycopy(elements, index, res, index + 1, elements.length - index);
+        rebuild(res);
+    }
+
+    @Override
+    public E remove(int index) {
+        final E old = get(index);
+        final Object[] elements = toArray();
+        final Object[] res = new Object[elements.length - 1];
+        System.arraycopy(elements, 0, res, 0, index);
+        System.arraycopy(elements, index + 1, res, index, res.length - index);
+        rebuild(res);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        rebuild(EMPTY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rebuild(Object[] elements) {
+        size = 0;
+        shift = BITS;
+        root = EMPTY;
+        tail = EMPTY;
+        for (final Object element : elements) {
+            add((E) element);
+        }
+        modCount++;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        final int sub = ((size - 1) >>> level) & MASK;
+        final Object[] res = Arrays.copyOf(parent, Math.max(parent.length, sub + 1));
+        if (level == BITS) {
+            res[sub] = tailNode;
+        } else {
+            final Object[] child = sub < parent.length ? (Object[]) parent[sub] : null;
+            res[sub] = child == null
+                    ? newPath(level - BITS, tailNode)
+                    : pushTail(level - BITS, child, tailNode);
+        }
+        return res;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        return level == 0 ? node : new Object[]{newPath(level - BITS, node)};
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Object element) {
+        final Object[] res = node.clone();
+        if (level == 0) {
+            res[index & MASK] = element;
+        } else {
+            final int sub = (index >>> level) & MASK;
+            res[sub] = set(level - BITS, (Object[]) node[sub], index, element);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import java.util.*;
+
+/**
+ * An insertion ordered set backed by a hash array mapped trie (for membership) and a {@link PersistentList}
+ * (for the order). Like {@link PersistentList}, {@link #copy()} is O(1) and adding an element is O(log n),
+ * sharing all unchanged structure with previous copies. Elements cannot be removed.
+ */
+final class PersistentSet<E> extends AbstractSet<E> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private Object root;
+    private final PersistentList<E> order;
+
+    PersistentSet() {
+        this(null, new PersistentList<>());
+    }
+
+    PersistentSet(Collection<? extends E> elements) {
+        this();
+        addAll(elements);
+    }
+
+    private PersistentSet(Object root, PersistentList<E> order) {
+        this.root = root;
+        this.order = order;
+    }
+
+    PersistentSet<E> copy() {
+        return new PersistentSet<>(root, order.copy());
+    }
+
+    @Override
+    public int size() {
+        return order.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(root, o, hash(o), 0);
+    }
+
+    @Override
+    public boolean add(E e) {
+        final Object newRoot = add(root, e, hash(e), 0);
+        if (newRoot == root) {
+            return false;
+        }
+        root = newRoot;
+        order.add(e);
+        return true;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableList(order).iterator();
+    }
+
+    private static int hash(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+
+    private static boolean contains(Object node, Object o, int hash, int shift) {
+        if (node == null) {
+            return false;
+        }
+        if (node instanceof Collision) {
+            return ((Collision) node).indexOf(o) >= 0;
+        }
+        final Branch branch = (Branch) node;
+        final int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+            return false;
+        }
+        final Object entry = branch.entries[branch.index(bit)];
+        return entry instanceof Branch || entry instanceof Collision
+                ? contains(entry, o, hash, shift + BITS)
+                : Objects.equals(entry, o);
+    }
+
+    private static Object add(Object node, Object e, int hash, int shift) {
+        if (node == null) {
+            return new Branch(bit(hash, shift), new Object[]{e});
+        }
+        if (node instanceof Collision) {
+            final Collision collision = (Collision) node;
+            if (collision.indexOf(e) >= 0) {
+                return node;
+            }
+            final Object[] entries = Arrays.copyOf(collision.entries, collision.entries.length + 1);
+            entries[entries.length - 1] = e;
+            return new Collision(entries);
+        }
+        final Branch branch = (Branch) node;
+        final int bit = bit(hash, shift);
+        final int index = branch.index(bit);
+        if ((branch.bitmap & bit) == 0) {
+            final Object[] entries = new Object[branch.entries.length + 1];
+            System.arraycopy(branch.entries, 0, entries, 0, index);
+            entries[index] = e;
+            System.arraycopy(branch.entries, index, entries, index + 1, branch.entries.length - index);
+            return new Branch(branch.bitmap | bit, entries);
+        }
+        final Object entry = branch.entries[index];
+        final Object newEntry;
+        if (entry instanceof Branch || entry instanceof Collision) {
+            newEntry = add(entry, e, hash, shift + BITS);
+        } else if (Objects.equals(entry, e)) {
+            return node;
+        } else {
+            newEntry = pair(entry, hash(entry), e, hash, shift + BITS);
+        }
+        if (newEntry == entry) {
+            return node;
+        }
+        final Object[] entries = branch.entries.clone();
+        entries[index] = newEntry;
+        return new Branch(branch.bitmap, entries);
+    }
+
+    private static Object pair(Object a, int hashA, Object b, int hashB, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new Collision(new Object[]{a, b});
+        }
+        final int bitA = bit(hashA, shift);
+        final int bitB = bit(hashB, shift);
+        if (bitA == bitB) {
+            return new Branch(bitA, new Object[]{pair(a, hashA, b, hashB, shift + BITS)});
+        }
+        return new Branch(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static final class Branch {
+        final int bitmap;
+        final Object[] entries;
+
+        Branch(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private static final class Collision {
+        final Object[] entries;
+
+        Collision(Object[] entries) {
+            this.entries = entries;
+        }
+
+        int indexOf(Object o) {
+            for (int i = 0; i < entries.length; i++) {
+                if (Objects.equals(entries[i], o)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
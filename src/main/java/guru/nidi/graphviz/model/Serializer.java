@@ -24,9 +24,16 @@ import java.util.stream.Stream;
 class Serializer {
     private final MutableGraph graph;
     private final StringBuilder str;
+    private final boolean hoistAttributes;
+    private AttributeHoister hoister;
 
     Serializer(MutableGraph graph) {
+        this(graph, false);
+    }
+
+    Serializer(MutableGraph graph, boolean hoistAttributes) {
         this.graph = graph;
+        this.hoistAttributes = hoistAttributes;
         str = new StringBuilder();
     }
 
@@ -37,6 +44,9 @@ class Serializer {
 
     private void toplevelGraph(MutableGraph graph) {
         final boolean useDir = hasDifferentlyDirectedSubgraphs(graph);
+        if (hoistAttributes) {
+            hoister = new AttributeHoister(graph, useDir);
+        }
         str.append(graph.strict ? "strict " : "").append(graph.directed || useDir ? "digraph " : "graph ");
         if (!graph.name.isEmpty()) {
             str.append(SimpleLabel.of(graph.name).serialized()).append(' ');
@@ -81,8 +91,8 @@ class Serializer {
         nodes(graph, nodes);
         graphs(graphs, nodes, useDir);
 
-        edges(nodes, useDir);
-        edges(graphs, useDir);
+        edges(graph, nodes, useDir);
+        edges(graph, graphs, useDir);
         str.append('}');
     }
 
@@ -95,8 +105,13 @@ class Serializer {
 
     private void graphAttrs(MutableGraph graph) {
         attributes("graph", graph.graphAttrs);
-        attributes("node", graph.nodeAttrs);
-        attributes("edge", graph.linkAttrs);
+        if (hoister == null) {
+            attributes("node", graph.nodeAttrs);
+            attributes("edge", graph.linkAttrs);
+        } else {
+            attributes("node", Attributes.attrs(graph.nodeAttrs, hoister.nodeDefaults(graph)));
+            attributes("edge", Attributes.attrs(graph.linkAttrs, hoister.linkDefaults(graph)));
+        }
     }
 
     private int indexOfName(List<MutableNode> nodes, Label name) {
@@ -137,15 +152,15 @@ class Serializer {
         for (final MutableNode node : nodes) {
             if (!node.attributes.isEmpty()
                     || (graph.nodes.contains(node) && node.links.isEmpty() && !isLinked(node, nodes))) {
-                node(node);
+                node(graph, node);
                 str.append('\n');
             }
         }
     }
 
-    private void node(MutableNode node) {
+    private void node(MutableGraph graph, MutableNode node) {
         str.append(node.name.serialized());
-        attrs(node.attributes);
+        attrs(hoister == null ? node.attributes : hoister.nodeAttrs(graph, node.attributes));
     }
 
     private boolean isLinked(MutableNode node, List<MutableNode> nodes) {
@@ -183,13 +198,13 @@ class Serializer {
         }
     }
 
-    private void edges(List<? extends LinkSource> linkSources, boolean useDir) {
+    private void edges(MutableGraph graph, List<? extends LinkSource> linkSources, boolean useDir) {
         for (final LinkSource linkSource : linkSources) {
             for (final Link link : linkSource.links()) {
                 linkTarget(link.from, useDir);
-                str.append(graph.directed || useDir ? " -> " : " -- ");
+                str.append(this.graph.directed || useDir ? " -> " : " -- ");
                 linkTarget(link.to, useDir);
-                attrs(link.attributes);
+                attrs(hoister == null ? link.attributes : hoister.linkAttrs(graph, link.attributes));
                 str.append('\n');
             }
         }
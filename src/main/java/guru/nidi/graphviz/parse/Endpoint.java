@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.model.Compass;
+
+import java.util.Objects;
+
+/**
+ * One end of an edge: either a node (with an optional port) or a subgraph.
+ */
+public final class Endpoint {
+    private final Label node;
+    private final String record;
+    private final Compass compass;
+    private final int subgraph;
+
+    private Endpoint(Label node, String record, Compass compass, int subgraph) {
+        this.node = node;
+        this.record = record;
+        this.compass = compass;
+        this.subgraph = subgraph;
+    }
+
+    static Endpoint node(Label node, String record, Compass compass) {
+        return new Endpoint(node, record, compass, -1);
+    }
+
+    static Endpoint subgraph(int subgraph) {
+        return new Endpoint(null, null, null, subgraph);
+    }
+
+    public boolean isSubgraph() {
+        return node == null;
+    }
+
+    public Label node() {
+        return node;
+    }
+
+    public String record() {
+        return record;
+    }
+
+    public Compass compass() {
+        return compass;
+    }
+
+    /**
+     * @return the number of the subgraph in the order of {@link ParserHandler#startSubgraph(Label)} calls
+     */
+    public int subgraph() {
+        return subgraph;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Endpoint endpoint = (Endpoint) o;
+        return subgraph == endpoint.subgraph
+                && Objects.equals(node, endpoint.node)
+                && Objects.equals(record, endpoint.record)
+                && compass == endpoint.compass;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(node, record, compass, subgraph);
+    }
+
+    @Override
+    public String toString() {
+        return isSubgraph()
+                ? "subgraph " + subgraph
+                : node + (record == null ? "" : ":" + record) + (compass == null ? "" : ":" + compass);
+    }
+}
@@ -15,36 +15,117 @@
  */
 package guru.nidi.graphviz.parse;
 
-import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 import static guru.nidi.graphviz.parse.Token.*;
-import static java.util.Locale.ENGLISH;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
 
+/**
+ * Works directly on a char array. The array is either the complete input or a window
+ * that is refilled from a {@link Reader} or from a memory mapped UTF-8 file.
+ * Identifiers are created from index ranges of the array, symbols and keywords are shared token instances
+ * and recurring identifiers are served from a small cache.
+ */
 class Lexer {
-    private static final Map<String, Integer> KEYWORDS = new HashMap<>();
-
-    static {
-        KEYWORDS.put("strict", Token.STRICT);
-        KEYWORDS.put("graph", Token.GRAPH);
-        KEYWORDS.put("digraph", Token.DIGRAPH);
-        KEYWORDS.put("node", Token.NODE);
-        KEYWORDS.put("edge", Token.EDGE);
-        KEYWORDS.put("subgraph", Token.SUBGRAPH);
-    }
-
+    private static final String[] KEYWORDS = {"strict", "graph", "digraph", "node", "edge", "subgraph"};
+    private static final Token[] KEYWORD_TOKENS = {
+            new Token(STRICT, "strict"), new Token(GRAPH, "graph"), new Token(DIGRAPH, "digraph"),
+            new Token(NODE, "node"), new Token(EDGE, "edge"), new Token(SUBGRAPH, "subgraph")};
     private static final char CH_EOF = (char) -1;
-    private final PushbackReader in;
+    private static final Token
+            T_EOF = new Token(EOF, CH_EOF),
+            T_SEMICOLON = new Token(SEMICOLON, ';'),
+            T_COMMA = new Token(COMMA, ','),
+            T_BRACE_OPEN = new Token(BRACE_OPEN, '{'),
+            T_BRACE_CLOSE = new Token(BRACE_CLOSE, '}'),
+            T_EQUAL = new Token(EQUAL, '='),
+            T_BRACKET_OPEN = new Token(BRACKET_OPEN, '['),
+            T_BRACKET_CLOSE = new Token(BRACKET_CLOSE, ']'),
+            T_COLON = new Token(COLON, ':'),
+            T_MINUS_MINUS = new Token(MINUS_MINUS, "--"),
+            T_ARROW = new Token(ARROW, "->");
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_CACHED_LENGTH = 32;
+    private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+    private final String name;
+    private final Token[] cache = new Token[512];
+    private final StringBuilder text = new StringBuilder();
+    private Reader reader;
+    private ByteBuffer bytes;
+    private CharsetDecoder decoder;
+    private char[] buf;
+    private int limit;
+    private int p = -1;
+    private int mark = -1;
+    private int base;
+    private int line = 1;
+    private int lineStart;
     private char ch;
-    Position pos;
 
     Lexer(Reader in, String name) throws IOException {
-        this.in = new PushbackReader(in);
-        pos = new Position(name);
+        this(new char[BUFFER_SIZE], 0, name);
+        reader = in;
         readChar();
     }
 
+    Lexer(char[] chars, String name) throws IOException {
+        this(chars, chars.length, name);
+        readChar();
+    }
+
+    Lexer(CharBuffer chars, String name) throws IOException {
+        this(chars.hasArray() && chars.arrayOffset() + chars.position() == 0
+                ? chars.array() : toArray(chars), chars.remaining(), name);
+        readChar();
+    }
+
+    private Lexer(char[] buf, int limit, String name) {
+        this.buf = buf;
+        this.limit = limit;
+        this.name = name;
+    }
+
+    private static char[] toArray(CharBuffer chars) {
+        final char[] res = new char[chars.remaining()];
+        chars.duplicate().get(res);
+        return res;
+    }
+
+    /**
+     * Lexes a memory mapped UTF-8 file. Only a window of the decoded characters is held on the heap.
+     */
+    static Lexer mapped(Path file, String name) throws IOException {
+        final ByteBuffer mapped;
+        try (final FileChannel channel = FileChannel.open(file, READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.remaining() >= UTF8_BOM.length && mapped.get(0) == UTF8_BOM[0]
+                && mapped.get(1) == UTF8_BOM[1] && mapped.get(2) == UTF8_BOM[2]) {
+            mapped.position(UTF8_BOM.length);
+        }
+        final Lexer lexer = new Lexer(new char[BUFFER_SIZE], 0, name);
+        lexer.bytes = mapped;
+        lexer.decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        lexer.readChar();
+        return lexer;
+    }
+
+    Position position() {
+        return new Position(name, line, base + p - lineStart + 1);
+    }
+
     Token token() throws IOException {
         final Token sym = symbol();
         if (sym != null) {
@@ -57,32 +138,32 @@ class Lexer {
     private Token symbol() throws IOException {
         switch (ch) {
             case CH_EOF:
-                return new Token(EOF, ch);
+                return T_EOF;
             case ';':
-                return new Token(SEMICOLON, ch);
+                return T_SEMICOLON;
             case ',':
-                return new Token(COMMA, ch);
+                return T_COMMA;
             case '{':
-                return new Token(BRACE_OPEN, ch);
+                return T_BRACE_OPEN;
             case '}':
-                return new Token(BRACE_CLOSE, ch);
+                return T_BRACE_CLOSE;
             case '=':
-                return new Token(EQUAL, ch);
+                return T_EQUAL;
             case '[':
-                return new Token(BRACKET_OPEN, ch);
+                return T_BRACKET_OPEN;
             case ']':
-                return new Token(BRACKET_CLOSE, ch);
+                return T_BRACKET_CLOSE;
             case ':':
-                return new Token(COLON, ch);
+                return T_COLON;
             case '-':
                 final char next = readRawChar();
                 if (next == '-') {
-                    return new Token(MINUS_MINUS, "--");
+                    return T_MINUS_MINUS;
                 }
                 if (next == '>') {
-                    return new Token(ARROW, "->");
+                    return T_ARROW;
                 }
-                unread('-', next);
+                unread();
                 return null;
             default:
                 return null;
@@ -97,13 +178,14 @@ class Lexer {
     }
 
     private Token numeral() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        mark = p;
         do {
-            s.append(ch);
             readRawChar();
         } while (ch == '.' || (ch >= '0' && ch <= '9'));
-        sync();
-        return new Token(ID, SUB_NUMERAL, s.toString());
+        final Token token = id(SUB_NUMERAL, mark, p - mark);
+        mark = -1;
+        skip();
+        return token;
     }
 
     private Token ident() throws IOException {
@@ -116,7 +198,7 @@ class Lexer {
         if (isIdentStart()) {
             return simpleIdent();
         }
-        throw new ParserException(pos, "Found unexpected character '" + ch + "'");
+        throw new ParserException(position(), "Found unexpected character '" + ch + "'");
     }
 
     private boolean isIdentStart() {
@@ -124,36 +206,47 @@ class Lexer {
     }
 
     private Token quotedIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        text.setLength(0);
+        boolean escaped = false;
         readRawChar();
+        mark = p;
         while (ch != '"' && ch != CH_EOF) {
-            s.append(ch);
-            readRawChar();
-            if (ch == '"' && s.charAt(s.length() - 1) == '\\') {
-                s.replace(s.length() - 1, s.length(), "\"");
+            if (ch == '\\') {
                 readRawChar();
-            }
-            if (ch == '\n' && s.charAt(s.length() - 1) == '\\') {
-                s.delete(s.length() - 1, s.length());
+                if (ch == '"' || ch == '\n') {
+                    text.append(buf, mark, p - 1 - mark);
+                    if (ch == '"') {
+                        text.append('"');
+                    }
+                    escaped = true;
+                    readRawChar();
+                    mark = p;
+                }
+            } else {
                 readRawChar();
             }
         }
+        final Token token = escaped
+                ? new Token(ID, SUB_QUOTED, text.append(buf, mark, p - mark).toString())
+                : id(SUB_QUOTED, mark, p - mark);
+        mark = -1;
         readChar();
-        return new Token(ID, SUB_QUOTED, s.toString());
+        return token;
     }
 
     private Token htmlIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
         int level = 1;
         readRawChar();
+        mark = p;
         level = htmlLevel(level, ch);
         while ((ch != '>' || level > 0) && ch != CH_EOF) {
-            s.append(ch);
             readRawChar();
             level = htmlLevel(level, ch);
         }
+        final Token token = new Token(ID, SUB_HTML, new String(buf, mark, p - mark));
+        mark = -1;
         readChar();
-        return new Token(ID, SUB_HTML, s.toString());
+        return token;
     }
 
     private int htmlLevel(int level, char ch) {
@@ -167,67 +260,172 @@ class Lexer {
     }
 
     private Token simpleIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        mark = p;
         do {
-            s.append(ch);
             readRawChar();
         } while ((isIdentStart() || (ch >= '0' && ch <= '9')) && ch != CH_EOF);
-        sync();
-        final Integer key = KEYWORDS.get(s.toString().toLowerCase(ENGLISH));
-        return key == null ? new Token(ID, SUB_SIMPLE, s.toString()) : new Token(key, s.toString());
+        final Token key = keyword(mark, p - mark);
+        final Token token = key == null ? id(SUB_SIMPLE, mark, p - mark) : key;
+        mark = -1;
+        skip();
+        return token;
     }
 
-    private void sync() throws IOException {
-        if (ch <= ' ') {
-            readChar();
+    private Token keyword(int start, int len) {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            final String keyword = KEYWORDS[i];
+            if (keyword.length() == len) {
+                boolean exact = true;
+                int j = 0;
+                while (j < len && Character.toLowerCase(buf[start + j]) == keyword.charAt(j)) {
+                    exact &= buf[start + j] == keyword.charAt(j);
+                    j++;
+                }
+                if (j == len) {
+                    return exact ? KEYWORD_TOKENS[i] : new Token(KEYWORD_TOKENS[i].type, new String(buf, start, len));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Token id(int subtype, int start, int len) {
+        if (len > MAX_CACHED_LENGTH) {
+            return new Token(ID, subtype, new String(buf, start, len));
+        }
+        int hash = subtype;
+        for (int i = start; i < start + len; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        final int slot = (hash ^ (hash >>> 16)) & (cache.length - 1);
+        final Token cached = cache[slot];
+        if (cached != null && cached.subtype == subtype && matches(cached.value, start, len)) {
+            return cached;
         }
+        return cache[slot] = new Token(ID, subtype, new String(buf, start, len));
+    }
+
+    private boolean matches(String s, int start, int len) {
+        if (s.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void readChar() throws IOException {
-        do {
-            readRawChar();
-            if (ch == '/') {
-                readComment();
-            } else if (ch == '\n') {
-                pos.newLine();
-                final char next = readRawChar();
-                if (next == '#') {
+        readRawChar();
+        skip();
+    }
+
+    private void skip() throws IOException {
+        while (ch != CH_EOF) {
+            if (ch == '\n') {
+                newLine();
+                if (readRawChar() == '#') {
                     do {
                         readRawChar();
                     } while (ch != '\n' && ch != CH_EOF);
-                } else {
-                    unread('\n', next);
                 }
+            } else if (ch == '/') {
+                if (!readComment()) {
+                    return;
+                }
+            } else if (ch <= ' ') {
+                readRawChar();
+            } else {
+                return;
             }
-        } while (ch <= ' ' && ch != CH_EOF);
+        }
     }
 
-    private void readComment() throws IOException {
+    private boolean readComment() throws IOException {
         final char next = readRawChar();
         if (next == '/') {
             do {
                 readRawChar();
             } while (ch != '\n' && ch != CH_EOF);
-        } else if (next == '*') {
-            do {
-                do {
-                    readRawChar();
-                } while (ch != '*' && ch != CH_EOF);
+            return true;
+        }
+        if (next == '*') {
+            char prev = 0;
+            readRawChar();
+            while (ch != CH_EOF && (prev != '*' || ch != '/')) {
+                if (ch == '\n') {
+                    newLine();
+                }
+                prev = ch;
                 readRawChar();
-            } while (ch != '/' && ch != CH_EOF);
+            }
             readRawChar();
-        } else {
-            unread('/', next);
+            return true;
         }
+        unread();
+        return false;
+    }
+
+    private void newLine() {
+        line++;
+        lineStart = base + p + 1;
     }
 
     private char readRawChar() throws IOException {
-        pos.newChar();
-        return ch = (char) in.read();
+        if (p + 1 >= limit && !fill()) {
+            p = limit;
+            return ch = CH_EOF;
+        }
+        return ch = buf[++p];
+    }
+
+    private void unread() {
+        ch = buf[--p];
     }
 
-    private void unread(char before, char next) throws IOException {
-        ch = before;
-        in.unread(next);
+    /**
+     * Moves the current character (or the start of the current identifier) to the front of the buffer
+     * and appends more input.
+     */
+    private boolean fill() throws IOException {
+        if (reader == null && bytes == null) {
+            return false;
+        }
+        final int keep = mark >= 0 ? mark : Math.max(p, 0);
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            base += keep;
+            limit -= keep;
+            p -= keep;
+            if (mark >= 0) {
+                mark -= keep;
+            }
+        }
+        if (buf.length - limit < BUFFER_SIZE / 2) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        final int read = read(buf, limit, buf.length - limit);
+        if (read <= 0) {
+            reader = null;
+            bytes = null;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private int read(char[] target, int offset, int len) throws IOException {
+        if (reader != null) {
+            return reader.read(target, offset, len);
+        }
+        final CharBuffer out = CharBuffer.wrap(target, offset, len);
+        decoder.decode(bytes, out, true);
+        if (!bytes.hasRemaining()) {
+            decoder.flush(out);
+            bytes = null;
+        }
+        return out.position() - offset;
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.*;
+import guru.nidi.graphviz.model.*;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Builds a {@link MutableGraph} from the parser events.
+ * A subgraph that is only used as the target of edges is not added to its parent graph,
+ * it is reachable over the edges.
+ */
+final class MutableGraphHandler implements ParserHandler {
+    private final Deque<Level> levels = new ArrayDeque<>();
+    private final List<MutableGraph> subgraphs = new ArrayList<>();
+    private MutableGraph graph;
+
+    MutableGraph graph() {
+        return graph;
+    }
+
+    @Override
+    public void startGraph(boolean strict, boolean directed, Label name) {
+        final GraphBuilder builder = new GraphBuilder();
+        graph = builder.graph().setStrict(strict).setDirected(directed);
+        if (name != null) {
+            graph.setName(name.toString());
+        }
+        levels.push(new Level(builder));
+    }
+
+    @Override
+    public void endGraph() {
+        levels.pop().addPending(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void startSubgraph(Label name) {
+        final GraphBuilder builder = levels.peek().builder.subgraph();
+        final MutableGraph sub = builder.graph();
+        if (name != null) {
+            final String n = name.toString();
+            if (n.startsWith("cluster_")) {
+                sub.setName(n.substring(8));
+                sub.setCluster(true);
+            } else {
+                sub.setName(n);
+            }
+        }
+        subgraphs.add(sub);
+        levels.push(new Level(builder));
+    }
+
+    @Override
+    public void endSubgraph() {
+        final Level level = levels.pop();
+        level.addPending(Integer.MAX_VALUE);
+        levels.peek().pending.add(level.builder.graph());
+    }
+
+    @Override
+    public void graphAttributes(Map<String, Label> attrs) {
+        addAttributes(current().builder.graph().graphAttrs(), attrs);
+    }
+
+    @Override
+    public void nodeAttributes(Map<String, Label> attrs) {
+        addAttributes(current().builder.nodeAttrs(), attrs);
+    }
+
+    @Override
+    public void edgeAttributes(Map<String, Label> attrs) {
+        addAttributes(current().builder.linkAttrs(), attrs);
+    }
+
+    @Override
+    public void node(Label name, Map<String, Label> attrs) {
+        final GraphBuilder builder = current().builder;
+        final MutableNode node = builder.node(name);
+        addAttributes(node, attrs);
+        builder.add(node);
+    }
+
+    @Override
+    public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+        final Level level = levels.peek();
+        final LinkSource source = (LinkSource) linkable(level, from);
+        final LinkTarget target = (LinkTarget) linkable(level, to);
+        final MapAttributes<ForLink> linkAttrs = new MapAttributes<>();
+        for (final Entry<String, Label> attr : attrs.entrySet()) {
+            linkAttrs.add(attr.getKey(), attr.getValue().value());
+        }
+        level.builder.link(source, target, linkAttrs);
+        level.builder.add(source);
+    }
+
+    /**
+     * A subgraph used in an edge is taken out of the pending ones,
+     * after the subgraphs that were finished before it have been added.
+     */
+    private Object linkable(Level level, Endpoint endpoint) {
+        if (!endpoint.isSubgraph()) {
+            return level.builder.node(endpoint.node()).port(endpoint.record(), endpoint.compass());
+        }
+        final MutableGraph sub = subgraphs.get(endpoint.subgraph());
+        for (int i = 0; i < level.pending.size(); i++) {
+            if (level.pending.get(i) == sub) {
+                level.addPending(i);
+                level.pending.remove(0);
+                break;
+            }
+        }
+        return sub;
+    }
+
+    private Level current() {
+        final Level level = levels.peek();
+        level.addPending(Integer.MAX_VALUE);
+        return level;
+    }
+
+    private void addAttributes(MutableAttributed<?, ?> attributed, Map<String, Label> attrs) {
+        for (final Entry<String, Label> attr : attrs.entrySet()) {
+            final String key = attr.getKey();
+            if ("label".equals(key) || "xlabel".equals(key) || "headlabel".equals(key) || "taillabel".equals(key)) {
+                attributed.add(key, attr.getValue());
+            } else {
+                attributed.add(key, attr.getValue().value());
+            }
+        }
+    }
+
+    /**
+     * The builder of a (sub)graph and its finished subgraphs that are not yet known to be edge targets only.
+     */
+    private static final class Level {
+        final GraphBuilder builder;
+        final List<MutableGraph> pending = new ArrayList<>();
+
+        Level(GraphBuilder builder) {
+            this.builder = builder;
+        }
+
+        void addPending(int count) {
+            final int n = Math.min(count, pending.size());
+            for (int i = 0; i < n; i++) {
+                builder.add(pending.get(i));
+            }
+            pending.subList(0, n).clear();
+        }
+    }
+}
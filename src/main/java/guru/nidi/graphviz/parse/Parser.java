@@ -15,24 +15,27 @@
  */
 package guru.nidi.graphviz.parse;
 
-import guru.nidi.graphviz.attribute.Attributed;
 import guru.nidi.graphviz.attribute.Label;
-import guru.nidi.graphviz.model.*;
+import guru.nidi.graphviz.model.Compass;
+import guru.nidi.graphviz.model.MutableGraph;
 
 import java.io.*;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-import static guru.nidi.graphviz.model.Factory.mutGraph;
-import static guru.nidi.graphviz.model.Factory.mutNode;
 import static guru.nidi.graphviz.parse.Token.*;
 
 public final class Parser {
     private final Lexer lexer;
+    private final ParserHandler handler;
+    private final Map<String, Label> attrs = new LinkedHashMap<>();
     private Token token;
+    private boolean directed;
+    private int subgraphs;
 
     public static MutableGraph read(File file) throws IOException {
-        return read(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), file.getName());
+        return read(Lexer.mapped(file.toPath(), file.getName()));
     }
 
     public static MutableGraph read(InputStream is) throws IOException {
@@ -40,48 +43,79 @@ public final class Parser {
     }
 
     public static MutableGraph read(String dot) throws IOException {
-        return read(new StringReader(dot), "<string>");
+        return read(new Lexer(dot.toCharArray(), "<string>"));
+    }
+
+    public static MutableGraph read(CharBuffer dot, String name) throws IOException {
+        return read(new Lexer(dot, name));
     }
 
     public static MutableGraph read(Reader dot, String name) throws IOException {
-        return new Parser(new Lexer(dot, name)).parse();
+        return read(new Lexer(dot, name));
+    }
+
+    private static MutableGraph read(Lexer lexer) throws IOException {
+        final MutableGraphHandler handler = new MutableGraphHandler();
+        new Parser(lexer, handler).parse();
+        return handler.graph();
+    }
+
+    public static void read(File file, ParserHandler handler) throws IOException {
+        new Parser(Lexer.mapped(file.toPath(), file.getName()), handler).parse();
+    }
+
+    public static void read(InputStream is, ParserHandler handler) throws IOException {
+        read(new InputStreamReader(is, StandardCharsets.UTF_8), "<input stream>", handler);
     }
 
-    private Parser(Lexer lexer) throws IOException {
+    public static void read(String dot, ParserHandler handler) throws IOException {
+        new Parser(new Lexer(dot.toCharArray(), "<string>"), handler).parse();
+    }
+
+    public static void read(CharBuffer dot, String name, ParserHandler handler) throws IOException {
+        new Parser(new Lexer(dot, name), handler).parse();
+    }
+
+    public static void read(Reader dot, String name, ParserHandler handler) throws IOException {
+        new Parser(new Lexer(dot, name), handler).parse();
+    }
+
+    private Parser(Lexer lexer, ParserHandler handler) throws IOException {
         this.lexer = lexer;
+        this.handler = handler;
         token = nextToken();
     }
 
-    private MutableGraph parse() {
-        return CreationContext.use(ctx -> {
-            final MutableGraph graph = mutGraph();
-            if (token.type == STRICT) {
-                graph.setStrict(true);
-                nextToken();
-            }
-            if (token.type == DIGRAPH) {
-                graph.setDirected(true);
-            } else if (token.type != GRAPH) {
-                fail("'graph' or 'digraph' expected");
-            }
+    private void parse() throws IOException {
+        boolean strict = false;
+        if (token.type == STRICT) {
+            strict = true;
             nextToken();
-            if (token.type == ID) {
-                graph.setName(label(token).toString());
-                nextToken();
-            }
-            statementList(graph);
-            assertToken(EOF);
-            return graph;
-        });
+        }
+        if (token.type == DIGRAPH) {
+            directed = true;
+        } else if (token.type != GRAPH) {
+            fail("'graph' or 'digraph' expected");
+        }
+        nextToken();
+        Label name = null;
+        if (token.type == ID) {
+            name = label(token);
+            nextToken();
+        }
+        handler.startGraph(strict, directed, name);
+        statementList();
+        assertToken(EOF);
+        handler.endGraph();
     }
 
     private Label label(Token token) {
         return token.subtype == SUB_HTML ? Label.html(token.value) : Label.of(token.value);
     }
 
-    private void statementList(MutableGraph graph) throws IOException {
+    private void statementList() throws IOException {
         assertToken(BRACE_OPEN);
-        while (statement(graph)) {
+        while (statement()) {
             if (token.type == SEMICOLON) {
                 nextToken();
             }
@@ -89,72 +123,66 @@ public final class Parser {
         assertToken(BRACE_CLOSE);
     }
 
-    private boolean statement(MutableGraph graph) throws IOException {
+    private boolean statement() throws IOException {
         final Token base = token;
         switch (base.type) {
             case ID:
                 nextToken();
                 if (token.type == EQUAL) {
-                    applyMutableAttributes(graph.graphAttrs(), Arrays.asList(base, nextToken(ID)));
+                    attrs.clear();
+                    attrs.put(base.value, label(nextToken(ID)));
+                    handler.graphAttributes(attrs);
                     nextToken();
                 } else {
-                    final PortNode nodeId = nodeId(base);
+                    final Endpoint nodeId = nodeId(base);
                     if (token.type == MINUS_MINUS || token.type == ARROW) {
-                        edgeStatement(graph, nodeId);
+                        edgeStatement(nodeId);
                     } else {
-                        nodeStatement(graph, nodeId);
+                        nodeStatement(nodeId);
                     }
                 }
                 return true;
             case SUBGRAPH:
             case BRACE_OPEN:
-                final MutableGraph sub = subgraph(graph.isDirected());
+                final Endpoint sub = subgraph();
                 if (token.type == MINUS_MINUS || token.type == ARROW) {
-                    edgeStatement(graph, sub);
-                } else {
-                    graph.add(sub);
+                    edgeStatement(sub);
                 }
                 return true;
             case GRAPH:
             case NODE:
             case EDGE:
-                attributeStatement(graph);
+                attributeStatement();
                 return true;
             default:
                 return false;
         }
     }
 
-    private MutableGraph subgraph(boolean directed) {
-        return CreationContext.use(ctx -> {
-            final MutableGraph sub = mutGraph().setDirected(directed);
-            if (token.type == SUBGRAPH) {
+    private Endpoint subgraph() throws IOException {
+        final Endpoint sub = Endpoint.subgraph(subgraphs++);
+        Label name = null;
+        if (token.type == SUBGRAPH) {
+            nextToken();
+            if (token.type == ID) {
+                name = label(token);
                 nextToken();
-                if (token.type == ID) {
-                    final String name = label(token).toString();
-                    if (name.startsWith("cluster_")) {
-                        sub.setName(name.substring(8));
-                        sub.setCluster(true);
-                    } else {
-                        sub.setName(name);
-                    }
-                    nextToken();
-                }
             }
-            statementList(sub);
-            return sub;
-        });
+        }
+        handler.startSubgraph(name);
+        statementList();
+        handler.endSubgraph();
+        return sub;
     }
 
-    private void edgeStatement(MutableGraph graph, LinkSource linkSource)
-            throws IOException {
-        final List<LinkSource> points = new ArrayList<>();
-        points.add(linkSource);
+    private void edgeStatement(Endpoint start) throws IOException {
+        final List<Endpoint> points = new ArrayList<>();
+        points.add(start);
         do {
-            if (graph.isDirected() && token.type == MINUS_MINUS) {
+            if (directed && token.type == MINUS_MINUS) {
                 fail("-- used in digraph. Use -> instead.");
             }
-            if (!graph.isDirected() && token.type == ARROW) {
+            if (!directed && token.type == ARROW) {
                 fail("-> used in graph. Use -- instead.");
             }
             nextToken();
@@ -163,32 +191,26 @@ public final class Parser {
                 nextToken();
                 points.add(nodeId(id));
             } else if (token.type == SUBGRAPH || token.type == BRACE_OPEN) {
-                points.add(subgraph(graph.isDirected()));
+                points.add(subgraph());
             }
         } while (token.type == MINUS_MINUS || token.type == ARROW);
-        final List<Token> attrs = (token.type == BRACKET_OPEN) ? attributeList() : Collections.emptyList();
+        attributeList();
         for (int i = 0; i < points.size() - 1; i++) {
-            final LinkSource from = points.get(i);
-            final LinkTarget to = (LinkTarget) points.get(i + 1);
-            from.links().add(applyAttributes(Link.to(to), attrs));
-            graph.add(from);
+            handler.edge(points.get(i), points.get(i + 1), attrs);
         }
     }
 
     private Compass compass(String name) {
         return Compass.of(name).orElseThrow(() ->
-                new ParserException(lexer.pos, "Invalid compass value '" + name + "'"));
+                new ParserException(lexer.position(), "Invalid compass value '" + name + "'"));
     }
 
-    private void nodeStatement(MutableGraph graph, PortNode nodeId) throws IOException {
-        final MutableNode node = mutNode(nodeId.name());
-        if (token.type == BRACKET_OPEN) {
-            applyMutableAttributes(node, attributeList());
-        }
-        graph.add(node);
+    private void nodeStatement(Endpoint nodeId) throws IOException {
+        attributeList();
+        handler.node(nodeId.node(), attrs);
     }
 
-    private PortNode nodeId(Token base) throws IOException {
+    private Endpoint nodeId(Token base) throws IOException {
         String record = null;
         Compass compass = null;
         if (token.type == COLON) {
@@ -206,72 +228,44 @@ public final class Parser {
                 }
             }
         }
-        return mutNode(label(base)).port(record, compass);
+        return Endpoint.node(label(base), record, compass);
     }
 
-    private void attributeStatement(MutableGraph graph) throws IOException {
-        final MutableAttributed<?, ?> target = attributes(graph, token);
+    private void attributeStatement() throws IOException {
+        final int type = token.type;
         nextToken();
-        applyMutableAttributes(target, attributeList());
-    }
-
-    private void applyMutableAttributes(MutableAttributed<?, ?> attributed, List<Token> tokens) {
-        for (int i = 0; i < tokens.size(); i += 2) {
-            final String key = tokens.get(i).value;
-            final Token value = tokens.get(i + 1);
-            if ("label".equals(key) || "xlabel".equals(key) || "headlabel".equals(key) || "taillabel".equals(key)) {
-                attributed.add(key, label(value));
-            } else {
-                attributed.add(key, value.value);
-            }
-        }
-    }
-
-    private <T extends Attributed<T, ?>> T applyAttributes(T attributed, List<Token> tokens) {
-        T res = attributed;
-        for (int i = 0; i < tokens.size(); i += 2) {
-            res = res.with(tokens.get(i).value, tokens.get(i + 1).value);
-        }
-        return res;
-    }
-
-    private MutableAttributed<?, ?> attributes(MutableGraph graph, Token token) {
-        switch (token.type) {
+        checkToken(BRACKET_OPEN);
+        attributeList();
+        switch (type) {
             case GRAPH:
-                return graph.graphAttrs();
+                handler.graphAttributes(attrs);
+                break;
             case NODE:
-                return CreationContext.get().nodeAttrs();
-            case EDGE:
-                return CreationContext.get().linkAttrs();
+                handler.nodeAttributes(attrs);
+                break;
             default:
-                throw new IllegalArgumentException("Unexpected token " + token);
+                handler.edgeAttributes(attrs);
         }
     }
 
-    private List<Token> attributeList() throws IOException {
-        final List<Token> res = new ArrayList<>();
-        do {
+    /**
+     * Reads the (optional) attribute list into {@link #attrs}.
+     */
+    private void attributeList() throws IOException {
+        attrs.clear();
+        while (token.type == BRACKET_OPEN) {
             assertToken(BRACKET_OPEN);
-            if (token.type == ID) {
-                res.addAll(attrListElement());
-            }
-            assertToken(BRACKET_CLOSE);
-        } while (token.type == BRACKET_OPEN);
-        return res;
-    }
-
-    private List<Token> attrListElement() throws IOException {
-        final List<Token> res = new ArrayList<>();
-        do {
-            res.add(token);
-            nextToken(EQUAL);
-            res.add(nextToken(ID));
-            nextToken();
-            if (token.type == SEMICOLON || token.type == COMMA) {
+            while (token.type == ID) {
+                final String key = token.value;
+                nextToken(EQUAL);
+                attrs.put(key, label(nextToken(ID)));
                 nextToken();
+                if (token.type == SEMICOLON || token.type == COMMA) {
+                    nextToken();
+                }
             }
-        } while (token.type == ID);
-        return res;
+            assertToken(BRACKET_CLOSE);
+        }
     }
 
     private Token nextToken() throws IOException {
@@ -296,6 +290,6 @@ public final class Parser {
     }
 
     private void fail(String msg) {
-        throw new ParserException(lexer.pos, msg);
+        throw new ParserException(lexer.position(), msg);
     }
 }
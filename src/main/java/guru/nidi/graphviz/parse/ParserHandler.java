@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.Label;
+
+import java.util.Map;
+
+/**
+ * Receives the elements of a DOT file while it is parsed, without building a graph model.
+ * Attribute values are {@link Label}s, so HTML values can be distinguished from plain ones.
+ * The attribute maps are only valid during the call.
+ */
+public interface ParserHandler {
+    default void startGraph(boolean strict, boolean directed, Label name) {
+    }
+
+    default void endGraph() {
+    }
+
+    /**
+     * Subgraphs are numbered in the order they are started, an {@link Endpoint} of an edge refers to this number.
+     *
+     * @param name the name of the subgraph or null if it is anonymous
+     */
+    default void startSubgraph(Label name) {
+    }
+
+    default void endSubgraph() {
+    }
+
+    default void graphAttributes(Map<String, Label> attrs) {
+    }
+
+    default void nodeAttributes(Map<String, Label> attrs) {
+    }
+
+    default void edgeAttributes(Map<String, Label> attrs) {
+    }
+
+    default void node(Label name, Map<String, Label> attrs) {
+    }
+
+    /**
+     * An edge statement with n endpoints results in n-1 calls of this method.
+     */
+    default void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+    }
+}
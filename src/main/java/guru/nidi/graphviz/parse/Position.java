@@ -17,21 +17,13 @@ package guru.nidi.graphviz.parse;
 
 public class Position {
     private final String name;
-    private int line;
-    private int col;
+    private final int line;
+    private final int col;
 
-    Position(String name) {
+    Position(String name, int line, int col) {
         this.name = name;
-        line = col = 1;
-    }
-
-    void newLine() {
-        col = 1;
-        line++;
-    }
-
-    void newChar() {
-        col++;
+        this.line = line;
+        this.col = col;
     }
 
     public String getName() {
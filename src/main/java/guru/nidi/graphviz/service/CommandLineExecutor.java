@@ -20,6 +20,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Execute a CommandLine.
@@ -29,10 +31,84 @@ import java.io.*;
 public class CommandLineExecutor {
     private static final Logger LOG = LoggerFactory.getLogger(CommandLineExecutor.class);
 
+    private static final long DEFAULT_TIMEOUT = 60 * 1000;
+
     public void execute(CommandLine cmd, File workingDirectory) throws InterruptedException, IOException {
+        execute(cmd, workingDirectory, new ExecuteWatchdog(DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Execute the command, killing it when the watchdog times out or {@link ExecuteWatchdog#timeoutOccured} is called.
+     */
+    public void execute(CommandLine cmd, File workingDirectory, ExecuteWatchdog watchdog)
+            throws InterruptedException, IOException {
+        final DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+        final Output output = new Output(cmd, watchdog);
+        start(cmd, workingDirectory, watchdog, output, resultHandler);
+        resultHandler.waitFor();
+        output.check(resultHandler.getExitValue());
+    }
+
+    /**
+     * Start the command and return without waiting for it.
+     * The future completes when the process exits and fails with an {@link IOException}
+     * if it was killed or did not succeed.
+     * No thread is blocked while the process runs: its output goes to temporary files
+     * and its exit is observed with {@code Process.onExit()} on Java 9+
+     * or by one shared thread that polls all running processes on Java 8.
+     * A watchdog with a timeout runs a thread of its own,
+     * use {@link ExecuteWatchdog#INFINITE_TIMEOUT} and {@link ExecuteWatchdog#timeoutOccured} to avoid it.
+     */
+    public CompletableFuture<Void> executeAsync(CommandLine cmd, File workingDirectory, ExecuteWatchdog watchdog) {
+        final CompletableFuture<Void> res = new CompletableFuture<>();
+        LOG.info("executing command {}", cmd.toString());
+        File outFile = null;
+        File errFile = null;
+        try {
+            outFile = File.createTempFile("graphviz", ".out");
+            errFile = File.createTempFile("graphviz", ".err");
+            final Process process = new ProcessBuilder(cmd.toStrings())
+                    .directory(workingDirectory)
+                    .redirectOutput(outFile)
+                    .redirectError(errFile)
+                    .start();
+            process.getOutputStream().close();
+            watchdog.start(process);
+            final File out = outFile;
+            final File err = errFile;
+            ProcessExit.of(process).whenComplete((ok, e) -> {
+                watchdog.stop();
+                final Output output = new Output(cmd, watchdog);
+                try {
+                    output.out.write(Files.readAllBytes(out.toPath()));
+                    output.err.write(Files.readAllBytes(err.toPath()));
+                    output.check(process.exitValue());
+                    res.complete(null);
+                } catch (IOException ex) {
+                    res.completeExceptionally(ex);
+                } finally {
+                    delete(out, err);
+                }
+            });
+        } catch (IOException e) {
+            delete(outFile, errFile);
+            res.completeExceptionally(e);
+        }
+        return res;
+    }
+
+    private static void delete(File... files) {
+        for (final File file : files) {
+            if (file != null && !file.delete() && file.exists()) {
+                LOG.warn("Could not delete {}", file);
+            }
+        }
+    }
+
+    private void start(CommandLine cmd, File workingDirectory, ExecuteWatchdog watchdog, Output output,
+                       ExecuteResultHandler resultHandler) throws IOException {
         LOG.info("executing command {}", cmd.toString());
 
-        final ExecuteWatchdog watchdog = new ExecuteWatchdog(60 * 1000);
         final Executor executor = new DefaultExecutor();
 
         executor.setWatchdog(watchdog);
@@ -41,19 +117,31 @@ public class CommandLineExecutor {
         }
         LOG.debug("workdir: {}", executor.getWorkingDirectory());
 
-        final DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+        executor.setStreamHandler(new PumpStreamHandler(output.out, output.err));
+        executor.execute(cmd, resultHandler);
+    }
+
+    private static final class Output {
+        final CommandLine cmd;
+        final ExecuteWatchdog watchdog;
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         final ByteArrayOutputStream err = new ByteArrayOutputStream();
-        executor.setStreamHandler(new PumpStreamHandler(out, err));
-        executor.execute(cmd, resultHandler);
-        resultHandler.waitFor();
 
-        final int exitCode = resultHandler.getExitValue();
-        if (out.size() > 0) {
-            LOG.info(out.toString());
+        Output(CommandLine cmd, ExecuteWatchdog watchdog) {
+            this.cmd = cmd;
+            this.watchdog = watchdog;
         }
-        if (exitCode != 0) {
-            throw new IOException(err.size() == 0 ? "command '" + cmd + "' didn't succeed" : err.toString());
+
+        void check(int exitCode) throws IOException {
+            if (watchdog.killedProcess()) {
+                throw new IOException("command '" + cmd + "' was killed");
+            }
+            if (out.size() > 0) {
+                LOG.info(out.toString());
+            }
+            if (exitCode != 0) {
+                throw new IOException(err.size() == 0 ? "command '" + cmd + "' didn't succeed" : err.toString());
+            }
         }
     }
 }
@@ -16,6 +16,7 @@
 package guru.nidi.graphviz.service;
 
 import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.ExecuteWatchdog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +25,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -48,6 +50,21 @@ public class CommandRunner {
         exec(cmd, workDir, args, true);
     }
 
+    /**
+     * Execute the command, it is killed when the watchdog fires.
+     */
+    public void execWatched(String cmd, File workDir, ExecuteWatchdog watchdog)
+            throws IOException, InterruptedException {
+        cmdExec.execute(wrapperFunc.apply(new CommandLine(cmd)), workDir, watchdog);
+    }
+
+    /**
+     * Start the command without waiting for it, it is killed when the watchdog fires.
+     */
+    public CompletableFuture<Void> execAsync(String cmd, File workDir, ExecuteWatchdog watchdog) {
+        return cmdExec.executeAsync(wrapperFunc.apply(new CommandLine(cmd)), workDir, watchdog);
+    }
+
     private void exec(String cmd, File workDir, String[] args, boolean quote)
             throws IOException, InterruptedException {
         exec(new CommandLine(cmd).addArguments(args, quote), workDir);
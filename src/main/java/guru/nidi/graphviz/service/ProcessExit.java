@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+
+/**
+ * Observes the exit of processes without blocking a thread per process.
+ */
+final class ProcessExit {
+    private static final long POLL_MILLIS = 10;
+    private static final Method ON_EXIT = onExitMethod();
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "graphviz-process-exit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProcessExit() {
+    }
+
+    private static Method onExitMethod() {
+        try {
+            return Process.class.getMethod("onExit");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a future that completes when the process has exited
+     */
+    static CompletableFuture<Void> of(Process process) {
+        if (ON_EXIT != null) {
+            try {
+                return ((CompletableFuture<?>) ON_EXIT.invoke(process)).thenApply(p -> null);
+            } catch (ReflectiveOperationException e) {
+                //use polling
+            }
+        }
+        final CompletableFuture<Void> res = new CompletableFuture<>();
+        poll(process, res);
+        return res;
+    }
+
+    private static void poll(Process process, CompletableFuture<Void> res) {
+        if (process.isAlive()) {
+            POLLER.schedule(() -> poll(process, res), POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            res.complete(null);
+        }
+    }
+}
@@ -19,7 +19,12 @@ import guru.nidi.graphviz.attribute.Label;
 import guru.nidi.graphviz.attribute.Shape;
 import guru.nidi.graphviz.engine.Format;
 import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.engine.Layout;
+import guru.nidi.graphviz.engine.LayoutCache;
+import guru.nidi.graphviz.engine.LayoutPolicy;
+import guru.nidi.graphviz.engine.Priority;
 import guru.nidi.graphviz.engine.Renderer;
+import guru.nidi.graphviz.model.GraphBuilder;
 import guru.nidi.graphviz.model.MutableGraph;
 import guru.nidi.graphviz.model.MutableNode;
 import org.contextmapper.contextmap.generator.model.*;
@@ -29,10 +34,12 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import static guru.nidi.graphviz.attribute.Attributes.attr;
-import static guru.nidi.graphviz.model.Factory.*;
+import static guru.nidi.graphviz.attribute.Attributes.attrs;
 
 /**
  * Generating graphical Context Map with Graphviz.
@@ -43,11 +50,13 @@ public class ContextMapGenerator {
 
     private static final String EDGE_SPACING_UNIT = "        ";
     private static final String TEAM_ICON_FILE_NAME = "team-icon.png";
+    private static final double COMPONENT_GAP = 36;
 
     private Map<String, MutableNode> bcNodesMap;
     private Set<MutableNode> genericNodes;
     private Set<MutableNode> teamNodes;
     private File baseDir; // used for Graphviz images
+    private final Map<ContextMap, Layout> layouts = Collections.synchronizedMap(new WeakHashMap<>());
 
     protected int labelSpacingFactor = 1;
     protected int height = 1000;
@@ -55,6 +64,15 @@ public class ContextMapGenerator {
     protected boolean useHeight = false;
     protected boolean useWidth = true;
     protected boolean clusterTeams = true;
+    protected boolean incrementalLayout = false;
+    protected boolean componentLayout = false;
+    protected LayoutCache layoutCache;
+    protected LayoutPolicy layoutPolicy;
+    protected Priority priority = Priority.INTERACTIVE;
+    protected int levelOfDetail = 0;
+    protected boolean bundleRelationships = false;
+    protected boolean concentrateEdges = false;
+    protected RenderingProfile renderingProfile = RenderingProfile.DEFAULT;
 
     public ContextMapGenerator() {
         this.baseDir = new File(System.getProperty("java.io.tmpdir") + File.separator + "GraphvizJava");
@@ -124,6 +142,117 @@ public class ContextMapGenerator {
         return this;
     }
 
+    /**
+     * Defines whether a Context Map that has been generated before is laid out incrementally.
+     * If true, the generator remembers the last layout of every {@link ContextMap} instance. When the map is generated
+     * again, Bounded Contexts whose relationships did not change keep their position and only the changed part
+     * of the map is laid out again.
+     *
+     * @param incrementalLayout whether the last layout of a Context Map shall be reused
+     */
+    public ContextMapGenerator setIncrementalLayout(boolean incrementalLayout) {
+        this.incrementalLayout = incrementalLayout;
+        if (!incrementalLayout)
+            layouts.clear();
+        return this;
+    }
+
+    /**
+     * Defines whether the connected components of a Context Map (groups of Bounded Contexts that have no relationship
+     * to other groups) are laid out separately. If true, every component is laid out as its own graph, in parallel,
+     * and the results are packed into one image. This is much faster for big maps consisting of many unrelated parts.
+     * Is not used together with the incremental layout.
+     *
+     * @param componentLayout whether the connected components shall be laid out separately
+     */
+    public ContextMapGenerator setComponentLayout(boolean componentLayout) {
+        this.componentLayout = componentLayout;
+        return this;
+    }
+
+    /**
+     * Sets a cache for the layouts of generated Context Maps. Maps that only differ in their styling (colors, etc.)
+     * are then rendered with the cached layout instead of running the layout engine again.
+     * The cache can be shared by multiple generators.
+     *
+     * @param layoutCache the cache to be used or null to always run the layout engine
+     */
+    public ContextMapGenerator setLayoutCache(LayoutCache layoutCache) {
+        this.layoutCache = layoutCache;
+        return this;
+    }
+
+    /**
+     * Sets a policy that chooses the layout engine (dot, fdp, sfdp or neato) and its effort by the size of the
+     * Context Map, so that big maps can still be laid out within a given time. Without a policy dot is used.
+     *
+     * @param layoutPolicy the policy to be used or null to always use dot
+     */
+    public ContextMapGenerator setLayoutPolicy(LayoutPolicy layoutPolicy) {
+        this.layoutPolicy = layoutPolicy;
+        return this;
+    }
+
+    /**
+     * Limits the number of nodes of the generated graph. If a Context Map contains more Bounded Contexts, densely
+     * connected Bounded Contexts (like a team and the contexts it realizes) are collapsed into summary nodes, and the
+     * relationships between them into weighted summary edges, so that big maps stay readable and fast to lay out.
+     * Bounded Contexts that are not collapsed are shown with all details. The component layout is not used then.
+     *
+     * @param maxNodes the maximum number of nodes or 0 to always show all Bounded Contexts
+     */
+    public ContextMapGenerator setLevelOfDetail(int maxNodes) {
+        this.levelOfDetail = Math.max(maxNodes, 0);
+        return this;
+    }
+
+    /**
+     * Defines whether multiple relationships between the same two Bounded Contexts are drawn as one edge.
+     * If true, such relationships share one edge with a combined plain text label (naming the upstream and downstream
+     * context and their patterns), instead of one edge with HTML head and tail labels per relationship.
+     * This makes dense maps much cheaper to lay out.
+     *
+     * @param bundleRelationships whether parallel relationships shall be bundled
+     */
+    public ContextMapGenerator setBundleRelationships(boolean bundleRelationships) {
+        this.bundleRelationships = bundleRelationships;
+        return this;
+    }
+
+    /**
+     * Defines whether Graphviz merges edges with a common endpoint where their paths run in parallel
+     * ({@code concentrate=true}). Works best together with {@link #setBundleRelationships(boolean)}.
+     *
+     * @param concentrateEdges whether edges shall be concentrated
+     */
+    public ContextMapGenerator setConcentrateEdges(boolean concentrateEdges) {
+        this.concentrateEdges = concentrateEdges;
+        return this;
+    }
+
+    /**
+     * Sets how detailed nodes and edges are drawn. {@link RenderingProfile#FAST} uses plain boxes with a fixed
+     * orientation, plain text labels for the patterns and no team icons, which makes large maps much faster to
+     * generate. The generated maps contain the same information with both profiles.
+     *
+     * @param renderingProfile the profile to be used
+     */
+    public ContextMapGenerator setRenderingProfile(RenderingProfile renderingProfile) {
+        this.renderingProfile = renderingProfile;
+        return this;
+    }
+
+    /**
+     * Sets the lane in which the renderings of this generator wait if an {@link guru.nidi.graphviz.engine.AdmissionControl}
+     * is used. Generators regenerating many Context Maps in the background should use {@link Priority#BATCH}.
+     *
+     * @param priority the priority of the renderings
+     */
+    public ContextMapGenerator setPriority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     /**
      * Generates the graphical Context Map.
      *
@@ -148,165 +277,425 @@ public class ContextMapGenerator {
         generateContextMapGraphic(contextMap, format).toOutputStream(outputStream);
     }
 
+    /**
+     * Generates the graphical Context Map of the surroundings of the given focus Bounded Contexts.
+     *
+     * @param neighbourhood the indexed {@link ContextMap}; can be reused for any number of views
+     * @param focus         the Bounded Contexts in the center of the view
+     * @param hops          the maximum distance of the shown Bounded Contexts from the focus Bounded Contexts
+     * @param format        the file format to be generated
+     * @param fileName      the target filename
+     * @throws IOException
+     */
+    public void generateNeighbourhoodGraphic(Neighbourhood neighbourhood, Collection<BoundedContext> focus, int hops, Format format, String fileName) throws IOException {
+        generateContextMapGraphic(neighbourhood.around(hops, focus), format, fileName);
+    }
+
+    /**
+     * Generates the graphical Context Map of the surroundings of the given focus Bounded Contexts.
+     *
+     * @param neighbourhood the indexed {@link ContextMap}; can be reused for any number of views
+     * @param focus         the Bounded Contexts in the center of the view
+     * @param hops          the maximum distance of the shown Bounded Contexts from the focus Bounded Contexts
+     * @param format        the file format to be generated
+     * @param outputStream  the outputstream to which the image is written
+     * @throws IOException
+     */
+    public void generateNeighbourhoodGraphic(Neighbourhood neighbourhood, Collection<BoundedContext> focus, int hops, Format format, OutputStream outputStream) throws IOException {
+        generateContextMapGraphic(neighbourhood.around(hops, focus), format, outputStream);
+    }
+
     private Renderer generateContextMapGraphic(ContextMap contextMap, Format format) throws IOException {
-        exportImages();
-        MutableGraph graph = createGraph(contextMap, format == Format.DOT);
+        if (renderingProfile != RenderingProfile.FAST)
+            exportImages();
+        ContextMapSnapshot snapshot = contextMap.snapshot();
+        boolean collapse = levelOfDetail > 0 && snapshot.getBoundedContexts().size() > levelOfDetail;
+        List<ContextMapSnapshot> components = componentLayout && !incrementalLayout && !collapse && format != Format.DOT
+                ? splitComponents(snapshot) : Collections.singletonList(snapshot);
+
+        Graphviz graphviz;
+        if (components.size() > 1) {
+            graphviz = layoutComponents(components);
+        } else {
+            MutableGraph graph = collapse ? createSummaryGraph(snapshot, format == Format.DOT)
+                    : createGraph(snapshot, format == Format.DOT);
+
+            // shared node and edge attributes are emitted once per (sub)graph to keep the DOT source small
+            graphviz = Graphviz.fromString(graph.toCompactString())
+                    .basedir(baseDir).priority(priority).layoutPolicy(layoutPolicy);
+            if (incrementalLayout && format != Format.DOT)
+                graphviz = layoutIncrementally(contextMap, graphviz);
+            else if (layoutCache != null)
+                graphviz = graphviz.layoutCache(layoutCache);
+        }
 
         // store file
         if (useWidth)
-            return Graphviz.fromGraph(graph).basedir(baseDir).width(width).render(format);
+            return graphviz.width(width).render(format);
         else
-            return Graphviz.fromGraph(graph).basedir(baseDir).height(height).render(format);
+            return graphviz.height(height).render(format);
+    }
+
+    private Graphviz layoutIncrementally(ContextMap contextMap, Graphviz graphviz) {
+        Layout layout = graphviz.layout(layouts.get(contextMap));
+        layouts.put(contextMap, layout);
+        return Graphviz.fromLayout(layout).basedir(baseDir).priority(priority);
+    }
+
+    /*
+     * The graphs are created one after the other (the generator is not thread safe), only the layouts run in parallel
+     */
+    private Graphviz layoutComponents(List<ContextMapSnapshot> components) {
+        List<CompletableFuture<Layout>> pending = new ArrayList<>();
+        for (ContextMapSnapshot component : components)
+            pending.add(Graphviz.fromString(createGraph(component, false).toCompactString())
+                    .basedir(baseDir).priority(priority).layoutPolicy(layoutPolicy).layoutAsync());
+        List<Layout> componentLayouts;
+        try {
+            componentLayouts = pending.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return Graphviz.fromLayout(Layout.pack(componentLayouts, COMPONENT_GAP)).basedir(baseDir).priority(priority);
     }
 
-    private MutableGraph createGraph(ContextMap contextMap, boolean withImagePath) {
+    /*
+     * Splits the Context Map into its connected components, the biggest first.
+     * Components of the same size are ordered by the smallest Bounded Context name, so the result is deterministic.
+     */
+    List<ContextMapSnapshot> splitComponents(ContextMapSnapshot contextMap) {
+        Map<String, String> parents = new HashMap<>();
+        List<BoundedContext> boundedContexts = contextMap.getBoundedContexts().stream()
+                .sorted(Comparator.comparing(BoundedContext::getName)).collect(Collectors.toList());
+        boundedContexts.forEach(bc -> parents.put(bc.getName(), bc.getName()));
+        contextMap.getRelationships().forEach(rel -> union(parents, rel.getFirstParticipant().getName(), rel.getSecondParticipant().getName()));
+        contextMap.getBoundedContexts(BoundedContextType.TEAM).forEach(team -> contextMap.getRealizedBoundedContexts(team)
+                .forEach(system -> union(parents, team.getName(), system.getName())));
+
+        Map<String, ContextMap> components = new LinkedHashMap<>();
+        boundedContexts.forEach(bc -> components.computeIfAbsent(find(parents, bc.getName()), root -> new ContextMap()).addBoundedContext(bc));
+        contextMap.getRelationships().forEach(rel -> components.get(find(parents, rel.getFirstParticipant().getName())).addRelationship(rel));
+        return components.values().stream()
+                .map(ContextMap::snapshot)
+                .sorted(Comparator.comparing(component -> -component.getBoundedContexts().size()))
+                .collect(Collectors.toList());
+    }
+
+    private void union(Map<String, String> parents, String bc1, String bc2) {
+        String root1 = find(parents, bc1);
+        String root2 = find(parents, bc2);
+        if (!root1.equals(root2))
+            parents.put(root2, root1);
+    }
+
+    private String find(Map<String, String> parents, String bc) {
+        String root = bc;
+        while (!parents.get(root).equals(root))
+            root = parents.get(root);
+        parents.put(bc, root);
+        return root;
+    }
+
+    MutableGraph createGraph(ContextMapSnapshot contextMap, boolean withImagePath) {
         this.bcNodesMap = new TreeMap<>();
         this.genericNodes = new HashSet<>();
         this.teamNodes = new HashSet<>();
-        MutableGraph rootGraph = createGraph("ContextMapGraph", withImagePath);
-
-        createNodes(contextMap.getBoundedContexts());
+        int expectedNodes = contextMap.getBoundedContexts().size();
+        GraphBuilder rootBuilder = createGraph("ContextMapGraph", expectedNodes, withImagePath);
+        if (concentrateEdges)
+            rootBuilder.graph().graphAttrs().add(attr("concentrate", "true"));
 
         if (!needsSubGraphs(contextMap)) {
-            addNodesToGraph(rootGraph, bcNodesMap.values());
-            createRelationshipLinks4ExistingNodes(contextMap.getRelationships());
+            createNodes(rootBuilder, rootBuilder, contextMap.getBoundedContexts());
+            addNodesToGraph(rootBuilder, bcNodesMap.values());
+            createRelationshipLinks4ExistingNodes(rootBuilder, contextMap.getRelationships());
         } else {
-            MutableGraph genericGraph = createGraph(getSubgraphName("GenericSubgraph"), withImagePath)
-                    .graphAttrs().add("color", "white");
-            addNodesToGraph(genericGraph, genericNodes);
-            MutableGraph teamGraph = createGraph(getSubgraphName("Teams_Subgraph"), withImagePath)
-                    .graphAttrs().add("color", "white");
-            addNodesToGraph(teamGraph, teamNodes);
-            genericGraph.addTo(rootGraph);
-            teamGraph.addTo(rootGraph);
-
-            createRelationshipLinks4ExistingNodes(contextMap.getRelationships().stream().filter(rel -> rel.getFirstParticipant().getType() == rel.getSecondParticipant().getType())
+            GraphBuilder genericBuilder = createGraph(getSubgraphName("GenericSubgraph"), expectedNodes, withImagePath);
+            genericBuilder.graph().graphAttrs().add("color", "white");
+            GraphBuilder teamBuilder = createGraph(getSubgraphName("Teams_Subgraph"), expectedNodes, withImagePath);
+            teamBuilder.graph().graphAttrs().add("color", "white");
+            createNodes(genericBuilder, teamBuilder, contextMap.getBoundedContexts());
+            addNodesToGraph(genericBuilder, genericNodes);
+            addNodesToGraph(teamBuilder, teamNodes);
+            rootBuilder.add(genericBuilder.graph());
+            rootBuilder.add(teamBuilder.graph());
+
+            createRelationshipLinks4ExistingNodes(rootBuilder, contextMap.getRelationships().stream().filter(rel -> rel.getFirstParticipant().getType() == rel.getSecondParticipant().getType())
                     .collect(Collectors.toSet()));
-            createRelationshipLinks(rootGraph, contextMap.getRelationships().stream().filter(rel -> rel.getFirstParticipant().getType() != rel.getSecondParticipant().getType())
+            createRelationshipLinks(rootBuilder, contextMap.getRelationships().stream().filter(rel -> rel.getFirstParticipant().getType() != rel.getSecondParticipant().getType())
                     .collect(Collectors.toSet()));
-            createTeamImplementationLinks(rootGraph, contextMap.getBoundedContexts().stream().filter(bc -> bc.getType() == BoundedContextType.TEAM
-                    && !bc.getRealizedBoundedContexts().isEmpty()).collect(Collectors.toList()));
+            createTeamImplementationLinks(rootBuilder, contextMap);
         }
-        return rootGraph;
+        return rootBuilder.graph();
+    }
+
+    /*
+     * Every group of Bounded Contexts becomes one node. Relationships between single Bounded Contexts are drawn
+     * as usual, all others are aggregated into one edge per pair of groups whose weight is the number of relationships.
+     */
+    MutableGraph createSummaryGraph(ContextMapSnapshot contextMap, boolean withImagePath) {
+        List<List<BoundedContext>> groups = new LevelOfDetail(levelOfDetail).groups(contextMap);
+        this.bcNodesMap = new TreeMap<>();
+        GraphBuilder builder = createGraph("ContextMapGraph", groups.size(), withImagePath);
+        if (concentrateEdges)
+            builder.graph().graphAttrs().add(attr("concentrate", "true"));
+        Map<String, Integer> groupIndexes = new HashMap<>();
+        List<MutableNode> groupNodes = new ArrayList<>();
+        for (List<BoundedContext> group : groups) {
+            MutableNode node = group.size() == 1 ? createNode(builder, group.get(0)) : createSummaryNode(builder, group);
+            for (BoundedContext bc : group) {
+                bcNodesMap.put(bc.getName(), node);
+                groupIndexes.put(bc.getName(), groupNodes.size());
+            }
+            groupNodes.add(node);
+        }
+        addNodesToGraph(builder, groupNodes);
+
+        Comparator<List<Integer>> byGroups = Comparator.comparing((List<Integer> pair) -> pair.get(0)).thenComparing(pair -> pair.get(1));
+        Map<List<Integer>, Integer> relationshipCounts = new TreeMap<>(byGroups);
+        Map<List<Integer>, Integer> realizationCounts = new TreeMap<>(byGroups);
+        List<Relationship> detailedRelationships = new ArrayList<>();
+        for (Relationship rel : contextMap.getRelationships()) {
+            int group1 = groupIndexes.get(rel.getFirstParticipant().getName());
+            int group2 = groupIndexes.get(rel.getSecondParticipant().getName());
+            if (groups.get(group1).size() == 1 && groups.get(group2).size() == 1)
+                detailedRelationships.add(rel);
+            else if (group1 != group2)
+                relationshipCounts.merge(Arrays.asList(Math.min(group1, group2), Math.max(group1, group2)), 1, Integer::sum);
+        }
+        createRelationshipLinks4ExistingNodes(builder, detailedRelationships);
+        for (BoundedContext team : contextMap.getBoundedContexts(BoundedContextType.TEAM)) {
+            for (BoundedContext system : contextMap.getRealizedBoundedContexts(team)) {
+                int group1 = groupIndexes.get(team.getName());
+                int group2 = groupIndexes.get(system.getName());
+                if (groups.get(group1).size() == 1 && groups.get(group2).size() == 1)
+                    createTeamImplementationLink(builder, groupNodes.get(group1), groupNodes.get(group2));
+                else if (group1 != group2)
+                    realizationCounts.merge(Arrays.asList(group1, group2), 1, Integer::sum);
+            }
+        }
+        relationshipCounts.forEach((pair, count) -> builder.link(groupNodes.get(pair.get(0)), groupNodes.get(pair.get(1)), attrs(
+                Label.of(count + (count == 1 ? " relationship" : " relationships")),
+                attr("dir", "none"),
+                attr("weight", count),
+                attr("penwidth", summaryEdgeWidth(count)),
+                attr("fontname", "sans-serif"),
+                attr("fontsize", "12"),
+                attr("style", "bold"))));
+        realizationCounts.forEach((pair, count) -> builder.link(groupNodes.get(pair.get(0)), groupNodes.get(pair.get(1)), attrs(
+                Label.lines(getRealizesLabel() + (count == 1 ? "" : " (" + count + ")")),
+                attr("weight", count),
+                attr("penwidth", summaryEdgeWidth(count)),
+                attr("color", "#686868"),
+                attr("fontname", "sans-serif"),
+                attr("fontsize", "12"),
+                attr("fontcolor", "#686868"),
+                attr("style", "dashed"))));
+        return builder.graph();
+    }
+
+    private MutableNode createSummaryNode(GraphBuilder builder, List<BoundedContext> group) {
+        String first = group.get(0).getName();
+        MutableNode node = builder.node(first + " [+" + (group.size() - 1) + "]");
+        node.add(Label.lines(first, "and " + (group.size() - 1) + " more Bounded Context" + (group.size() > 2 ? "s" : "")));
+        node.add(Shape.RECTANGLE);
+        node.add(attr("tooltip", group.stream().map(BoundedContext::getName).collect(Collectors.joining(", "))));
+        node.add(attr("peripheries", "2"));
+        node.add(attr("margin", "0.3"));
+        node.add(attr("fontname", "sans-serif"));
+        node.add(attr("fontsize", "16"));
+        node.add(attr("style", "bold,rounded"));
+        return node;
+    }
+
+    private String summaryEdgeWidth(int count) {
+        return String.format(Locale.ENGLISH, "%.1f", 1 + Math.log(count) / Math.log(2));
     }
 
     private String getSubgraphName(String baseName) {
         return clusterTeams ? "cluster_" + baseName : baseName;
     }
 
-    private boolean needsSubGraphs(ContextMap contextMap) {
-        boolean hasTeams = contextMap.getBoundedContexts().stream().anyMatch(bc -> bc.getType() == BoundedContextType.TEAM);
-        boolean hasGenericContexts = contextMap.getBoundedContexts().stream().anyMatch(bc -> bc.getType() == BoundedContextType.GENERIC);
-        return hasGenericContexts && hasTeams;
+    private boolean needsSubGraphs(ContextMapSnapshot contextMap) {
+        return contextMap.hasBoundedContexts(BoundedContextType.GENERIC) && contextMap.hasBoundedContexts(BoundedContextType.TEAM);
     }
 
-    private MutableGraph createGraph(String name, boolean withImagePath) {
-        MutableGraph rootGraph = mutGraph(name);
-        rootGraph.setDirected(true);
+    /*
+     * Graphs are built with a GraphBuilder bound to the graph, so that no thread local creation context is involved
+     */
+    private GraphBuilder createGraph(String name, int expectedNodes, boolean withImagePath) {
+        GraphBuilder builder = new GraphBuilder(name, expectedNodes);
+        builder.graph().setDirected(true);
         if (withImagePath)
-            rootGraph.graphAttrs().add(attr("imagepath", baseDir.getAbsolutePath()));
-        return rootGraph;
+            builder.graph().graphAttrs().add(attr("imagepath", baseDir.getAbsolutePath()));
+        return builder;
     }
 
-    private void addNodesToGraph(MutableGraph graph, Collection<MutableNode> nodes) {
-        for (MutableNode node : nodes) {
-            graph.add(node);
-        }
+    private void addNodesToGraph(GraphBuilder builder, Collection<MutableNode> nodes) {
+        builder.add(nodes);
     }
 
-    private void createNodes(Set<BoundedContext> boundedContexts) {
+    private void createNodes(GraphBuilder genericBuilder, GraphBuilder teamBuilder, Set<BoundedContext> boundedContexts) {
         boundedContexts.forEach(bc -> {
-            MutableNode node = createNode(bc);
-            bcNodesMap.put(bc.getName(), node);
-            if (bc.getType() == BoundedContextType.TEAM)
+            if (bc.getType() == BoundedContextType.TEAM) {
+                MutableNode node = createNode(teamBuilder, bc);
+                bcNodesMap.put(bc.getName(), node);
                 teamNodes.add(node);
-            else
+            } else {
+                MutableNode node = createNode(genericBuilder, bc);
+                bcNodesMap.put(bc.getName(), node);
                 genericNodes.add(node);
+            }
         });
     }
 
-    private MutableNode createNode(BoundedContext bc) {
-        MutableNode node = mutNode(bc.getName());
+    private MutableNode createNode(GraphBuilder builder, BoundedContext bc) {
+        MutableNode node = builder.node(bc.getName());
         node.add(createNodeLabel(bc));
-        node.add(Shape.EGG);
+        if (renderingProfile == RenderingProfile.FAST) {
+            node.add(Shape.RECTANGLE);
+        } else {
+            node.add(Shape.EGG);
+            node.add(attr("orientation", orientationDegree(bc)));
+        }
         node.add(attr("margin", "0.3"));
-        node.add(attr("orientation", orientationDegree()));
         node.add(attr("fontname", "sans-serif"));
         node.add(attr("fontsize", "16"));
         node.add(attr("style", "bold"));
         return node;
     }
 
-    private void createRelationshipLinks4ExistingNodes(Set<Relationship> relationships) {
-        relationships.forEach(rel -> {
-            createRelationshipLink(this.bcNodesMap.get(rel.getFirstParticipant().getName()),
-                    this.bcNodesMap.get(rel.getSecondParticipant().getName()), rel);
+    private void createRelationshipLinks4ExistingNodes(GraphBuilder builder, Collection<Relationship> relationships) {
+        bundle(relationships).forEach(rels -> {
+            Relationship rel = rels.get(0);
+            createRelationshipLink(builder, this.bcNodesMap.get(rel.getFirstParticipant().getName()),
+                    this.bcNodesMap.get(rel.getSecondParticipant().getName()), rels);
         });
     }
 
-    private void createRelationshipLinks(MutableGraph graph, Set<Relationship> relationships) {
-        relationships.forEach(rel -> {
-            MutableNode node1 = createNode(rel.getFirstParticipant());
-            MutableNode node2 = createNode(rel.getSecondParticipant());
-            createRelationshipLink(node1, node2, rel);
-            graph.add(node1);
-            graph.add(node2);
+    private void createRelationshipLinks(GraphBuilder builder, Set<Relationship> relationships) {
+        bundle(relationships).forEach(rels -> {
+            MutableNode node1 = createNode(builder, rels.get(0).getFirstParticipant());
+            MutableNode node2 = createNode(builder, rels.get(0).getSecondParticipant());
+            createRelationshipLink(builder, node1, node2, rels);
+            builder.add(node1);
+            builder.add(node2);
         });
     }
 
-    private void createRelationshipLink(MutableNode node1, MutableNode node2, Relationship rel) {
+    /*
+     * Without bundling, every relationship is drawn on its own. With bundling, the relationships between the same
+     * two Bounded Contexts are grouped, ordered by their description so that the combined label is deterministic.
+     */
+    private Collection<List<Relationship>> bundle(Collection<Relationship> relationships) {
+        if (!bundleRelationships)
+            return relationships.stream().map(Collections::singletonList).collect(Collectors.toList());
+        Map<List<String>, List<Relationship>> bundles = new TreeMap<>(
+                Comparator.comparing((List<String> pair) -> pair.get(0)).thenComparing(pair -> pair.get(1)));
+        for (Relationship rel : relationships) {
+            List<String> pair = Arrays.asList(rel.getFirstParticipant().getName(), rel.getSecondParticipant().getName());
+            pair.sort(Comparator.naturalOrder());
+            bundles.computeIfAbsent(pair, key -> new ArrayList<>()).add(rel);
+        }
+        bundles.values().forEach(rels -> rels.sort(Comparator.comparing(this::describeRelationship)));
+        return bundles.values();
+    }
+
+    private void createRelationshipLink(GraphBuilder builder, MutableNode node1, MutableNode node2, List<Relationship> rels) {
+        if (rels.size() == 1) {
+            createRelationshipLink(builder, node1, node2, rels.get(0));
+            return;
+        }
+        builder.link(node1, node2, attrs(
+                Label.lines(rels.stream().map(this::describeRelationship).toArray(String[]::new)),
+                attr("dir", "none"),
+                attr("fontname", "sans-serif"),
+                attr("style", "bold"),
+                attr("fontsize", "12")));
+    }
+
+    /*
+     * A plain text description of a relationship for bundled edges, naming the upstream and downstream context
+     */
+    private String describeRelationship(Relationship rel) {
+        if (rel instanceof Partnership)
+            return getRelationshipLabelText("Partnership", rel.getName(), rel.getImplementationTechnology());
+        if (rel instanceof SharedKernel)
+            return getRelationshipLabelText("Shared Kernel", rel.getName(), rel.getImplementationTechnology());
+        UpstreamDownstreamRelationship upDownRel = (UpstreamDownstreamRelationship) rel;
+        String type = getRelationshipLabelText(upDownRel.isCustomerSupplier() ? "Customer/Supplier" : "", rel.getName(), rel.getImplementationTechnology());
+        String roles = "U: " + upDownRel.getUpstreamBoundedContext().getName() + describePatterns(upstreamPatternsToStrings(upDownRel.getUpstreamPatterns()))
+                + ", D: " + upDownRel.getDownstreamBoundedContext().getName() + describePatterns(downstreamPatternsToStrings(upDownRel.getDownstreamPatterns()));
+        return "".equals(type) ? roles : type + " - " + roles;
+    }
+
+    private String describePatterns(Set<String> patterns) {
+        return patterns.isEmpty() ? "" : " (" + patterns.stream().sorted().collect(Collectors.joining(", ")) + ")";
+    }
+
+    private void createRelationshipLink(GraphBuilder builder, MutableNode node1, MutableNode node2, Relationship rel) {
         if (rel instanceof Partnership) {
-            node1.addLink(to(node2).with(createRelationshipLabel("Partnership", rel.getName(), rel.getImplementationTechnology()))
-                    .add(attr("dir", "none"))
-                    .add(attr("fontname", "sans-serif"))
-                    .add(attr("style", "bold"))
-                    .add(attr("fontsize", "12")));
+            builder.link(node1, node2, attrs(
+                    createRelationshipLabel("Partnership", rel.getName(), rel.getImplementationTechnology()),
+                    attr("dir", "none"),
+                    attr("fontname", "sans-serif"),
+                    attr("style", "bold"),
+                    attr("fontsize", "12")));
         } else if (rel instanceof SharedKernel) {
-            node1.addLink(to(node2).with(createRelationshipLabel("Shared Kernel", rel.getName(), rel.getImplementationTechnology()))
-                    .add(attr("dir", "none"))
-                    .add(attr("fontname", "sans-serif"))
-                    .add(attr("style", "bold"))
-                    .add(attr("fontsize", "12")));
+            builder.link(node1, node2, attrs(
+                    createRelationshipLabel("Shared Kernel", rel.getName(), rel.getImplementationTechnology()),
+                    attr("dir", "none"),
+                    attr("fontname", "sans-serif"),
+                    attr("style", "bold"),
+                    attr("fontsize", "12")));
         } else {
             UpstreamDownstreamRelationship upDownRel = (UpstreamDownstreamRelationship) rel;
-            node1.addLink(to(node2).with(
+            builder.link(node1, node2, attrs(
                     createRelationshipLabel(upDownRel.isCustomerSupplier() ? "Customer/Supplier" : "", rel.getName(), rel.getImplementationTechnology()),
                     attr("dir", "none"),
                     attr("labeldistance", "0"),
                     attr("fontname", "sans-serif"),
                     attr("fontsize", "12"),
                     attr("style", "bold"),
-                    attr("headlabel", getEdgeHTMLLabel("D", downstreamPatternsToStrings(upDownRel.getDownstreamPatterns()))),
-                    attr("taillabel", getEdgeHTMLLabel("U", upstreamPatternsToStrings(upDownRel.getUpstreamPatterns())))
+                    attr("headlabel", getEdgeLabel("D", downstreamPatternsToStrings(upDownRel.getDownstreamPatterns()))),
+                    attr("taillabel", getEdgeLabel("U", upstreamPatternsToStrings(upDownRel.getUpstreamPatterns())))
             ));
         }
     }
 
-    private void createTeamImplementationLinks(MutableGraph graph, List<BoundedContext> teams) {
-        for (BoundedContext team : teams) {
-            team.getRealizedBoundedContexts().forEach(system -> {
+    private void createTeamImplementationLinks(GraphBuilder builder, ContextMapSnapshot contextMap) {
+        for (BoundedContext team : contextMap.getBoundedContexts(BoundedContextType.TEAM)) {
+            contextMap.getRealizedBoundedContexts(team).forEach(system -> {
                 if (bcNodesMap.containsKey(team.getName()) && bcNodesMap.containsKey(system.getName())) {
-                    MutableNode node1 = createNode(team);
-                    MutableNode node2 = createNode(system);
-                    node1.addLink(to(node2).with(
-                            Label.lines(getRealizesLabel()),
-                            attr("color", "#686868"),
-                            attr("fontname", "sans-serif"),
-                            attr("fontsize", "12"),
-                            attr("fontcolor", "#686868"),
-                            attr("style", "dashed")));
-                    graph.add(node1);
-                    graph.add(node2);
+                    MutableNode node1 = createNode(builder, team);
+                    MutableNode node2 = createNode(builder, system);
+                    createTeamImplementationLink(builder, node1, node2);
+                    builder.add(node1);
+                    builder.add(node2);
                 }
             });
         }
     }
 
+    private void createTeamImplementationLink(GraphBuilder builder, MutableNode team, MutableNode system) {
+        builder.link(team, system, attrs(
+                Label.lines(getRealizesLabel()),
+                attr("color", "#686868"),
+                attr("fontname", "sans-serif"),
+                attr("fontsize", "12"),
+                attr("fontcolor", "#686868"),
+                attr("style", "dashed")));
+    }
+
     private String getRealizesLabel() {
         return (System.getProperty("os.name").toLowerCase().indexOf("win") >= 0) ? "  \"realizes\"" : "  «realizes»";
     }
 
     private Label createNodeLabel(BoundedContext boundedContext) {
+        if (boundedContext.getType() == BoundedContextType.TEAM && renderingProfile == RenderingProfile.FAST)
+            return Label.lines("Team", boundedContext.getName());
         if (boundedContext.getType() == BoundedContextType.TEAM)
             return Label.html("<table cellspacing=\"0\" cellborder=\"0\" border=\"0\"><tr><td rowspan=\"2\"><img src='" + TEAM_ICON_FILE_NAME + "' /></td><td width=\"10px\">" +
                     "</td><td><b>Team</b></td></tr><tr><td width=\"10px\"></td><td>" + boundedContext.getName() + "</td></tr></table>");
@@ -314,6 +703,19 @@ public class ContextMapGenerator {
     }
 
     private Label createRelationshipLabel(String relationshipType, String relationshipName, String implementationTechnology) {
+        String label = getRelationshipLabelText(relationshipType, relationshipName, implementationTechnology);
+        if (!"".equals(label))
+            return Label.of(label);
+
+        // create spacing for edges without label
+        String spacing = "";
+        for (int i = 1; i <= labelSpacingFactor; i++) {
+            spacing = spacing + EDGE_SPACING_UNIT;
+        }
+        return Label.of(spacing);
+    }
+
+    private String getRelationshipLabelText(String relationshipType, String relationshipName, String implementationTechnology) {
         boolean relationshipTypeDefined = relationshipType != null && !"".equals(relationshipType);
         boolean nameDefined = relationshipName != null && !"".equals(relationshipName);
         boolean implementationTechnologyDefined = implementationTechnology != null && !"".equals(implementationTechnology);
@@ -332,23 +734,15 @@ public class ContextMapGenerator {
             label = relationshipName;
         else if (implementationTechnologyDefined)
             label = implementationTechnology;
-
-        if (!"".equals(label))
-            return Label.of(label);
-
-        // create spacing for edges without label
-        String spacing = "";
-        for (int i = 1; i <= labelSpacingFactor; i++) {
-            spacing = spacing + EDGE_SPACING_UNIT;
-        }
-        return Label.of(spacing);
+        return label == null ? "" : label;
     }
 
     /*
-     * Generate random orientation degree
+     * The orientation only has to look random; it is derived from the name, so that the same Context Map always
+     * produces the same DOT source (stable maps and layout cache hits).
      */
-    private int orientationDegree() {
-        return new Random().nextInt(350);
+    private int orientationDegree(BoundedContext bc) {
+        return Math.floorMod(bc.getName().hashCode(), 350);
     }
 
     private Set<String> downstreamPatternsToStrings(Set<DownstreamPatterns> patterns) {
@@ -359,6 +753,12 @@ public class ContextMapGenerator {
         return patterns.stream().map(p -> p.toString()).collect(Collectors.toSet());
     }
 
+    private Label getEdgeLabel(String upstreamDownstreamLabel, Set<String> patterns) {
+        if (renderingProfile == RenderingProfile.FAST)
+            return Label.of(upstreamDownstreamLabel + describePatterns(patterns));
+        return getEdgeHTMLLabel(upstreamDownstreamLabel, patterns);
+    }
+
     private Label getEdgeHTMLLabel(String upstreamDownstreamLabel, Set<String> patterns) {
         String upstreamDownstreamCell = "<td bgcolor=\"white\">" + upstreamDownstreamLabel + "</td>";
         String patternCell = "";
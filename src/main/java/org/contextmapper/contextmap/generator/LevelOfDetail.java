@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator;
+
+import org.contextmapper.contextmap.generator.model.BoundedContext;
+import org.contextmapper.contextmap.generator.model.BoundedContextType;
+import org.contextmapper.contextmap.generator.model.ContextMapSnapshot;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Collapses the Bounded Contexts of a big Context Map into groups, so that it can be drawn with a bounded number
+ * of nodes. Groups are merged one pair at a time until there are at most maxNodes groups:
+ * First the groups that are most densely connected (a team and the Bounded Contexts it realizes count twice as
+ * much as a relationship), then, if there are no connected groups left, the two smallest groups.
+ * The pairs are kept in a priority queue, so a merge only costs as much as the connections of the merged groups.
+ */
+class LevelOfDetail {
+
+    private static final int REALIZATION_WEIGHT = 2;
+
+    private final int maxNodes;
+
+    LevelOfDetail(int maxNodes) {
+        if (maxNodes < 1)
+            throw new IllegalArgumentException("The maximum number of nodes must be positive.");
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Groups the Bounded Contexts of the given Context Map.
+     *
+     * @param contextMap the Context Map to be grouped
+     * @return the groups, each sorted by name and ordered by the name of their first Bounded Context
+     */
+    List<List<BoundedContext>> groups(ContextMapSnapshot contextMap) {
+        List<BoundedContext> boundedContexts = contextMap.getBoundedContexts().stream()
+                .sorted(Comparator.comparing(BoundedContext::getName)).collect(Collectors.toList());
+        Map<String, Integer> indexes = new HashMap<>();
+        for (BoundedContext bc : boundedContexts)
+            indexes.put(bc.getName(), indexes.size());
+        Groups groups = new Groups(boundedContexts);
+        contextMap.getRelationships().forEach(rel -> groups.connect(
+                indexes.get(rel.getFirstParticipant().getName()), indexes.get(rel.getSecondParticipant().getName()), 1));
+        contextMap.getBoundedContexts(BoundedContextType.TEAM).forEach(team -> contextMap.getRealizedBoundedContexts(team)
+                .forEach(system -> groups.connect(indexes.get(team.getName()), indexes.get(system.getName()), REALIZATION_WEIGHT)));
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        for (int group1 = 0; group1 < boundedContexts.size(); group1++)
+            groups.addCandidates(candidates, group1);
+        TreeSet<Integer> bySize = null;
+        for (int count = boundedContexts.size(); count > maxNodes; count--) {
+            Candidate densest = groups.poll(candidates);
+            if (densest != null) {
+                groups.merge(densest.group1, densest.group2);
+                groups.addCandidates(candidates, densest.group1);
+            } else {
+                // no connected groups are left and merging unconnected groups does not connect them
+                if (bySize == null) {
+                    bySize = new TreeSet<>(Comparator.comparing((Integer i) -> groups.size(i)).thenComparing(i -> i));
+                    bySize.addAll(groups.remaining());
+                }
+                int smallest = bySize.pollFirst();
+                int second = bySize.pollFirst();
+                int group1 = Math.min(smallest, second);
+                groups.merge(group1, Math.max(smallest, second));
+                bySize.add(group1);
+            }
+        }
+        return groups.result();
+    }
+
+    /*
+     * The groups are identified by the index of their first Bounded Context, a merged group keeps the lower index.
+     * The connection weights between the groups are updated while they are merged.
+     */
+    private static class Groups {
+        private final List<List<BoundedContext>> members = new ArrayList<>();
+        private final List<Map<Integer, Integer>> weights = new ArrayList<>();
+        private final int[] versions;
+
+        Groups(List<BoundedContext> boundedContexts) {
+            for (BoundedContext bc : boundedContexts) {
+                members.add(new ArrayList<>(Collections.singletonList(bc)));
+                weights.add(new HashMap<>());
+            }
+            versions = new int[boundedContexts.size()];
+        }
+
+        void connect(int group1, int group2, int weight) {
+            if (group1 == group2)
+                return;
+            weights.get(group1).merge(group2, weight, Integer::sum);
+            weights.get(group2).merge(group1, weight, Integer::sum);
+        }
+
+        int size(int group) {
+            return members.get(group).size();
+        }
+
+        List<Integer> remaining() {
+            List<Integer> remaining = new ArrayList<>();
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i) != null)
+                    remaining.add(i);
+            }
+            return remaining;
+        }
+
+        void addCandidates(PriorityQueue<Candidate> candidates, int group) {
+            for (Map.Entry<Integer, Integer> connection : weights.get(group).entrySet()) {
+                int other = connection.getKey();
+                int group1 = Math.min(group, other);
+                int group2 = Math.max(group, other);
+                candidates.add(new Candidate(group1, group2, versions[group1], versions[group2],
+                        (double) connection.getValue() / (size(group1) * size(group2)), size(group1) + size(group2)));
+            }
+        }
+
+        /*
+         * Candidates of groups that have been merged since are outdated and skipped,
+         * the version of a group changes with every merge, also when it is merged into another group
+         */
+        Candidate poll(PriorityQueue<Candidate> candidates) {
+            while (!candidates.isEmpty()) {
+                Candidate candidate = candidates.poll();
+                if (candidate.isCurrent(versions))
+                    return candidate;
+            }
+            return null;
+        }
+
+        /*
+         * Merges the second group into the first one, which has the lower index
+         */
+        void merge(int group1, int group2) {
+            members.get(group1).addAll(members.get(group2));
+            members.set(group2, null);
+            versions[group1]++;
+            versions[group2]++;
+            weights.get(group1).remove(group2);
+            for (Map.Entry<Integer, Integer> connection : weights.get(group2).entrySet()) {
+                int other = connection.getKey();
+                if (other == group1)
+                    continue;
+                weights.get(other).remove(group2);
+                connect(group1, other, connection.getValue());
+            }
+            weights.get(group2).clear();
+        }
+
+        List<List<BoundedContext>> result() {
+            return members.stream().filter(Objects::nonNull)
+                    .peek(group -> group.sort(Comparator.comparing(BoundedContext::getName)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /*
+     * A pair of connected groups; the pair with the most connections per possible connection comes first,
+     * ties are broken by the smaller combined size and then by the lower indexes, so that the result is deterministic.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        final int group1;
+        final int group2;
+        final int version1;
+        final int version2;
+        final double density;
+        final int size;
+
+        Candidate(int group1, int group2, int version1, int version2, double density, int size) {
+            this.group1 = group1;
+            this.group2 = group2;
+            this.version1 = version1;
+            this.version2 = version2;
+            this.density = density;
+            this.size = size;
+        }
+
+        boolean isCurrent(int[] versions) {
+            return versions[group1] == version1 && versions[group2] == version2;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byDensity = Double.compare(other.density, density);
+            if (byDensity != 0)
+                return byDensity;
+            if (size != other.size)
+                return Integer.compare(size, other.size);
+            if (group1 != other.group1)
+                return Integer.compare(group1, other.group1);
+            return Integer.compare(group2, other.group2);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator;
+
+import org.contextmapper.contextmap.generator.model.BoundedContext;
+import org.contextmapper.contextmap.generator.model.ContextMap;
+import org.contextmapper.contextmap.generator.model.ContextMapSnapshot;
+import org.contextmapper.contextmap.generator.model.Relationship;
+import org.contextmapper.contextmap.generator.model.exception.BoundedContextNotPartOfContextMapException;
+
+import java.util.*;
+
+/**
+ * Extracts the surroundings of focus Bounded Contexts from a Context Map. The adjacency of the Context Map
+ * (relationships and team realizations, in both directions) is indexed once, so that any number of views can
+ * be extracted in time proportional to their size instead of the size of the whole Context Map.
+ * The index is a snapshot: changes to the Context Map after creating it are not reflected.
+ */
+public class Neighbourhood {
+
+    private final ContextMapSnapshot contextMap;
+
+    /**
+     * Indexes the given Context Map.
+     *
+     * @param contextMap the Context Map from which the views shall be extracted
+     */
+    public Neighbourhood(ContextMap contextMap) {
+        this(contextMap.snapshot());
+    }
+
+    /**
+     * Uses an already indexed Context Map.
+     *
+     * @param contextMap the snapshot of the Context Map from which the views shall be extracted
+     */
+    public Neighbourhood(ContextMapSnapshot contextMap) {
+        this.contextMap = contextMap;
+    }
+
+    /**
+     * Extracts all Bounded Contexts that are at most the given number of hops away from a focus Bounded Context,
+     * together with all relationships between them.
+     *
+     * @param hops  the maximum distance from the focus Bounded Contexts; 0 only extracts the focus Bounded Contexts
+     * @param focus the Bounded Contexts in the center of the view
+     * @return a new Context Map containing the neighbourhood
+     */
+    public ContextMap around(int hops, BoundedContext... focus) {
+        return around(hops, Arrays.asList(focus));
+    }
+
+    /**
+     * Extracts all Bounded Contexts that are at most the given number of hops away from a focus Bounded Context,
+     * together with all relationships between them.
+     *
+     * @param hops  the maximum distance from the focus Bounded Contexts; 0 only extracts the focus Bounded Contexts
+     * @param focus the Bounded Contexts in the center of the view
+     * @return a new Context Map containing the neighbourhood
+     */
+    public ContextMap around(int hops, Collection<BoundedContext> focus) {
+        if (hops < 0)
+            throw new IllegalArgumentException("The number of hops must not be negative.");
+        Set<BoundedContext> reached = new LinkedHashSet<>();
+        List<BoundedContext> frontier = new ArrayList<>();
+        for (BoundedContext bc : focus) {
+            if (!contextMap.contains(bc))
+                throw new BoundedContextNotPartOfContextMapException(bc);
+            BoundedContext indexed = contextMap.getBoundedContext(bc.getName());
+            if (reached.add(indexed))
+                frontier.add(indexed);
+        }
+        for (int hop = 0; hop < hops && !frontier.isEmpty(); hop++) {
+            List<BoundedContext> next = new ArrayList<>();
+            for (BoundedContext bc : frontier) {
+                for (BoundedContext neighbour : contextMap.getNeighbours(bc)) {
+                    if (reached.add(neighbour))
+                        next.add(neighbour);
+                }
+            }
+            frontier = next;
+        }
+
+        ContextMap view = new ContextMap();
+        reached.forEach(view::addBoundedContext);
+        Set<Relationship> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BoundedContext bc : reached) {
+            for (Relationship rel : contextMap.getRelationships(bc)) {
+                if (reached.contains(rel.getFirstParticipant()) && reached.contains(rel.getSecondParticipant())
+                        && added.add(rel))
+                    view.addRelationship(rel);
+            }
+        }
+        return view;
+    }
+
+}
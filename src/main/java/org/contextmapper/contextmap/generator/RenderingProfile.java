@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator;
+
+/**
+ * Defines how detailed the nodes and edges of a generated Context Map are drawn.
+ * Both profiles show the same Bounded Contexts, relationships and patterns.
+ */
+public enum RenderingProfile {
+
+    /**
+     * Egg shaped nodes with random orientation, team icons and pattern tables on the edges.
+     */
+    DEFAULT,
+
+    /**
+     * Plain boxes, plain text labels and no images; much faster to lay out and draw for large Context Maps.
+     */
+    FAST
+
+}
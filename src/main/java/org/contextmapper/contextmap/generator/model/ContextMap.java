@@ -82,4 +82,14 @@ public class ContextMap {
         set.addAll(this.relationships);
         return set;
     }
+
+    /**
+     * Creates an immutable, indexed snapshot of the Context Map. Use it instead of the getters above if the
+     * Context Map is queried repeatedly; the snapshot answers lookups from its indexes without copying.
+     *
+     * @return the snapshot of the current state of the Context Map
+     */
+    public ContextMapSnapshot snapshot() {
+        return new ContextMapSnapshot(this.boundedContexts, this.relationships);
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator.model;
+
+import java.util.*;
+
+/**
+ * An immutable, indexed view of a {@link ContextMap}, created by {@link ContextMap#snapshot()}.
+ * All lookups are answered from indexes that are built once, and all returned collections are unmodifiable
+ * views of these indexes, so nothing is copied per call.
+ * Changes to the Context Map (or the types and realizations of its Bounded Contexts) after taking the snapshot
+ * are not reflected.
+ */
+public final class ContextMapSnapshot {
+
+    private final Set<BoundedContext> boundedContexts;
+    private final Set<Relationship> relationships;
+    private final Map<String, BoundedContext> boundedContextsByName = new HashMap<>();
+    private final Map<BoundedContextType, Set<BoundedContext>> boundedContextsByType = new EnumMap<>(BoundedContextType.class);
+    private final Map<String, Set<Relationship>> relationshipsByParticipant = new HashMap<>();
+    private final Map<Class<?>, Set<Relationship>> relationshipsByType = new HashMap<>();
+    private final Map<String, List<BoundedContext>> realizedBoundedContexts = new HashMap<>();
+    private final Map<String, List<BoundedContext>> realizingTeams = new HashMap<>();
+    private final Map<String, Set<BoundedContext>> neighbours = new HashMap<>();
+
+    ContextMapSnapshot(Collection<BoundedContext> boundedContexts, Collection<Relationship> relationships) {
+        this.boundedContexts = Collections.unmodifiableSet(new LinkedHashSet<>(boundedContexts));
+        this.relationships = Collections.unmodifiableSet(new LinkedHashSet<>(relationships));
+        for (BoundedContext bc : this.boundedContexts) {
+            boundedContextsByName.put(bc.getName(), bc);
+            boundedContextsByType.computeIfAbsent(bc.getType(), type -> new LinkedHashSet<>()).add(bc);
+        }
+        for (Relationship rel : this.relationships) {
+            relationshipsByParticipant.computeIfAbsent(rel.getFirstParticipant().getName(), name -> new LinkedHashSet<>()).add(rel);
+            relationshipsByParticipant.computeIfAbsent(rel.getSecondParticipant().getName(), name -> new LinkedHashSet<>()).add(rel);
+            relationshipsByType.computeIfAbsent(rel.getClass(), type -> new LinkedHashSet<>()).add(rel);
+            connect(rel.getFirstParticipant(), rel.getSecondParticipant());
+        }
+        for (BoundedContext team : getBoundedContexts(BoundedContextType.TEAM)) {
+            for (BoundedContext system : team.getRealizedBoundedContexts()) {
+                if (!boundedContextsByName.containsKey(system.getName()))
+                    continue;
+                realizedBoundedContexts.computeIfAbsent(team.getName(), name -> new ArrayList<>()).add(system);
+                realizingTeams.computeIfAbsent(system.getName(), name -> new ArrayList<>()).add(team);
+                connect(team, system);
+            }
+        }
+        freeze(boundedContextsByType);
+        freeze(relationshipsByParticipant);
+        freeze(relationshipsByType);
+        freezeLists(realizedBoundedContexts);
+        freezeLists(realizingTeams);
+        freeze(neighbours);
+    }
+
+    private void connect(BoundedContext first, BoundedContext second) {
+        neighbours.computeIfAbsent(first.getName(), name -> new LinkedHashSet<>()).add(boundedContextsByName.get(second.getName()));
+        neighbours.computeIfAbsent(second.getName(), name -> new LinkedHashSet<>()).add(boundedContextsByName.get(first.getName()));
+    }
+
+    private static <K, V> void freeze(Map<K, Set<V>> index) {
+        index.replaceAll((key, values) -> Collections.unmodifiableSet(values));
+    }
+
+    private static <K, V> void freezeLists(Map<K, List<V>> index) {
+        index.replaceAll((key, values) -> Collections.unmodifiableList(values));
+    }
+
+    /**
+     * Gets the Bounded Contexts on the Context Map.
+     *
+     * @return the unmodifiable set of Bounded Contexts
+     */
+    public Set<BoundedContext> getBoundedContexts() {
+        return boundedContexts;
+    }
+
+    /**
+     * Gets the Bounded Contexts of the given type.
+     *
+     * @param type the type of the Bounded Contexts
+     * @return the unmodifiable set of Bounded Contexts of the given type
+     */
+    public Set<BoundedContext> getBoundedContexts(BoundedContextType type) {
+        return boundedContextsByType.getOrDefault(type, Collections.emptySet());
+    }
+
+    /**
+     * Checks whether there are Bounded Contexts of the given type on the Context Map.
+     *
+     * @param type the type of the Bounded Contexts
+     * @return true, if there is at least one Bounded Context of the given type
+     */
+    public boolean hasBoundedContexts(BoundedContextType type) {
+        return boundedContextsByType.containsKey(type);
+    }
+
+    /**
+     * Gets a Bounded Context by its name.
+     *
+     * @param name the name of the Bounded Context
+     * @return the Bounded Context, or null if there is no Bounded Context with this name on the Context Map
+     */
+    public BoundedContext getBoundedContext(String name) {
+        return boundedContextsByName.get(name);
+    }
+
+    /**
+     * Checks whether the given Bounded Context is part of the Context Map.
+     *
+     * @param boundedContext the Bounded Context to be checked
+     * @return true, if there is a Bounded Context with the same name on the Context Map
+     */
+    public boolean contains(BoundedContext boundedContext) {
+        return boundedContextsByName.containsKey(boundedContext.getName());
+    }
+
+    /**
+     * Gets the relationships on the Context Map.
+     *
+     * @return the unmodifiable set of relationships
+     */
+    public Set<Relationship> getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * Gets the relationships in which the given Bounded Context participates.
+     *
+     * @param participant the participating Bounded Context
+     * @return the unmodifiable set of relationships of the Bounded Context
+     */
+    public Set<Relationship> getRelationships(BoundedContext participant) {
+        return relationshipsByParticipant.getOrDefault(participant.getName(), Collections.emptySet());
+    }
+
+    /**
+     * Gets the relationships of the given type.
+     *
+     * @param type the type of the relationships, e.g. {@link Partnership}
+     * @return the unmodifiable set of relationships of exactly the given type
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Relationship> Set<T> getRelationships(Class<T> type) {
+        return (Set<T>) relationshipsByType.getOrDefault(type, Collections.emptySet());
+    }
+
+    /**
+     * Gets the Bounded Contexts on the Context Map which are realized by the given team.
+     *
+     * @param team the team
+     * @return the unmodifiable list of realized Bounded Contexts; empty if the Bounded Context is not a team
+     */
+    public List<BoundedContext> getRealizedBoundedContexts(BoundedContext team) {
+        return realizedBoundedContexts.getOrDefault(team.getName(), Collections.emptyList());
+    }
+
+    /**
+     * Gets the teams on the Context Map which realize the given Bounded Context.
+     *
+     * @param boundedContext the realized Bounded Context
+     * @return the unmodifiable list of realizing teams
+     */
+    public List<BoundedContext> getRealizingTeams(BoundedContext boundedContext) {
+        return realizingTeams.getOrDefault(boundedContext.getName(), Collections.emptyList());
+    }
+
+    /**
+     * Gets the Bounded Contexts which are connected to the given Bounded Context by a relationship or a team
+     * realization, in either direction.
+     *
+     * @param boundedContext the Bounded Context
+     * @return the unmodifiable set of adjacent Bounded Contexts
+     */
+    public Set<BoundedContext> getNeighbours(BoundedContext boundedContext) {
+        return neighbours.getOrDefault(boundedContext.getName(), Collections.emptySet());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The threads and locks used for rendering, Java 21 version.
+ * Renderings mostly wait for a process, a script engine or a socket, so they run on virtual threads.
+ * A virtual thread blocking inside a {@code synchronized} block pins its carrier thread,
+ * so guards use a {@link ReentrantLock} instead.
+ */
+final class Concurrency {
+    private static final ExecutorService VIRTUAL = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Concurrency() {
+    }
+
+    /**
+     * @return the default executor for asynchronous and batch renderings
+     */
+    static Executor executor() {
+        return VIRTUAL;
+    }
+
+    static Guard guard() {
+        final ReentrantLock lock = new ReentrantLock();
+        return action -> {
+            lock.lock();
+            try {
+                action.run();
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Runs actions mutually exclusive.
+     */
+    interface Guard {
+        void run(Runnable action);
+    }
+}
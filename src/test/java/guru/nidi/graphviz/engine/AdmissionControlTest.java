@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static guru.nidi.graphviz.engine.Priority.BATCH;
+import static guru.nidi.graphviz.engine.Priority.INTERACTIVE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+    private final AdmissionControl control = AdmissionControl.create().limit(BATCH, 1, 1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void end() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void unlimitedByDefault() {
+        final Runnable a = control.admit(INTERACTIVE, null);
+        final Runnable b = control.admit(INTERACTIVE, null);
+        assertEquals(2, control.metrics(INTERACTIVE).running());
+        a.run();
+        a.run();
+        b.run();
+        assertEquals(0, control.metrics(INTERACTIVE).running());
+        assertEquals(2, control.metrics(INTERACTIVE).admitted());
+    }
+
+    @Test
+    void queueAndReject() throws Exception {
+        final Runnable running = control.admit(BATCH, null);
+        final Future<String> queued = executor.submit(() -> control.run(BATCH, null, () -> "done"));
+        while (control.metrics(BATCH).queueDepth() == 0) {
+            Thread.sleep(5);
+        }
+        final GraphvizException e = assertThrows(GraphvizException.class, () -> control.admit(BATCH, null));
+        assertEquals("Too many BATCH renderings, the queue is full", e.getMessage());
+        assertEquals(1, control.metrics(BATCH).rejected());
+
+        final Runnable interactive = control.admit(INTERACTIVE, null);
+        interactive.run();
+
+        Thread.sleep(20);
+        running.run();
+        assertEquals("done", queued.get(5, SECONDS));
+        final AdmissionControl.Metrics metrics = control.metrics(BATCH);
+        assertEquals(0, metrics.queueDepth());
+        assertEquals(0, metrics.running());
+        assertEquals(2, metrics.admitted());
+        assertTrue(metrics.maxWaitMillis() >= 20);
+        assertTrue(metrics.averageWaitMillis() >= 10);
+    }
+
+    @Test
+    void deadlineWhileWaiting() {
+        final Runnable running = control.admit(BATCH, null);
+        final GraphvizException e = assertThrows(GraphvizException.class,
+                () -> control.admit(BATCH, Deadline.in(30, MILLISECONDS)));
+        assertEquals("Rendering deadline exceeded", e.getMessage());
+        assertEquals(0, control.metrics(BATCH).queueDepth());
+        running.run();
+    }
+
+    @Test
+    void cancelWhileWaiting() throws Exception {
+        final Runnable running = control.admit(BATCH, null);
+        final Deadline deadline = Deadline.never();
+        final Future<Runnable> queued = executor.submit(() -> control.admit(BATCH, deadline));
+        while (control.metrics(BATCH).queueDepth() == 0) {
+            Thread.sleep(5);
+        }
+        deadline.cancel();
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, SECONDS));
+        assertEquals("Rendering cancelled", e.getCause().getMessage());
+        assertEquals(0, control.metrics(BATCH).queueDepth());
+        running.run();
+        control.admit(BATCH, null).run();
+    }
+
+    @Test
+    void admitAsyncDoesNotBlock() throws Exception {
+        final Runnable running = control.admit(BATCH, null);
+        final CompletableFuture<Runnable> queued = control.admitAsync(BATCH, null);
+        assertFalse(queued.isDone());
+        assertEquals(1, control.metrics(BATCH).queueDepth());
+        final CompletableFuture<Runnable> rejected = control.admitAsync(BATCH, null);
+        assertEquals("Too many BATCH renderings, the queue is full",
+                assertThrows(ExecutionException.class, () -> rejected.get(5, SECONDS)).getCause().getMessage());
+
+        running.run();
+        queued.get(5, SECONDS).run();
+        assertEquals(0, control.metrics(BATCH).running());
+        assertEquals(2, control.metrics(BATCH).admitted());
+    }
+
+    @Test
+    void invalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> control.limit(BATCH, 0, 1));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ConcurrencyTest {
+    @Test
+    void guardIsExclusive() throws Exception {
+        final Concurrency.Guard guard = Concurrency.guard();
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[8];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = CompletableFuture.runAsync(() -> guard.run(() -> {
+                max.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inside.decrementAndGet();
+            }), Concurrency.executor());
+        }
+        CompletableFuture.allOf(tasks).get(5, SECONDS);
+        assertEquals(1, max.get());
+    }
+
+    /*
+     * Runs in the java21Test task, which puts the Java 21 classes in front of the Java 8 ones
+     */
+    @Test
+    void rendersOnVirtualThreadsOnJava21() throws Exception {
+        assumeTrue(Boolean.getBoolean("graphviz.java21"));
+        final boolean virtual = CompletableFuture.supplyAsync(() -> {
+            try {
+                return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError("Not running on Java 21", e);
+            }
+        }, Concurrency.executor()).get(5, SECONDS);
+        assertTrue(virtual);
+    }
+}
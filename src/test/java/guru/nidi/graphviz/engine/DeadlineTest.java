@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.service.CommandLineExecutor;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class DeadlineTest {
+    @Test
+    void cancel() {
+        final Deadline deadline = Deadline.never();
+        final AtomicInteger runs = new AtomicInteger();
+        deadline.onCancel(runs::incrementAndGet);
+        final Runnable unregister = deadline.onCancel(runs::incrementAndGet);
+        unregister.run();
+        assertEquals(Long.MAX_VALUE, deadline.remainingMillis());
+        deadline.check();
+
+        deadline.cancel();
+        deadline.cancel();
+        assertEquals(1, runs.get());
+        assertTrue(deadline.isCancelled());
+        assertEquals(0, deadline.remainingMillis());
+        assertEquals("Rendering cancelled", assertThrows(GraphvizException.class, deadline::check).getMessage());
+        deadline.onCancel(runs::incrementAndGet);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void expire() throws InterruptedException {
+        final Deadline deadline = Deadline.in(50, MILLISECONDS);
+        final CountDownLatch fired = new CountDownLatch(1);
+        deadline.onCancel(fired::countDown);
+        assertTrue(fired.await(5, SECONDS));
+        assertEquals("Rendering deadline exceeded",
+                assertThrows(GraphvizException.class, deadline::check).getMessage());
+    }
+
+    @Test
+    void resultHandlerGivesUp() {
+        final ResultHandler handler = new ResultHandler();
+        assertThrows(GraphvizException.class, () -> handler.waitFor(Deadline.in(50, MILLISECONDS)));
+
+        final ResultHandler ok = new ResultHandler();
+        ok.setResult("svg");
+        assertEquals("svg", ok.waitFor(Deadline.in(1, SECONDS)));
+    }
+
+    @Test
+    void pooledEngineGivesUp() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final PooledGraphvizEngine pool = new PooledGraphvizEngine(1, () -> new AbstractGraphvizEngine(true) {
+            @Override
+            protected void doInit() {
+            }
+
+            @Override
+            public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new GraphvizException("interrupted", e);
+                }
+                return EngineResult.fromString(src);
+            }
+        });
+        pool.init(e -> {
+        }, e -> fail("init failed"));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> pool.execute("a", Options.create(), null));
+        running.await();
+        final Options options = Options.create().deadline(Deadline.in(50, MILLISECONDS));
+        assertThrows(GraphvizException.class, () -> pool.execute("b", options, null));
+
+        final Deadline never = Deadline.never();
+        final CompletableFuture<EngineResult> waiting = CompletableFuture.supplyAsync(
+                () -> pool.execute("c", Options.create().deadline(never), null));
+        Thread.sleep(50);
+        never.cancel();
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, SECONDS));
+        assertEquals("Rendering cancelled", e.getCause().getMessage());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void killProcess() {
+        assumeFalse(System.getProperty("os.name").contains("Windows"));
+        final Deadline deadline = Deadline.in(200, MILLISECONDS);
+        final ExecuteWatchdog watchdog = new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
+        deadline.onCancel(() -> watchdog.timeoutOccured(null));
+        final long start = System.nanoTime();
+        assertThrows(IOException.class,
+                () -> new CommandLineExecutor().execute(CommandLine.parse("sleep 10"), null, watchdog));
+        assertTrue(System.nanoTime() - start < SECONDS.toNanos(5));
+    }
+
+    @Test
+    void killAsyncProcess() throws Exception {
+        assumeFalse(System.getProperty("os.name").contains("Windows"));
+        final CommandLineExecutor executor = new CommandLineExecutor();
+        executor.executeAsync(CommandLine.parse("true"), null, new ExecuteWatchdog(5000)).get(5, SECONDS);
+
+        final ExecuteWatchdog watchdog = new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
+        final CompletableFuture<Void> sleep = executor.executeAsync(CommandLine.parse("sleep 10"), null, watchdog);
+        assertTrue(watchdog.isWatching());
+        watchdog.timeoutOccured(null);
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> sleep.get(5, SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    void asyncProcessReportsError() {
+        assumeFalse(System.getProperty("os.name").contains("Windows"));
+        final CommandLine cmd = new CommandLine("sh").addArgument("-c")
+                .addArgument("echo failed >&2; exit 3", false);
+        final CompletableFuture<Void> res = new CommandLineExecutor()
+                .executeAsync(cmd, null, new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT));
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> res.get(5, SECONDS));
+        assertEquals("failed", e.getCause().getMessage().trim());
+    }
+
+    @Test
+    void timeoutIsSentToServer() {
+        final Options options = Options.create().deadline(Deadline.in(10, SECONDS));
+        assertTrue(options.toJson(true).contains("timeout:'"));
+        assertFalse(options.toJson(false).contains("timeout"));
+        final Options read = Options.fromJson(options.toJson(true));
+        assertTrue(read.deadline.remainingMillis() <= 10000);
+        assertEquals(options.engine, read.engine);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class EngineResultTest {
+    @Test
+    void textFileIsGivenAsString() throws IOException {
+        final Path file = tempFile("<svg/>");
+        assertEquals("<svg/>", EngineResult.fromPath(file, true).map(f -> "file", s -> s));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void bytesAreGivenAsFile() {
+        final EngineResult result = EngineResult.fromBytes(ByteBuffer.wrap("png".getBytes(UTF_8)), false);
+        assertEquals("png", result.map(EngineResultTest::read, s -> "string"));
+    }
+
+    @Test
+    void mapStringDeletesFile() throws IOException {
+        final Path file = tempFile("a");
+        final EngineResult result = EngineResult.fromPath(file, true).mapString(s -> s + "b");
+        assertEquals(EngineResult.fromString("ab"), result);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void mappedBytes() throws IOException {
+        final Path file = tempFile("mapped");
+        final ByteBuffer bytes = EngineResult.fromPath(file, false).bytes();
+        assertEquals("mapped", UTF_8.decode(bytes).toString());
+        Files.delete(file);
+    }
+
+    @Test
+    void transferTo() throws IOException {
+        final Path file = tempFile("transfer");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(8, EngineResult.fromPath(file, false).transferTo(Channels.newChannel(out)));
+        assertEquals("transfer", out.toString("utf-8"));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void moveFile() throws IOException {
+        final Path file = tempFile("move");
+        final Path target = file.resolveSibling(file.getFileName() + ".moved");
+        Files.write(target, "old".getBytes(UTF_8));
+        EngineResult.fromPath(file, false).moveTo(target);
+        assertEquals("move", new String(Files.readAllBytes(target), UTF_8));
+        assertFalse(Files.exists(file));
+        Files.delete(target);
+    }
+
+    @Test
+    void moveString() throws IOException {
+        final Path target = tempFile("old");
+        EngineResult.fromString("new ü").moveTo(target);
+        assertEquals("new ü", new String(Files.readAllBytes(target), UTF_8));
+        Files.delete(target);
+    }
+
+    @Test
+    void moveKeepsPermissions() throws IOException {
+        final Path target = tempFile("old");
+        assumeTrue(Files.getFileAttributeView(target, PosixFileAttributeView.class) != null);
+        final Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(target, perms);
+        EngineResult.fromString("new").moveTo(target);
+        assertEquals(perms, Files.getPosixFilePermissions(target));
+        EngineResult.fromPath(tempFile("file"), false).moveTo(target);
+        assertEquals(perms, Files.getPosixFilePermissions(target));
+        Files.delete(target);
+
+        final Path plain = target.resolveSibling(target.getFileName() + ".plain");
+        Files.write(plain, "plain".getBytes(UTF_8));
+        EngineResult.fromString("new").moveTo(target);
+        assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(target));
+        Files.delete(plain);
+        Files.delete(target);
+    }
+
+    @Test
+    void shareFile() throws IOException {
+        final Path file = Files.createTempFile("engineResult", ".png");
+        Files.write(file, "png".getBytes(UTF_8));
+        final EngineResult shared = EngineResult.fromPath(file, false).share();
+        assertFalse(Files.exists(file));
+        assertEquals("png", shared.extension("svg"));
+        assertEquals("png", shared.map(EngineResultTest::read, s -> "string"));
+        assertEquals("png", shared.map(EngineResultTest::read, s -> "string"));
+    }
+
+    @Test
+    void extension() {
+        assertEquals("png", EngineResult.fromFile(new File("target/outfile.png")).extension("svg"));
+        assertEquals("svg", EngineResult.fromString("").extension("svg"));
+    }
+
+    private static Path tempFile(String content) throws IOException {
+        final Path file = Files.createTempFile("engineResult", ".txt");
+        Files.write(file, content.getBytes(UTF_8));
+        return file;
+    }
+
+    private static String read(File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), UTF_8);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
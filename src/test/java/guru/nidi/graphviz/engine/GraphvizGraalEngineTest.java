@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GraphvizGraalEngineTest {
+    private static final String POLYGLOT = "org.graalvm.polyglot.Context";
+
+    @Test
+    void initFailsWithoutGraal() throws InterruptedException {
+        assumeFalse(IoUtils.isOnClasspath(POLYGLOT));
+        assertFalse(init(new GraphvizGraalEngine()));
+    }
+
+    @Test
+    void render() throws InterruptedException {
+        assumeTrue(IoUtils.isOnClasspath(POLYGLOT));
+        final GraphvizGraalEngine engine = new GraphvizGraalEngine();
+        assertTrue(init(engine));
+        final String svg = engine.execute("digraph { a -> b }", Options.create().format(Format.SVG), null)
+                .map(f -> "", s -> s);
+        assertTrue(svg.contains("<svg"));
+        engine.close();
+    }
+
+    private boolean init(GraphvizEngine engine) throws InterruptedException {
+        final BlockingQueue<Boolean> ok = new ArrayBlockingQueue<>(1);
+        engine.init(e -> ok.add(true), e -> ok.add(false));
+        return ok.take();
+    }
+}
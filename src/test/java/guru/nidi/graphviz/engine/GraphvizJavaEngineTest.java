@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphvizJavaEngineTest {
+    private final GraphvizJavaEngine engine = new GraphvizJavaEngine();
+
+    @Test
+    void layered() {
+        final Layout layout = Layout.fromXdot(xdot("digraph { a -> b; a -> c; b -> d; c -> d; d -> a }"));
+        final double[] a = layout.position("a");
+        final double[] b = layout.position("b");
+        final double[] c = layout.position("c");
+        final double[] d = layout.position("d");
+        assertTrue(a[1] > b[1]);
+        assertEquals(b[1], c[1], .01);
+        assertNotEquals(b[0], c[0], .01);
+        assertTrue(b[1] > d[1]);
+    }
+
+    @Test
+    void clusters() {
+        final String xdot = xdot("digraph { subgraph cluster_x { a; b } subgraph cluster_y { c } a -> c; b -> c }");
+        final Layout layout = Layout.fromXdot(xdot);
+        final double[] bb = bounds(layout.graphAttrs.get("cluster_x").get("bb"));
+        for (final String node : new String[]{"a", "b"}) {
+            final double[] pos = layout.position(node);
+            assertTrue(pos[0] > bb[0] && pos[0] < bb[2] && pos[1] > bb[1] && pos[1] < bb[3], node);
+        }
+        final double[] c = layout.position("c");
+        assertFalse(c[0] > bb[0] && c[0] < bb[2] && c[1] > bb[1] && c[1] < bb[3]);
+    }
+
+    @Test
+    void labels() {
+        final String xdot = xdot("digraph { a -> b [label=\"x\", headlabel=<<table><tr><td>D</td></tr></table>>] }");
+        final Layout layout = Layout.fromXdot(xdot);
+        final String key = Layout.edgeKey("a", "b", new java.util.HashMap<>());
+        assertNotNull(layout.edgeAttrs.get(key).get("lp"));
+        assertNotNull(layout.edgeAttrs.get(key).get("head_lp"));
+        assertTrue(layout.edgeAttrs.get(key).get("pos").startsWith("e,"));
+    }
+
+    @Test
+    void svg() {
+        final String svg = engine.execute("graph { a -- b [style=dashed] }", Options.create().format(Format.SVG), null)
+                .map(f -> "", s -> s);
+        assertTrue(svg.contains("<ellipse"));
+        assertTrue(svg.contains("stroke-dasharray"));
+        assertTrue(svg.contains(">a</text>"));
+    }
+
+    @Test
+    void rasterize() {
+        Graphviz.useEngine(engine);
+        try {
+            assertTrue(Graphviz.fromString("digraph { a -> b }").rasterize(Rasterizer.XDOT).toImage().getWidth() > 50);
+        } finally {
+            Graphviz.releaseEngine();
+        }
+    }
+
+    @Test
+    void subgraphEndpoints() {
+        final Layout layout = Layout.fromXdot(xdot("digraph { {a b} -> c; d -> {e f} }"));
+        for (final String node : new String[]{"a", "b", "c", "d", "e", "f"}) {
+            assertNotNull(layout.position(node), node);
+        }
+        final java.util.Map<String, Integer> counts = new java.util.HashMap<>();
+        for (final String[] edge : new String[][]{{"a", "c"}, {"b", "c"}, {"d", "e"}, {"d", "f"}}) {
+            assertNotNull(layout.edgeAttrs.get(Layout.edgeKey(edge[0], edge[1], counts)), edge[0] + "->" + edge[1]);
+        }
+        assertTrue(layout.position("a")[1] > layout.position("c")[1]);
+    }
+
+    @Test
+    void rankdir() {
+        final Layout lr = Layout.fromXdot(xdot("digraph { rankdir=LR; a -> b -> c }"));
+        assertTrue(lr.position("a")[0] < lr.position("b")[0]);
+        assertTrue(lr.position("b")[0] < lr.position("c")[0]);
+        assertEquals(lr.position("a")[1], lr.position("c")[1], .01);
+        final Layout bt = Layout.fromXdot(xdot("digraph { rankdir=BT; a -> b }"));
+        assertTrue(bt.position("a")[1] < bt.position("b")[1]);
+        assertThrows(GraphvizException.class, () -> xdot("digraph { rankdir=XY; a -> b }"));
+    }
+
+    @Test
+    void givenPositions() {
+        final String src = "digraph { a [pos=\"100,20!\"]; b [pos=\"300,200!\"]; a -> b }";
+        final Layout layout = Layout.fromXdot(engine.execute(src,
+                Options.create().format(Format.XDOT).engine(Engine.NOP2), null).map(f -> "", s -> s));
+        assertEquals(200, layout.position("b")[0] - layout.position("a")[0], .01);
+        assertEquals(180, layout.position("b")[1] - layout.position("a")[1], .01);
+        assertThrows(GraphvizException.class, () -> engine.execute("digraph { a -> b }",
+                Options.create().format(Format.XDOT).engine(Engine.NOP), null));
+    }
+
+    @Test
+    void unsupportedEngine() {
+        assertThrows(GraphvizException.class, () -> engine.execute("graph { a -- b }",
+                Options.create().format(Format.XDOT).engine(Engine.NEATO), null));
+    }
+
+    @Test
+    void unsupportedFormat() {
+        assertThrows(GraphvizException.class, () -> engine.execute("graph {}", Options.create().format(Format.PS), null));
+    }
+
+    private String xdot(String src) {
+        return engine.execute(src, Options.create().format(Format.XDOT), null).map(f -> "", s -> s);
+    }
+
+    private static double[] bounds(String bb) {
+        final String[] parts = bb.split(",");
+        return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                Double.parseDouble(parts[2]), Double.parseDouble(parts[3])};
+    }
+}
@@ -19,11 +19,14 @@ import guru.nidi.graphviz.model.Graph;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
+import java.util.concurrent.*;
 
 import static guru.nidi.graphviz.model.Factory.graph;
 import static guru.nidi.graphviz.model.Factory.node;
 import static org.hamcrest.CoreMatchers.is;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
 
 class GraphvizTest {
     @BeforeAll
@@ -76,6 +79,52 @@ class GraphvizTest {
                 + "{format:'svg',engine:'dot',basedir:'" + new File(".").getAbsolutePath() + "',images:[]});"));
     }
 
+    @Test
+    void prioritiesDoNotShareRenderings() throws Exception {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Graphviz.useEngine(new AbstractGraphvizEngineTest.GraphvizEngineDummy() {
+            @Override
+            protected String jsExecute(String call) {
+                if (call.contains("slow")) {
+                    slowStarted.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new GraphvizException("interrupted", e);
+                    }
+                }
+                return call;
+            }
+        });
+        Graphviz.useAdmissionControl(AdmissionControl.create().limit(Priority.BATCH, 1, 1));
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final Future<String> slow = executor.submit(() ->
+                    Graphviz.fromString("graph { slow }").priority(Priority.BATCH).render(Format.SVG).toString());
+            assertTrue(slowStarted.await(5, SECONDS));
+            final CompletableFuture<String> queued = Graphviz.fromString("graph { same }")
+                    .priority(Priority.BATCH).render(Format.SVG).toStringAsync(executor);
+            Thread.sleep(50);
+            assertFalse(queued.isDone());
+
+            final String interactive = executor.submit(() ->
+                    Graphviz.fromString("graph { same }").priority(Priority.INTERACTIVE).render(Format.SVG).toString())
+                    .get(5, SECONDS);
+            assertTrue(interactive.contains("same"));
+            assertFalse(queued.isDone());
+
+            release.countDown();
+            assertTrue(slow.get(5, SECONDS).contains("slow"));
+            assertEquals(interactive, queued.get(5, SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            Graphviz.useAdmissionControl(null);
+            Graphviz.useEngine(new AbstractGraphvizEngineTest.GraphvizEngineDummy());
+        }
+    }
+
     private void assertThatGraphvizHasFields(Graphviz graphviz, int expectedHeight, int expectedWidth, double expectedScale) {
         assertThat(graphviz.width, is(expectedWidth));
         assertThat(graphviz.height, is(expectedHeight));
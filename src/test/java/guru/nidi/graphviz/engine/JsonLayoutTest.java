@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLayoutTest {
+    private static final String JSON = "{\n"
+            + "  \"name\": \"%3\", \"directed\": true, \"strict\": false,\n"
+            + "  \"bb\": \"0,0,116,124\",\n"
+            + "  \"_draw_\": [{\"op\": \"c\", \"grad\": \"none\", \"color\": \"#fffffe00\"}],\n"
+            + "  \"_subgraph_cnt\": 1,\n"
+            + "  \"objects\": [\n"
+            + "    {\"_gvid\": 0, \"name\": \"cluster_x\", \"bb\": \"8,8,80,116\", \"lp\": \"44,104.5\","
+            + " \"label\": \"x \\\"1\\\"\", \"nodes\": [1, 2], \"edges\": [0]},\n"
+            + "    {\"_gvid\": 1, \"name\": \"a\", \"height\": \"0.5\", \"pos\": \"44,72\", \"width\": \"0.75\"},\n"
+            + "    {\"_gvid\": 2, \"name\": \"b\", \"height\": \"0.5\", \"pos\": \"44,18\", \"width\": \"0.75\","
+            + " \"xlp\": \"10,5\"}\n"
+            + "  ],\n"
+            + "  \"edges\": [\n"
+            + "    {\"_gvid\": 0, \"tail\": 1, \"head\": 2, \"pos\": \"e,44,36.104 44,53.697 44,45.983 44,36.104\","
+            + " \"lp\": \"50.5,45\"},\n"
+            + "    {\"_gvid\": 1, \"tail\": 2, \"head\": 1, \"head_lp\": \"30,60\", \"tail_lp\": \"31,30\"}\n"
+            + "  ]\n"
+            + "}";
+
+    @Test
+    void read() {
+        final JsonLayout layout = JsonLayout.read(JSON);
+        assertArrayEquals(new double[]{0, 0, 116, 124}, layout.bounds());
+        assertEquals(2, layout.nodeCount());
+        assertEquals("a", layout.nodeName(0));
+        assertArrayEquals(new double[]{17, 54, 71, 90}, layout.nodeBounds(0));
+        assertArrayEquals(new double[]{17, 54, 71, 90, 17, 0, 71, 36}, layout.nodeBounds());
+        assertArrayEquals(new double[]{10, 5}, layout.nodeLabelPosition(1));
+        assertTrue(Double.isNaN(layout.nodeLabelPosition(0)[0]));
+
+        assertEquals(2, layout.edgeCount());
+        assertEquals(0, layout.edgeTail(0));
+        assertEquals(1, layout.edgeHead(0));
+        assertArrayEquals(new double[]{44, 53.697, 44, 45.983, 44, 36.104}, layout.edgeSpline(0));
+        assertArrayEquals(new double[]{50.5, 45}, layout.edgeLabelPosition(0));
+        assertEquals(0, layout.edgeSpline(1).length);
+        assertArrayEquals(new double[]{30, 60}, layout.edgeHeadLabelPosition(1));
+        assertArrayEquals(new double[]{31, 30}, layout.edgeTailLabelPosition(1));
+        assertTrue(Double.isNaN(layout.edgeHeadLabelPosition(0)[0]));
+        assertTrue(Double.isNaN(layout.edgeTailLabelPosition(0)[1]));
+
+        assertEquals(1, layout.clusterCount());
+        assertEquals("cluster_x", layout.clusterName(0));
+        assertArrayEquals(new double[]{8, 8, 80, 116}, layout.clusterBounds(0));
+        assertArrayEquals(new double[]{44, 104.5}, layout.clusterLabelPosition(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.nodeName(2));
+    }
+
+    @Test
+    void manyElements() {
+        final StringBuilder json = new StringBuilder("{\"objects\": [");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"_gvid\": ").append(i)
+                    .append(", \"name\": \"n").append(i).append("\", \"pos\": \"").append(i).append(",0\"}");
+        }
+        json.append("], \"edges\": [");
+        for (int i = 0; i < 99; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"tail\": ").append(i).append(", \"head\": ").append(i + 1)
+                    .append(", \"pos\": \"").append(i).append(",0 ").append(i + 1).append(",0\"")
+                    .append(", \"head_lp\": \"").append(i + 1).append(",1\"}");
+        }
+        final JsonLayout layout = JsonLayout.read(json.append("]}").toString());
+        assertEquals(100, layout.nodeCount());
+        assertEquals("n99", layout.nodeName(99));
+        assertEquals(99, layout.edgeCount());
+        assertEquals(98, layout.edgeTail(98));
+        assertEquals(99, layout.edgeHead(98));
+        assertArrayEquals(new double[]{98, 0, 99, 0}, layout.edgeSpline(98));
+        assertArrayEquals(new double[]{99, 1}, layout.edgeHeadLabelPosition(98));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutPolicyTest {
+    private final LayoutPolicy policy = LayoutPolicy.forBudget(1000);
+
+    @Test
+    void smallGraphUsesDot() {
+        final LayoutPolicy.Choice choice = policy.choose("digraph { subgraph cluster_a { a; b } a -> b; b -> c }");
+        assertEquals(Engine.DOT, choice.engine());
+        assertTrue(choice.attributes().isEmpty());
+        assertEquals(3, choice.nodes());
+        assertEquals(2, choice.edges());
+        assertEquals(1, choice.clusters());
+    }
+
+    @Test
+    void mediumGraphUsesDotWithLessEffort() {
+        final LayoutPolicy.Choice choice = policy.choose(1000, 2000, 0);
+        assertEquals(Engine.DOT, choice.engine());
+        assertEquals("0.44", choice.attributes().get("mclimit"));
+        assertEquals("4.41", choice.attributes().get("nslimit"));
+        assertEquals("13", choice.attributes().get("searchsize"));
+    }
+
+    @Test
+    void bigGraphs() {
+        assertEquals(Engine.FDP, policy.choose(2000, 3000, 5).engine());
+        final LayoutPolicy.Choice neato = policy.choose(600, 5000, 0);
+        assertEquals(Engine.NEATO, neato.engine());
+        assertEquals("55", neato.attributes().get("maxiter"));
+        final LayoutPolicy.Choice sfdp = policy.choose(20000, 30000, 0);
+        assertEquals(Engine.SFDP, sfdp.engine());
+        assertEquals("462", sfdp.attributes().get("maxiter"));
+    }
+
+    @Test
+    void applyKeepsExplicitAttributes() {
+        final LayoutPolicy.Choice choice = policy.choose(1000, 2000, 0);
+        final String src = choice.apply("digraph \"x{\" { graph [mclimit=2]; a -> b }");
+        assertTrue(src.startsWith("digraph \"x{\" {\ngraph [\"mclimit\"=\"0.44\","));
+        assertTrue(src.indexOf("mclimit=2") > src.indexOf("\"mclimit\"=\"0.44\""));
+    }
+
+    @Test
+    void choiceIsRecordedInRenderer() {
+        final Renderer renderer = Graphviz.fromString("digraph { a -> b }").layoutPolicy(policy).render(Format.SVG);
+        assertEquals(Engine.DOT, renderer.layoutChoice().engine());
+        assertNull(Graphviz.fromString("digraph { a -> b }").layoutPolicy(policy).render(Format.DOT).layoutChoice());
+        assertNull(Graphviz.fromString("digraph { a -> b }").render(Format.SVG).layoutChoice());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutTest {
+    static final String XDOT = "digraph {\n"
+            + "graph [bb=\"0,0,89,108\", _draw_=\"c 9 -#fffffe00 C 7 -#ffffff P 4 0 0 0 108 89 108 89 0 \"];\n"
+            + "node [label=\"\\N\"];\n"
+            + "a [height=0.5, pos=\"27,90\", width=0.75];\n"
+            + "b [height=0.5, pos=\"27,18\", width=0.75];\n"
+            + "c [height=0.5, pos=\"62,18!\", width=0.75];\n"
+            + "a -> b [pos=\"e,27,36.104 27,71.697 27,63.983 27,54.712 27,46.112\"];\n"
+            + "a -> c;\n"
+            + "}";
+
+    @Test
+    void fromXdot() {
+        final Layout layout = Layout.fromXdot(XDOT);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), layout.nodes());
+        assertArrayEquals(new double[]{27, 90}, layout.position("a"));
+        assertArrayEquals(new double[]{62, 18}, layout.position("c"));
+        assertNull(layout.position("x"));
+        assertEquals(Arrays.asList("b", "c"), layout.neighbours("a"));
+        assertEquals(Collections.singletonList("a"), layout.neighbours("c"));
+        assertSame(XDOT, layout.source());
+    }
+
+    @Test
+    void incrementalPinsUnchangedNodes() {
+        final String src = IncrementalLayout.annotate("digraph { a -> b; a -> c; c -> d }", Layout.fromXdot(XDOT));
+        assertEquals("digraph {\n"
+                + "graph [\"inputscale\"=\"72\",\"overlap\"=\"false\",\"splines\"=\"true\"]\n"
+                + "\"a\" [\"pos\"=\"27.00,90.00!\"]\n"
+                + "\"b\" [\"pos\"=\"27.00,18.00!\"]\n"
+                + "\"c\" [\"pos\"=\"62.00,18.00\"]\n"
+                + "\"a\" -> \"b\"\n"
+                + "\"a\" -> \"c\"\n"
+                + "\"c\" -> \"d\"\n"
+                + "}", src);
+    }
+
+    @Test
+    void cacheKeyIgnoresStyles() {
+        final Options options = Options.create();
+        final String key = LayoutCache.key("digraph { a [color=red]; a -> b [color=blue] }", options);
+        assertEquals(key, LayoutCache.key("digraph { a [color=green, style=filled]; a -> b }", options));
+        assertNotEquals(key, LayoutCache.key("digraph { a [label=x]; a -> b }", options));
+        assertNotEquals(key, LayoutCache.key("digraph { a; a -> b }", options.engine(Engine.NEATO)));
+    }
+
+    @Test
+    void styledLayoutAppliesPositions() {
+        final String src = StyledLayout.apply(Layout.fromXdot(XDOT), "digraph { a [color=red]; a -> b; a -> c }");
+        assertEquals("digraph {\n"
+                + "graph [\"bb\"=\"0,0,89,108\"]\n"
+                + "\"a\" [\"width\"=\"0.75\",\"color\"=\"red\",\"pos\"=\"27,90\",\"height\"=\"0.5\"]\n"
+                + "\"b\" [\"width\"=\"0.75\",\"pos\"=\"27,18\",\"height\"=\"0.5\"]\n"
+                + "\"c\" [\"width\"=\"0.75\",\"pos\"=\"62,18!\",\"height\"=\"0.5\"]\n"
+                + "\"a\" -> \"b\" [\"pos\"=\"e,27,36.104 27,71.697 27,63.983 27,54.712 27,46.112\"]\n"
+                + "\"a\" -> \"c\"\n"
+                + "}", src);
+    }
+
+    @Test
+    void packInRows() {
+        final Layout other = Layout.fromXdot("digraph { graph [bb=\"0,0,54,36\"]; "
+                + "subgraph cluster_x { graph [bb=\"0,0,54,36\"]; d [pos=\"27,18\", width=0.75, height=0.5] } }");
+        final Layout packed = Layout.pack(Arrays.asList(Layout.fromXdot(XDOT), other), 36);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), packed.nodes());
+        assertArrayEquals(new double[]{27, 162}, packed.position("a"));
+        assertArrayEquals(new double[]{62, 90}, packed.position("c"));
+        assertArrayEquals(new double[]{27, 18}, packed.position("d"));
+        assertEquals("0,0,89,180", packed.graphAttrs.get("").get("bb"));
+        assertEquals("0,0,54,36", packed.graphAttrs.get("cluster_c1_x").get("bb"));
+        assertEquals(Arrays.asList("b", "c"), packed.neighbours("a"));
+    }
+
+    @Test
+    void shiftPositions() {
+        assertEquals("e,2,4 4,6.5", LayoutPacker.shift("e,1,2 3,4.5", 1, 2));
+        assertEquals("2,4!", LayoutPacker.shift("1,2!", 1, 2));
+        assertEquals("1,2,11,12", LayoutPacker.shift("0,0,10,10", 1, 2));
+    }
+}
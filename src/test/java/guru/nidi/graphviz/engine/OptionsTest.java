@@ -23,6 +23,13 @@ import static guru.nidi.graphviz.service.SystemUtils.uriPathOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class OptionsTest {
+    @Test
+    void deadlineAndPriorityAreNotPartOfIdentity() {
+        final Options options = Options.create().deadline(Deadline.never()).priority(Priority.BATCH);
+        assertEquals(Options.create(), options);
+        assertEquals(Options.create().hashCode(), options.hashCode());
+    }
+
     @Test
     void fromJsonMinimal() {
         final Options options = Options.fromJson("{engine:'DOT',format:'PNG'}");
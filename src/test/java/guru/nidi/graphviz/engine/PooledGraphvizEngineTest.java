@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class PooledGraphvizEngineTest {
+    @Test
+    void instantiateOnce() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final PooledGraphvizEngine pool = new PooledGraphvizEngine(2, () -> {
+            created.incrementAndGet();
+            return new CountingEngine(running, maxRunning);
+        });
+        final BlockingQueue<GraphvizEngine> ok = new ArrayBlockingQueue<>(1);
+        pool.init(ok::add, e -> fail("init failed"));
+        assertSame(pool, ok.take());
+        assertEquals(2, created.get());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(6);
+        final List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final String src = "graph" + i;
+            results.add(executor.submit(() -> pool.execute(src, Options.create(), null).map(f -> "", s -> s)));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals("graph" + i, results.get(i).get());
+        }
+        executor.shutdown();
+        assertEquals(2, created.get());
+        assertTrue(maxRunning.get() <= 2);
+        pool.close();
+    }
+
+    @Test
+    void initError() throws Exception {
+        final PooledGraphvizEngine pool = new PooledGraphvizEngine(2, () -> new CountingEngine(null, null) {
+            @Override
+            protected void doInit() {
+                throw new IllegalStateException("not available");
+            }
+        });
+        final BlockingQueue<Boolean> ok = new ArrayBlockingQueue<>(1);
+        pool.init(e -> ok.add(true), e -> ok.add(false));
+        assertFalse(ok.take());
+    }
+
+    @Test
+    void initErrorReleasesStartedInstances() {
+        final List<CountingEngine> created = new ArrayList<>();
+        final PooledGraphvizEngine pool = new PooledGraphvizEngine(3, () -> {
+            final boolean fail = created.size() == 2;
+            final CountingEngine engine = new CountingEngine(null, null) {
+                @Override
+                protected void doInit() {
+                    if (fail) {
+                        throw new IllegalStateException("not available");
+                    }
+                }
+            };
+            created.add(engine);
+            return engine;
+        });
+        assertThrows(GraphvizException.class, pool::doInit);
+        assertEquals(3, created.size());
+        for (final CountingEngine engine : created) {
+            assertTrue(engine.closed, "all instances are closed");
+        }
+    }
+
+    @Test
+    void jdkEngineFailsWithoutJavascript() throws InterruptedException {
+        assumeFalse(GraphvizJdkEngine.hasJavascript() || IoUtils.isOnClasspath("org.graalvm.polyglot.Context"));
+        final BlockingQueue<Boolean> ok = new ArrayBlockingQueue<>(1);
+        new GraphvizJdkEngine().init(e -> ok.add(true), e -> ok.add(false));
+        assertEquals(false, ok.poll(10, TimeUnit.SECONDS));
+    }
+
+    private static class CountingEngine extends AbstractGraphvizEngine {
+        private boolean closed;
+
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        CountingEngine(AtomicInteger running, AtomicInteger maxRunning) {
+            super(true);
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        protected void doInit() {
+        }
+
+        @Override
+        public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new GraphvizException("interrupted", e);
+            } finally {
+                running.decrementAndGet();
+            }
+            return EngineResult.fromString(src);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RendererAsyncTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void end() {
+        release.countDown();
+        executor.shutdown();
+        Graphviz.releaseEngine();
+    }
+
+    @Test
+    void toStringAsync() throws Exception {
+        useEngine(false);
+        final CompletableFuture<String> res = Graphviz.fromString("graph {a}").render(Format.PLAIN).toStringAsync(executor);
+        assertEquals("rendered graph {a}", res.get(5, SECONDS));
+    }
+
+    @Test
+    void toFileAsync() throws Exception {
+        useEngine(false);
+        final File target = new File("target/async/graph");
+        final File file = Graphviz.fromString("graph {a}").render(Format.PLAIN).toFileAsync(target, executor).get(5, SECONDS);
+        assertEquals(new File("target/async/graph.txt"), file);
+        assertEquals("rendered graph {a}", new String(Files.readAllBytes(file.toPath()), UTF_8));
+    }
+
+    @Test
+    void failedRender() {
+        useEngine(false);
+        final CompletableFuture<String> res = Graphviz.fromString("fail").render(Format.PLAIN).toStringAsync(executor);
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> res.get(5, SECONDS));
+        assertEquals("bad graph", e.getCause().getMessage());
+    }
+
+    @Test
+    void cancelCancelsDeadline() throws IOException {
+        useEngine(true);
+        final Deadline deadline = Deadline.never();
+        final CompletableFuture<String> res = Graphviz.fromString("graph {a}").render(Format.PLAIN)
+                .deadline(deadline).toStringAsync(executor);
+        res.cancel(true);
+        assertTrue(deadline.isCancelled());
+    }
+
+    private void useEngine(boolean blocking) {
+        Graphviz.useEngine(new AbstractGraphvizEngine(true) {
+            @Override
+            protected void doInit() {
+            }
+
+            @Override
+            public EngineResult execute(String src, Options options, Rasterizer rasterizer) {
+                if (blocking) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new GraphvizException("interrupted", e);
+                    }
+                }
+                if (src.startsWith("fail")) {
+                    throw new GraphvizException("bad graph");
+                }
+                return EngineResult.fromString("rendered " + src);
+            }
+        });
+    }
+}
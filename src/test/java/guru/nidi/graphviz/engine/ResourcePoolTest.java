@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourcePoolTest {
+    @Test
+    void handsReleasedResourceToFirstWaiter() throws Exception {
+        final ResourcePool<String> pool = new ResourcePool<>(Arrays.asList("a"));
+        assertEquals("a", pool.poll());
+        assertNull(pool.poll());
+        final CompletableFuture<String> first = pool.acquire(2, null);
+        final CompletableFuture<String> second = pool.acquire(2, null);
+        assertEquals(2, pool.waiting());
+        assertThrows(ResourcePool.RejectedException.class, () -> join(pool.acquire(2, null)));
+
+        pool.release("a");
+        assertEquals("a", first.get(1, SECONDS));
+        assertFalse(second.isDone());
+        pool.release("a");
+        assertEquals("a", second.get(1, SECONDS));
+        pool.release("a");
+        assertEquals("a", pool.poll());
+    }
+
+    @Test
+    void cancelWakesWaiterWithoutTimeout() throws Exception {
+        final ResourcePool<String> pool = new ResourcePool<>(Arrays.asList("a"));
+        pool.poll();
+        final Deadline deadline = Deadline.never();
+        final CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> pool.take(deadline));
+        while (pool.waiting() == 0) {
+            Thread.sleep(10);
+        }
+        deadline.cancel();
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, SECONDS));
+        assertEquals("Rendering cancelled", e.getCause().getMessage());
+        assertEquals(0, pool.waiting());
+
+        pool.release("a");
+        assertEquals("a", pool.poll());
+    }
+
+    @Test
+    void expiredWaiterDoesNotTakeResource() throws Exception {
+        final ResourcePool<String> pool = new ResourcePool<>(Arrays.asList("a"));
+        pool.poll();
+        final CompletableFuture<String> expired = pool.acquire(1, Deadline.in(20, MILLISECONDS));
+        assertThrows(ExecutionException.class, () -> expired.get(5, SECONDS));
+        final CompletableFuture<String> next = pool.acquire(1, null);
+        pool.release("a");
+        assertEquals("a", next.get(1, SECONDS));
+    }
+
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            throw ResourcePool.unwrap(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void end() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrentCallsShareExecution() throws Exception {
+        final Future<String> leader = executor.submit(() -> flight.execute("a", null, this::blocking, s -> s + " shared"));
+        assertTrue(started.await(5, SECONDS));
+        final List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(executor.submit(() -> flight.execute("a", null, this::blocking, s -> s + " shared")));
+        }
+        while (((ThreadPoolExecutor) executor).getActiveCount() < 4) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        release.countDown();
+        assertEquals("result shared", leader.get(5, SECONDS));
+        for (final Future<String> follower : followers) {
+            assertEquals("result shared", follower.get(5, SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void laterCallsExecuteAgain() {
+        release.countDown();
+        assertEquals("result", flight.execute("a", null, this::blocking, s -> s + " shared"));
+        assertEquals("result", flight.execute("a", null, this::blocking, s -> s + " shared"));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void failureIsShared() throws Exception {
+        final Future<String> leader = executor.submit(() -> flight.execute("a", null, () -> {
+            blocking();
+            throw new GraphvizException("failed");
+        }, s -> s));
+        assertTrue(started.await(5, SECONDS));
+        final Future<String> follower = executor.submit(() -> flight.execute("a", null, this::blocking, s -> s));
+        Thread.sleep(50);
+        release.countDown();
+        assertEquals("failed", assertThrows(ExecutionException.class, () -> leader.get(5, SECONDS)).getCause().getMessage());
+        assertEquals("failed", assertThrows(ExecutionException.class, () -> follower.get(5, SECONDS)).getCause().getMessage());
+    }
+
+    @Test
+    void followerRetriesIfLeaderGivesUp() throws Exception {
+        final Deadline deadline = Deadline.never();
+        final Future<String> leader = executor.submit(() -> flight.execute("a", deadline, () -> {
+            blocking();
+            deadline.check();
+            return "leader";
+        }, s -> s));
+        assertTrue(started.await(5, SECONDS));
+        final Future<String> follower = executor.submit(() -> flight.execute("a", null, () -> "follower", s -> s));
+        Thread.sleep(50);
+        deadline.cancel();
+        release.countDown();
+        assertThrows(ExecutionException.class, () -> leader.get(5, SECONDS));
+        assertEquals("follower", follower.get(5, SECONDS));
+    }
+
+    @Test
+    void cancelWakesFollower() throws Exception {
+        final Future<String> leader = executor.submit(() -> flight.execute("a", null, this::blocking, s -> s));
+        assertTrue(started.await(5, SECONDS));
+        final Deadline deadline = Deadline.never();
+        final Future<String> follower = executor.submit(() -> flight.execute("a", deadline, this::blocking, s -> s));
+        Thread.sleep(50);
+        deadline.cancel();
+        assertEquals("Rendering cancelled",
+                assertThrows(ExecutionException.class, () -> follower.get(5, SECONDS)).getCause().getMessage());
+        assertFalse(leader.isDone());
+        release.countDown();
+        assertEquals("result", leader.get(5, SECONDS));
+    }
+
+    @Test
+    void asyncCallsShareExecution() throws Exception {
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        final UnaryOperator<String> share = s -> s + " shared";
+        final CompletableFuture<String> leader = flight.executeAsync("a", null, () -> started(pending), share);
+        final CompletableFuture<String> follower = flight.executeAsync("a", null, () -> started(pending), share);
+        final Future<String> sync = executor.submit(() -> flight.execute("a", null, this::blocking, share));
+        Thread.sleep(50);
+        assertFalse(leader.isDone() || follower.isDone() || sync.isDone());
+        pending.complete("async");
+        assertEquals("async shared", leader.get(5, SECONDS));
+        assertEquals("async shared", follower.get(5, SECONDS));
+        assertEquals("async shared", sync.get(5, SECONDS));
+        assertEquals(1, executions.get());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void asyncFollowerRetriesIfLeaderGivesUp() throws Exception {
+        final Deadline deadline = Deadline.never();
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        final CompletableFuture<String> leader = flight.executeAsync("a", deadline, () -> started(pending), s -> s);
+        final CompletableFuture<String> follower = flight.executeAsync("a", null,
+                () -> CompletableFuture.completedFuture("follower"), s -> s);
+        deadline.cancel();
+        pending.completeExceptionally(new GraphvizException("cancelled"));
+        assertEquals("cancelled",
+                assertThrows(ExecutionException.class, () -> leader.get(5, SECONDS)).getCause().getMessage());
+        assertEquals("follower", follower.get(5, SECONDS));
+    }
+
+    private CompletableFuture<String> started(CompletableFuture<String> pending) {
+        executions.incrementAndGet();
+        return pending;
+    }
+
+    private String blocking() {
+        executions.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new GraphvizException("interrupted", e);
+        }
+        return "result";
+    }
+}
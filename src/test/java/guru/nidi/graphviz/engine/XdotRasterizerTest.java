@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XdotRasterizerTest {
+    private static final String XDOT = "digraph {\n"
+            + "graph [bb=\"0,0,100,50\", _draw_=\"C 7 -#ffffff P 4 0 0 0 50 100 50 100 0 \"];\n"
+            + "a [_draw_=\"c 7 -#000000 C 7 -#ff0000 E 25 25 10 10 \","
+            + " _ldraw_=\"F 14 11 -Times-Roman c 7 -#000000 T 25 20 0 7 1 -ä \"];\n"
+            + "b [_draw_=\"S 15 -setlinewidth(3) c 4 -blue p 4 60 10 60 40 90 40 90 10 \"];\n"
+            + "}";
+
+    @Test
+    void paintsOperations() {
+        final BufferedImage image = Rasterizer.XDOT.rasterize(Graphviz.fromString("graph {}"), null, XDOT);
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+        assertEquals(0xffffffff, image.getRGB(2, 2));
+        assertEquals(0xffff0000, image.getRGB(20, 32));
+        assertEquals(0xff0000ff, image.getRGB(60, 25));
+        assertEquals(0xffffffff, image.getRGB(75, 25));
+    }
+
+    @Test
+    void scalesToWidth() {
+        final BufferedImage image = Rasterizer.XDOT.rasterize(Graphviz.fromString("graph {}").width(200), null, XDOT);
+        assertEquals(200, image.getWidth());
+        assertEquals(100, image.getHeight());
+        assertEquals(0xffff0000, image.getRGB(40, 64));
+    }
+
+    @Test
+    void colorNames() {
+        final BufferedImage image = Rasterizer.XDOT.rasterize(Graphviz.fromString("graph {}"), null, "digraph {\n"
+                + "graph [bb=\"0,0,90,30\", _draw_=\"C 9 -lightgrey P 4 0 0 0 30 30 30 30 0 "
+                + "C 9 -SteelBlue P 4 30 0 30 30 60 30 60 0 C 14 -/x11/firebrick P 4 60 0 60 30 90 30 90 0 \"];\n"
+                + "}");
+        assertEquals(0xffd3d3d3, image.getRGB(15, 15));
+        assertEquals(0xff4682b4, image.getRGB(45, 15));
+        assertEquals(0xffb22222, image.getRGB(75, 15));
+    }
+
+    @Test
+    void unknownColor() {
+        assertThrows(GraphvizException.class, () -> Rasterizer.XDOT.rasterize(Graphviz.fromString(""), null,
+                "digraph { graph [bb=\"0,0,10,10\", _draw_=\"C 5 -nocol P 3 0 0 0 10 10 10 \"] }"));
+    }
+
+    @Test
+    void missingBoundingBox() {
+        assertThrows(GraphvizException.class, () -> Rasterizer.XDOT.rasterize(Graphviz.fromString(""), null,
+                "digraph { a [_draw_=\"E 1 1 1 1\"] }"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import org.junit.jupiter.api.Test;
+
+import static guru.nidi.graphviz.attribute.Attributes.attr;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphBuilderTest {
+    @Test
+    void nodesAreIndexedByName() {
+        final GraphBuilder builder = new GraphBuilder("g", 2);
+        assertSame(builder.node("a"), builder.node("a"));
+        assertNotSame(builder.node("a"), builder.node("b"));
+        assertTrue(builder.graph().nodes().isEmpty());
+    }
+
+    @Test
+    void doesNotUseCreationContext() {
+        final GraphBuilder builder = new GraphBuilder();
+        builder.add(builder.node("a"));
+        assertFalse(CreationContext.current().isPresent());
+    }
+
+    @Test
+    void defaultNodeAttributes() {
+        final GraphBuilder builder = new GraphBuilder();
+        builder.nodeAttrs().add("color", "red");
+        final MutableNode a = builder.node("a");
+        builder.nodeAttrs().add("color", "blue");
+        assertEquals("red", a.attrs().get("color"));
+        assertEquals("blue", builder.node("b").attrs().get("color"));
+    }
+
+    @Test
+    void links() {
+        final GraphBuilder builder = new GraphBuilder();
+        builder.linkAttrs().add("style", "bold");
+        final MutableNode a = builder.node("a");
+        final MutableNode b = builder.node("b");
+        final Link link = builder.link(a, b, attr("color", "red"));
+        builder.add(a);
+        assertEquals(1, a.links().size());
+        assertSame(link, a.links().get(0));
+        assertSame(b, ((PortNode) link.to()).node());
+        assertEquals("bold", link.attrs().get("style"));
+        assertEquals("red", link.attrs().get("color"));
+        assertEquals("graph {\n\"a\" -- \"b\" [\"color\"=\"red\",\"style\"=\"bold\"]\n}", builder.graph().toString());
+    }
+
+    @Test
+    void portLinks() {
+        final GraphBuilder builder = new GraphBuilder();
+        final MutableNode a = builder.node("a");
+        builder.link(a.port("p"), builder.node("b").port(Compass.NORTH));
+        builder.add(a);
+        assertEquals("graph {\n\"a\":\"p\" -- \"b\":n\n}", builder.graph().toString());
+    }
+
+    @Test
+    void subgraph() {
+        final GraphBuilder builder = new GraphBuilder();
+        builder.graph().setDirected(true);
+        builder.nodeAttrs().add("color", "red");
+        final GraphBuilder sub = builder.subgraph();
+        assertTrue(sub.graph().isDirected());
+        assertNotSame(builder.node("a"), sub.node("a"));
+        assertNull(sub.node("a").attrs().get("color"));
+        builder.add(sub.graph());
+        assertEquals(1, builder.graph().graphs().size());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentListTest {
+    @Test
+    void addAndGet() {
+        final PersistentList<Integer> list = new PersistentList<>();
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+        assertEquals(expected, list);
+        assertEquals(39999, list.get(39999));
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        final PersistentList<Integer> list = new PersistentList<>(Arrays.asList(1, 2, 3));
+        final PersistentList<Integer> copy = list.copy();
+        copy.add(4);
+        copy.set(0, 0);
+        assertEquals(Arrays.asList(1, 2, 3), list);
+        assertEquals(Arrays.asList(0, 2, 3, 4), copy);
+    }
+
+    @Test
+    void setDeepInTrie() {
+        final PersistentList<Integer> list = new PersistentList<>();
+        for (int i = 0; i < 2000; i++) {
+            list.add(i);
+        }
+        final PersistentList<Integer> copy = list.copy();
+        copy.set(1000, -1);
+        assertEquals(1000, list.get(1000));
+        assertEquals(-1, copy.get(1000));
+    }
+
+    @Test
+    void outOfBounds() {
+        assertThrows(IndexOutOfBoundsException.class, () -> new PersistentList<>().get(0));
+    }
+
+    @Test
+    void insertAndRemove() {
+        final PersistentList<Integer> list = new PersistentList<>();
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+        final PersistentList<Integer> copy = list.copy();
+        list.add(50, -1);
+        expected.add(50, -1);
+        assertEquals(0, (int) list.remove(0));
+        expected.remove(0);
+        list.removeIf(i -> i % 3 == 0);
+        expected.removeIf(i -> i % 3 == 0);
+        assertEquals(expected, list);
+        assertEquals(99, copy.get(99));
+        assertEquals(100, copy.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(list.size()));
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    void removeLinkFromImmutableNode() {
+        final MutableNode a = (MutableNode) Factory.node("a").link("b", "c");
+        final MutableNode b = (MutableNode) ((ImmutableNode) a).link("d");
+        final Link toC = a.links().get(1);
+        b.links.remove(0);
+        b.links.removeIf(link -> link == toC);
+        assertEquals(1, b.links.size());
+        assertEquals(2, a.links().size());
+        assertSame(toC, a.links().get(1));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSetTest {
+    @Test
+    void keepsInsertionOrder() {
+        final PersistentSet<String> set = new PersistentSet<>(Arrays.asList("c", "a", "b", "a"));
+        assertEquals(Arrays.asList("c", "a", "b"), new ArrayList<>(set));
+        assertTrue(set.contains("a"));
+        assertFalse(set.contains("d"));
+    }
+
+    @Test
+    void manyElements() {
+        final PersistentSet<Integer> set = new PersistentSet<>();
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(set.add(i));
+        }
+        for (int i = 0; i < 20000; i++) {
+            assertFalse(set.add(i));
+            assertTrue(set.contains(i));
+        }
+        assertEquals(20000, set.size());
+        assertEquals(new HashSet<>(set), set);
+    }
+
+    @Test
+    void hashCollisions() {
+        final PersistentSet<Collider> set = new PersistentSet<>();
+        set.add(new Collider("a"));
+        set.add(new Collider("b"));
+        set.add(new Collider("a"));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(new Collider("b")));
+        assertFalse(set.contains(new Collider("c")));
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        final PersistentSet<String> set = new PersistentSet<>(Arrays.asList("a", "b"));
+        final PersistentSet<String> copy = set.copy();
+        copy.add("c");
+        assertEquals(2, set.size());
+        assertFalse(set.contains("c"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b", "c")), copy);
+    }
+
+    private static final class Collider {
+        private final String value;
+
+        Collider(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+}
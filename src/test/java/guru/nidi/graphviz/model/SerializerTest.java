@@ -169,7 +169,49 @@ class SerializerTest {
                         graph().directed().with(node("b").link(node("c"))))));
     }
 
+    @Test
+    void hoistSharedNodeAttrs() {
+        assertCompactGraph("graph 'x' {\nnode ['bla'='blu']\n'a'\n'b'\n}", graph("x")
+                .with(node("a").with("bla", "blu"), node("b").with("bla", "blu")));
+    }
+
+    @Test
+    void hoistMostCommonNodeAttr() {
+        assertCompactGraph("graph 'x' {\nnode ['bla'='blu']\n'a'\n'b' ['bla'='bli']\n'c'\n}", graph("x")
+                .with(node("a").with("bla", "blu"), node("b").with("bla", "bli"), node("c").with("bla", "blu")));
+    }
+
+    @Test
+    void dontHoistAttrsMissingOnSomeNodes() {
+        assertCompactGraph("graph 'x' {\n'a' ['bla'='blu']\n'b'\n}", graph("x")
+                .with(node("a").with("bla", "blu"), node("b")));
+    }
+
+    @Test
+    void dontHoistExplicitGraphDefaults() {
+        assertCompactGraph("graph 'x' {\nnode ['bla'='blo']\n'a' ['bla'='blu']\n'b' ['bla'='blu']\n}", graph("x")
+                .nodeAttr().with("bla", "blo")
+                .with(node("a").with("bla", "blu"), node("b").with("bla", "blu")));
+    }
+
+    @Test
+    void hoistSharedLinkAttrs() {
+        assertCompactGraph("graph 'x' {\nedge ['bla'='blu']\n'a' -- 'b'\n'a' -- 'c'\n}", graph("x")
+                .with(node("a").link(to(node("b")).with("bla", "blu"), to(node("c")).with("bla", "blu"))));
+    }
+
+    @Test
+    void hoistIntoSubgraph() {
+        assertCompactGraph("graph 'x' {\n'a'\nsubgraph 'y' {\nnode ['bla'='blu']\n'b'\n'c'\n}\n}", graph("x")
+                .with(node("a"),
+                        graph("y").with(node("b").with("bla", "blu"), node("c").with("bla", "blu"))));
+    }
+
     private void assertGraph(String expected, Graph graph) {
         assertEquals(expected.replace("'", "\""), new Serializer((MutableGraph) graph).serialize());
     }
+
+    private void assertCompactGraph(String expected, Graph graph) {
+        assertEquals(expected.replace("'", "\""), new Serializer((MutableGraph) graph, true).serialize());
+    }
 }
@@ -18,12 +18,15 @@ package guru.nidi.graphviz.parse;
 
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static guru.nidi.graphviz.parse.Token.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
 
 class LexerTest {
     @Test
@@ -92,6 +95,51 @@ class LexerTest {
         assertTokens("<<text>>", token(ID, SUB_HTML, "<text>"));
     }
 
+    @Test
+    void commentAfterIdent() throws IOException {
+        assertTokens("a// comment\nb/* comment */c", token(ID, SUB_SIMPLE, "a"),
+                token(ID, SUB_SIMPLE, "b"), token(ID, SUB_SIMPLE, "c"));
+    }
+
+    @Test
+    void recurringIdsAreShared() throws IOException {
+        final List<Token> tokens = lexAll(new Lexer("a=\"x\" a=\"x\"".toCharArray(), ""));
+        assertSame(tokens.get(0), tokens.get(3));
+        assertSame(tokens.get(2), tokens.get(5));
+        assertSame(tokens.get(1), tokens.get(4));
+    }
+
+    @Test
+    void position() throws IOException {
+        final Lexer lexer = new Lexer("a\n  b /*\n*/ c".toCharArray(), "x");
+        lexer.token();
+        assertEquals("x:2:3", lexer.position().toString());
+        lexer.token();
+        assertEquals("x:3:4", lexer.position().toString());
+    }
+
+    @Test
+    void allSourcesAcrossBufferBoundaries() throws IOException {
+        final StringBuilder s = new StringBuilder("\uFEFF");
+        for (int i = 0; i < 3000; i++) {
+            s.append("n").append(i).append(" -> \"q\\\"").append(i).append("\\\n\u00e4\" [label=<<b>")
+                    .append(i).append("</b>>, w=-").append(i).append(".5]; // c\n");
+        }
+        final String dot = s.toString();
+        final List<Token> expected = lexAll(new Lexer(dot.substring(1).toCharArray(), ""));
+        assertEquals(3000 * 13, expected.size());
+        assertEquals(token(ID, SUB_QUOTED, "q\"2999\u00e4"), expected.get(expected.size() - 11));
+        assertEquals(expected, lexAll(new Lexer(new StringReader(dot.substring(1)), "")));
+        assertEquals(expected, lexAll(new Lexer(CharBuffer.wrap(dot.substring(1).toCharArray()), "")));
+        final Path file = Files.createTempFile("lexer", ".dot");
+        try {
+            Files.write(file, dot.getBytes(UTF_8));
+            assertEquals(expected, lexAll(Lexer.mapped(file, "")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     private void assertTokens(String s, Token... expected) throws IOException {
         assertEquals(Arrays.asList(expected), lexAll(s));
     }
@@ -105,7 +153,10 @@ class LexerTest {
     }
 
     private List<Token> lexAll(String s) throws IOException {
-        final Lexer lexer = new Lexer(new StringReader(s), "");
+        return lexAll(new Lexer(new StringReader(s), ""));
+    }
+
+    private List<Token> lexAll(Lexer lexer) throws IOException {
         final List<Token> tokens = new ArrayList<>();
         Token token;
         while ((token = lexer.token()).type != EOF) {
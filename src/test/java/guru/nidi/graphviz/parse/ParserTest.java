@@ -20,6 +20,7 @@ import guru.nidi.graphviz.model.MutableNode;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.*;
 
 import static guru.nidi.graphviz.attribute.Attributes.attr;
 import static guru.nidi.graphviz.model.Compass.NORTH_EAST;
@@ -141,4 +142,49 @@ class ParserTest {
         assertEquals(mutGraph().add(mutGraph("sub").setCluster(true)),
                 Parser.read("graph { subgraph cluster_sub {} }"));
     }
+
+    @Test
+    void events() throws IOException {
+        final List<String> events = new ArrayList<>();
+        Parser.read("digraph g { node[shape=box] a [label=<x>]; subgraph cluster_s { b } a -> b:p:n -> {c} [w=1] }",
+                new ParserHandler() {
+                    @Override
+                    public void startGraph(boolean strict, boolean directed, Label name) {
+                        events.add("graph " + directed + " " + name);
+                    }
+
+                    @Override
+                    public void endGraph() {
+                        events.add("end graph");
+                    }
+
+                    @Override
+                    public void startSubgraph(Label name) {
+                        events.add("subgraph " + name);
+                    }
+
+                    @Override
+                    public void endSubgraph() {
+                        events.add("end subgraph");
+                    }
+
+                    @Override
+                    public void nodeAttributes(Map<String, Label> attrs) {
+                        events.add("node " + attrs);
+                    }
+
+                    @Override
+                    public void node(Label name, Map<String, Label> attrs) {
+                        events.add(name + " " + attrs + (attrs.isEmpty() ? "" : attrs.get("label").isHtml()));
+                    }
+
+                    @Override
+                    public void edge(Endpoint from, Endpoint to, Map<String, Label> attrs) {
+                        events.add(from + " -> " + to + " " + attrs);
+                    }
+                });
+        assertEquals(Arrays.asList("graph true g", "node {shape=box}", "a {label=x}true",
+                "subgraph cluster_s", "b {}", "end subgraph", "subgraph null", "c {}", "end subgraph",
+                "a -> b:p:NORTH {w=1}", "b:p:NORTH -> subgraph 1 {w=1}", "end graph"), events);
+    }
 }
@@ -16,14 +16,24 @@
 package org.contextmapper.contextmap.generator;
 
 import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.engine.GraphvizJavaEngine;
+import guru.nidi.graphviz.engine.Layout;
+import guru.nidi.graphviz.model.MutableGraph;
 import org.contextmapper.contextmap.generator.model.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.contextmapper.contextmap.generator.model.DownstreamPatterns.ANTICORRUPTION_LAYER;
 import static org.contextmapper.contextmap.generator.model.DownstreamPatterns.CONFORMIST;
@@ -42,6 +52,8 @@ public class ContextMapGeneratorTest {
     private static final String TEAM_MAP_FILE = BASE_DIR + "/teammap.png";
     private static final String TEAM_MAP_FILE_SVG_FORMAT = BASE_DIR + "/teammap.svg";
     private static final String TEAM_MAP_FILE_DOT_FORMAT = BASE_DIR + "/teammap.gv";
+    private static final String TEAM_MAP_FILE_JAVA_ENGINE = BASE_DIR + "/teammap-java-engine.svg";
+    private static final String CONTEXT_MAP_FILE_COMPONENT_LAYOUT = BASE_DIR + "/contextmap-components.svg";
     private static final String TEAMS_ONLY_FILE = BASE_DIR + "/team-only-map.png";
     private static final String TEAM_MAP_NOT_CLUSTERED_FILE = BASE_DIR + "/teammap-not-clustered.png";
     private static final String TEAM_MAP_WITH_INTER_TYPE_REFERENCE_FILE = BASE_DIR + "/teammap-with-inter-type-reference.png";
@@ -59,6 +71,8 @@ public class ContextMapGeneratorTest {
         deleteFileIfExisting(TEAM_MAP_FILE);
         deleteFileIfExisting(TEAM_MAP_FILE_SVG_FORMAT);
         deleteFileIfExisting(TEAM_MAP_FILE_DOT_FORMAT);
+        deleteFileIfExisting(TEAM_MAP_FILE_JAVA_ENGINE);
+        deleteFileIfExisting(CONTEXT_MAP_FILE_COMPONENT_LAYOUT);
         deleteFileIfExisting(TEAMS_ONLY_FILE);
         deleteFileIfExisting(TEAM_MAP_NOT_CLUSTERED_FILE);
         deleteFileIfExisting(TEAM_MAP_WITH_INTER_TYPE_REFERENCE_FILE);
@@ -264,6 +278,233 @@ public class ContextMapGeneratorTest {
         assertTrue(new File(CONTEXT_MAP_FILE_FIXED_HEIGHT).exists());
     }
 
+    @Test
+    public void canGenerateTeamMapWithJavaEngine() throws IOException {
+        // given
+        ContextMapGenerator generator = new ContextMapGenerator();
+        Graphviz.useEngine(new GraphvizJavaEngine());
+
+        // when
+        try {
+            assertFalse(new File(TEAM_MAP_FILE_JAVA_ENGINE).exists());
+            generator.generateContextMapGraphic(createTestTeamMap(), Format.SVG, TEAM_MAP_FILE_JAVA_ENGINE);
+        } finally {
+            Graphviz.releaseEngine();
+        }
+
+        // then
+        assertTrue(new File(TEAM_MAP_FILE_JAVA_ENGINE).exists());
+    }
+
+    @Test
+    public void canSplitContextMapIntoComponents() {
+        // given
+        ContextMap contextMap = createTestContextMap();
+        BoundedContext x = new BoundedContext("X Context");
+        BoundedContext y = new BoundedContext("Y Context");
+        contextMap.addBoundedContext(new BoundedContext("Z Context"))
+                .addBoundedContext(y)
+                .addBoundedContext(x)
+                .addRelationship(new Partnership(y, x));
+
+        // when
+        List<ContextMapSnapshot> components = new ContextMapGenerator().splitComponents(contextMap.snapshot());
+
+        // then
+        assertEquals(3, components.size());
+        assertEquals(6, components.get(0).getBoundedContexts().size());
+        assertEquals(7, components.get(0).getRelationships().size());
+        assertEquals(new HashSet<>(Arrays.asList(x, y)), components.get(1).getBoundedContexts());
+        assertEquals(1, components.get(1).getRelationships().size());
+        assertEquals("Z Context", components.get(2).getBoundedContexts().iterator().next().getName());
+    }
+
+    @Test
+    public void canGenerateContextMapWithComponentLayout() throws IOException {
+        // given
+        ContextMap contextMap = createTestContextMap();
+        BoundedContext x = new BoundedContext("X Context");
+        BoundedContext y = new BoundedContext("Y Context");
+        contextMap.addBoundedContext(x).addBoundedContext(y).addRelationship(new Partnership(x, y));
+        ContextMapGenerator generator = new ContextMapGenerator().setComponentLayout(true);
+        Graphviz.useEngine(new GraphvizJavaEngine());
+
+        // when
+        ByteArrayOutputStream xdot = new ByteArrayOutputStream();
+        ByteArrayOutputStream smallXdot = new ByteArrayOutputStream();
+        try {
+            assertFalse(new File(CONTEXT_MAP_FILE_COMPONENT_LAYOUT).exists());
+            generator.generateContextMapGraphic(contextMap, Format.SVG, CONTEXT_MAP_FILE_COMPONENT_LAYOUT);
+            generator.generateContextMapGraphic(contextMap, Format.XDOT, xdot);
+            generator.generateContextMapGraphic(new ContextMap().addBoundedContext(x).addBoundedContext(y)
+                    .addRelationship(new Partnership(x, y)), Format.XDOT, smallXdot);
+        } finally {
+            Graphviz.releaseEngine();
+        }
+
+        // then
+        assertTrue(new File(CONTEXT_MAP_FILE_COMPONENT_LAYOUT).exists());
+        Layout layout = Layout.fromXdot(new String(xdot.toByteArray(), StandardCharsets.UTF_8));
+        Set<String> small = new HashSet<>(Arrays.asList("X Context", "Y Context"));
+        Set<String> big = new HashSet<>(layout.nodes());
+        big.removeAll(small);
+        assertEquals(6, big.size());
+        assertTrue(layout.nodes().containsAll(small));
+        assertEquals(Arrays.asList("Y Context"), layout.neighbours("X Context"));
+        // the packed components keep their own layout and do not overlap
+        double[] bigBounds = bounds(layout, big);
+        double[] smallBounds = bounds(layout, small);
+        assertTrue(bigBounds[2] < smallBounds[0] || smallBounds[2] < bigBounds[0]
+                || bigBounds[3] < smallBounds[1] || smallBounds[3] < bigBounds[1]);
+        assertTrue(big.stream().noneMatch(n -> layout.neighbours(n).stream().anyMatch(small::contains)));
+        // the component is only moved as a whole
+        Layout alone = Layout.fromXdot(new String(smallXdot.toByteArray(), StandardCharsets.UTF_8));
+        assertArrayEquals(offset(alone, "X Context", "Y Context"), offset(layout, "X Context", "Y Context"), 0.01);
+    }
+
+    private static double[] offset(Layout layout, String from, String to) {
+        double[] a = layout.position(from);
+        double[] b = layout.position(to);
+        return new double[]{b[0] - a[0], b[1] - a[1]};
+    }
+
+    private static double[] bounds(Layout layout, Set<String> nodes) {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (String node : nodes) {
+            double[] pos = layout.position(node);
+            bounds[0] = Math.min(bounds[0], pos[0]);
+            bounds[1] = Math.min(bounds[1], pos[1]);
+            bounds[2] = Math.max(bounds[2], pos[0]);
+            bounds[3] = Math.max(bounds[3], pos[1]);
+        }
+        return bounds;
+    }
+
+    @Test
+    public void canCollapseContextMapToLevelOfDetail() {
+        // given
+        ContextMapGenerator generator = new ContextMapGenerator().setLevelOfDetail(4);
+
+        // when
+        MutableGraph graph = generator.createSummaryGraph(createTestTeamMap().snapshot(), false);
+
+        // then
+        assertEquals(4, graph.rootNodes().size());
+        String dot = graph.toString();
+        assertTrue(dot.contains("Claims [+1]"));
+        assertTrue(dot.contains("Customer Management Context [+1]"));
+        assertEquals(3, dot.split("2 relationships", -1).length - 1);
+        assertFalse(dot.contains("realizes"));
+    }
+
+    @Test
+    public void canBundleRelationships() {
+        // given
+        BoundedContext a = new BoundedContext("A Context");
+        BoundedContext b = new BoundedContext("B Context");
+        BoundedContext c = new BoundedContext("C Context");
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a)
+                .addBoundedContext(b)
+                .addBoundedContext(c)
+                .addRelationship(new Partnership(a, b))
+                .addRelationship(new UpstreamDownstreamRelationship(b, a)
+                        .setUpstreamPatterns(PUBLISHED_LANGUAGE, OPEN_HOST_SERVICE)
+                        .setDownstreamPatterns(CONFORMIST))
+                .addRelationship(new UpstreamDownstreamRelationship(a, b).setCustomerSupplier(true))
+                .addRelationship(new SharedKernel(b, c));
+        ContextMapGenerator generator = new ContextMapGenerator().setBundleRelationships(true).setConcentrateEdges(true);
+
+        // when
+        String dot = generator.createGraph(contextMap.snapshot(), false).toString();
+
+        // then
+        assertEquals(2, dot.split(" -> ", -1).length - 1);
+        assertTrue(dot.contains("\"concentrate\"=\"true\""));
+        assertTrue(dot.contains("Customer/Supplier - U: A Context, D: B Context\\n"
+                + "Partnership\\n"
+                + "U: B Context (OHS, PL), D: A Context (CF)"));
+        assertTrue(dot.contains("Shared Kernel"));
+    }
+
+    @Test
+    public void drawsEveryRelationshipWithoutBundling() {
+        // given
+        BoundedContext a = new BoundedContext("A Context");
+        BoundedContext b = new BoundedContext("B Context");
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a)
+                .addBoundedContext(b)
+                .addRelationship(new Partnership(a, b))
+                .addRelationship(new SharedKernel(b, a));
+
+        // when
+        String dot = new ContextMapGenerator().createGraph(contextMap.snapshot(), false).toString();
+
+        // then
+        assertEquals(2, dot.split(" -> ", -1).length - 1);
+        assertFalse(dot.contains("concentrate"));
+    }
+
+    @Test
+    public void canRenderWithFastProfile() {
+        // given
+        BoundedContext a = new BoundedContext("A Context");
+        BoundedContext b = new BoundedContext("B Context");
+        BoundedContext team = new BoundedContext("A Team", BoundedContextType.TEAM).realizing(a);
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a)
+                .addBoundedContext(b)
+                .addBoundedContext(team)
+                .addRelationship(new UpstreamDownstreamRelationship(b, a)
+                        .setUpstreamPatterns(PUBLISHED_LANGUAGE, OPEN_HOST_SERVICE)
+                        .setDownstreamPatterns(ANTICORRUPTION_LAYER));
+        ContextMapGenerator generator = new ContextMapGenerator().setRenderingProfile(RenderingProfile.FAST);
+
+        // when
+        String dot = generator.createGraph(contextMap.snapshot(), false).toString();
+
+        // then
+        assertFalse(dot.contains("egg"));
+        assertFalse(dot.contains("orientation"));
+        assertFalse(dot.contains("<img"));
+        assertFalse(dot.contains("<table"));
+        assertTrue(dot.contains("Team\\nA Team"));
+        assertTrue(dot.contains("U (OHS, PL)"));
+        assertTrue(dot.contains("D (ACL)"));
+    }
+
+    @Test
+    public void rendersDetailedNodesWithDefaultProfile() {
+        // given
+        BoundedContext a = new BoundedContext("A Context");
+        BoundedContext team = new BoundedContext("A Team", BoundedContextType.TEAM).realizing(a);
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a)
+                .addBoundedContext(team);
+
+        // when
+        String dot = new ContextMapGenerator().createGraph(contextMap.snapshot(), false).toString();
+
+        // then
+        assertTrue(dot.contains("egg"));
+        assertTrue(dot.contains("<img"));
+    }
+
+    @Test
+    public void createsSameSourceForSameContextMap() {
+        // given
+        ContextMap contextMap = createTestTeamMap();
+
+        // when
+        String first = new ContextMapGenerator().createGraph(contextMap.snapshot(), false).toString();
+        String second = new ContextMapGenerator().createGraph(contextMap.snapshot(), false).toString();
+
+        // then
+        assertTrue(first.contains("orientation"));
+        assertEquals(first, second);
+    }
+
     @Test
     public void canFixWidth() {
         // given
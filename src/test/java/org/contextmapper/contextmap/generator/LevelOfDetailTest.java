@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator;
+
+import org.contextmapper.contextmap.generator.model.BoundedContext;
+import org.contextmapper.contextmap.generator.model.BoundedContextType;
+import org.contextmapper.contextmap.generator.model.ContextMap;
+import org.contextmapper.contextmap.generator.model.Partnership;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class LevelOfDetailTest {
+
+    @Test
+    public void keepsSmallMapsUnchanged() {
+        // given
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(new BoundedContext("B"))
+                .addBoundedContext(new BoundedContext("A"));
+
+        // when
+        List<List<BoundedContext>> groups = new LevelOfDetail(2).groups(contextMap.snapshot());
+
+        // then
+        assertEquals(Arrays.asList(Arrays.asList("A"), Arrays.asList("B")), names(groups));
+    }
+
+    @Test
+    public void groupsTeamsWithRealizedContextsFirst() {
+        // given
+        BoundedContext a = new BoundedContext("A");
+        BoundedContext b = new BoundedContext("B");
+        BoundedContext c = new BoundedContext("C");
+        BoundedContext teamA = new BoundedContext("Team A", BoundedContextType.TEAM).realizing(a);
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a).addBoundedContext(b).addBoundedContext(c).addBoundedContext(teamA)
+                .addRelationship(new Partnership(a, b))
+                .addRelationship(new Partnership(b, c));
+
+        // when
+        List<List<BoundedContext>> groups = new LevelOfDetail(3).groups(contextMap.snapshot());
+
+        // then
+        assertEquals(Arrays.asList(Arrays.asList("A", "Team A"), Arrays.asList("B"), Arrays.asList("C")), names(groups));
+    }
+
+    @Test
+    public void mergesDenselyConnectedGroups() {
+        // given
+        BoundedContext a = new BoundedContext("A");
+        BoundedContext b = new BoundedContext("B");
+        BoundedContext c = new BoundedContext("C");
+        BoundedContext d = new BoundedContext("D");
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(a).addBoundedContext(b).addBoundedContext(c).addBoundedContext(d)
+                .addRelationship(new Partnership(a, b))
+                .addRelationship(new Partnership(c, d))
+                .addRelationship(new Partnership(b, c));
+
+        // when
+        List<List<BoundedContext>> groups = new LevelOfDetail(2).groups(contextMap.snapshot());
+
+        // then
+        assertEquals(Arrays.asList(Arrays.asList("A", "B"), Arrays.asList("C", "D")), names(groups));
+    }
+
+    @Test
+    public void mergesSmallestUnconnectedGroups() {
+        // given
+        ContextMap contextMap = new ContextMap()
+                .addBoundedContext(new BoundedContext("A"))
+                .addBoundedContext(new BoundedContext("B"))
+                .addBoundedContext(new BoundedContext("C"));
+
+        // when
+        List<List<BoundedContext>> groups = new LevelOfDetail(1).groups(contextMap.snapshot());
+
+        // then
+        assertEquals(Arrays.asList(Arrays.asList("A", "B", "C")), names(groups));
+    }
+
+    @Test
+    public void collapsesBigMaps() {
+        // given
+        ContextMap contextMap = new ContextMap();
+        BoundedContext previous = null;
+        for (int i = 0; i < 5000; i++) {
+            BoundedContext bc = new BoundedContext(String.format("BC %04d", i));
+            contextMap.addBoundedContext(bc);
+            if (previous != null && i % 100 != 0)
+                contextMap.addRelationship(new Partnership(previous, bc));
+            previous = bc;
+        }
+
+        // when
+        List<List<BoundedContext>> groups = assertTimeout(Duration.ofSeconds(5),
+                () -> new LevelOfDetail(50).groups(contextMap.snapshot()));
+
+        // then
+        assertEquals(50, groups.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(100, groups.get(i).size());
+            assertEquals(String.format("BC %04d", i * 100), groups.get(i).get(0).getName());
+        }
+    }
+
+    @Test
+    public void cannotUseZeroNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new LevelOfDetail(0));
+    }
+
+    private List<List<String>> names(List<List<BoundedContext>> groups) {
+        return groups.stream()
+                .map(group -> group.stream().map(BoundedContext::getName).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator;
+
+import org.contextmapper.contextmap.generator.model.*;
+import org.contextmapper.contextmap.generator.model.exception.BoundedContextNotPartOfContextMapException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NeighbourhoodTest {
+
+    private final BoundedContext a = new BoundedContext("A");
+    private final BoundedContext b = new BoundedContext("B");
+    private final BoundedContext c = new BoundedContext("C");
+    private final BoundedContext d = new BoundedContext("D");
+    private final BoundedContext teamD = new BoundedContext("Team D", BoundedContextType.TEAM).realizing(d);
+    private final ContextMap contextMap = new ContextMap()
+            .addBoundedContext(a).addBoundedContext(b).addBoundedContext(c).addBoundedContext(d).addBoundedContext(teamD)
+            .addRelationship(new Partnership(a, b))
+            .addRelationship(new UpstreamDownstreamRelationship(c, b))
+            .addRelationship(new SharedKernel(c, d))
+            .addRelationship(new Partnership(a, c));
+
+    @Test
+    public void extractsOnlyFocusWithoutHops() {
+        // when
+        ContextMap view = new Neighbourhood(contextMap).around(0, a);
+
+        // then
+        assertEquals(names("A"), names(view.getBoundedContexts()));
+        assertEquals(0, view.getRelationships().size());
+    }
+
+    @Test
+    public void extractsDirectNeighboursWithAllRelationshipsBetweenThem() {
+        // when
+        ContextMap view = new Neighbourhood(contextMap).around(1, a);
+
+        // then
+        assertEquals(names("A", "B", "C"), names(view.getBoundedContexts()));
+        assertEquals(3, view.getRelationships().size());
+    }
+
+    @Test
+    public void followsTeamRealizations() {
+        // given
+        Neighbourhood neighbourhood = new Neighbourhood(contextMap);
+
+        // when
+        ContextMap fromTeam = neighbourhood.around(1, teamD);
+        ContextMap twoHops = neighbourhood.around(2, a);
+
+        // then
+        assertEquals(names("D", "Team D"), names(fromTeam.getBoundedContexts()));
+        assertEquals(names("A", "B", "C", "D"), names(twoHops.getBoundedContexts()));
+    }
+
+    @Test
+    public void combinesSeveralFocusContexts() {
+        // when
+        ContextMap view = new Neighbourhood(contextMap).around(0, Arrays.asList(b, c));
+
+        // then
+        assertEquals(names("B", "C"), names(view.getBoundedContexts()));
+        assertEquals(1, view.getRelationships().size());
+    }
+
+    @Test
+    public void rejectsUnknownFocusAndNegativeHops() {
+        // given
+        Neighbourhood neighbourhood = new Neighbourhood(contextMap);
+
+        // when, then
+        assertThrows(BoundedContextNotPartOfContextMapException.class, () -> neighbourhood.around(1, new BoundedContext("X")));
+        assertThrows(IllegalArgumentException.class, () -> neighbourhood.around(-1, a));
+    }
+
+    private Set<String> names(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private Set<String> names(Set<BoundedContext> boundedContexts) {
+        return boundedContexts.stream().map(BoundedContext::getName).collect(Collectors.toSet());
+    }
+
+}
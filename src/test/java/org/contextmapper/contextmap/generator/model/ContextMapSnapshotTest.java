@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 The Context Mapper Project Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.contextmapper.contextmap.generator.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContextMapSnapshotTest {
+
+    private final BoundedContext a = new BoundedContext("A");
+    private final BoundedContext b = new BoundedContext("B");
+    private final BoundedContext c = new BoundedContext("C");
+    private final BoundedContext outside = new BoundedContext("Outside");
+    private final BoundedContext team = new BoundedContext("Team", BoundedContextType.TEAM).realizing(a).realizing(outside);
+    private final Partnership partnership = new Partnership(a, b);
+    private final UpstreamDownstreamRelationship upstreamDownstream = new UpstreamDownstreamRelationship(b, c);
+    private final ContextMap contextMap = new ContextMap()
+            .addBoundedContext(a).addBoundedContext(b).addBoundedContext(c).addBoundedContext(team)
+            .addRelationship(partnership)
+            .addRelationship(upstreamDownstream);
+
+    @Test
+    public void indexesBoundedContextsByNameAndType() {
+        // when
+        ContextMapSnapshot snapshot = contextMap.snapshot();
+
+        // then
+        assertEquals(4, snapshot.getBoundedContexts().size());
+        assertSame(b, snapshot.getBoundedContext("B"));
+        assertNull(snapshot.getBoundedContext("Outside"));
+        assertTrue(snapshot.contains(new BoundedContext("C")));
+        assertEquals(Collections.singleton(team), snapshot.getBoundedContexts(BoundedContextType.TEAM));
+        assertEquals(new HashSet<>(Arrays.asList(a, b, c)), snapshot.getBoundedContexts(BoundedContextType.GENERIC));
+        assertTrue(snapshot.hasBoundedContexts(BoundedContextType.TEAM));
+    }
+
+    @Test
+    public void indexesRelationshipsByParticipantAndType() {
+        // when
+        ContextMapSnapshot snapshot = contextMap.snapshot();
+
+        // then
+        assertEquals(2, snapshot.getRelationships().size());
+        assertEquals(new HashSet<>(Arrays.asList(partnership, upstreamDownstream)), snapshot.getRelationships(b));
+        assertEquals(Collections.singleton(upstreamDownstream), snapshot.getRelationships(c));
+        assertEquals(Collections.singleton(partnership), snapshot.getRelationships(Partnership.class));
+        assertTrue(snapshot.getRelationships(SharedKernel.class).isEmpty());
+    }
+
+    @Test
+    public void indexesRealizationsOnTheContextMap() {
+        // when
+        ContextMapSnapshot snapshot = contextMap.snapshot();
+
+        // then
+        assertEquals(Collections.singletonList(a), snapshot.getRealizedBoundedContexts(team));
+        assertEquals(Collections.singletonList(team), snapshot.getRealizingTeams(a));
+        assertTrue(snapshot.getRealizedBoundedContexts(a).isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(b, team)), snapshot.getNeighbours(a));
+    }
+
+    @Test
+    public void isImmutableSnapshot() {
+        // given
+        ContextMapSnapshot snapshot = contextMap.snapshot();
+
+        // when
+        contextMap.addBoundedContext(new BoundedContext("D"));
+
+        // then
+        assertEquals(4, snapshot.getBoundedContexts().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getBoundedContexts().add(outside));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getRelationships(a).clear());
+    }
+
+}